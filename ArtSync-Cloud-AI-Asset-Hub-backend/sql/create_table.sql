@@ -126,3 +126,124 @@ create table if not exists space_user
 ) comment '空间用户关联' collate = utf8mb4_unicode_ci;
 
 
+-- 图片存储对象表（按内容摘要去重，引用计数归零时才清理对象存储中的文件）
+create table if not exists picture_object
+(
+    id           bigint auto_increment comment 'id' primary key,
+    picHash      char(64)                           not null comment '原图内容 SHA-256 摘要',
+    url          varchar(512)                       not null comment '图片 url',
+    thumbnailUrl varchar(512)                       null comment '缩略图 url',
+    picSize      bigint                             null comment '图片体积',
+    picWidth     int                                null comment '图片宽度',
+    picHeight    int                                null comment '图片高度',
+    picScale     double                             null comment '图片宽高比例',
+    picFormat    varchar(32)                        null comment '图片格式',
+    picColor     varchar(16)                        null comment '图片主色调',
+    refCount     int      default 0                 not null comment '引用该对象的图片数量',
+    createTime   datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime   datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    UNIQUE KEY uk_picHash (picHash)
+) comment '图片存储对象' collate = utf8mb4_unicode_ci;
+
+-- 图片记录关联的内容摘要（已存在的 picture_{spaceId} 分表需同样执行）
+ALTER TABLE picture
+    ADD COLUMN picHash char(64) null comment '原图内容 SHA-256 摘要';
+
+-- 标签表
+create table if not exists tag
+(
+    id         bigint auto_increment comment 'id' primary key,
+    tagName    varchar(128)                       not null comment '标签名称',
+    createTime datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    UNIQUE KEY uk_tagName (tagName)
+) comment '标签' collate = utf8mb4_unicode_ci;
+
+-- 图片标签关联表（替代 picture.tags 上的 LIKE 匹配）
+create table if not exists picture_tag
+(
+    id         bigint auto_increment comment 'id' primary key,
+    pictureId  bigint                             not null comment '图片 id',
+    tagId      bigint                             not null comment '标签 id',
+    spaceId    bigint                             null comment '图片所属空间 id（为空表示公共图库）',
+    createTime datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    UNIQUE KEY uk_pictureId_tagId (pictureId, tagId),      -- 同一图片的标签不重复，也用于按图片查询和删除
+    INDEX idx_tagId_spaceId (tagId, spaceId, pictureId)    -- 按标签筛选图片，覆盖索引无需回表
+) comment '图片标签关联' collate = utf8mb4_unicode_ci;
+
+-- 历史数据通过管理员接口 /picture/tag/backfill 在线迁移，迁移完成后 picture.idx_tags 索引可以删除
+
+-- 全文索引按更新时间增量同步（已存在的 picture_{spaceId} 分表需同样执行）
+CREATE INDEX idx_updateTime ON picture (updateTime);
+
+-- 标签使用次数（按空间增量维护，定期根据 picture_tag 校准）
+create table if not exists tag_count
+(
+    id         bigint auto_increment comment 'id' primary key,
+    scopeId    bigint                             not null comment '统计范围：空间 id，0 表示公共图库，-1 表示全部',
+    tagId      bigint                             not null comment '标签 id',
+    tagCount   bigint   default 0                 not null comment '使用该标签的图片数量',
+    updateTime datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    UNIQUE KEY uk_scopeId_tagId (scopeId, tagId),
+    INDEX idx_scopeId_tagCount (scopeId, tagCount)         -- 按使用次数取前 N 个标签
+) comment '标签使用次数' collate = utf8mb4_unicode_ci;
+
+-- 每日上传数量（按空间和用户增量汇总，定期根据 picture 校准）
+create table if not exists picture_upload_daily
+(
+    id          bigint auto_increment comment 'id' primary key,
+    scopeId     bigint                             not null comment '统计范围：空间 id，0 表示公共图库，-1 表示全部',
+    userId      bigint                             not null comment '上传用户 id',
+    statDate    date                               not null comment '统计日期',
+    uploadCount bigint   default 0                 not null comment '当日上传的图片数量',
+    updateTime  datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    UNIQUE KEY uk_scopeId_userId_statDate (scopeId, userId, statDate), -- 按用户查询趋势，也用于增量累加
+    INDEX idx_scopeId_statDate (scopeId, statDate)                     -- 按范围查询趋势
+) comment '每日上传数量' collate = utf8mb4_unicode_ci;
+
+-- 上传统计按创建时间分段迁移和校准（已存在的 picture_{spaceId} 分表需同样执行）
+CREATE INDEX idx_createTime ON picture (createTime);
+
+-- 历史数据通过管理员接口 /space/analyze/user/backfill 在线迁移，迁移完成前用户上传分析仍按原方式统计
+
+-- 动态分表启动和定期校准时按 id 分页扫描旗舰版团队空间（二级索引自带主键，可直接按 id 顺序读取）
+CREATE INDEX idx_spaceType_spaceLevel ON space (spaceType, spaceLevel);
+
+-- 空间分表状态（旗舰版团队空间的独立图片表 picture_{spaceId}，以及已有空间升级后的在线迁移进度）
+create table if not exists space_shard
+(
+    id            bigint auto_increment comment 'id' primary key,
+    spaceId       bigint                             not null comment '空间 id',
+    status        tinyint  default 0                 not null comment '状态：0-复制中 1-增量同步中 2-清理中 3-已完成，2 和 3 已切换到分表',
+    paused        tinyint  default 0                 not null comment '是否暂停：0-否 1-是',
+    lastPictureId bigint   default 0                 not null comment '当前阶段已处理的最大图片 id',
+    copiedCount   bigint   default 0                 not null comment '已复制的图片数量',
+    totalCount    bigint   default 0                 not null comment '开始迁移时的图片数量，用于估算进度',
+    batchSize     int      default 500               not null comment '每批处理的数量',
+    batchInterval int      default 200               not null comment '两批之间的间隔（毫秒）',
+    syncTime      datetime                           null comment '增量同步的起始时间，之后修改过的图片需重新复制',
+    errorMessage  varchar(512)                       null comment '最近一次失败原因',
+    createTime    datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime    datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    UNIQUE KEY uk_spaceId (spaceId),
+    INDEX idx_status (status)
+) comment '空间分表状态' collate = utf8mb4_unicode_ci;
+
+-- 登记已经创建了分表的空间（分片规则改为从 space_shard 读取）
+INSERT IGNORE INTO space_shard (spaceId, status)
+SELECT s.id, 3
+FROM space s
+         JOIN information_schema.tables t
+              ON t.table_schema = DATABASE() AND t.table_name = CONCAT('picture_', s.id)
+WHERE s.isDelete = 0;
+
+-- 从库复制延迟心跳（配置读写分离后，各实例定期在主库写入当前时间，与从库中复制过来的时间比较得到延迟）
+create table if not exists replica_heartbeat
+(
+    id       tinyint     not null comment 'id，固定为 1' primary key,
+    beatTime datetime(3) not null comment '主库写入的时间'
+) comment '从库复制延迟心跳' collate = utf8mb4_unicode_ci;
+
+INSERT IGNORE INTO replica_heartbeat (id, beatTime) VALUES (1, NOW(3));
+
+-- 引用归零的图片存储对象保留一段时间后再清理，按引用数和更新时间查找待清理的对象
+CREATE INDEX idx_refCount_updateTime ON picture_object (refCount, updateTime);
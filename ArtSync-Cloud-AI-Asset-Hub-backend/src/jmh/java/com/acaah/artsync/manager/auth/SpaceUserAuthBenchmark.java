@@ -0,0 +1,96 @@
+package com.acaah.artsync.manager.auth;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.acaah.artsync.manager.auth.model.SpaceUserAuthConfig;
+import com.acaah.artsync.manager.auth.model.SpaceUserPermissionConstant;
+import com.acaah.artsync.manager.auth.model.SpaceUserRole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 空间成员权限判断基准测试
+ * 对比原实现（每次遍历角色配置找到角色，再用 List.contains 判断权限）与编译后的位掩码实现，
+ * 运行方式：mvn -Pjmh compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpaceUserAuthBenchmark {
+
+    /**
+     * 判断的角色，admin 位于配置末尾，是原实现遍历最长的情况
+     */
+    @Param({"viewer", "admin"})
+    private String role;
+
+    /**
+     * 判断的权限，picture:delete 位于权限列表末尾
+     */
+    @Param({SpaceUserPermissionConstant.PICTURE_VIEW, SpaceUserPermissionConstant.PICTURE_DELETE})
+    private String permission;
+
+    private SpaceUserAuthConfig config;
+
+    private CompiledSpaceUserAuth compiledAuth;
+
+    @Setup
+    public void setup() {
+        config = JSONUtil.toBean(ResourceUtil.readUtf8Str("biz/spaceUserAuthConfig.json"), SpaceUserAuthConfig.class);
+        compiledAuth = CompiledSpaceUserAuth.compile(config);
+    }
+
+    @Benchmark
+    public boolean legacyHasPermission() {
+        return legacyGetPermissionsByRole(role).contains(permission);
+    }
+
+    @Benchmark
+    public boolean compiledHasPermission() {
+        return compiledAuth.hasPermission(role, permission);
+    }
+
+    @Benchmark
+    public List<String> legacyGetPermissions() {
+        return legacyGetPermissionsByRole(role);
+    }
+
+    @Benchmark
+    public List<String> compiledGetPermissions() {
+        return compiledAuth.getPermissions(role);
+    }
+
+    /**
+     * 原 SpaceUserAuthManager.getPermissionsByRole 的实现
+     */
+    private List<String> legacyGetPermissionsByRole(String spaceUserRole) {
+        if (StrUtil.isBlank(spaceUserRole)) {
+            return new ArrayList<>();
+        }
+        SpaceUserRole userRole = config.getRoles().stream()
+                .filter(r -> spaceUserRole.equals(r.getKey()))
+                .findFirst()
+                .orElse(null);
+        if (userRole == null) {
+            return new ArrayList<>();
+        }
+        return userRole.getPermissions();
+    }
+}
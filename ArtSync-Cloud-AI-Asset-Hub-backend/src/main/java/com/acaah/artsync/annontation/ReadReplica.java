@@ -0,0 +1,15 @@
+package com.acaah.artsync.annontation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 只读方法允许读从库
+ * 方法内事务外的查询在延迟正常的从库中轮询执行；当前用户刚写入过数据、没有可用从库或方法内发生写入后，仍读主库
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadReplica {
+}
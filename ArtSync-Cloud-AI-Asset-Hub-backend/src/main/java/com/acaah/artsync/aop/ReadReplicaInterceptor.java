@@ -0,0 +1,43 @@
+package com.acaah.artsync.aop;
+
+import com.acaah.artsync.annontation.ReadReplica;
+import com.acaah.artsync.manager.readwrite.ReadWriteRouteContext;
+import com.acaah.artsync.manager.readwrite.ReadWriteRouteManager;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+@Aspect
+@Component
+public class ReadReplicaInterceptor {
+
+    @Resource
+    private ReadWriteRouteManager readWriteRouteManager;
+
+    /**
+     * 执行拦截
+     *
+     * @param joinPoint   切入点
+     * @param readReplica 读从库注解
+     */
+    @Around("@annotation(readReplica)")
+    public Object doInterceptor(ProceedingJoinPoint joinPoint, ReadReplica readReplica) throws Throwable {
+        // 没有可用的从库，直接读主库
+        if (!ReadWriteRouteContext.hasAvailableReplica()) {
+            return joinPoint.proceed();
+        }
+        // 当前用户刚写入过数据，读主库，保证能读到自己的写入
+        if (readWriteRouteManager.isLoginUserRecentlyWritten()) {
+            return joinPoint.proceed();
+        }
+        Boolean previous = ReadWriteRouteContext.enterReplicaRead();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReadWriteRouteContext.restore(previous);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.acaah.artsync.common;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 游标分页结果
+ *
+ * @param <T> 记录类型
+ */
+@Data
+public class CursorPage<T> implements Serializable {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> records = new ArrayList<>();
+
+    /**
+     * 下一页游标，没有更多数据时为空
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 总数，不统计时为空
+     */
+    private Long total;
+
+    /**
+     * 总数是否为近似值
+     */
+    private boolean totalApproximate;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,43 @@
+package com.acaah.artsync.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+/**
+ * 复用请求包装中已解析 JSON 树的消息转换器
+ * 请求体来自 {@link RequestWrapper} 时直接从 JSON 树绑定 @RequestBody 参数，
+ * 鉴权阶段已经解析过的请求体不会再解析一次；其他情况与默认转换器一致
+ */
+public class CachedJsonTreeHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public CachedJsonTreeHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        InputStream body = inputMessage.getBody();
+        if (body instanceof RequestWrapper.CachedBodyInputStream) {
+            JavaType javaType = getJavaType(type, contextClass);
+            try {
+                JsonNode jsonTree = ((RequestWrapper.CachedBodyInputStream) body).getJsonTree();
+                if (!jsonTree.isMissingNode()) {
+                    return getObjectMapper().readerFor(javaType).readValue(jsonTree);
+                }
+            } catch (JsonProcessingException e) {
+                throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e, inputMessage);
+            }
+        }
+        return super.read(type, contextClass, inputMessage);
+    }
+}
@@ -0,0 +1,26 @@
+package com.acaah.artsync.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * HTTP 客户端配置
+ */
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * 下载远程图片使用的共享客户端
+     * JDK HttpClient 内部维护连接池并复用 keep-alive 连接，避免每次下载都重新建连
+     */
+    @Bean
+    public HttpClient pictureHttpClient() {
+        return HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+}
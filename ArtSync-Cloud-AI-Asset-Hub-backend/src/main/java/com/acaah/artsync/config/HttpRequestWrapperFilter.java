@@ -1,35 +1,73 @@
 package com.acaah.artsync.config;
 
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.http.ContentType;
 import cn.hutool.http.Header;
+import com.acaah.artsync.common.ResultUtils;
+import com.acaah.artsync.exception.ErrorCode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * 请求包装过滤器
+ * JSON 请求体缓存为字节数组，超出大小上限的请求直接拒绝，不再复制和解析
  *
  * @author pine
  */
+@Slf4j
 @Order(1)
 @Component
 public class HttpRequestWrapperFilter implements Filter {
 
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * JSON 请求体大小上限（字节），默认 1MB
+     */
+    @Value("${request.json.max-body-size:1048576}")
+    private int maxJsonBodySize;
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws ServletException, IOException {
         if (request instanceof HttpServletRequest) {
             HttpServletRequest servletRequest = (HttpServletRequest) request;
             String contentType = servletRequest.getHeader(Header.CONTENT_TYPE.getValue());
-            if (ContentType.JSON.getValue().equals(contentType)) {
+            // 兼容带 charset 参数的 Content-Type
+            if (StrUtil.startWithIgnoreCase(contentType, ContentType.JSON.getValue())) {
                 // 可以再细粒度一些，只有需要进行空间权限校验的接口才需要包一层
-                chain.doFilter(new RequestWrapper(servletRequest), response);
+                RequestWrapper requestWrapper;
+                try {
+                    requestWrapper = new RequestWrapper(servletRequest, objectMapper, maxJsonBodySize);
+                } catch (RequestWrapper.RequestBodyTooLargeException e) {
+                    log.warn("请求体过大, uri = {}, contentLength = {}", servletRequest.getRequestURI(), servletRequest.getContentLengthLong());
+                    writeError((HttpServletResponse) response, e.getMessage());
+                    return;
+                }
+                chain.doFilter(requestWrapper, response);
             } else {
                 chain.doFilter(request, response);
             }
         }
     }
 
+    private void writeError(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), ResultUtils.error(ErrorCode.PARAMS_ERROR, message));
+    }
+
 }
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import org.springframework.boot.jackson.JsonComponent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 
 /**
  * Spring MVC Json 配置
@@ -25,4 +26,12 @@ public class JsonConfig {
         objectMapper.registerModule(module);
         return objectMapper;
     }
+
+    /**
+     * 替换默认的 Jackson 消息转换器，@RequestBody 参数绑定复用请求包装中已解析的 JSON 树
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new CachedJsonTreeHttpMessageConverter(objectMapper);
+    }
 }
@@ -0,0 +1,24 @@
+package com.acaah.artsync.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Redis 消息订阅配置
+ * 用于在集群各节点间广播本地状态的变更（如新建分表），各业务在初始化时向容器注册自己的频道
+ */
+@Configuration
+public class RedisListenerConfig {
+
+    /**
+     * 按名称注入，避免与 Spring Session 自带的监听容器冲突
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+}
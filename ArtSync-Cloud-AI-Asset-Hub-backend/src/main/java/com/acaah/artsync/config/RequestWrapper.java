@@ -1,5 +1,9 @@
 package com.acaah.artsync.config;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.servlet.ReadListener;
@@ -7,64 +11,181 @@ import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
  * 包装请求，使 InputStream 可以重复读取
+ * 请求体只读取一次并以字节数组缓存，JSON 请求体在首次使用时解析为 JsonNode，
+ * 空间鉴权和 @RequestBody 参数绑定共用同一棵树，不再重复解析
  *
  * @author pine
  */
 @Slf4j
 public class RequestWrapper extends HttpServletRequestWrapper {
 
-    private final String body;
+    private final byte[] body;
 
-    public RequestWrapper(HttpServletRequest request) {
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 解析后的 JSON 树，首次使用时解析
+     */
+    private JsonNode jsonTree;
+
+    /**
+     * 读取并缓存请求体
+     *
+     * @param request      原始请求
+     * @param objectMapper 解析 JSON 使用的 ObjectMapper
+     * @param maxBodySize  请求体大小上限（字节）
+     * @throws RequestBodyTooLargeException 请求体超出上限
+     */
+    public RequestWrapper(HttpServletRequest request, ObjectMapper objectMapper, int maxBodySize) throws IOException {
         super(request);
-        StringBuilder stringBuilder = new StringBuilder();
-        try (InputStream inputStream = request.getInputStream(); BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream))) {
-            char[] charBuffer = new char[128];
-            int bytesRead = -1;
-            while ((bytesRead = bufferedReader.read(charBuffer)) > 0) {
-                stringBuilder.append(charBuffer, 0, bytesRead);
+        this.objectMapper = objectMapper;
+        long contentLength = request.getContentLengthLong();
+        if (contentLength > maxBodySize) {
+            throw new RequestBodyTooLargeException(maxBodySize);
+        }
+        try (InputStream inputStream = request.getInputStream()) {
+            // 多读一个字节，用于判断未声明长度的请求体是否超出上限
+            byte[] bytes = inputStream.readNBytes(maxBodySize + 1);
+            if (bytes.length > maxBodySize) {
+                throw new RequestBodyTooLargeException(maxBodySize);
             }
-        } catch (IOException ignored) {
+            this.body = bytes;
         }
-        body = stringBuilder.toString();
     }
 
     @Override
-    public ServletInputStream getInputStream() throws IOException {
-        final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(body.getBytes());
-        return new ServletInputStream() {
-            @Override
-            public boolean isFinished() {
-                return false;
-            }
+    public ServletInputStream getInputStream() {
+        return new CachedBodyInputStream();
+    }
 
-            @Override
-            public boolean isReady() {
-                return false;
-            }
+    @Override
+    public BufferedReader getReader() {
+        return new BufferedReader(new InputStreamReader(this.getInputStream(), getCharset()));
+    }
 
-            @Override
-            public void setReadListener(ReadListener readListener) {
-            }
+    public String getBody() {
+        return new String(this.body, getCharset());
+    }
 
-            @Override
-            public int read() throws IOException {
-                return byteArrayInputStream.read();
+    /**
+     * 获取解析后的 JSON 树（同一请求只解析一次）
+     *
+     * @return JSON 树，请求体为空时返回 MissingNode
+     * @throws JsonProcessingException 请求体不是合法的 JSON
+     */
+    public JsonNode getJsonTree() throws JsonProcessingException {
+        if (jsonTree == null) {
+            try {
+                jsonTree = body.length == 0 ? MissingNode.getInstance() : objectMapper.readTree(body);
+            } catch (JsonProcessingException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        };
-
+            if (jsonTree == null) {
+                jsonTree = MissingNode.getInstance();
+            }
+        }
+        return jsonTree;
     }
 
-    @Override
-    public BufferedReader getReader() throws IOException {
-        return new BufferedReader(new InputStreamReader(this.getInputStream()));
+    private Charset getCharset() {
+        String characterEncoding = getCharacterEncoding();
+        if (characterEncoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(characterEncoding);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
     }
 
-    public String getBody() {
-        return this.body;
+    /**
+     * 基于缓存字节数组的输入流，可通过它找到所属的请求包装，从而复用已解析的 JSON 树
+     */
+    public class CachedBodyInputStream extends ServletInputStream {
+
+        private final ByteArrayInputStream delegate = new ByteArrayInputStream(body);
+
+        /**
+         * 所属请求已解析的 JSON 树
+         */
+        public JsonNode getJsonTree() throws JsonProcessingException {
+            return RequestWrapper.this.getJsonTree();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        /**
+         * 请求体已全部缓存在内存中，注册监听时数据即已就绪，依次通知可读和读取完毕
+         */
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            if (readListener == null) {
+                throw new NullPointerException("readListener");
+            }
+            try {
+                if (!isFinished()) {
+                    readListener.onDataAvailable();
+                }
+                readListener.onAllDataRead();
+            } catch (IOException e) {
+                readListener.onError(e);
+            }
+        }
+
+        @Override
+        public int read() {
+            return delegate.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return delegate.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return delegate.available();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            delegate.mark(readLimit);
+        }
+
+        @Override
+        public synchronized void reset() {
+            delegate.reset();
+        }
     }
 
+    /**
+     * 请求体超出大小上限
+     */
+    public static class RequestBodyTooLargeException extends IOException {
+
+        public RequestBodyTooLargeException(int maxBodySize) {
+            super("请求体超出大小上限 " + maxBodySize + " 字节");
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package com.acaah.artsync.config;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程池配置
+ */
+@Configuration
+public class ThreadPoolConfig {
+
+    /**
+     * 批量导入任务线程池
+     * 每个任务占用一个线程负责调度流水线，同时运行的任务数有限，超出时直接拒绝
+     */
+    @Bean(value = "pictureBatchImportExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor pictureBatchImportExecutor() {
+        return new ThreadPoolExecutor(
+                2,
+                2,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(8),
+                ThreadFactoryBuilder.create().setNamePrefix("pictureBatchImport-").build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * 批量导入传输线程池
+     * 负责下载远程图片并上传到对象存储，队列满时由调度线程自己执行，形成背压
+     */
+    @Bean(value = "pictureImportTransferExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor pictureImportTransferExecutor() {
+        return new ThreadPoolExecutor(
+                8,
+                8,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(16),
+                ThreadFactoryBuilder.create().setNamePrefix("pictureImportTransfer-").build(),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+
+    /**
+     * 图片标签迁移线程池
+     * 迁移任务按批顺序执行，同时只允许一个任务
+     */
+    @Bean(value = "pictureTagBackfillExecutor", destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor pictureTagBackfillExecutor() {
+        return new ThreadPoolExecutor(
+                1,
+                1,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1),
+                ThreadFactoryBuilder.create().setNamePrefix("pictureTagBackfill-").build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * 上传统计迁移线程池
+     * 迁移任务按时间段顺序执行，同时只允许一个任务
+     */
+    @Bean(value = "pictureUploadStatBackfillExecutor", destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor pictureUploadStatBackfillExecutor() {
+        return new ThreadPoolExecutor(
+                1,
+                1,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1),
+                ThreadFactoryBuilder.create().setNamePrefix("pictureUploadStatBackfill-").build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * 跨分表查询线程池
+     * 每张表一个查询任务，线程数限制了同时占用的数据库连接数；队列满时由请求线程自己执行，形成背压
+     */
+    @Bean(value = "pictureShardQueryExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor pictureShardQueryExecutor() {
+        return new ThreadPoolExecutor(
+                8,
+                8,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(256),
+                ThreadFactoryBuilder.create().setNamePrefix("pictureShardQuery-").build(),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+
+    /**
+     * 图片分表迁移线程池
+     * 迁移按空间逐个执行，避免同时复制多个空间加重逻辑表的负载
+     */
+    @Bean(value = "pictureShardMigrationExecutor", destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor pictureShardMigrationExecutor() {
+        return new ThreadPoolExecutor(
+                1,
+                1,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(16),
+                ThreadFactoryBuilder.create().setNamePrefix("pictureShardMigration-").build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+}
@@ -7,6 +7,11 @@ public interface UserConstant {
      */
     String USER_LOGIN_STATE = "user_login";
 
+    /**
+     * 会话中用户信息对应的版本号键
+     */
+    String USER_LOGIN_VERSION = "user_login_version";
+
     //  region 权限
 
     /**
@@ -1,12 +1,9 @@
 package com.acaah.artsync.controller;
 
-import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.acaah.artsync.model.dto.picture.*;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
 import com.acaah.artsync.annontation.AuthCheck;
 import com.acaah.artsync.api.alinyunai.AliYunAiApi;
 import com.acaah.artsync.api.alinyunai.model.CreateOutPaintingTaskResponse;
@@ -14,39 +11,44 @@ import com.acaah.artsync.api.alinyunai.model.GetOutPaintingTaskResponse;
 import com.acaah.artsync.api.imagesearch.ImageSearchApiFacade;
 import com.acaah.artsync.api.imagesearch.model.ImageSearchResult;
 import com.acaah.artsync.common.BaseResponse;
+import com.acaah.artsync.common.CursorPage;
 import com.acaah.artsync.common.DeleteRequest;
 import com.acaah.artsync.common.ResultUtils;
 import com.acaah.artsync.constant.UserConstant;
 import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.manager.analyze.SpaceAnalyzeSnapshotManager;
 import com.acaah.artsync.manager.auth.SpaceUserAuthManager;
 import com.acaah.artsync.manager.auth.StpKit;
 import com.acaah.artsync.manager.auth.annotation.SaSpaceCheckPermission;
 import com.acaah.artsync.manager.auth.model.SpaceUserPermissionConstant;
+import com.acaah.artsync.manager.search.PictureSearchIndexManager;
+import com.acaah.artsync.manager.sharding.PictureShardMigrationManager;
+import com.acaah.artsync.manager.tag.PictureTagBackfillManager;
 import com.acaah.artsync.model.entity.Picture;
 import com.acaah.artsync.model.entity.Space;
 import com.acaah.artsync.model.entity.User;
 import com.acaah.artsync.model.enums.PictureReviewStatusEnum;
+import com.acaah.artsync.model.vo.PictureChunkUploadVO;
 import com.acaah.artsync.model.vo.PictureTagCategory;
+import com.acaah.artsync.model.vo.PictureUploadBatchJobVO;
 import com.acaah.artsync.model.vo.PictureVO;
 import com.acaah.artsync.service.PictureService;
+import com.acaah.artsync.service.PictureTagService;
 import com.acaah.artsync.service.SpaceService;
 import com.acaah.artsync.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
-import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
-import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RestController
@@ -58,6 +60,21 @@ public class PictureController {
     @Resource
     private PictureService pictureService;
 
+    @Resource
+    private PictureTagService pictureTagService;
+
+    @Resource
+    private PictureTagBackfillManager pictureTagBackfillManager;
+
+    @Resource
+    private PictureSearchIndexManager pictureSearchIndexManager;
+
+    @Resource
+    private SpaceAnalyzeSnapshotManager spaceAnalyzeSnapshotManager;
+
+    @Resource
+    private PictureShardMigrationManager pictureShardMigrationManager;
+
     @Resource
     private SpaceService spaceService;
 
@@ -70,16 +87,6 @@ public class PictureController {
     @Resource
     private SpaceUserAuthManager spaceUserAuthManager;
 
-    /**
-     * 本地缓存
-     */
-    private final Cache<String, String> LOCAL_CACHE = Caffeine.newBuilder()
-            .initialCapacity(1024)
-            .maximumSize(10_000L) // 最大 10000 条
-            // 缓存 5 分钟后移除
-            .expireAfterWrite(Duration.ofMinutes(5))
-            .build();
-
     /**
      * 上传图片（可重新上传）
      */
@@ -109,6 +116,57 @@ public class PictureController {
         return ResultUtils.success(pictureVO);
     }
 
+    /**
+     * 初始化分片上传（仅旗舰版空间，支持断点续传）
+     */
+    @PostMapping("/upload/chunk/init")
+    @SaSpaceCheckPermission(value = SpaceUserPermissionConstant.PICTURE_UPLOAD)
+    public BaseResponse<PictureChunkUploadVO> initPictureChunkUpload(
+            @RequestBody PictureChunkUploadInitRequest pictureChunkUploadInitRequest,
+            HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        PictureChunkUploadVO pictureChunkUploadVO = pictureService.initPictureChunkUpload(pictureChunkUploadInitRequest, loginUser);
+        return ResultUtils.success(pictureChunkUploadVO);
+    }
+
+    /**
+     * 上传单个分片，不同分片可以并发上传
+     */
+    @PostMapping("/upload/chunk/part")
+    public BaseResponse<PictureChunkUploadVO> uploadPictureChunk(
+            @RequestPart("file") MultipartFile multipartFile,
+            PictureChunkUploadRequest pictureChunkUploadRequest,
+            HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        PictureChunkUploadVO pictureChunkUploadVO = pictureService.uploadPictureChunk(multipartFile,
+                pictureChunkUploadRequest, loginUser);
+        return ResultUtils.success(pictureChunkUploadVO);
+    }
+
+    /**
+     * 完成分片上传
+     */
+    @PostMapping("/upload/chunk/complete")
+    public BaseResponse<PictureVO> completePictureChunkUpload(
+            @RequestBody PictureChunkUploadRequest pictureChunkUploadRequest,
+            HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        PictureVO pictureVO = pictureService.completePictureChunkUpload(pictureChunkUploadRequest, loginUser);
+        return ResultUtils.success(pictureVO);
+    }
+
+    /**
+     * 取消分片上传
+     */
+    @PostMapping("/upload/chunk/abort")
+    public BaseResponse<Boolean> abortPictureChunkUpload(
+            @RequestBody PictureChunkUploadRequest pictureChunkUploadRequest,
+            HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        pictureService.abortPictureChunkUpload(pictureChunkUploadRequest, loginUser);
+        return ResultUtils.success(true);
+    }
+
     @PostMapping("/delete")
     @SaSpaceCheckPermission(value = SpaceUserPermissionConstant.PICTURE_VIEW)
     public BaseResponse<Boolean> deletePicture(@RequestBody DeleteRequest deleteRequest
@@ -149,12 +207,32 @@ public class PictureController {
         // 补充审核参数
         User loginUser = userService.getLoginUser(request);
         pictureService.fillReviewParams(oldPicture, loginUser);
+        pictureShardMigrationManager.checkWritable(oldPicture.getSpaceId());
         // 操作数据库
         boolean result = pictureService.updateById(picture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 同步标签关联
+        if (pictureUpdateRequest.getTags() != null) {
+            pictureTagService.replacePictureTags(Collections.singletonList(id), oldPicture.getSpaceId(),
+                    pictureUpdateRequest.getTags());
+        }
+        // 同步全文索引、分析快照和列表缓存
+        pictureSearchIndexManager.onPicturesUpdated(oldPicture.getSpaceId(), Collections.singletonList(id));
+        spaceAnalyzeSnapshotManager.onPicturesUpdated(oldPicture.getSpaceId(), Collections.singletonList(id));
+        pictureService.onPictureListChanged(oldPicture.getSpaceId());
         return ResultUtils.success(true);
     }
 
+    /**
+     * 启动图片标签迁移（仅管理员可用）
+     * 将历史图片的 JSON 标签分批迁移到标签关联表，迁移在后台进行，不影响正常使用
+     */
+    @PostMapping("/tag/backfill")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> backfillPictureTags() {
+        return ResultUtils.success(pictureTagBackfillManager.startBackfill());
+    }
+
     /**
      * 根据 id 获取图片（仅管理员可用）
      */
@@ -181,20 +259,20 @@ public class PictureController {
         Picture picture = pictureService.getById(id);
     // 校验图片是否存在
         ThrowUtils.throwIf(picture == null, ErrorCode.NOT_FOUND_ERROR);
+        User loginUser = userService.getLoginUser(request);
         // 空间的图片，需要校验权限
         Space space = null;
         Long spaceId = picture.getSpaceId();
         if (spaceId != null) {
-        // 检查用户是否有查看图片的权限
-            boolean hasPermission = StpKit.SPACE.hasPermission(SpaceUserPermissionConstant.PICTURE_VIEW);
-            ThrowUtils.throwIf(!hasPermission, ErrorCode.NO_AUTH_ERROR);
         // 获取空间信息
             space = spaceService.getById(spaceId);
         // 校验空间是否存在
             ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+        // 检查用户是否有查看图片的权限
+            boolean hasPermission = spaceUserAuthManager.hasPermission(space, loginUser, SpaceUserPermissionConstant.PICTURE_VIEW);
+            ThrowUtils.throwIf(!hasPermission, ErrorCode.NO_AUTH_ERROR);
         }
         // 获取权限列表
-        User loginUser = userService.getLoginUser(request);
         List<String> permissionList = spaceUserAuthManager.getPermissionList(space, loginUser);
         PictureVO pictureVO = pictureService.getPictureVO(picture, request);
         pictureVO.setPermissionList(permissionList);
@@ -209,11 +287,8 @@ public class PictureController {
     @PostMapping("/list/page")
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
     public BaseResponse<Page<Picture>> listPictureByPage(@RequestBody PictureQueryRequest pictureQueryRequest) {
-        long current = pictureQueryRequest.getCurrent();
-        long size = pictureQueryRequest.getPageSize();
-        // 查询数据库
-        Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                pictureService.getQueryWrapper(pictureQueryRequest));
+        // 查询数据库，未指定空间时跨分表查询
+        Page<Picture> picturePage = pictureService.listPictureByPage(pictureQueryRequest);
         return ResultUtils.success(picturePage);
     }
 
@@ -223,7 +298,39 @@ public class PictureController {
     @PostMapping("/list/page/vo")
     public BaseResponse<Page<PictureVO>> listPictureVOByPage(@RequestBody PictureQueryRequest pictureQueryRequest,
                                                              HttpServletRequest request) {
-        long current = pictureQueryRequest.getCurrent();
+        this.checkListPictureVOAuth(pictureQueryRequest);
+        // 查询缓存，未命中时查询数据库
+        return ResultUtils.success(pictureService.listPictureVOByPageWithCache(pictureQueryRequest, request));
+    }
+
+    /**
+     * 游标分页获取图片列表（仅管理员可用）
+     */
+    @PostMapping("/list/cursor")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<CursorPage<Picture>> listPictureByCursor(@RequestBody PictureQueryRequest pictureQueryRequest) {
+        ThrowUtils.throwIf(pictureQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        return ResultUtils.success(pictureService.listPictureByCursor(pictureQueryRequest));
+    }
+
+    /**
+     * 游标分页获取图片列表（封装类）
+     * 翻页时传入上一页返回的 nextCursor，深度翻页不会退化为大 offset 扫描
+     */
+    @PostMapping("/list/cursor/vo")
+    public BaseResponse<CursorPage<PictureVO>> listPictureVOByCursor(@RequestBody PictureQueryRequest pictureQueryRequest,
+                                                                     HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        this.checkListPictureVOAuth(pictureQueryRequest);
+        CursorPage<Picture> pictureCursorPage = pictureService.listPictureByCursor(pictureQueryRequest);
+        // 获取封装类
+        return ResultUtils.success(pictureService.getPictureVOCursorPage(pictureCursorPage, request));
+    }
+
+    /**
+     * 校验普通用户查询图片列表的参数和权限
+     */
+    private void checkListPictureVOAuth(PictureQueryRequest pictureQueryRequest) {
         long size = pictureQueryRequest.getPageSize();
         // 限制爬虫
         ThrowUtils.throwIf(size > 20, ErrorCode.PARAMS_ERROR);
@@ -245,61 +352,17 @@ public class PictureController {
 //                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
 //            }
         }
-        // 查询数据库
-        Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                pictureService.getQueryWrapper(pictureQueryRequest));
-        // 获取封装类
-        return ResultUtils.success(pictureService.getPictureVOPage(picturePage, request));
     }
 
     /**
      * 分页获取图片列表（封装类，有缓存）
+     * 缓存已统一由 /list/page/vo 提供，保留该接口兼容旧版本前端
      */
     @Deprecated
     @PostMapping("/list/page/vo/cache")
     public BaseResponse<Page<PictureVO>> listPictureVOByPageWithCache(@RequestBody PictureQueryRequest pictureQueryRequest,
                                                                       HttpServletRequest request) {
-        long current = pictureQueryRequest.getCurrent();
-        long size = pictureQueryRequest.getPageSize();
-        // 限制爬虫
-        ThrowUtils.throwIf(size > 20, ErrorCode.PARAMS_ERROR);
-        // 普通用户默认只能看到审核通过的数据
-        pictureQueryRequest.setReviewStatus(PictureReviewStatusEnum.PASS.getValue());
-        // 查询缓存，缓存中没有，再查询数据库
-        // 构建缓存的 key
-        String queryCondition = JSONUtil.toJsonStr(pictureQueryRequest);
-        String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes());
-        String cacheKey = String.format("yupicture:listPictureVOByPage:%s", hashKey);
-        // 1. 先从本地缓存中查询
-        String cachedValue = LOCAL_CACHE.getIfPresent(cacheKey);
-        if (cachedValue != null) {
-            // 如果缓存命中，返回结果
-            Page<PictureVO> cachedPage = JSONUtil.toBean(cachedValue, Page.class);
-            return ResultUtils.success(cachedPage);
-        }
-        // 2. 本地缓存未命中，查询 Redis 分布式缓存
-        ValueOperations<String, String> opsForValue = stringRedisTemplate.opsForValue();
-        cachedValue = opsForValue.get(cacheKey);
-        if (cachedValue != null) {
-            // 如果缓存命中，更新本地缓存，返回结果
-            LOCAL_CACHE.put(cacheKey, cachedValue);
-            Page<PictureVO> cachedPage = JSONUtil.toBean(cachedValue, Page.class);
-            return ResultUtils.success(cachedPage);
-        }
-        // 3. 查询数据库
-        Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                pictureService.getQueryWrapper(pictureQueryRequest));
-        Page<PictureVO> pictureVOPage = pictureService.getPictureVOPage(picturePage, request);
-        // 4. 更新缓存
-        // 更新 Redis 缓存
-        String cacheValue = JSONUtil.toJsonStr(pictureVOPage);
-        // 设置缓存的过期时间，5 - 10 分钟过期，防止缓存雪崩
-        int cacheExpireTime = 300 + RandomUtil.randomInt(0, 300);
-        opsForValue.set(cacheKey, cacheValue, cacheExpireTime, TimeUnit.SECONDS);
-        // 写入本地缓存
-        LOCAL_CACHE.put(cacheKey, cacheValue);
-        // 获取封装类
-        return ResultUtils.success(pictureVOPage);
+        return this.listPictureVOByPage(pictureQueryRequest, request);
     }
 
     /**
@@ -340,16 +403,27 @@ public class PictureController {
     }
 
     /**
-     * 批量抓取并创建图片
+     * 批量抓取并创建图片（后台执行，返回任务 id）
      */
     @PostMapping("/upload/batch")
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
-    public BaseResponse<Integer> uploadPictureByBatch(@RequestBody PictureUploadByBatchRequest pictureUploadByBatchRequest,
-                                                      HttpServletRequest request) {
+    public BaseResponse<String> uploadPictureByBatch(@RequestBody PictureUploadByBatchRequest pictureUploadByBatchRequest,
+                                                     HttpServletRequest request) {
         ThrowUtils.throwIf(pictureUploadByBatchRequest == null, ErrorCode.PARAMS_ERROR);
         User loginUser = userService.getLoginUser(request);
-        int uploadCount = pictureService.uploadPictureByBatch(pictureUploadByBatchRequest, loginUser);
-        return ResultUtils.success(uploadCount);
+        String jobId = pictureService.uploadPictureByBatch(pictureUploadByBatchRequest, loginUser);
+        return ResultUtils.success(jobId);
+    }
+
+    /**
+     * 查询批量抓取任务进度
+     */
+    @GetMapping("/upload/batch/job")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<PictureUploadBatchJobVO> getPictureUploadBatchJob(String jobId, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        PictureUploadBatchJobVO pictureUploadBatchJobVO = pictureService.getPictureUploadBatchJob(jobId, loginUser);
+        return ResultUtils.success(pictureUploadBatchJobVO);
     }
 
     /**
@@ -376,7 +450,8 @@ public class PictureController {
         String picColor = searchPictureByColorRequest.getPicColor();
         Long spaceId = searchPictureByColorRequest.getSpaceId();
         User loginUser = userService.getLoginUser(request);
-        List<PictureVO> pictureVOList = pictureService.searchPictureByColor(spaceId, picColor, loginUser);
+        String distanceMode = searchPictureByColorRequest.getDistanceMode();
+        List<PictureVO> pictureVOList = pictureService.searchPictureByColor(spaceId, picColor, distanceMode, loginUser);
         return ResultUtils.success(pictureVOList);
     }
 
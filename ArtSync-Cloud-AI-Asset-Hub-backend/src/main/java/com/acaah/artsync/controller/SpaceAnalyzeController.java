@@ -1,9 +1,12 @@
 package com.acaah.artsync.controller;
 
+import com.acaah.artsync.annontation.AuthCheck;
 import com.acaah.artsync.common.BaseResponse;
 import com.acaah.artsync.common.ResultUtils;
+import com.acaah.artsync.constant.UserConstant;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.manager.analyze.PictureUploadStatManager;
 import com.acaah.artsync.model.dto.space.analyze.*;
 import com.acaah.artsync.model.vo.space.analyze.*;
 import com.acaah.artsync.model.entity.Space;
@@ -29,6 +32,9 @@ public class SpaceAnalyzeController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private PictureUploadStatManager pictureUploadStatManager;
+
 /**
  * 获取空间使用状态
  * 这是一个处理HTTP POST请求的方法，用于获取空间使用分析数据
@@ -134,6 +140,16 @@ public class SpaceAnalyzeController {
         return ResultUtils.success(resultList);
     }
 
+    /**
+     * 启动每日上传数量迁移（仅管理员可用）
+     * 按创建时间分段统计历史图片，迁移在后台进行，完成后用户上传分析改为读取每日上传数量
+     */
+    @PostMapping("/user/backfill")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> backfillPictureUploadStat() {
+        return ResultUtils.success(pictureUploadStatManager.startBackfill());
+    }
+
 /**
  * 获取空间排名分析数据
  * @param spaceRankAnalyzeRequest 空间排名分析请求参数
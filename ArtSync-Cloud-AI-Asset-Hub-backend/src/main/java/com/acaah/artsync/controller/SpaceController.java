@@ -10,10 +10,14 @@ import com.acaah.artsync.constant.UserConstant;
 import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.manager.auth.SpaceAuthCacheManager;
 import com.acaah.artsync.manager.auth.SpaceUserAuthManager;
+import com.acaah.artsync.manager.sharding.PictureShardMigrationManager;
 import com.acaah.artsync.model.entity.Space;
+import com.acaah.artsync.model.entity.SpaceShard;
 import com.acaah.artsync.model.entity.User;
 import com.acaah.artsync.model.enums.SpaceLevelEnum;
+import com.acaah.artsync.model.enums.SpaceTypeEnum;
 import com.acaah.artsync.model.vo.SpaceVO;
 import com.acaah.artsync.service.SpaceService;
 import com.acaah.artsync.service.UserService;
@@ -41,6 +45,12 @@ public class SpaceController {
 
     @Resource
     private SpaceUserAuthManager spaceUserAuthManager;
+
+    @Resource
+    private SpaceAuthCacheManager spaceAuthCacheManager;
+
+    @Resource
+    private PictureShardMigrationManager pictureShardMigrationManager;
 /**
  * 添加空间接口
  * @param spaceAddRequest 添加空间的请求参数
@@ -83,6 +93,8 @@ public class SpaceController {
         // 操作数据库
         boolean result = spaceService.removeById(id);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 失效空间及其成员的鉴权缓存
+        spaceAuthCacheManager.invalidateSpace(id);
         return ResultUtils.success(true);
     }
 
@@ -115,9 +127,59 @@ public class SpaceController {
         // 操作数据库
         boolean result = spaceService.updateById(space);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        spaceAuthCacheManager.invalidateSpace(id);
+        // 团队空间升级为旗舰版后，把图片在线迁移到独立分表
+        if (oldSpace.getSpaceType() == SpaceTypeEnum.TEAM.getValue()
+                && space.getSpaceLevel() != null
+                && space.getSpaceLevel() == SpaceLevelEnum.FLAGSHIP.getValue()
+                && oldSpace.getSpaceLevel() != SpaceLevelEnum.FLAGSHIP.getValue()) {
+            try {
+                pictureShardMigrationManager.startMigration(id, null, null);
+            } catch (Exception e) {
+                // 不影响空间更新，可通过迁移接口重新发起
+                log.error("发起空间分表迁移失败, spaceId = {}", id, e);
+            }
+        }
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 开始或继续空间分表迁移（仅管理员可用）
+     * 团队空间升级为旗舰版时会自动发起；可通过 batchSize、batchInterval 调整迁移速度，暂停后再次调用即可继续
+     */
+    @PostMapping("/shard/migrate")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<SpaceShard> startSpaceShardMigration(@RequestBody SpaceShardMigrateRequest migrateRequest) {
+        ThrowUtils.throwIf(migrateRequest == null || migrateRequest.getSpaceId() == null
+                || migrateRequest.getSpaceId() <= 0, ErrorCode.PARAMS_ERROR);
+        return ResultUtils.success(pictureShardMigrationManager.startMigration(migrateRequest.getSpaceId(),
+                migrateRequest.getBatchSize(), migrateRequest.getBatchInterval()));
+    }
+
+    /**
+     * 暂停空间分表迁移（仅管理员可用）
+     */
+    @PostMapping("/shard/migrate/pause")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> pauseSpaceShardMigration(@RequestBody SpaceShardMigrateRequest migrateRequest) {
+        ThrowUtils.throwIf(migrateRequest == null || migrateRequest.getSpaceId() == null
+                || migrateRequest.getSpaceId() <= 0, ErrorCode.PARAMS_ERROR);
+        pictureShardMigrationManager.pauseMigration(migrateRequest.getSpaceId());
         return ResultUtils.success(true);
     }
 
+    /**
+     * 获取空间分表迁移进度（仅管理员可用）
+     */
+    @GetMapping("/shard/migrate/get")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<SpaceShard> getSpaceShardMigration(long spaceId) {
+        ThrowUtils.throwIf(spaceId <= 0, ErrorCode.PARAMS_ERROR);
+        SpaceShard spaceShard = pictureShardMigrationManager.getMigration(spaceId);
+        ThrowUtils.throwIf(spaceShard == null, ErrorCode.NOT_FOUND_ERROR, "空间没有分表");
+        return ResultUtils.success(spaceShard);
+    }
+
     /**
      * 根据 id 获取空间（仅管理员可用）
      * 该接口需要管理员权限才能访问
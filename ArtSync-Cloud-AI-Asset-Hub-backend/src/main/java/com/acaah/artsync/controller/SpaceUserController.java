@@ -7,6 +7,7 @@ import com.acaah.artsync.common.ResultUtils;
 import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.manager.auth.SpaceAuthCacheManager;
 import com.acaah.artsync.manager.auth.annotation.SaSpaceCheckPermission;
 import com.acaah.artsync.manager.auth.model.SpaceUserPermissionConstant;
 import com.acaah.artsync.model.dto.spaceuser.SpaceUserAddRequest;
@@ -39,6 +40,9 @@ public class SpaceUserController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private SpaceAuthCacheManager spaceAuthCacheManager;
+
     /**
      * 添加成员到空间
      */
@@ -67,6 +71,8 @@ public class SpaceUserController {
         // 操作数据库
         boolean result = spaceUserService.removeById(id);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 失效该成员在空间中的角色缓存
+        spaceAuthCacheManager.invalidateSpaceRole(oldSpaceUser.getSpaceId(), oldSpaceUser.getUserId());
         return ResultUtils.success(true);
     }
 
@@ -123,6 +129,8 @@ public class SpaceUserController {
         // 操作数据库
         boolean result = spaceUserService.updateById(spaceUser);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 失效该成员在空间中的角色缓存
+        spaceAuthCacheManager.invalidateSpaceRole(oldSpaceUser.getSpaceId(), oldSpaceUser.getUserId());
         return ResultUtils.success(true);
     }
 
@@ -182,6 +182,8 @@ public class UserController {
         }
     // 调用服务层方法根据ID删除用户
         boolean b = userService.removeById(deleteRequest.getId());
+        // 使该用户的登录态缓存和脱敏信息缓存失效
+        userService.onUserChanged(deleteRequest.getId());
     // 返回操作结果
         return ResultUtils.success(b);
     }
@@ -210,6 +212,8 @@ public class UserController {
         boolean result = userService.updateById(user);
         // 如果更新失败，抛出操作异常
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 角色、资料等修改后使该用户的登录态缓存和脱敏信息缓存失效
+        userService.onUserChanged(user.getId());
         // 返回成功结果
         return ResultUtils.success(true);
     }
@@ -1,18 +1,27 @@
 package com.acaah.artsync.manager;
 
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
 import com.acaah.artsync.config.CosClientConfig;
 import com.qcloud.cos.COSClient;
 import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.model.AbortMultipartUploadRequest;
 import com.qcloud.cos.model.COSObject;
+import com.qcloud.cos.model.CompleteMultipartUploadRequest;
+import com.qcloud.cos.model.CompleteMultipartUploadResult;
 import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.model.InitiateMultipartUploadRequest;
+import com.qcloud.cos.model.ObjectMetadata;
 import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.PartETag;
 import com.qcloud.cos.model.PutObjectResult;
+import com.qcloud.cos.model.UploadPartRequest;
 import com.qcloud.cos.model.ciModel.persistence.PicOperations;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.io.File;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -59,6 +68,98 @@ public class CosManager {
     public PutObjectResult putPictureObject(String key, File file) {
         PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
                 file);
+        putObjectRequest.setPicOperations(buildPicOperations(key, file.length()));
+        return cosClient.putObject(putObjectRequest);
+    }
+
+    /**
+     * 流式上传对象（附带图片信息）
+     * 直接将输入流写入对象存储，不经过本地临时文件，调用方需保证内容长度准确
+     *
+     * @param key           唯一键
+     * @param inputStream   输入流
+     * @param contentLength 内容长度
+     * @return PutObjectResult 返回上传结果，包含图片的基本信息
+     */
+    public PutObjectResult putPictureObject(String key, InputStream inputStream, long contentLength) {
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        // 声明长度后 SDK 不会为计算长度而将整个流缓冲到内存
+        objectMetadata.setContentLength(contentLength);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
+                inputStream, objectMetadata);
+        putObjectRequest.setPicOperations(buildPicOperations(key, contentLength));
+        return cosClient.putObject(putObjectRequest);
+    }
+
+    /**
+     * 初始化分块上传
+     *
+     * @param key 唯一键
+     * @return uploadId，后续上传分块、完成或取消上传时使用
+     */
+    public String initiateMultipartUpload(String key) {
+        InitiateMultipartUploadRequest initiateRequest = new InitiateMultipartUploadRequest(cosClientConfig.getBucket(), key);
+        return cosClient.initiateMultipartUpload(initiateRequest).getUploadId();
+    }
+
+    /**
+     * 上传单个分块
+     * 同一 uploadId 下的不同分块可以并发上传，重复上传同一编号的分块会覆盖之前的内容
+     *
+     * @param key         唯一键
+     * @param uploadId    分块上传 ID
+     * @param partNumber  分块编号，从 1 开始
+     * @param inputStream 分块数据
+     * @param partSize    分块大小
+     * @return PartETag 完成上传时需要提交
+     */
+    public PartETag uploadPart(String key, String uploadId, int partNumber, InputStream inputStream, long partSize) {
+        UploadPartRequest uploadPartRequest = new UploadPartRequest();
+        uploadPartRequest.setBucketName(cosClientConfig.getBucket());
+        uploadPartRequest.setKey(key);
+        uploadPartRequest.setUploadId(uploadId);
+        uploadPartRequest.setPartNumber(partNumber);
+        uploadPartRequest.setInputStream(inputStream);
+        uploadPartRequest.setPartSize(partSize);
+        return cosClient.uploadPart(uploadPartRequest).getPartETag();
+    }
+
+    /**
+     * 完成分块上传（附带图片信息）
+     * 与普通上传使用相同的图片处理规则，合并完成后由数据万象生成压缩图和缩略图
+     *
+     * @param key           唯一键
+     * @param uploadId      分块上传 ID
+     * @param partETags     所有分块的 ETag，需按分块编号升序
+     * @param contentLength 合并后的原图大小
+     * @return CompleteMultipartUploadResult 包含图片的基本信息
+     */
+    public CompleteMultipartUploadResult completeMultipartPictureUpload(String key, String uploadId,
+                                                                        List<PartETag> partETags, long contentLength) {
+        CompleteMultipartUploadRequest completeRequest = new CompleteMultipartUploadRequest(cosClientConfig.getBucket(),
+                key, uploadId, partETags);
+        completeRequest.setPicOperations(buildPicOperations(key, contentLength));
+        return cosClient.completeMultipartUpload(completeRequest);
+    }
+
+    /**
+     * 取消分块上传，释放已上传的分块
+     *
+     * @param key      唯一键
+     * @param uploadId 分块上传 ID
+     */
+    public void abortMultipartUpload(String key, String uploadId) throws CosClientException {
+        cosClient.abortMultipartUpload(new AbortMultipartUploadRequest(cosClientConfig.getBucket(), key, uploadId));
+    }
+
+    /**
+     * 构造图片处理参数
+     *
+     * @param key         唯一键
+     * @param contentLength 原图大小
+     * @return PicOperations
+     */
+    private PicOperations buildPicOperations(String key, long contentLength) {
         // 对图片进行处理（获取基本信息也被视作为一种图片的处理）
         PicOperations picOperations = new PicOperations();
         // 1 表示返回原图信息
@@ -73,7 +174,7 @@ public class CosManager {
         compressRule.setRule("imageMogr2/format/webp");
         rules.add(compressRule);
         // 2. 缩略图处理，仅对 > 20 KB 的图片生成缩略图
-        if (file.length() > 2 * 1024) {
+        if (contentLength > 2 * 1024) {
             PicOperations.Rule thumbnailRule = new PicOperations.Rule();
             // 拼接缩略图的路径
             String thumbnailKey = FileUtil.mainName(key) + "_thumbnail." + FileUtil.getSuffix(key);
@@ -85,8 +186,7 @@ public class CosManager {
         }
         // 构造处理参数
         picOperations.setRules(rules);
-        putObjectRequest.setPicOperations(picOperations);
-        return cosClient.putObject(putObjectRequest);
+        return picOperations;
     }
 
     /**
@@ -113,4 +213,19 @@ public class CosManager {
         cosClient.deleteObject(cosClientConfig.getBucket(), key);
     }
 
+    /**
+     * 根据访问地址删除对象
+     *
+     * @param url 图片访问地址（域名 + 文件 key）
+     */
+    public void deleteObjectByUrl(String url) throws CosClientException {
+        if (StrUtil.isBlank(url)) {
+            return;
+        }
+        String key = StrUtil.removePrefix(url, cosClientConfig.getHost());
+        // 上传路径以 / 开头，拼接后可能出现多个 /
+        key = key.replaceFirst("^/+", "");
+        this.deleteObject(key);
+    }
+
 }
@@ -9,6 +9,7 @@ import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
 
+import com.acaah.artsync.manager.upload.DigestInputStream;
 import com.acaah.artsync.model.dto.file.UploadPictureResult;
 import com.qcloud.cos.model.PutObjectResult;
 import com.qcloud.cos.model.ciModel.persistence.ImageInfo;
@@ -18,6 +19,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
 import java.io.File;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -54,12 +56,12 @@ public class FileManager {
         String uploadFilename = String.format("%s_%s.%s", DateUtil.formatDate(new Date()), uuid,
                 FileUtil.getSuffix(originalFilename));
         String uploadPath = String.format("/%s/%s", uploadPathPrefix, uploadFilename);
-        File file = null;
-        try {
-            // 上传文件
-            file = File.createTempFile(uploadPath, null);
-            multipartFile.transferTo(file);
-            PutObjectResult putObjectResult = cosManager.putPictureObject(uploadPath, file);
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            // 表单文件大小已知，直接流式上传，不再落盘
+            long fileSize = multipartFile.getSize();
+            DigestInputStream digestInputStream = new DigestInputStream(inputStream);
+            PutObjectResult putObjectResult = cosManager.putPictureObject(uploadPath, digestInputStream, fileSize);
+            ThrowUtils.throwIf(digestInputStream.getByteCount() != fileSize, ErrorCode.SYSTEM_ERROR, "上传数据不完整");
             // 获取图片信息对象
             ImageInfo imageInfo = putObjectResult.getCiUploadResult().getOriginalInfo().getImageInfo();
             // 计算宽高
@@ -70,19 +72,19 @@ public class FileManager {
             UploadPictureResult uploadPictureResult = new UploadPictureResult();
             uploadPictureResult.setUrl(cosClientConfig.getHost() + "/" + uploadPath);
             uploadPictureResult.setPicName(FileUtil.mainName(originalFilename));
-            uploadPictureResult.setPicSize(FileUtil.size(file));
+            uploadPictureResult.setPicSize(fileSize);
             uploadPictureResult.setPicWidth(picWidth);
             uploadPictureResult.setPicHeight(picHeight);
             uploadPictureResult.setPicScale(picScale);
             uploadPictureResult.setPicFormat(imageInfo.getFormat());
+            uploadPictureResult.setPicHash(digestInputStream.getSha256Hex());
             // 返回可访问的地址
             return uploadPictureResult;
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             log.error("图片上传到对象存储失败", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
-        } finally {
-            // 临时文件清理
-            this.deleteTempFile(file);
         }
 
     }
@@ -0,0 +1,148 @@
+package com.acaah.artsync.manager.analyze;
+
+import cn.hutool.core.collection.CollUtil;
+import com.acaah.artsync.manager.sharding.PictureShardQueryExecutor;
+import com.acaah.artsync.mapper.PictureMapper;
+import com.acaah.artsync.model.entity.Picture;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * 图片统计执行器
+ * 能用 SQL 聚合的统计直接下推到数据库，只返回一行结果；
+ * 无法下推时通过 ResultHandler 流式读取，逐行累加到基本类型计数器中，不在内存中保留整列数据；
+ * 指定实际表时由 PictureShardQueryExecutor 在各表并行聚合后合并
+ */
+@Component
+public class PictureAnalyzeExecutor {
+
+    /**
+     * 分段数量不超过该值时下推到 SQL，否则流式统计（避免生成过长的 SQL）
+     */
+    private static final int PUSH_DOWN_MAX_BOUNDARIES = 16;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private PictureShardQueryExecutor pictureShardQueryExecutor;
+
+    /**
+     * 统计图片数量和总大小（SQL 聚合）
+     *
+     * @param queryWrapper 统计范围
+     * @return 图片数量和总大小
+     */
+    public PictureSizeStat sumPictureSize(QueryWrapper<Picture> queryWrapper) {
+        return this.sumPictureSize(queryWrapper, null);
+    }
+
+    /**
+     * 统计图片数量和总大小（SQL 聚合）
+     *
+     * @param queryWrapper 统计范围
+     * @param tables       跨分表统计时的实际表名，为空时由 ShardingSphere 路由
+     * @return 图片数量和总大小
+     */
+    public PictureSizeStat sumPictureSize(QueryWrapper<Picture> queryWrapper, Collection<String> tables) {
+        queryWrapper.select("COUNT(*) AS count", "IFNULL(SUM(picSize), 0) AS totalSize");
+        List<Map<String, Object>> resultList = this.selectMaps(queryWrapper, tables);
+        if (CollUtil.isEmpty(resultList) || resultList.get(0) == null) {
+            return new PictureSizeStat(0, 0);
+        }
+        Map<String, Object> result = resultList.get(0);
+        return new PictureSizeStat(toLong(result.get("count")), toLong(result.get("totalSize")));
+    }
+
+    /**
+     * 按大小分段统计图片数量
+     *
+     * @param queryWrapper 统计范围
+     * @param boundaries   分界点（字节），需严格递增
+     * @return 分段计数器
+     */
+    public SizeBucketAccumulator countBySizeBucket(QueryWrapper<Picture> queryWrapper, long[] boundaries) {
+        return this.countBySizeBucket(queryWrapper, boundaries, null);
+    }
+
+    /**
+     * 按大小分段统计图片数量
+     *
+     * @param queryWrapper 统计范围
+     * @param boundaries   分界点（字节），需严格递增
+     * @param tables       跨分表统计时的实际表名，为空时由 ShardingSphere 路由
+     * @return 分段计数器
+     */
+    public SizeBucketAccumulator countBySizeBucket(QueryWrapper<Picture> queryWrapper, long[] boundaries,
+                                                   Collection<String> tables) {
+        SizeBucketAccumulator accumulator = new SizeBucketAccumulator(boundaries);
+        // 跨分表时流式读取只能在单个线程中逐表进行，始终下推，由各表并行聚合
+        if (boundaries.length <= PUSH_DOWN_MAX_BOUNDARIES || tables != null) {
+            // 每个区间一个 SUM(CASE ...) 列，一次扫描得到全部计数，分库分表时也能直接合并
+            List<String> columnList = new ArrayList<>(boundaries.length + 1);
+            for (int i = 0; i <= boundaries.length; i++) {
+                String condition;
+                if (boundaries.length == 0) {
+                    condition = "picSize IS NOT NULL";
+                } else if (i == 0) {
+                    condition = "picSize < " + boundaries[0];
+                } else if (i == boundaries.length) {
+                    condition = "picSize >= " + boundaries[i - 1];
+                } else {
+                    condition = "picSize >= " + boundaries[i - 1] + " AND picSize < " + boundaries[i];
+                }
+                columnList.add("SUM(CASE WHEN " + condition + " THEN 1 ELSE 0 END) AS b" + i);
+            }
+            queryWrapper.select(columnList.toArray(new String[0]));
+            List<Map<String, Object>> resultList = this.selectMaps(queryWrapper, tables);
+            if (CollUtil.isNotEmpty(resultList) && resultList.get(0) != null) {
+                Map<String, Object> result = resultList.get(0);
+                for (int i = 0; i <= boundaries.length; i++) {
+                    accumulator.add(i, toLong(result.get("b" + i)));
+                }
+            }
+            return accumulator;
+        }
+        this.streamPictureSize(queryWrapper, accumulator::accept);
+        return accumulator;
+    }
+
+    /**
+     * 流式读取图片大小，单次遍历
+     *
+     * @param queryWrapper 统计范围
+     * @param consumer     处理每张图片的大小
+     */
+    public void streamPictureSize(QueryWrapper<Picture> queryWrapper, LongConsumer consumer) {
+        // 自定义 SQL 不会自动追加逻辑删除条件
+        queryWrapper.eq("isDelete", 0);
+        pictureMapper.streamPictureSize(queryWrapper, resultContext -> {
+            Long picSize = resultContext.getResultObject();
+            if (picSize != null) {
+                consumer.accept(picSize);
+            }
+        });
+    }
+
+    /**
+     * 执行不分组的聚合查询，指定实际表时跨分表并行执行
+     */
+    private List<Map<String, Object>> selectMaps(QueryWrapper<Picture> queryWrapper, Collection<String> tables) {
+        if (tables == null) {
+            return pictureMapper.selectMaps(queryWrapper);
+        }
+        return pictureShardQueryExecutor.aggregate(queryWrapper, Collections.emptyList(), tables);
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+}
@@ -0,0 +1,22 @@
+package com.acaah.artsync.manager.analyze;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 图片数量和总大小
+ */
+@Data
+@AllArgsConstructor
+public class PictureSizeStat {
+
+    /**
+     * 图片数量
+     */
+    private long count;
+
+    /**
+     * 图片总大小（字节）
+     */
+    private long totalSize;
+}
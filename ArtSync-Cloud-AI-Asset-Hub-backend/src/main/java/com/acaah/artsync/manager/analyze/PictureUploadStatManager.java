@@ -0,0 +1,278 @@
+package com.acaah.artsync.manager.analyze;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.util.StrUtil;
+import com.acaah.artsync.mapper.PictureMapper;
+import com.acaah.artsync.model.entity.Picture;
+import com.acaah.artsync.model.entity.PictureUploadDaily;
+import com.acaah.artsync.service.PictureUploadDailyService;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每日上传数量统计
+ * 图片新增、删除时只在内存中累加增量，由定时任务批量写入 picture_upload_daily，不占用上传请求的数据库操作；
+ * 历史数据按创建时间分段迁移，进度保存在 Redis 中；迁移完成后定期重新统计最近几天，修正实例宕机丢失的增量
+ */
+@Slf4j
+@Component
+public class PictureUploadStatManager {
+
+    private static final String CURSOR_KEY = "artsync:picture:upload:stat:backfill:cursor";
+
+    private static final String DONE_KEY = "artsync:picture:upload:stat:backfill:done";
+
+    private static final String LOCK_KEY = "artsync:picture:upload:stat:backfill:lock";
+
+    private static final String RECONCILE_LOCK_KEY = "artsync:picture:upload:stat:reconcile:lock";
+
+    /**
+     * 每段迁移的天数
+     */
+    private static final int BACKFILL_CHUNK_DAYS = 7;
+
+    /**
+     * 分段间隔（毫秒），避免持续占满数据库
+     */
+    private static final long BATCH_INTERVAL_MILLIS = 50;
+
+    /**
+     * 锁的过期时间（分钟），每段迁移后续期，实例宕机后可由其他实例接手
+     */
+    private static final long LOCK_EXPIRE_MINUTES = 5;
+
+    /**
+     * 定期校准的天数（包含当天）
+     */
+    @Value("${picture.upload-stat.reconcile-days:3}")
+    private int reconcileDays;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private PictureUploadDailyService pictureUploadDailyService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource(name = "pictureUploadStatBackfillExecutor")
+    private ThreadPoolExecutor pictureUploadStatBackfillExecutor;
+
+    /**
+     * 待写入的增量，统计范围:用户 id:日期 => 增量
+     */
+    private final Map<String, Long> pendingDeltaMap = new ConcurrentHashMap<>();
+
+    /**
+     * 迁移完成后不会再回退，完成后不必再访问 Redis
+     */
+    private volatile boolean backfillDone;
+
+    /**
+     * 上传分析是否可以使用每日上传数量
+     */
+    public boolean isBackfillDone() {
+        if (!backfillDone) {
+            backfillDone = Boolean.TRUE.equals(stringRedisTemplate.hasKey(DONE_KEY));
+        }
+        return backfillDone;
+    }
+
+    /**
+     * 图片新增后累加上传数量
+     *
+     * @param pictureList 新增的图片
+     */
+    public void onPicturesCreated(Collection<Picture> pictureList) {
+        // 新增时实体上还没有创建时间，按当前时间统计
+        Date now = new Date();
+        for (Picture picture : pictureList) {
+            this.addDelta(picture, picture.getCreateTime() == null ? now : picture.getCreateTime(), 1L);
+        }
+    }
+
+    /**
+     * 图片删除后扣减上传数量，计入图片创建的那一天
+     *
+     * @param picture 删除的图片
+     */
+    public void onPictureDeleted(Picture picture) {
+        if (picture.getCreateTime() == null) {
+            return;
+        }
+        this.addDelta(picture, picture.getCreateTime(), -1L);
+    }
+
+    private void addDelta(Picture picture, Date createTime, long delta) {
+        if (picture.getUserId() == null) {
+            return;
+        }
+        String statDate = DateUtil.formatDate(createTime);
+        long scopeId = PictureUploadDailyService.getScopeId(picture.getSpaceId());
+        pendingDeltaMap.merge(this.buildKey(scopeId, picture.getUserId(), statDate), delta, Long::sum);
+        pendingDeltaMap.merge(this.buildKey(PictureUploadDailyService.SCOPE_ALL, picture.getUserId(), statDate),
+                delta, Long::sum);
+    }
+
+    /**
+     * 批量写入内存中的增量，写入失败时放回，下次重试
+     */
+    @Scheduled(initialDelay = 5_000L, fixedDelay = 5_000L)
+    public void flush() {
+        if (pendingDeltaMap.isEmpty()) {
+            return;
+        }
+        List<PictureUploadDaily> uploadDailyList = new ArrayList<>();
+        for (String key : pendingDeltaMap.keySet()) {
+            // remove 与 merge 对同一个 key 是原子的，取出后新到的增量会进入下一次写入
+            Long delta = pendingDeltaMap.remove(key);
+            if (delta != null && delta != 0) {
+                uploadDailyList.add(this.parseKey(key, delta));
+            }
+        }
+        if (uploadDailyList.isEmpty()) {
+            return;
+        }
+        try {
+            pictureUploadDailyService.incrementUploadCount(uploadDailyList);
+        } catch (Exception e) {
+            log.error("写入每日上传数量失败, 记录数 = {}", uploadDailyList.size(), e);
+            for (PictureUploadDaily uploadDaily : uploadDailyList) {
+                pendingDeltaMap.merge(this.buildKey(uploadDaily.getScopeId(), uploadDaily.getUserId(),
+                        DateUtil.formatDate(uploadDaily.getStatDate())), uploadDaily.getUploadCount(), Long::sum);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        this.flush();
+    }
+
+    /**
+     * 启动迁移
+     *
+     * @return 迁移已完成或其他实例正在迁移时返回 false
+     */
+    public boolean startBackfill() {
+        if (this.isBackfillDone()) {
+            return false;
+        }
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, "1", LOCK_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return false;
+        }
+        try {
+            pictureUploadStatBackfillExecutor.execute(this::runBackfill);
+        } catch (RejectedExecutionException e) {
+            stringRedisTemplate.delete(LOCK_KEY);
+            return false;
+        }
+        return true;
+    }
+
+    private void runBackfill() {
+        String cursorValue = stringRedisTemplate.opsForValue().get(CURSOR_KEY);
+        Date startDate = StrUtil.isBlank(cursorValue) ? this.getEarliestDate() : DateUtil.parseDate(cursorValue);
+        // 迁移期间新增的图片由增量累加，只需重新统计到当天
+        Date endLimit = DateUtil.beginOfDay(DateUtil.tomorrow());
+        long fixedCount = 0;
+        log.info("开始迁移每日上传数量, startDate = {}", startDate == null ? null : DateUtil.formatDate(startDate));
+        try {
+            while (startDate != null && startDate.before(endLimit)) {
+                Date endDate = DateUtil.offsetDay(startDate, BACKFILL_CHUNK_DAYS);
+                // 先写入已有增量，缩短与重新统计结果重复计数的窗口
+                this.flush();
+                fixedCount += pictureUploadDailyService.reconcileUploadCount(startDate, endDate);
+                startDate = endDate;
+                stringRedisTemplate.opsForValue().set(CURSOR_KEY, DateUtil.formatDate(startDate));
+                stringRedisTemplate.expire(LOCK_KEY, LOCK_EXPIRE_MINUTES, TimeUnit.MINUTES);
+                Thread.sleep(BATCH_INTERVAL_MILLIS);
+            }
+            stringRedisTemplate.opsForValue().set(DONE_KEY, "1");
+            backfillDone = true;
+            log.info("每日上传数量迁移完成, 本次写入记录数 = {}", fixedCount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("每日上传数量迁移被中断, startDate = {}", DateUtil.formatDate(startDate));
+        } catch (Exception e) {
+            log.error("每日上传数量迁移失败, startDate = {}", DateUtil.formatDate(startDate), e);
+        } finally {
+            stringRedisTemplate.delete(LOCK_KEY);
+        }
+    }
+
+    /**
+     * 最早的图片创建日期，没有图片时返回 null
+     */
+    private Date getEarliestDate() {
+        List<Picture> pictureList = pictureMapper.selectPage(new Page<>(1, 1, false),
+                        new LambdaQueryWrapper<Picture>()
+                                .select(Picture::getCreateTime)
+                                .orderByAsc(Picture::getCreateTime))
+                .getRecords();
+        if (CollUtil.isEmpty(pictureList) || pictureList.get(0).getCreateTime() == null) {
+            return null;
+        }
+        return DateUtil.beginOfDay(pictureList.get(0).getCreateTime());
+    }
+
+    /**
+     * 每小时重新统计最近几天；迁移完成前不执行，多个实例同时只有一个执行
+     */
+    @Scheduled(initialDelay = 120_000L, fixedDelay = 3600_000L)
+    public void scheduledReconcile() {
+        if (!this.isBackfillDone()) {
+            return;
+        }
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(RECONCILE_LOCK_KEY, "1", LOCK_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            this.flush();
+            Date endDate = DateUtil.beginOfDay(DateUtil.tomorrow());
+            Date startDate = DateUtil.offsetDay(endDate, -Math.max(reconcileDays, 1));
+            pictureUploadDailyService.reconcileUploadCount(startDate, endDate);
+        } catch (Exception e) {
+            log.error("每日上传数量校准失败", e);
+        } finally {
+            stringRedisTemplate.delete(RECONCILE_LOCK_KEY);
+        }
+    }
+
+    private String buildKey(long scopeId, long userId, String statDate) {
+        return scopeId + ":" + userId + ":" + statDate;
+    }
+
+    private PictureUploadDaily parseKey(String key, long delta) {
+        String[] parts = key.split(":");
+        PictureUploadDaily uploadDaily = new PictureUploadDaily();
+        uploadDaily.setScopeId(Long.parseLong(parts[0]));
+        uploadDaily.setUserId(Long.parseLong(parts[1]));
+        uploadDaily.setStatDate(DateUtil.parseDate(parts[2]));
+        uploadDaily.setUploadCount(delta);
+        return uploadDaily;
+    }
+}
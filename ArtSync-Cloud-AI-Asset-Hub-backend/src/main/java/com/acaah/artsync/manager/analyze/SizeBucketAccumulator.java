@@ -0,0 +1,90 @@
+package com.acaah.artsync.manager.analyze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 图片大小分段计数器
+ * n 个分界点划分出 n + 1 个区间：[0, b0)、[b0, b1)、...、[b(n-1), +∞)；
+ * 只保存每个区间的计数，逐行累加时内存占用与数据量无关
+ */
+public class SizeBucketAccumulator {
+
+    private final long[] boundaries;
+
+    private final long[] counts;
+
+    /**
+     * @param boundaries 分界点（字节），需严格递增
+     */
+    public SizeBucketAccumulator(long[] boundaries) {
+        this.boundaries = boundaries;
+        this.counts = new long[boundaries.length + 1];
+    }
+
+    /**
+     * 累加一张图片
+     *
+     * @param picSize 图片大小（字节）
+     */
+    public void accept(long picSize) {
+        int index = Arrays.binarySearch(boundaries, picSize);
+        // 恰好等于分界点时属于右侧区间
+        counts[index >= 0 ? index + 1 : -index - 1]++;
+    }
+
+    /**
+     * 累加已经在数据库中聚合好的计数
+     *
+     * @param bucket 区间下标
+     * @param count  数量
+     */
+    public void add(int bucket, long count) {
+        counts[bucket] += count;
+    }
+
+    public long[] getCounts() {
+        return counts;
+    }
+
+    /**
+     * 各区间的名称，如 &lt;100KB、100KB-500KB、&gt;1MB
+     */
+    public List<String> getLabels() {
+        return buildLabels(boundaries);
+    }
+
+    /**
+     * 生成各区间的名称
+     *
+     * @param boundaries 分界点（字节）
+     * @return 区间名称，数量为分界点数量 + 1
+     */
+    public static List<String> buildLabels(long[] boundaries) {
+        List<String> labels = new ArrayList<>(boundaries.length + 1);
+        if (boundaries.length == 0) {
+            labels.add("全部");
+            return labels;
+        }
+        labels.add("<" + formatSize(boundaries[0]));
+        for (int i = 1; i < boundaries.length; i++) {
+            labels.add(formatSize(boundaries[i - 1]) + "-" + formatSize(boundaries[i]));
+        }
+        labels.add(">" + formatSize(boundaries[boundaries.length - 1]));
+        return labels;
+    }
+
+    /**
+     * 格式化大小，能整除时使用 MB / KB
+     */
+    private static String formatSize(long size) {
+        if (size >= 1024 * 1024 && size % (1024 * 1024) == 0) {
+            return size / (1024 * 1024) + "MB";
+        }
+        if (size >= 1024 && size % 1024 == 0) {
+            return size / 1024 + "KB";
+        }
+        return size + "B";
+    }
+}
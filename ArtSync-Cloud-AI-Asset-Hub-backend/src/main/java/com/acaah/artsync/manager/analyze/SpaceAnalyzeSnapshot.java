@@ -0,0 +1,373 @@
+package com.acaah.artsync.manager.analyze;
+
+import com.acaah.artsync.exception.BusinessException;
+import com.acaah.artsync.exception.ErrorCode;
+import com.acaah.artsync.model.vo.space.analyze.SpaceCategoryAnalyzeResponse;
+import com.acaah.artsync.model.vo.space.analyze.SpaceTagAnalyzeResponse;
+import com.acaah.artsync.model.vo.space.analyze.SpaceUserAnalyzeResponse;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单个空间的分析快照
+ * 使用基本类型数组按列存储分析需要的字段，分类和标签按字典编码为 int；
+ * 各项分析只遍历数组，不访问数据库，也不会为每张图片创建对象
+ */
+public class SpaceAnalyzeSnapshot {
+
+    private static final String UNCATEGORIZED = "未分类";
+
+    private static final int[] EMPTY_CODES = new int[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 图片 id => 数组下标
+     */
+    private final Map<Long, Integer> positionMap = new HashMap<>();
+
+    private final Dictionary categoryDictionary = new Dictionary();
+
+    private final Dictionary tagDictionary = new Dictionary();
+
+    private long[] ids;
+
+    private long[] picSizes;
+
+    /**
+     * 创建日期，距 1970-01-01 的天数
+     */
+    private int[] epochDays;
+
+    private long[] userIds;
+
+    private int[] categoryCodes;
+
+    /**
+     * 每张图片的标签编码
+     */
+    private int[][] tagCodes;
+
+    private int size;
+
+    /**
+     * 全部图片的标签编码总数，用于估算内存占用
+     */
+    private long tagCodeCount;
+
+    public SpaceAnalyzeSnapshot(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        this.ids = new long[capacity];
+        this.picSizes = new long[capacity];
+        this.epochDays = new int[capacity];
+        this.userIds = new long[capacity];
+        this.categoryCodes = new int[capacity];
+        this.tagCodes = new int[capacity][];
+    }
+
+    /**
+     * 新增或更新图片
+     *
+     * @param pictureId 图片 id
+     * @param picSize   图片大小（字节）
+     * @param epochDay  创建日期
+     * @param userId    上传用户 id
+     * @param category  分类，为空表示未分类
+     * @param tags      标签，可以为空
+     */
+    public void put(long pictureId, long picSize, int epochDay, long userId, String category, Collection<String> tags) {
+        lock.writeLock().lock();
+        try {
+            Integer position = positionMap.get(pictureId);
+            if (position == null) {
+                if (size == ids.length) {
+                    grow();
+                }
+                position = size++;
+                positionMap.put(pictureId, position);
+            } else {
+                tagCodeCount -= tagCodes[position].length;
+            }
+            ids[position] = pictureId;
+            picSizes[position] = picSize;
+            epochDays[position] = epochDay;
+            userIds[position] = userId;
+            categoryCodes[position] = categoryDictionary.encode(category == null ? UNCATEGORIZED : category);
+            int[] codes = EMPTY_CODES;
+            if (tags != null && !tags.isEmpty()) {
+                codes = tags.stream().filter(Objects::nonNull).distinct().mapToInt(tagDictionary::encode).toArray();
+            }
+            tagCodes[position] = codes;
+            tagCodeCount += codes.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除图片，用最后一个元素填补空位
+     *
+     * @param pictureId 图片 id
+     */
+    public void remove(long pictureId) {
+        lock.writeLock().lock();
+        try {
+            Integer position = positionMap.remove(pictureId);
+            if (position == null) {
+                return;
+            }
+            tagCodeCount -= tagCodes[position].length;
+            int last = --size;
+            if (position != last) {
+                ids[position] = ids[last];
+                picSizes[position] = picSizes[last];
+                epochDays[position] = epochDays[last];
+                userIds[position] = userIds[last];
+                categoryCodes[position] = categoryCodes[last];
+                tagCodes[position] = tagCodes[last];
+                positionMap.put(ids[position], position);
+            }
+            tagCodes[last] = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按分类统计数量和总大小
+     *
+     * @return 分类分析结果，按分类首次出现的顺序
+     */
+    public List<SpaceCategoryAnalyzeResponse> groupByCategory() {
+        lock.readLock().lock();
+        try {
+            int dictionarySize = categoryDictionary.size();
+            long[] counts = new long[dictionarySize];
+            long[] totalSizes = new long[dictionarySize];
+            for (int i = 0; i < size; i++) {
+                int code = categoryCodes[i];
+                counts[code]++;
+                totalSizes[code] += picSizes[i];
+            }
+            List<SpaceCategoryAnalyzeResponse> responseList = new ArrayList<>();
+            for (int code = 0; code < dictionarySize; code++) {
+                if (counts[code] > 0) {
+                    responseList.add(new SpaceCategoryAnalyzeResponse(categoryDictionary.decode(code),
+                            counts[code], totalSizes[code]));
+                }
+            }
+            return responseList;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 统计使用次数最多的标签
+     *
+     * @param topN 返回数量，为空或不大于 0 时返回全部
+     * @return 标签和使用次数，按使用次数降序
+     */
+    public List<SpaceTagAnalyzeResponse> topTags(Integer topN) {
+        long[] counts;
+        lock.readLock().lock();
+        try {
+            counts = new long[tagDictionary.size()];
+            for (int i = 0; i < size; i++) {
+                for (int code : tagCodes[i]) {
+                    counts[code]++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // 按次数排序编码，标签数量远小于图片数量，排序在锁外进行
+        List<Integer> codeList = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                codeList.add(code);
+            }
+        }
+        codeList.sort((a, b) -> Long.compare(counts[b], counts[a]));
+        int limit = topN != null && topN > 0 ? Math.min(topN, codeList.size()) : codeList.size();
+        List<SpaceTagAnalyzeResponse> responseList = new ArrayList<>(limit);
+        for (int i = 0; i < limit; i++) {
+            int code = codeList.get(i);
+            responseList.add(new SpaceTagAnalyzeResponse(tagDictionary.decode(code), counts[code]));
+        }
+        return responseList;
+    }
+
+    /**
+     * 按大小分段统计数量
+     *
+     * @param boundaries 分界点（字节），需严格递增
+     * @return 分段计数
+     */
+    public SizeBucketAccumulator countBySizeBucket(long[] boundaries) {
+        SizeBucketAccumulator accumulator = new SizeBucketAccumulator(boundaries);
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                accumulator.accept(picSizes[i]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return accumulator;
+    }
+
+    /**
+     * 按时间段统计上传数量
+     * 先按天累加到数组，再按天的顺序合并为周、月，结果与数据库中 DATE_FORMAT / YEARWEEK 的分组一致
+     *
+     * @param userId        用户 id，为空表示全部用户
+     * @param timeDimension 时间维度：day / week / month
+     * @return 时间段和上传数量，按时间段升序
+     */
+    public List<SpaceUserAnalyzeResponse> countByPeriod(Long userId, String timeDimension) {
+        int minDay;
+        long[] dayCounts;
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            minDay = Integer.MAX_VALUE;
+            int maxDay = Integer.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                minDay = Math.min(minDay, epochDays[i]);
+                maxDay = Math.max(maxDay, epochDays[i]);
+            }
+            dayCounts = new long[maxDay - minDay + 1];
+            for (int i = 0; i < size; i++) {
+                if (userId == null || userIds[i] == userId) {
+                    dayCounts[epochDays[i] - minDay]++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<SpaceUserAnalyzeResponse> responseList = new ArrayList<>();
+        String currentPeriod = null;
+        long currentCount = 0;
+        for (int offset = 0; offset < dayCounts.length; offset++) {
+            if (dayCounts[offset] == 0) {
+                continue;
+            }
+            String period = formatPeriod(LocalDate.ofEpochDay(minDay + offset), timeDimension);
+            if (!period.equals(currentPeriod)) {
+                if (currentPeriod != null) {
+                    responseList.add(new SpaceUserAnalyzeResponse(currentPeriod, currentCount));
+                }
+                currentPeriod = period;
+                currentCount = 0;
+            }
+            currentCount += dayCounts[offset];
+        }
+        if (currentPeriod != null) {
+            responseList.add(new SpaceUserAnalyzeResponse(currentPeriod, currentCount));
+        }
+        return responseList;
+    }
+
+    /**
+     * 估算占用的内存（字节），用于按总大小淘汰快照
+     */
+    public long estimateBytes() {
+        lock.readLock().lock();
+        try {
+            // 5 列基本类型数组 + 标签数组引用和对象头 + id 映射的节点
+            long columnBytes = (long) ids.length * (8 + 8 + 4 + 8 + 4 + 8);
+            long tagBytes = (long) size * 16 + tagCodeCount * 4;
+            long positionBytes = (long) positionMap.size() * 64;
+            return columnBytes + tagBytes + positionBytes
+                    + categoryDictionary.estimateBytes() + tagDictionary.estimateBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        picSizes = Arrays.copyOf(picSizes, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        userIds = Arrays.copyOf(userIds, capacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+        tagCodes = Arrays.copyOf(tagCodes, capacity);
+    }
+
+    /**
+     * 日期所属的时间段
+     * week 与 MySQL YEARWEEK(date) 默认模式一致：每周从周日开始，一年中第一个周日所在的周为第 1 周，
+     * 之前的日期属于上一年的最后一周
+     */
+    static String formatPeriod(LocalDate date, String timeDimension) {
+        switch (timeDimension) {
+            case "day":
+                return date.toString();
+            case "week":
+                LocalDate sunday = date.minusDays(date.getDayOfWeek().getValue() % 7);
+                int week = (sunday.getDayOfYear() - 1) / 7 + 1;
+                return String.valueOf(sunday.getYear() * 100 + week);
+            case "month":
+                return String.format("%04d-%02d", date.getYear(), date.getMonthValue());
+            default:
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的时间维度");
+        }
+    }
+
+    /**
+     * 字符串字典，编码从 0 开始连续分配；快照生命周期内只增不减，过期重建时清理
+     */
+    private static class Dictionary {
+
+        private final Map<String, Integer> codeMap = new HashMap<>();
+
+        private final List<String> values = new ArrayList<>();
+
+        private long valueChars;
+
+        int encode(String value) {
+            Integer code = codeMap.get(value);
+            if (code == null) {
+                code = values.size();
+                codeMap.put(value, code);
+                values.add(value);
+                valueChars += value.length();
+            }
+            return code;
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        long estimateBytes() {
+            return values.size() * 96L + valueChars * 2;
+        }
+    }
+}
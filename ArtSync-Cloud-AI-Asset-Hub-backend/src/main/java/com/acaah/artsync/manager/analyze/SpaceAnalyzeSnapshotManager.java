@@ -0,0 +1,139 @@
+package com.acaah.artsync.manager.analyze;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.acaah.artsync.manager.readwrite.ReadWriteRouteContext;
+import com.acaah.artsync.mapper.PictureMapper;
+import com.acaah.artsync.model.entity.Picture;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 空间分析快照管理
+ * 首次分析时按空间加载快照，同一空间的并发请求只加载一次；图片新增、修改、删除时增量维护已加载的快照；
+ * 快照按估算的内存占用淘汰，并定期过期重建，用于兜底其他实例上的修改
+ */
+@Slf4j
+@Component
+public class SpaceAnalyzeSnapshotManager {
+
+    /**
+     * 全部快照的内存上限（字节）
+     */
+    @Value("${space.analyze.snapshot.max-bytes:134217728}")
+    private long maxBytes;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    /**
+     * 空间 id => 分析快照
+     */
+    private Cache<Long, SpaceAnalyzeSnapshot> snapshotCache;
+
+    @PostConstruct
+    public void init() {
+        snapshotCache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long spaceId, SpaceAnalyzeSnapshot snapshot) ->
+                        (int) Math.min(snapshot.estimateBytes(), Integer.MAX_VALUE))
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+    }
+
+    /**
+     * 获取空间的分析快照，未加载时从数据库加载
+     * 快照加载后只靠增量维护，加载时必须读主库，否则从库延迟期间的修改会一直缺失
+     *
+     * @param spaceId 空间 id
+     * @return 分析快照
+     */
+    public SpaceAnalyzeSnapshot getSnapshot(long spaceId) {
+        return snapshotCache.get(spaceId, id -> ReadWriteRouteContext.callOnPrimary(() -> this.loadSnapshot(id)));
+    }
+
+    /**
+     * 图片新增或修改后从数据库重新读取并同步快照（仅维护已加载的空间）
+     *
+     * @param spaceId    图片所属空间 id
+     * @param pictureIds 图片 id
+     */
+    public void onPicturesUpdated(Long spaceId, Collection<Long> pictureIds) {
+        if (spaceId == null || CollUtil.isEmpty(pictureIds) || snapshotCache.getIfPresent(spaceId) == null) {
+            return;
+        }
+        try {
+            List<Picture> pictureList = pictureMapper.selectList(this.buildSnapshotQuery(spaceId)
+                    .in(Picture::getId, pictureIds));
+            // 在缓存的计算中修改，重新计算内存占用
+            snapshotCache.asMap().computeIfPresent(spaceId, (id, snapshot) -> {
+                pictureList.forEach(picture -> this.putPicture(snapshot, picture));
+                return snapshot;
+            });
+        } catch (Exception e) {
+            // 同步失败时丢弃快照，下次分析时重新加载
+            log.warn("同步空间分析快照失败, spaceId = {}, pictureIds = {}", spaceId, pictureIds, e);
+            snapshotCache.invalidate(spaceId);
+        }
+    }
+
+    /**
+     * 图片删除后同步快照（仅维护已加载的空间）
+     *
+     * @param picture 图片
+     */
+    public void onPictureDeleted(Picture picture) {
+        if (picture.getSpaceId() == null || picture.getId() == null) {
+            return;
+        }
+        snapshotCache.asMap().computeIfPresent(picture.getSpaceId(), (id, snapshot) -> {
+            snapshot.remove(picture.getId());
+            return snapshot;
+        });
+    }
+
+    /**
+     * 从数据库加载空间的快照，只查询分析需要的字段
+     */
+    private SpaceAnalyzeSnapshot loadSnapshot(Long spaceId) {
+        List<Picture> pictureList = pictureMapper.selectList(this.buildSnapshotQuery(spaceId));
+        SpaceAnalyzeSnapshot snapshot = new SpaceAnalyzeSnapshot(pictureList.size());
+        for (Picture picture : pictureList) {
+            this.putPicture(snapshot, picture);
+        }
+        log.info("加载空间分析快照, spaceId = {}, size = {}, bytes = {}", spaceId, snapshot.size(),
+                snapshot.estimateBytes());
+        return snapshot;
+    }
+
+    private LambdaQueryWrapper<Picture> buildSnapshotQuery(Long spaceId) {
+        return new LambdaQueryWrapper<Picture>()
+                .select(Picture::getId, Picture::getPicSize, Picture::getCreateTime, Picture::getUserId,
+                        Picture::getCategory, Picture::getTags)
+                .eq(Picture::getSpaceId, spaceId);
+    }
+
+    private void putPicture(SpaceAnalyzeSnapshot snapshot, Picture picture) {
+        long picSize = picture.getPicSize() == null ? 0L : picture.getPicSize();
+        int epochDay = (int) DateUtil.toLocalDateTime(picture.getCreateTime()).toLocalDate().toEpochDay();
+        long userId = picture.getUserId() == null ? 0L : picture.getUserId();
+        List<String> tags = Collections.emptyList();
+        if (StrUtil.isNotBlank(picture.getTags()) && JSONUtil.isTypeJSONArray(picture.getTags())) {
+            tags = JSONUtil.toList(picture.getTags(), String.class);
+        }
+        snapshot.put(picture.getId(), picSize, epochDay, userId, picture.getCategory(), tags);
+    }
+}
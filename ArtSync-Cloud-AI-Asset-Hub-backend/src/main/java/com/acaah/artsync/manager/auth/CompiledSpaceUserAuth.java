@@ -0,0 +1,180 @@
+package com.acaah.artsync.manager.auth;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.acaah.artsync.manager.auth.model.SpaceUserAuthConfig;
+import com.acaah.artsync.manager.auth.model.SpaceUserPermission;
+import com.acaah.artsync.manager.auth.model.SpaceUserRole;
+
+import java.util.*;
+
+/**
+ * 编译后的空间成员权限配置（不可变）
+ * 按配置顺序为每个权限分配序号，每个角色的权限编译为一个 long 位掩码，
+ * 权限判断只需一次 Map 查找和一次位运算；角色对应的权限列表也预先生成，无需每次遍历配置
+ */
+public final class CompiledSpaceUserAuth {
+
+    /**
+     * long 位掩码最多支持的权限数量
+     */
+    private static final int MAX_PERMISSION_COUNT = Long.SIZE;
+
+    /**
+     * 权限键 => 序号
+     */
+    private final Map<String, Integer> permissionOrdinalMap;
+
+    /**
+     * 序号 => 权限键
+     */
+    private final String[] permissionKeys;
+
+    /**
+     * 角色键 => 权限位掩码
+     */
+    private final Map<String, Long> roleMaskMap;
+
+    /**
+     * 角色键 => 权限列表（不可修改）
+     */
+    private final Map<String, List<String>> rolePermissionMap;
+
+    private CompiledSpaceUserAuth(Map<String, Integer> permissionOrdinalMap, String[] permissionKeys,
+                                  Map<String, Long> roleMaskMap, Map<String, List<String>> rolePermissionMap) {
+        this.permissionOrdinalMap = permissionOrdinalMap;
+        this.permissionKeys = permissionKeys;
+        this.roleMaskMap = roleMaskMap;
+        this.rolePermissionMap = rolePermissionMap;
+    }
+
+    /**
+     * 编译权限配置
+     *
+     * @param config 权限配置
+     * @return 编译结果
+     * @throws IllegalArgumentException 配置不合法（权限重复、角色引用了未定义的权限、权限数量超出上限等）
+     */
+    public static CompiledSpaceUserAuth compile(SpaceUserAuthConfig config) {
+        if (config == null || CollUtil.isEmpty(config.getPermissions()) || CollUtil.isEmpty(config.getRoles())) {
+            throw new IllegalArgumentException("权限配置为空");
+        }
+        List<SpaceUserPermission> permissions = config.getPermissions();
+        if (permissions.size() > MAX_PERMISSION_COUNT) {
+            throw new IllegalArgumentException("权限数量不能超过 " + MAX_PERMISSION_COUNT);
+        }
+        Map<String, Integer> permissionOrdinalMap = new HashMap<>();
+        String[] permissionKeys = new String[permissions.size()];
+        for (int i = 0; i < permissions.size(); i++) {
+            String key = permissions.get(i).getKey();
+            if (StrUtil.isBlank(key) || permissionOrdinalMap.putIfAbsent(key, i) != null) {
+                throw new IllegalArgumentException("权限键为空或重复: " + key);
+            }
+            permissionKeys[i] = key;
+        }
+        Map<String, Long> roleMaskMap = new HashMap<>();
+        Map<String, List<String>> rolePermissionMap = new HashMap<>();
+        for (SpaceUserRole role : config.getRoles()) {
+            String roleKey = role.getKey();
+            if (StrUtil.isBlank(roleKey) || roleMaskMap.containsKey(roleKey)) {
+                throw new IllegalArgumentException("角色键为空或重复: " + roleKey);
+            }
+            long mask = 0L;
+            if (role.getPermissions() != null) {
+                for (String permission : role.getPermissions()) {
+                    Integer ordinal = permissionOrdinalMap.get(permission);
+                    if (ordinal == null) {
+                        throw new IllegalArgumentException("角色 " + roleKey + " 引用了未定义的权限: " + permission);
+                    }
+                    mask |= 1L << ordinal;
+                }
+            }
+            roleMaskMap.put(roleKey, mask);
+            rolePermissionMap.put(roleKey, toPermissionList(mask, permissionKeys));
+        }
+        return new CompiledSpaceUserAuth(Collections.unmodifiableMap(permissionOrdinalMap), permissionKeys,
+                Collections.unmodifiableMap(roleMaskMap), Collections.unmodifiableMap(rolePermissionMap));
+    }
+
+    /**
+     * 获取角色的权限位掩码
+     *
+     * @param role 角色键
+     * @return 位掩码，角色不存在时返回 0
+     */
+    public long getRoleMask(String role) {
+        if (role == null) {
+            return 0L;
+        }
+        Long mask = roleMaskMap.get(role);
+        return mask == null ? 0L : mask;
+    }
+
+    /**
+     * 获取权限的位
+     *
+     * @param permission 权限键
+     * @return 位，权限不存在时返回 0
+     */
+    public long getPermissionBit(String permission) {
+        if (permission == null) {
+            return 0L;
+        }
+        Integer ordinal = permissionOrdinalMap.get(permission);
+        return ordinal == null ? 0L : 1L << ordinal;
+    }
+
+    /**
+     * 判断位掩码是否包含权限
+     *
+     * @param mask       权限位掩码
+     * @param permission 权限键
+     */
+    public boolean hasPermission(long mask, String permission) {
+        long bit = getPermissionBit(permission);
+        return bit != 0L && (mask & bit) != 0L;
+    }
+
+    /**
+     * 判断角色是否拥有权限
+     *
+     * @param role       角色键
+     * @param permission 权限键
+     */
+    public boolean hasPermission(String role, String permission) {
+        return hasPermission(getRoleMask(role), permission);
+    }
+
+    /**
+     * 获取角色的权限列表
+     *
+     * @param role 角色键
+     * @return 不可修改的权限列表，角色不存在时返回空列表
+     */
+    public List<String> getPermissions(String role) {
+        if (role == null) {
+            return Collections.emptyList();
+        }
+        return rolePermissionMap.getOrDefault(role, Collections.emptyList());
+    }
+
+    /**
+     * 将位掩码转换为权限列表（按配置顺序）
+     *
+     * @param mask 权限位掩码
+     * @return 权限列表
+     */
+    public List<String> toPermissionList(long mask) {
+        return toPermissionList(mask, permissionKeys);
+    }
+
+    private static List<String> toPermissionList(long mask, String[] permissionKeys) {
+        List<String> permissionList = new ArrayList<>(Long.bitCount(mask));
+        for (int i = 0; i < permissionKeys.length; i++) {
+            if ((mask & (1L << i)) != 0L) {
+                permissionList.add(permissionKeys[i]);
+            }
+        }
+        return Collections.unmodifiableList(permissionList);
+    }
+}
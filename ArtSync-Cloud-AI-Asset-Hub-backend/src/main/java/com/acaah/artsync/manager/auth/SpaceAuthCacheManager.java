@@ -0,0 +1,115 @@
+package com.acaah.artsync.manager.auth;
+
+import com.acaah.artsync.mapper.SpaceMapper;
+import com.acaah.artsync.mapper.SpaceUserMapper;
+import com.acaah.artsync.model.entity.Space;
+import com.acaah.artsync.model.entity.SpaceUser;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+
+/**
+ * 空间鉴权数据缓存
+ * 缓存空间的类型、创建人，以及用户在空间中的角色，多次权限校验共享，避免每次都查询 space、space_user 表。
+ * 本实例的成员变更、空间删除时主动失效，其他实例依赖较短的过期时间
+ */
+@Component
+public class SpaceAuthCacheManager {
+
+    /**
+     * 不是空间成员时缓存的角色
+     */
+    private static final String NO_ROLE = "";
+
+    @Resource
+    private SpaceMapper spaceMapper;
+
+    @Resource
+    private SpaceUserMapper spaceUserMapper;
+
+    /**
+     * 空间 id => 空间（仅包含 id、spaceType、userId）
+     */
+    private final Cache<Long, Space> spaceCache = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
+    /**
+     * 空间 id:用户 id => 空间角色
+     */
+    private final Cache<String, String> spaceRoleCache = Caffeine.newBuilder()
+            .maximumSize(100_000L)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
+    /**
+     * 获取空间的鉴权信息
+     *
+     * @param spaceId 空间 id
+     * @return 仅包含 id、spaceType、userId 的空间，不存在时返回 null
+     */
+    public Space getSpace(Long spaceId) {
+        if (spaceId == null) {
+            return null;
+        }
+        return spaceCache.get(spaceId, key -> spaceMapper.selectOne(new LambdaQueryWrapper<Space>()
+                .select(Space::getId, Space::getSpaceType, Space::getUserId)
+                .eq(Space::getId, key)));
+    }
+
+    /**
+     * 获取用户在空间中的角色
+     *
+     * @param spaceId 空间 id
+     * @param userId  用户 id
+     * @return 空间角色，不是空间成员时返回 null
+     */
+    public String getSpaceRole(Long spaceId, Long userId) {
+        if (spaceId == null || userId == null) {
+            return null;
+        }
+        String spaceRole = spaceRoleCache.get(buildRoleKey(spaceId, userId), key -> {
+            SpaceUser spaceUser = spaceUserMapper.selectOne(new LambdaQueryWrapper<SpaceUser>()
+                    .select(SpaceUser::getSpaceRole)
+                    .eq(SpaceUser::getSpaceId, spaceId)
+                    .eq(SpaceUser::getUserId, userId));
+            return spaceUser == null || spaceUser.getSpaceRole() == null ? NO_ROLE : spaceUser.getSpaceRole();
+        });
+        return NO_ROLE.equals(spaceRole) ? null : spaceRole;
+    }
+
+    /**
+     * 空间成员新增、修改角色、移除后失效
+     *
+     * @param spaceId 空间 id
+     * @param userId  用户 id
+     */
+    public void invalidateSpaceRole(Long spaceId, Long userId) {
+        if (spaceId != null && userId != null) {
+            spaceRoleCache.invalidate(buildRoleKey(spaceId, userId));
+        }
+    }
+
+    /**
+     * 空间修改或删除后失效，同时失效该空间下所有成员的角色
+     *
+     * @param spaceId 空间 id
+     */
+    public void invalidateSpace(Long spaceId) {
+        if (spaceId == null) {
+            return;
+        }
+        spaceCache.invalidate(spaceId);
+        String prefix = spaceId + ":";
+        spaceRoleCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private String buildRoleKey(Long spaceId, Long userId) {
+        return spaceId + ":" + userId;
+    }
+}
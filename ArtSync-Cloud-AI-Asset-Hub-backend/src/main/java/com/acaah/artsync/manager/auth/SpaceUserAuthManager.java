@@ -1,66 +1,123 @@
 package com.acaah.artsync.manager.auth;
 
+import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.resource.ResourceUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.acaah.artsync.manager.auth.model.SpaceUserAuthConfig;
-import com.acaah.artsync.manager.auth.model.SpaceUserRole;
 import com.acaah.artsync.model.entity.Space;
-import com.acaah.artsync.model.entity.SpaceUser;
 import com.acaah.artsync.model.entity.User;
 import com.acaah.artsync.model.enums.SpaceRoleEnum;
 import com.acaah.artsync.model.enums.SpaceTypeEnum;
-import com.acaah.artsync.service.SpaceUserService;
 import com.acaah.artsync.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
-import java.util.ArrayList;
+import java.io.File;
 import java.util.List;
 
 /**
  * 空间成员权限管理器
- * 读取权限配置
+ * 读取权限配置并编译为按角色的权限位掩码；
+ * 配置了外部配置文件（space.auth.config-path）时定期检查文件修改时间，修改后无需重启即可生效
  */
+@Slf4j
 @Component
 public class SpaceUserAuthManager {
 
-    @Resource
-    private SpaceUserService spaceUserService;
+    private static final String DEFAULT_CONFIG_RESOURCE = "biz/spaceUserAuthConfig.json";
 
     @Resource
     private UserService userService;
 
-    public static final SpaceUserAuthConfig SPACE_USER_AUTH_CONFIG;
+    @Resource
+    private SpaceAuthCacheManager spaceAuthCacheManager;
+
+    /**
+     * 外部权限配置文件路径，为空时使用类路径下的默认配置
+     */
+    @Value("${space.auth.config-path:}")
+    private String configPath;
+
+    /**
+     * 当前生效的权限配置，重新加载时整体替换
+     */
+    private volatile CompiledSpaceUserAuth compiledAuth;
+
+    /**
+     * 已加载的外部配置文件修改时间
+     */
+    private volatile long configLastModified;
+
+    @PostConstruct
+    public void init() {
+        if (StrUtil.isNotBlank(configPath) && FileUtil.isFile(configPath)) {
+            File configFile = FileUtil.file(configPath);
+            configLastModified = configFile.lastModified();
+            compiledAuth = compile(FileUtil.readUtf8String(configFile));
+            log.info("加载外部空间权限配置, path = {}", configPath);
+        } else {
+            compiledAuth = compile(ResourceUtil.readUtf8Str(DEFAULT_CONFIG_RESOURCE));
+        }
+    }
 
-    static {
-        String json = ResourceUtil.readUtf8Str("biz/spaceUserAuthConfig.json");
-        SPACE_USER_AUTH_CONFIG = JSONUtil.toBean(json, SpaceUserAuthConfig.class);
+    /**
+     * 定期检查外部配置文件，修改后重新编译；新配置不合法时保留原配置
+     */
+    @Scheduled(initialDelay = 10_000L, fixedDelay = 10_000L)
+    public void reloadIfChanged() {
+        if (StrUtil.isBlank(configPath) || !FileUtil.isFile(configPath)) {
+            return;
+        }
+        File configFile = FileUtil.file(configPath);
+        long lastModified = configFile.lastModified();
+        if (lastModified == configLastModified) {
+            return;
+        }
+        try {
+            compiledAuth = compile(FileUtil.readUtf8String(configFile));
+            log.info("空间权限配置已重新加载, path = {}", configPath);
+        } catch (Exception e) {
+            log.error("空间权限配置不合法，继续使用原配置, path = {}", configPath, e);
+        }
+        configLastModified = lastModified;
     }
 
 /**
  * 根据角色获取权限列表
  * 该方法接收一个角色标识符作为参数，返回该角色对应的权限列表
  * @param spaceUserRole 角色标识符，用于在配置中查找对应角色
- * @return 权限列表，如果角色不存在或参数为空则返回空列表
+ * @return 不可修改的权限列表，如果角色不存在或参数为空则返回空列表
  */
     public List<String> getPermissionsByRole(String spaceUserRole) {
-    // 检查输入参数是否为空或空白字符串
-        if (StrUtil.isBlank(spaceUserRole)) {
-        // 如果参数无效，返回空列表
-            return new ArrayList<>();
-        }
-        // 找到匹配的角色
-        SpaceUserRole role = SPACE_USER_AUTH_CONFIG.getRoles().stream()
-                .filter(r -> spaceUserRole.equals(r.getKey()))
-                .findFirst()
-                .orElse(null);
-        if (role == null) {
-            return new ArrayList<>();
-        }
-        return role.getPermissions();
+        return compiledAuth.getPermissions(spaceUserRole);
+    }
+
+/**
+ * 判断角色是否拥有权限
+ * @param spaceUserRole 角色标识符
+ * @param permission 权限键
+ * @return 是否拥有权限
+ */
+    public boolean hasPermission(String spaceUserRole, String permission) {
+        return compiledAuth.hasPermission(spaceUserRole, permission);
     }
 
+/**
+ * 判断登录用户在空间中是否拥有权限
+ * @param space 空间对象，为null表示公共图库
+ * @param loginUser 登录用户对象
+ * @param permission 权限键
+ * @return 是否拥有权限
+ */
+    public boolean hasPermission(Space space, User loginUser, String permission) {
+        CompiledSpaceUserAuth auth = compiledAuth;
+        return auth.hasPermission(getPermissionMask(auth, space, loginUser), permission);
+    }
 
 /**
  * 根据空间和登录用户获取权限列表
@@ -69,45 +126,49 @@ public class SpaceUserAuthManager {
  * @return 权限列表，如果用户无权限则返回空列表
  */
     public List<String> getPermissionList(Space space, User loginUser) {
-    // 如果登录用户为null，直接返回空列表
+        CompiledSpaceUserAuth auth = compiledAuth;
+        return auth.toPermissionList(getPermissionMask(auth, space, loginUser));
+    }
+
+/**
+ * 根据空间和登录用户计算权限位掩码
+ * @param auth 权限配置，调用方取一次，保证同一次计算使用同一份配置
+ * @param space 空间对象，可能为null
+ * @param loginUser 登录用户对象，可能为null
+ * @return 权限位掩码，无权限时返回0
+ */
+    private long getPermissionMask(CompiledSpaceUserAuth auth, Space space, User loginUser) {
+    // 如果登录用户为null，直接返回无权限
         if (loginUser == null) {
-            return new ArrayList<>();
+            return 0L;
         }
         // 管理员权限
-        List<String> ADMIN_PERMISSIONS = getPermissionsByRole(SpaceRoleEnum.ADMIN.getValue());
+        long adminMask = auth.getRoleMask(SpaceRoleEnum.ADMIN.getValue());
         // 公共图库
         if (space == null) {
-            if (userService.isAdmin(loginUser)) {
-                return ADMIN_PERMISSIONS;
-            }
-            return new ArrayList<>();
+            return userService.isAdmin(loginUser) ? adminMask : 0L;
         }
         SpaceTypeEnum spaceTypeEnum = SpaceTypeEnum.getEnumByValue(space.getSpaceType());
         if (spaceTypeEnum == null) {
-            return new ArrayList<>();
+            return 0L;
         }
         // 根据空间获取对应的权限
         switch (spaceTypeEnum) {
             case PRIVATE:
                 // 私有空间，仅本人或管理员有所有权限
                 if (space.getUserId().equals(loginUser.getId()) || userService.isAdmin(loginUser)) {
-                    return ADMIN_PERMISSIONS;
-                } else {
-                    return new ArrayList<>();
+                    return adminMask;
                 }
+                return 0L;
             case TEAM:
-                // 团队空间，查询 SpaceUser 并获取角色和权限
-                SpaceUser spaceUser = spaceUserService.lambdaQuery()
-                        .eq(SpaceUser::getSpaceId, space.getId())
-                        .eq(SpaceUser::getUserId, loginUser.getId())
-                        .one();
-                if (spaceUser == null) {
-                    return new ArrayList<>();
-                } else {
-                    return getPermissionsByRole(spaceUser.getSpaceRole());
-                }
+                // 团队空间，获取用户在空间中的角色和权限（与请求鉴权共用缓存）
+                return auth.getRoleMask(spaceAuthCacheManager.getSpaceRole(space.getId(), loginUser.getId()));
+            default:
+                return 0L;
         }
-        return new ArrayList<>();
     }
 
+    private CompiledSpaceUserAuth compile(String json) {
+        return CompiledSpaceUserAuth.compile(JSONUtil.toBean(json, SpaceUserAuthConfig.class));
+    }
 }
@@ -3,13 +3,10 @@ package com.acaah.artsync.manager.auth;
 import cn.dev33.satoken.stp.StpInterface;
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.ObjUtil;
-import cn.hutool.core.util.ObjectUtil;
-import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.NumberUtil;
 import cn.hutool.extra.servlet.ServletUtil;
-import cn.hutool.http.ContentType;
-import cn.hutool.http.Header;
-import cn.hutool.json.JSONUtil;
+import com.acaah.artsync.config.RequestWrapper;
 import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.manager.auth.model.SpaceUserPermissionConstant;
@@ -20,13 +17,16 @@ import com.acaah.artsync.model.entity.User;
 import com.acaah.artsync.model.enums.SpaceRoleEnum;
 import com.acaah.artsync.model.enums.SpaceTypeEnum;
 import com.acaah.artsync.service.PictureService;
-import com.acaah.artsync.service.SpaceService;
 import com.acaah.artsync.service.SpaceUserService;
 import com.acaah.artsync.service.UserService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -40,6 +40,16 @@ import static com.acaah.artsync.constant.UserConstant.USER_LOGIN_STATE;
 @Component    // 保证此类被 SpringBoot 扫描，完成 Sa-Token 的自定义权限验证扩展
 public class StpInterfaceImpl implements StpInterface {
 
+    /**
+     * 请求属性：解析后的鉴权上下文
+     */
+    private static final String AUTH_CONTEXT_ATTRIBUTE = StpInterfaceImpl.class.getName() + ".authContext";
+
+    /**
+     * 请求属性：已计算的权限列表（后缀为登录 id）
+     */
+    private static final String PERMISSION_LIST_ATTRIBUTE = StpInterfaceImpl.class.getName() + ".permissionList.";
+
 
     @Value("${server.servlet.context-path}")
     private String contextPath;
@@ -48,13 +58,13 @@ public class StpInterfaceImpl implements StpInterface {
     @Resource
     private SpaceUserService spaceUserService;
     @Resource
-    private SpaceService spaceService;
-    @Resource
     private PictureService pictureService;
     @Resource
     private UserService userService;
     @Resource
     private SpaceUserAuthManager spaceUserAuthManager;
+    @Resource
+    private SpaceAuthCacheManager spaceAuthCacheManager;
 
 
     /**
@@ -92,20 +102,43 @@ public class StpInterfaceImpl implements StpInterface {
 /**
  * 从请求中获取上下文对象
  * 该方法会根据请求的内容类型(JSON或表单)来解析请求参数，
- * 并根据请求URI路径设置不同的ID字段
+ * 并根据请求URI路径设置不同的ID字段；同一请求只解析一次，结果保存在请求属性中
  * @return SpaceUserAuthContext 包含认证信息的上下文对象
  */
     private SpaceUserAuthContext getAuthContextByRequest() {
     // 从请求上下文中获取HttpServletRequest对象
         HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
-    // 获取请求的内容类型(Content-Type)
-        String contentType = request.getHeader(Header.CONTENT_TYPE.getValue());
+        Object cachedAuthContext = request.getAttribute(AUTH_CONTEXT_ATTRIBUTE);
+        if (cachedAuthContext != null) {
+            return (SpaceUserAuthContext) cachedAuthContext;
+        }
+        SpaceUserAuthContext authRequest = parseAuthContext(request);
+        request.setAttribute(AUTH_CONTEXT_ATTRIBUTE, authRequest);
+        return authRequest;
+    }
+
+/**
+ * 解析请求参数为上下文对象
+ * @param request HTTP请求对象
+ * @return SpaceUserAuthContext 包含认证信息的上下文对象
+ */
+    private SpaceUserAuthContext parseAuthContext(HttpServletRequest request) {
         SpaceUserAuthContext authRequest;
-        // 兼容 get 和 post 操作，根据内容类型处理不同的请求参数
-        if (ContentType.JSON.getValue().equals(contentType)) {
-        // 如果是JSON请求，从请求体中解析参数
-            String body = ServletUtil.getBody(request);
-            authRequest = JSONUtil.toBean(body, SpaceUserAuthContext.class);
+        // 兼容 get 和 post 操作，JSON 请求已被过滤器包装，直接复用包装中解析好的 JSON 树
+        RequestWrapper requestWrapper = WebUtils.getNativeRequest(request, RequestWrapper.class);
+        if (requestWrapper != null) {
+        // 如果是JSON请求，从请求体的 JSON 树中读取 id 参数
+            JsonNode jsonTree;
+            try {
+                jsonTree = requestWrapper.getJsonTree();
+            } catch (JsonProcessingException e) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "请求体格式错误");
+            }
+            authRequest = new SpaceUserAuthContext();
+            authRequest.setId(getLongField(jsonTree, "id"));
+            authRequest.setPictureId(getLongField(jsonTree, "pictureId"));
+            authRequest.setSpaceId(getLongField(jsonTree, "spaceId"));
+            authRequest.setSpaceUserId(getLongField(jsonTree, "spaceUserId"));
         } else {
         // 如果是表单请求，从参数Map中获取参数
             Map<String, String> paramMap = ServletUtil.getParamMap(request);
@@ -138,8 +171,30 @@ public class StpInterfaceImpl implements StpInterface {
     }
 
 
+/**
+ * 从 JSON 树中读取 Long 类型的字段
+ * 前端传递的 id 可能是数字，也可能是字符串（后端 Long 序列化为字符串）
+ * @param jsonTree JSON 树
+ * @param fieldName 字段名
+ * @return 字段值，不存在或格式错误时返回null
+ */
+    private Long getLongField(JsonNode jsonTree, String fieldName) {
+        JsonNode node = jsonTree.get(fieldName);
+        if (node == null) {
+            return null;
+        }
+        if (node.isIntegralNumber()) {
+            return node.asLong();
+        }
+        if (node.isTextual() && NumberUtil.isLong(node.asText())) {
+            return Long.parseLong(node.asText());
+        }
+        return null;
+    }
+
 /**
  * 根据登录ID和登录类型获取权限列表
+ * 同一请求内的多次权限校验只计算一次，结果保存在请求属性中
  * @param loginId 登录ID，标识用户身份
  * @param loginType 登录类型，用于区分不同的登录场景
  * @return 返回用户权限列表，若无权限则返回空列表
@@ -149,12 +204,29 @@ public class StpInterfaceImpl implements StpInterface {
         if (!StpKit.SPACE_TYPE.equals(loginType)) {
             return new ArrayList<>();
         }
+        RequestAttributes requestAttributes = RequestContextHolder.currentRequestAttributes();
+        String attributeName = PERMISSION_LIST_ATTRIBUTE + loginId;
+        @SuppressWarnings("unchecked")
+        List<String> permissionList = (List<String>) requestAttributes.getAttribute(attributeName, RequestAttributes.SCOPE_REQUEST);
+        if (permissionList == null) {
+            permissionList = resolvePermissionList(loginId);
+            requestAttributes.setAttribute(attributeName, permissionList, RequestAttributes.SCOPE_REQUEST);
+        }
+        return permissionList;
+    }
+
+/**
+ * 计算登录用户在当前请求涉及的空间中的权限列表
+ * @param loginId 登录ID，标识用户身份
+ * @return 返回用户权限列表，若无权限则返回空列表
+ */
+    private List<String> resolvePermissionList(Object loginId) {
         // 管理员权限，表示权限校验通过
         List<String> ADMIN_PERMISSIONS = spaceUserAuthManager.getPermissionsByRole(SpaceRoleEnum.ADMIN.getValue());
         // 获取上下文对象，包含权限相关的用户和空间信息
         SpaceUserAuthContext authContext = getAuthContextByRequest();
         // 如果所有字段都为空，表示查询公共图库，可以通过
-        if (isAllFieldsNull(authContext)) {
+        if (isEmptyContext(authContext)) {
             return ADMIN_PERMISSIONS;
         }
         // 获取 userId，用于后续权限判断
@@ -175,16 +247,13 @@ public class StpInterfaceImpl implements StpInterface {
             if (spaceUser == null) {
                 throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "未找到空间用户信息");
             }
-            // 取出当前登录用户对应的 spaceUser
-            SpaceUser loginSpaceUser = spaceUserService.lambdaQuery()
-                    .eq(SpaceUser::getSpaceId, spaceUser.getSpaceId())
-                    .eq(SpaceUser::getUserId, userId)
-                    .one();
-            if (loginSpaceUser == null) {
+            // 取出当前登录用户在该空间的角色
+            String loginSpaceRole = spaceAuthCacheManager.getSpaceRole(spaceUser.getSpaceId(), userId);
+            if (loginSpaceRole == null) {
                 return new ArrayList<>();
             }
             // 这里会导致管理员在私有空间没有权限，可以再查一次库处理
-            return spaceUserAuthManager.getPermissionsByRole(loginSpaceUser.getSpaceRole());
+            return spaceUserAuthManager.getPermissionsByRole(loginSpaceRole);
         }
         // 如果没有 spaceUserId，尝试通过 spaceId 或 pictureId 获取 Space 对象并处理
         Long spaceId = authContext.getSpaceId();
@@ -213,8 +282,8 @@ public class StpInterfaceImpl implements StpInterface {
                 }
             }
         }
-        // 获取 Space 对象
-        Space space = spaceService.getById(spaceId);
+        // 获取 Space 对象（仅包含类型和创建人）
+        Space space = spaceAuthCacheManager.getSpace(spaceId);
         if (space == null) {
             throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "未找到空间信息");
         }
@@ -227,34 +296,30 @@ public class StpInterfaceImpl implements StpInterface {
                 return new ArrayList<>();
             }
         } else {
-            // 团队空间，查询 SpaceUser 并获取角色和权限
-            spaceUser = spaceUserService.lambdaQuery()
-                    .eq(SpaceUser::getSpaceId, spaceId)
-                    .eq(SpaceUser::getUserId, userId)
-                    .one();
-            if (spaceUser == null) {
+            // 团队空间，获取用户在空间中的角色和权限
+            String spaceRole = spaceAuthCacheManager.getSpaceRole(spaceId, userId);
+            if (spaceRole == null) {
                 return new ArrayList<>();
             }
-            return spaceUserAuthManager.getPermissionsByRole(spaceUser.getSpaceRole());
+            return spaceUserAuthManager.getPermissionsByRole(spaceRole);
         }
     }
 
 
 /**
- * 检查对象的所有字段是否都为空
- * @param object 需要检查的对象
+ * 检查上下文的所有字段是否都为空
+ * @param authContext 上下文对象
  * @return 如果对象本身为空或所有字段都为空则返回true，否则返回false
  */
-    private boolean isAllFieldsNull(Object object) {
-        if (object == null) {
-            return true; // 对象本身为空
-        }
-        // 获取所有字段并判断是否所有字段都为空
-        return Arrays.stream(ReflectUtil.getFields(object.getClass()))
-                // 获取字段值
-                .map(field -> ReflectUtil.getFieldValue(object, field))
-                // 检查是否所有字段都为空
-                .allMatch(ObjectUtil::isEmpty);
+    private boolean isEmptyContext(SpaceUserAuthContext authContext) {
+        return authContext == null
+                || (authContext.getId() == null
+                && authContext.getPictureId() == null
+                && authContext.getSpaceId() == null
+                && authContext.getSpaceUserId() == null
+                && authContext.getPicture() == null
+                && authContext.getSpace() == null
+                && authContext.getSpaceUser() == null);
     }
 
 }
@@ -0,0 +1,209 @@
+package com.acaah.artsync.manager.cache;
+
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.SerializeUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONUtil;
+import com.acaah.artsync.manager.readwrite.ReadWriteRouteContext;
+import com.acaah.artsync.manager.readwrite.ReadWriteRouteManager;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 列表查询缓存（本地缓存 + Redis 两级）
+ * 缓存 key 中带有数据范围（如某个空间、公共图库）的版本号，写操作递增版本号即可让该范围下的所有列表缓存失效，
+ * 旧版本的缓存不再被访问，等待过期即可；同一 key 并发未命中时只有一个请求查询数据库
+ */
+@Slf4j
+@Component
+public class ListQueryCacheManager {
+
+    private static final String VERSION_KEY = "artsync:cache:version:%s";
+
+    private static final String DATA_KEY = "artsync:cache:list:%s:%s:v%s:%s";
+
+    /**
+     * 本地缓存的版本号有效期，其他实例的写操作最多延迟这么久可见
+     */
+    private static final Duration LOCAL_VERSION_TTL = Duration.ofSeconds(2);
+
+    /**
+     * Redis 缓存过期时间（秒），在此基础上随机增加，防止缓存雪崩
+     */
+    private static final int REDIS_EXPIRE_SECONDS = 300;
+
+    private static final int REDIS_EXPIRE_JITTER_SECONDS = 300;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ReadWriteRouteManager readWriteRouteManager;
+
+    /**
+     * 数据范围 => 版本号
+     */
+    private final Cache<String, Long> versionCache = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterWrite(LOCAL_VERSION_TTL)
+            .build();
+
+    /**
+     * 本地缓存直接保存对象，避免重复反序列化
+     */
+    private final Cache<String, Object> localCache = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .build();
+
+    /**
+     * 正在加载的 key，并发未命中的请求共享同一次加载
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loadingMap = new ConcurrentHashMap<>();
+
+    private final LongAdder localHitCount = new LongAdder();
+
+    private final LongAdder redisHitCount = new LongAdder();
+
+    private final LongAdder loadCount = new LongAdder();
+
+    private final LongAdder sharedLoadCount = new LongAdder();
+
+    /**
+     * 查询缓存，未命中时加载并写入缓存
+     *
+     * @param namespace 缓存的业务名称，如 picture
+     * @param scope     数据范围，写操作按该范围失效
+     * @param query     查询条件，序列化为 JSON 后计算摘要作为 key
+     * @param loader    未命中时的加载方法
+     * @return 查询结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Serializable> T get(String namespace, String scope, Object query, Supplier<T> loader) {
+        long version = this.getVersion(scope);
+        String queryHash = DigestUtil.md5Hex(JSONUtil.toJsonStr(query));
+        String cacheKey = String.format(DATA_KEY, namespace, scope, version, queryHash);
+        // 1. 本地缓存
+        Object cachedValue = localCache.getIfPresent(cacheKey);
+        if (cachedValue != null) {
+            localHitCount.increment();
+            return (T) cachedValue;
+        }
+        // 2. Redis 缓存
+        byte[] keyBytes = cacheKey.getBytes(StandardCharsets.UTF_8);
+        byte[] cachedBytes = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(keyBytes));
+        if (cachedBytes != null) {
+            try {
+                T value = SerializeUtil.deserialize(cachedBytes);
+                redisHitCount.increment();
+                localCache.put(cacheKey, value);
+                return value;
+            } catch (Exception e) {
+                // 类结构变化导致无法反序列化，按未命中处理
+                log.warn("列表缓存反序列化失败, key = {}", cacheKey);
+            }
+        }
+        // 3. 查询数据库，同一 key 只加载一次
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existFuture = loadingMap.putIfAbsent(cacheKey, future);
+        if (existFuture != null) {
+            sharedLoadCount.increment();
+            return (T) this.await(existFuture);
+        }
+        try {
+            loadCount.increment();
+            // 版本号刚递增时从库可能还没有同步到这次修改，读主库加载，避免旧数据写入新版本的缓存
+            T value = ReadWriteRouteContext.isReplicaRead() && readWriteRouteManager.isScopeRecentlyWritten(scope)
+                    ? ReadWriteRouteContext.callOnPrimary(loader)
+                    : loader.get();
+            if (value != null) {
+                localCache.put(cacheKey, value);
+                byte[] valueBytes = SerializeUtil.serialize(value);
+                int expireSeconds = REDIS_EXPIRE_SECONDS + RandomUtil.randomInt(0, REDIS_EXPIRE_JITTER_SECONDS);
+                stringRedisTemplate.execute((RedisCallback<Boolean>) connection ->
+                        connection.stringCommands().set(keyBytes, valueBytes, Expiration.seconds(expireSeconds),
+                                RedisStringCommands.SetOption.upsert()));
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingMap.remove(cacheKey, future);
+        }
+    }
+
+    /**
+     * 递增数据范围的版本号，使该范围下的所有列表缓存失效
+     *
+     * @param scope 数据范围
+     */
+    public void bumpVersion(String scope) {
+        readWriteRouteManager.markScopeWritten(scope);
+        Long version = stringRedisTemplate.opsForValue().increment(String.format(VERSION_KEY, scope));
+        if (version != null) {
+            versionCache.put(scope, version);
+        } else {
+            versionCache.invalidate(scope);
+        }
+    }
+
+    /**
+     * 定期输出命中率
+     */
+    @Scheduled(initialDelay = 300_000L, fixedDelay = 300_000L)
+    public void logStats() {
+        long localHit = localHitCount.sumThenReset();
+        long redisHit = redisHitCount.sumThenReset();
+        long load = loadCount.sumThenReset();
+        long sharedLoad = sharedLoadCount.sumThenReset();
+        long total = localHit + redisHit + load + sharedLoad;
+        if (total == 0) {
+            return;
+        }
+        log.info("列表缓存统计: 请求 {}, 本地命中 {}, Redis 命中 {}, 查库 {}, 合并加载 {}, 命中率 {}%",
+                total, localHit, redisHit, load, sharedLoad,
+                String.format("%.2f", (localHit + redisHit) * 100.0 / total));
+    }
+
+    private long getVersion(String scope) {
+        return versionCache.get(scope, key -> {
+            String value = stringRedisTemplate.opsForValue().get(String.format(VERSION_KEY, key));
+            return value == null ? 0L : Long.parseLong(value);
+        });
+    }
+
+    private Object await(CompletableFuture<Object> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待列表加载被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
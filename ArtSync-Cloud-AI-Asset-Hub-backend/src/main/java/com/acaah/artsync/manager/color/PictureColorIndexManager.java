@@ -0,0 +1,125 @@
+package com.acaah.artsync.manager.color;
+
+import cn.hutool.core.util.StrUtil;
+import com.acaah.artsync.mapper.PictureMapper;
+import com.acaah.artsync.model.entity.Picture;
+import com.acaah.artsync.model.enums.ColorDistanceModeEnum;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 图片主色调索引管理
+ * 按空间懒加载索引，上传、更新、删除图片时增量维护已加载的索引；
+ * 索引定期过期重建，用于兜底其他实例上的修改
+ */
+@Slf4j
+@Component
+public class PictureColorIndexManager {
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    /**
+     * 空间 id => 主色调索引
+     */
+    private final Cache<Long, SpaceColorIndex> indexCache = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * 查询空间内与目标颜色最相近的图片
+     *
+     * @param spaceId      空间 id
+     * @param picColor     目标颜色（如 0xFF0000）
+     * @param k            返回数量
+     * @param distanceMode 距离计算方式
+     * @return 图片 id，按相似度从高到低排列
+     */
+    public long[] searchSimilar(Long spaceId, String picColor, int k, ColorDistanceModeEnum distanceMode) {
+        Integer targetRgb = parseColor(picColor);
+        if (targetRgb == null) {
+            return new long[0];
+        }
+        SpaceColorIndex spaceColorIndex = indexCache.get(spaceId, this::loadIndex);
+        return spaceColorIndex.topK(targetRgb, k, distanceMode);
+    }
+
+    /**
+     * 图片新增或更新后同步索引（仅维护已加载的空间）
+     *
+     * @param picture 图片
+     */
+    public void onPictureSaved(Picture picture) {
+        if (picture.getSpaceId() == null || picture.getId() == null) {
+            return;
+        }
+        SpaceColorIndex spaceColorIndex = indexCache.getIfPresent(picture.getSpaceId());
+        if (spaceColorIndex == null) {
+            return;
+        }
+        Integer rgb = parseColor(picture.getPicColor());
+        if (rgb == null) {
+            spaceColorIndex.remove(picture.getId());
+        } else {
+            spaceColorIndex.put(picture.getId(), rgb);
+        }
+    }
+
+    /**
+     * 图片删除后同步索引（仅维护已加载的空间）
+     *
+     * @param picture 图片
+     */
+    public void onPictureDeleted(Picture picture) {
+        if (picture.getSpaceId() == null) {
+            return;
+        }
+        SpaceColorIndex spaceColorIndex = indexCache.getIfPresent(picture.getSpaceId());
+        if (spaceColorIndex != null) {
+            spaceColorIndex.remove(picture.getId());
+        }
+    }
+
+    /**
+     * 从数据库加载空间的索引，只查询 id 和主色调
+     */
+    private SpaceColorIndex loadIndex(Long spaceId) {
+        List<Picture> pictureList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                .select(Picture::getId, Picture::getPicColor)
+                .eq(Picture::getSpaceId, spaceId)
+                .isNotNull(Picture::getPicColor));
+        SpaceColorIndex spaceColorIndex = new SpaceColorIndex(pictureList.size());
+        for (Picture picture : pictureList) {
+            Integer rgb = parseColor(picture.getPicColor());
+            if (rgb != null) {
+                spaceColorIndex.put(picture.getId(), rgb);
+            }
+        }
+        log.info("加载空间主色调索引, spaceId = {}, size = {}", spaceId, spaceColorIndex.size());
+        return spaceColorIndex;
+    }
+
+    /**
+     * 解析颜色字符串
+     *
+     * @return 0xRRGGBB，格式错误时返回 null
+     */
+    private Integer parseColor(String picColor) {
+        if (StrUtil.isBlank(picColor)) {
+            return null;
+        }
+        try {
+            return Integer.decode(picColor) & 0xFFFFFF;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.acaah.artsync.manager.color;
+
+import com.acaah.artsync.model.enums.ColorDistanceModeEnum;
+import com.acaah.artsync.utils.ColorSimilarUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单个空间的图片主色调索引
+ * 使用基本类型数组按列存储图片 id、RGB 和预先计算的 Lab 值，查询时无需解析颜色字符串，也不会为每张图片创建对象
+ */
+public class SpaceColorIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 图片 id => 数组下标
+     */
+    private final Map<Long, Integer> positionMap = new HashMap<>();
+
+    private long[] ids;
+
+    private int[] rgbs;
+
+    /**
+     * 每张图片占 3 个元素：L、a、b
+     */
+    private float[] labs;
+
+    private int size;
+
+    public SpaceColorIndex(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        this.ids = new long[capacity];
+        this.rgbs = new int[capacity];
+        this.labs = new float[capacity * 3];
+    }
+
+    /**
+     * 新增或更新图片的主色调
+     *
+     * @param pictureId 图片 id
+     * @param rgb       主色调 0xRRGGBB
+     */
+    public void put(long pictureId, int rgb) {
+        lock.writeLock().lock();
+        try {
+            Integer position = positionMap.get(pictureId);
+            if (position == null) {
+                if (size == ids.length) {
+                    grow();
+                }
+                position = size++;
+                positionMap.put(pictureId, position);
+            }
+            ids[position] = pictureId;
+            rgbs[position] = rgb;
+            ColorSimilarUtils.rgbToLab(rgb, labs, position * 3);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除图片，用最后一个元素填补空位
+     *
+     * @param pictureId 图片 id
+     */
+    public void remove(long pictureId) {
+        lock.writeLock().lock();
+        try {
+            Integer position = positionMap.remove(pictureId);
+            if (position == null) {
+                return;
+            }
+            int last = --size;
+            if (position != last) {
+                ids[position] = ids[last];
+                rgbs[position] = rgbs[last];
+                System.arraycopy(labs, last * 3, labs, position * 3, 3);
+                positionMap.put(ids[position], position);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询与目标颜色最相近的图片
+     * 使用大小为 k 的最大堆，只保留当前最相近的 k 个，无需对全部图片排序
+     *
+     * @param targetRgb    目标颜色 0xRRGGBB
+     * @param k            返回数量
+     * @param distanceMode 距离计算方式
+     * @return 图片 id，按相似度从高到低排列
+     */
+    public long[] topK(int targetRgb, int k, ColorDistanceModeEnum distanceMode) {
+        boolean perceptual = distanceMode == ColorDistanceModeEnum.CIEDE2000;
+        float[] targetLab = new float[3];
+        ColorSimilarUtils.rgbToLab(targetRgb, targetLab, 0);
+        int targetR = (targetRgb >> 16) & 0xFF;
+        int targetG = (targetRgb >> 8) & 0xFF;
+        int targetB = targetRgb & 0xFF;
+        lock.readLock().lock();
+        try {
+            int limit = Math.min(k, size);
+            // 堆顶为当前保留结果中距离最大的一个
+            double[] heapDistances = new double[limit];
+            long[] heapIds = new long[limit];
+            int heapSize = 0;
+            for (int i = 0; i < size; i++) {
+                double distance;
+                if (perceptual) {
+                    int offset = i * 3;
+                    distance = ColorSimilarUtils.ciede2000(targetLab[0], targetLab[1], targetLab[2],
+                            labs[offset], labs[offset + 1], labs[offset + 2]);
+                } else {
+                    // 欧氏距离的平方，与开方后的排序一致
+                    int rgb = rgbs[i];
+                    int dr = ((rgb >> 16) & 0xFF) - targetR;
+                    int dg = ((rgb >> 8) & 0xFF) - targetG;
+                    int db = (rgb & 0xFF) - targetB;
+                    distance = dr * dr + dg * dg + db * db;
+                }
+                if (heapSize < limit) {
+                    heapDistances[heapSize] = distance;
+                    heapIds[heapSize] = ids[i];
+                    siftUp(heapDistances, heapIds, heapSize++);
+                } else if (limit > 0 && distance < heapDistances[0]) {
+                    heapDistances[0] = distance;
+                    heapIds[0] = ids[i];
+                    siftDown(heapDistances, heapIds, 0, heapSize);
+                }
+            }
+            // 依次弹出堆顶，从后往前填充，得到从近到远的顺序
+            long[] result = new long[heapSize];
+            for (int end = heapSize - 1; end >= 0; end--) {
+                result[end] = heapIds[0];
+                heapDistances[0] = heapDistances[end];
+                heapIds[0] = heapIds[end];
+                siftDown(heapDistances, heapIds, 0, end);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        rgbs = Arrays.copyOf(rgbs, capacity);
+        labs = Arrays.copyOf(labs, capacity * 3);
+    }
+
+    private static void siftUp(double[] distances, long[] heapIds, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (distances[parent] >= distances[index]) {
+                break;
+            }
+            swap(distances, heapIds, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(double[] distances, long[] heapIds, int index, int heapSize) {
+        while (true) {
+            int left = index * 2 + 1;
+            if (left >= heapSize) {
+                break;
+            }
+            int largest = left;
+            int right = left + 1;
+            if (right < heapSize && distances[right] > distances[left]) {
+                largest = right;
+            }
+            if (distances[index] >= distances[largest]) {
+                break;
+            }
+            swap(distances, heapIds, index, largest);
+            index = largest;
+        }
+    }
+
+    private static void swap(double[] distances, long[] heapIds, int i, int j) {
+        double distance = distances[i];
+        distances[i] = distances[j];
+        distances[j] = distance;
+        long id = heapIds[i];
+        heapIds[i] = heapIds[j];
+        heapIds[j] = id;
+    }
+}
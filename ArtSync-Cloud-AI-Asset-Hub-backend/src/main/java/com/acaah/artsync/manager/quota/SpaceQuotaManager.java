@@ -0,0 +1,438 @@
+package com.acaah.artsync.manager.quota;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.IdUtil;
+import com.acaah.artsync.exception.BusinessException;
+import com.acaah.artsync.exception.ErrorCode;
+import com.acaah.artsync.manager.analyze.PictureAnalyzeExecutor;
+import com.acaah.artsync.manager.analyze.PictureSizeStat;
+import com.acaah.artsync.mapper.SpaceMapper;
+import com.acaah.artsync.model.entity.Picture;
+import com.acaah.artsync.model.entity.Space;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 空间额度管理
+ * 已用额度保存在 Redis 中，上传前原子地校验并预留额度，入库后提交为实际用量，不再在图片事务中更新 space 行；
+ * 用量变化先累加到 Redis，定时批量写回 space 表，并定期根据图片表重新统计，修正宕机等原因造成的偏差
+ */
+@Slf4j
+@Component
+public class SpaceQuotaManager {
+
+    /**
+     * 已用额度（包含尚未写回数据库的部分）：usedSize、usedCount
+     */
+    private static final String USAGE_KEY = "artsync:space:quota:usage:%s";
+
+    /**
+     * 进行中的预留：预留 id => 大小,数量,过期时间点
+     */
+    private static final String RESERVATION_KEY = "artsync:space:quota:reservation:%s";
+
+    /**
+     * 尚未写回数据库的用量变化：size、count
+     */
+    private static final String DELTA_KEY = "artsync:space:quota:delta:%s";
+
+    /**
+     * 有待写回用量变化的空间 id
+     */
+    private static final String DIRTY_KEY = "artsync:space:quota:dirty";
+
+    private static final String RECONCILE_LOCK_KEY = "artsync:space:quota:reconcile:lock";
+
+    /**
+     * 空间的用量正在写回数据库（已取出变化、还没有更新 space 行），写回和校准互斥
+     */
+    private static final String FLUSH_LOCK_KEY = "artsync:space:quota:flush:lock:%s";
+
+    /**
+     * 写回锁的过期时间（毫秒），覆盖一次 space 行更新的最长耗时
+     */
+    private static final long FLUSH_LOCK_MILLIS = 60 * 1000L;
+
+    /**
+     * 预留的有效期（毫秒），覆盖一次上传的最长耗时
+     */
+    private static final long RESERVATION_EXPIRE_MILLIS = 10 * 60 * 1000L;
+
+    /**
+     * 每次写回的空间数量
+     */
+    private static final int FLUSH_BATCH_SIZE = 200;
+
+    /**
+     * 校准时每批读取的空间数量
+     */
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    /**
+     * 锁的过期时间（分钟），每批校准后续期
+     */
+    private static final long LOCK_EXPIRE_MINUTES = 10;
+
+    /**
+     * 已用额度不存在时从数据库的值 + 未写回的变化初始化；清理过期预留后校验数量和大小
+     * 返回 0 表示预留成功，1 表示数量不足，2 表示大小不足
+     */
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+            "  local delta = redis.call('HMGET', KEYS[3], 'size', 'count')\n" +
+            "  redis.call('HSET', KEYS[1], 'usedSize', tonumber(ARGV[8]) + tonumber(delta[1] or 0),\n" +
+            "    'usedCount', tonumber(ARGV[9]) + tonumber(delta[2] or 0))\n" +
+            "end\n" +
+            "local reservedSize, reservedCount = 0, 0\n" +
+            "local entries = redis.call('HGETALL', KEYS[2])\n" +
+            "for i = 1, #entries, 2 do\n" +
+            "  local size, count, expireAt = string.match(entries[i + 1], '(-?%d+),(-?%d+),(%d+)')\n" +
+            "  if tonumber(expireAt) <= tonumber(ARGV[5]) then\n" +
+            "    redis.call('HDEL', KEYS[2], entries[i])\n" +
+            "  else\n" +
+            "    reservedSize = reservedSize + tonumber(size)\n" +
+            "    reservedCount = reservedCount + tonumber(count)\n" +
+            "  end\n" +
+            "end\n" +
+            "local usage = redis.call('HMGET', KEYS[1], 'usedSize', 'usedCount')\n" +
+            "local usedSize = tonumber(usage[1]) + reservedSize\n" +
+            "local usedCount = tonumber(usage[2]) + reservedCount\n" +
+            "if usedCount + tonumber(ARGV[3]) > tonumber(ARGV[7]) then return 1 end\n" +
+            "if usedSize >= tonumber(ARGV[6]) or usedSize + tonumber(ARGV[2]) > tonumber(ARGV[6]) then return 2 end\n" +
+            "redis.call('HSET', KEYS[2], ARGV[1], ARGV[2] .. ',' .. ARGV[3] .. ',' .. ARGV[4])\n" +
+            "redis.call('PEXPIREAT', KEYS[2], ARGV[4])\n" +
+            "return 0",
+            Long.class);
+
+    /**
+     * 登记释放额度的操作（如删除图片），不校验额度，只在完成前让校准跳过该空间
+     */
+    private static final RedisScript<Long> RESERVE_RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('HSET', KEYS[1], ARGV[1], '0,0,' .. ARGV[2])\n" +
+            "redis.call('PEXPIREAT', KEYS[1], ARGV[2])\n" +
+            "return 1",
+            Long.class);
+
+    /**
+     * 删除预留（可以为空），累加已用额度和待写回的变化，并标记空间待写回
+     */
+    private static final RedisScript<Long> COMMIT_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[1] ~= '' then redis.call('HDEL', KEYS[2], ARGV[1]) end\n" +
+            "if redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+            "  redis.call('HINCRBY', KEYS[1], 'usedSize', ARGV[2])\n" +
+            "  redis.call('HINCRBY', KEYS[1], 'usedCount', ARGV[3])\n" +
+            "end\n" +
+            "redis.call('HINCRBY', KEYS[3], 'size', ARGV[2])\n" +
+            "redis.call('HINCRBY', KEYS[3], 'count', ARGV[3])\n" +
+            "redis.call('SADD', KEYS[4], ARGV[4])\n" +
+            "return 1",
+            Long.class);
+
+    /**
+     * 取出并清空待写回的变化，有变化时加写回锁；空间正在写回或校准时不取出，返回空列表
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE_DELTA_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[2]) == 1 then return {} end\n" +
+            "local delta = redis.call('HMGET', KEYS[1], 'size', 'count')\n" +
+            "local size, count = delta[1] or '0', delta[2] or '0'\n" +
+            "redis.call('DEL', KEYS[1])\n" +
+            "if tonumber(size) ~= 0 or tonumber(count) ~= 0 then\n" +
+            "  redis.call('SET', KEYS[2], '1', 'PX', ARGV[1])\n" +
+            "end\n" +
+            "return {size, count}",
+            List.class);
+
+    /**
+     * 按重新统计的结果重置已用额度，并清空待写回的变化（统计结果已包含这些变化），成功后加写回锁；
+     * 以下情况不做修改，返回 0：
+     * 统计期间待写回的变化有改动（新的提交）；有未过期的预留（已写库、还没有提交的上传或删除）；空间正在写回
+     */
+    private static final RedisScript<Long> REBASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[4]) == 1 then return 0 end\n" +
+            "local entries = redis.call('HGETALL', KEYS[3])\n" +
+            "for i = 1, #entries, 2 do\n" +
+            "  local expireAt = string.match(entries[i + 1], ',(%d+)$')\n" +
+            "  if tonumber(expireAt) > tonumber(ARGV[5]) then return 0 end\n" +
+            "  redis.call('HDEL', KEYS[3], entries[i])\n" +
+            "end\n" +
+            "local delta = redis.call('HMGET', KEYS[2], 'size', 'count')\n" +
+            "if tonumber(delta[1] or 0) ~= tonumber(ARGV[3]) or tonumber(delta[2] or 0) ~= tonumber(ARGV[4]) then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "redis.call('DEL', KEYS[2])\n" +
+            "if redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+            "  redis.call('HSET', KEYS[1], 'usedSize', ARGV[1], 'usedCount', ARGV[2])\n" +
+            "end\n" +
+            "redis.call('SET', KEYS[4], '1', 'PX', ARGV[6])\n" +
+            "return 1",
+            Long.class);
+
+    @Resource
+    private SpaceMapper spaceMapper;
+
+    @Resource
+    private PictureAnalyzeExecutor pictureAnalyzeExecutor;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 校验并预留额度
+     *
+     * @param space      空间，使用其中的额度上限和数据库中的已用额度
+     * @param size       预计占用的大小（字节），未知时为 0
+     * @param count      占用的数量，更新已有图片时为 0
+     * @return 预留凭证
+     */
+    public SpaceQuotaReservation reserve(Space space, long size, long count) {
+        String reservationId = IdUtil.fastSimpleUUID();
+        long now = System.currentTimeMillis();
+        Long result = stringRedisTemplate.execute(RESERVE_SCRIPT,
+                Arrays.asList(this.usageKey(space.getId()), this.reservationKey(space.getId()), this.deltaKey(space.getId())),
+                reservationId, String.valueOf(size), String.valueOf(count),
+                String.valueOf(now + RESERVATION_EXPIRE_MILLIS), String.valueOf(now),
+                String.valueOf(space.getMaxSize()), String.valueOf(space.getMaxCount()),
+                String.valueOf(space.getTotalSize()), String.valueOf(space.getTotalCount()));
+        if (result != null && result == 1L) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间条数不足");
+        }
+        if (result != null && result == 2L) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间大小不足");
+        }
+        return new SpaceQuotaReservation(space.getId(), reservationId);
+    }
+
+    /**
+     * 将预留提交为实际用量，需在图片入库成功后调用
+     *
+     * @param reservation 预留凭证
+     * @param sizeDelta   实际大小变化（字节）
+     * @param countDelta  实际数量变化
+     */
+    public void commit(SpaceQuotaReservation reservation, long sizeDelta, long countDelta) {
+        this.applyDelta(reservation.getSpaceId(), reservation.getReservationId(), sizeDelta, countDelta);
+    }
+
+    /**
+     * 释放未提交的预留，已提交时无影响
+     *
+     * @param reservation 预留凭证，可以为空
+     */
+    public void release(SpaceQuotaReservation reservation) {
+        if (reservation == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForHash().delete(this.reservationKey(reservation.getSpaceId()),
+                    reservation.getReservationId());
+        } catch (Exception e) {
+            // 释放失败时预留到期自动失效
+            log.warn("释放空间额度预留失败, spaceId = {}", reservation.getSpaceId(), e);
+        }
+    }
+
+    /**
+     * 登记释放额度的操作（如删除图片），需在修改数据库前调用，完成后通过 commit 提交减少的用量；
+     * 不校验额度，登记期间定期校准会跳过该空间，避免统计结果与之后提交的变化重复计算
+     *
+     * @param spaceId 空间 id
+     * @return 预留凭证
+     */
+    public SpaceQuotaReservation reserveRelease(long spaceId) {
+        String reservationId = IdUtil.fastSimpleUUID();
+        stringRedisTemplate.execute(RESERVE_RELEASE_SCRIPT, Collections.singletonList(this.reservationKey(spaceId)),
+                reservationId, String.valueOf(System.currentTimeMillis() + RESERVATION_EXPIRE_MILLIS));
+        return new SpaceQuotaReservation(spaceId, reservationId);
+    }
+
+    private void applyDelta(long spaceId, String reservationId, long sizeDelta, long countDelta) {
+        try {
+            stringRedisTemplate.execute(COMMIT_SCRIPT,
+                    Arrays.asList(this.usageKey(spaceId), this.reservationKey(spaceId), this.deltaKey(spaceId), DIRTY_KEY),
+                    reservationId, String.valueOf(sizeDelta), String.valueOf(countDelta), String.valueOf(spaceId));
+        } catch (Exception e) {
+            // 图片已经入库，用量由定期校准修正
+            log.error("更新空间额度失败, spaceId = {}, sizeDelta = {}, countDelta = {}", spaceId, sizeDelta, countDelta, e);
+        }
+    }
+
+    /**
+     * 每 5 秒把累计的用量变化写回 space 表，每个空间只执行一次更新
+     */
+    @Scheduled(initialDelay = 5_000L, fixedDelay = 5_000L)
+    public void flush() {
+        try {
+            while (true) {
+                List<String> spaceIdList = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, FLUSH_BATCH_SIZE);
+                if (CollUtil.isEmpty(spaceIdList)) {
+                    return;
+                }
+                for (String spaceId : spaceIdList) {
+                    this.flushSpace(Long.parseLong(spaceId));
+                }
+                if (spaceIdList.size() < FLUSH_BATCH_SIZE) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("空间额度写回失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        this.flush();
+    }
+
+    private void flushSpace(long spaceId) {
+        List<?> delta = stringRedisTemplate.execute(TAKE_DELTA_SCRIPT,
+                Arrays.asList(this.deltaKey(spaceId), this.flushLockKey(spaceId)), String.valueOf(FLUSH_LOCK_MILLIS));
+        if (CollUtil.isEmpty(delta)) {
+            // 正在写回或校准，下次再写回
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(spaceId));
+            return;
+        }
+        long sizeDelta = Long.parseLong(String.valueOf(delta.get(0)));
+        long countDelta = Long.parseLong(String.valueOf(delta.get(1)));
+        if (sizeDelta == 0 && countDelta == 0) {
+            return;
+        }
+        try {
+            spaceMapper.update(null, new LambdaUpdateWrapper<Space>()
+                    .eq(Space::getId, spaceId)
+                    .setSql("totalSize = totalSize + " + sizeDelta)
+                    .setSql("totalCount = totalCount + " + countDelta));
+        } catch (Exception e) {
+            // 写回失败时把变化放回，下次重试
+            log.error("空间额度写回失败, spaceId = {}", spaceId, e);
+            stringRedisTemplate.opsForHash().increment(this.deltaKey(spaceId), "size", sizeDelta);
+            stringRedisTemplate.opsForHash().increment(this.deltaKey(spaceId), "count", countDelta);
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(spaceId));
+        } finally {
+            stringRedisTemplate.delete(this.flushLockKey(spaceId));
+        }
+    }
+
+    /**
+     * 每 6 小时根据图片表重新统计各空间的已用额度；多个实例同时只有一个执行
+     */
+    @Scheduled(initialDelay = 600_000L, fixedDelay = 6 * 3600_000L)
+    public void scheduledReconcile() {
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(RECONCILE_LOCK_KEY, "1", LOCK_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        long lastId = 0L;
+        int fixedCount = 0;
+        try {
+            while (true) {
+                List<Space> spaceList = spaceMapper.selectPage(new Page<>(1, RECONCILE_BATCH_SIZE, false),
+                                new LambdaQueryWrapper<Space>()
+                                        .select(Space::getId)
+                                        .gt(Space::getId, lastId)
+                                        .orderByAsc(Space::getId))
+                        .getRecords();
+                for (Space space : spaceList) {
+                    if (this.reconcileSpace(space.getId())) {
+                        fixedCount++;
+                    }
+                }
+                if (spaceList.size() < RECONCILE_BATCH_SIZE) {
+                    break;
+                }
+                lastId = spaceList.get(spaceList.size() - 1).getId();
+                stringRedisTemplate.expire(RECONCILE_LOCK_KEY, LOCK_EXPIRE_MINUTES, TimeUnit.MINUTES);
+            }
+            if (fixedCount > 0) {
+                log.info("空间额度校准完成, 修正空间数 = {}", fixedCount);
+            }
+        } catch (Exception e) {
+            log.error("空间额度校准失败, lastId = {}", lastId, e);
+        } finally {
+            stringRedisTemplate.delete(RECONCILE_LOCK_KEY);
+        }
+    }
+
+    /**
+     * 重新统计单个空间的已用额度
+     * 用量先入库再累加到待写回的变化，统计前已存在的变化一定包含在统计结果中：
+     * 统计期间变化没有改动、没有进行中的上传或删除（预留）、也没有正在写回时，原子地清空变化并把 Redis 中的值重置为统计结果，
+     * 再在写回锁内把数据库中的值直接设为统计结果；否则跳过该空间，等下次校准
+     *
+     * @return 数据库中的值是否被修正
+     */
+    private boolean reconcileSpace(long spaceId) {
+        List<Object> deltaBefore = stringRedisTemplate.opsForHash()
+                .multiGet(this.deltaKey(spaceId), Arrays.asList("size", "count"));
+        long sizeDelta = deltaBefore.get(0) == null ? 0L : Long.parseLong(String.valueOf(deltaBefore.get(0)));
+        long countDelta = deltaBefore.get(1) == null ? 0L : Long.parseLong(String.valueOf(deltaBefore.get(1)));
+        PictureSizeStat stat = pictureAnalyzeExecutor.sumPictureSize(new QueryWrapper<Picture>().eq("spaceId", spaceId));
+        long totalSize = stat.getTotalSize();
+        long totalCount = stat.getCount();
+        Long rebased = stringRedisTemplate.execute(REBASE_SCRIPT,
+                Arrays.asList(this.usageKey(spaceId), this.deltaKey(spaceId), this.reservationKey(spaceId),
+                        this.flushLockKey(spaceId)),
+                String.valueOf(totalSize), String.valueOf(totalCount),
+                String.valueOf(sizeDelta), String.valueOf(countDelta),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(FLUSH_LOCK_MILLIS));
+        if (rebased == null || rebased == 0L) {
+            log.debug("空间额度有进行中的变化, 跳过本次校准, spaceId = {}", spaceId);
+            return false;
+        }
+        int updated;
+        try {
+            updated = spaceMapper.update(null, new LambdaUpdateWrapper<Space>()
+                    .eq(Space::getId, spaceId)
+                    .and(wrapper -> wrapper.ne(Space::getTotalSize, totalSize).or().ne(Space::getTotalCount, totalCount))
+                    .set(Space::getTotalSize, totalSize)
+                    .set(Space::getTotalCount, totalCount));
+        } catch (Exception e) {
+            // 已清空的变化尚未写入数据库，放回后由写回任务重试
+            if (sizeDelta != 0 || countDelta != 0) {
+                stringRedisTemplate.opsForHash().increment(this.deltaKey(spaceId), "size", sizeDelta);
+                stringRedisTemplate.opsForHash().increment(this.deltaKey(spaceId), "count", countDelta);
+                stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(spaceId));
+            }
+            throw e;
+        } finally {
+            stringRedisTemplate.delete(this.flushLockKey(spaceId));
+        }
+        if (updated > 0) {
+            log.warn("空间额度存在偏差, 已修正, spaceId = {}, totalSize = {}, totalCount = {}", spaceId, totalSize, totalCount);
+        }
+        return updated > 0;
+    }
+
+    private String usageKey(long spaceId) {
+        return String.format(USAGE_KEY, spaceId);
+    }
+
+    private String reservationKey(long spaceId) {
+        return String.format(RESERVATION_KEY, spaceId);
+    }
+
+    private String deltaKey(long spaceId) {
+        return String.format(DELTA_KEY, spaceId);
+    }
+
+    private String flushLockKey(long spaceId) {
+        return String.format(FLUSH_LOCK_KEY, spaceId);
+    }
+}
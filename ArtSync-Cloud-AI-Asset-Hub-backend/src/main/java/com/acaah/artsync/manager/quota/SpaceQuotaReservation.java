@@ -0,0 +1,23 @@
+package com.acaah.artsync.manager.quota;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 空间额度预留凭证
+ * 上传前预留，入库后提交为实际用量；未提交的预留在结束时释放，实例宕机时到期自动失效
+ */
+@Data
+@AllArgsConstructor
+public class SpaceQuotaReservation {
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 预留 id
+     */
+    private String reservationId;
+}
@@ -0,0 +1,31 @@
+package com.acaah.artsync.manager.readwrite;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 写入标记拦截器
+ * 所有 INSERT / UPDATE / DELETE 都经过 Executor.update，在这里统一记录写入：
+ * 当前线程剩余的查询改为读主库，并标记当前登录用户刚写入过数据，之后一段时间内该用户的查询读主库
+ */
+@Component
+@Intercepts(@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}))
+public class ReadWriteMarkInterceptor implements Interceptor {
+
+    @Resource
+    private ReadWriteRouteManager readWriteRouteManager;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        ReadWriteRouteContext.markWritten();
+        readWriteRouteManager.markLoginUserWritten();
+        return invocation.proceed();
+    }
+}
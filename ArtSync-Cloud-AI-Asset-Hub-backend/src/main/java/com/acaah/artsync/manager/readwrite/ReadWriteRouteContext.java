@@ -0,0 +1,152 @@
+package com.acaah.artsync.manager.readwrite;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 读写分离路由上下文
+ * 负载均衡算法由 ShardingSphere 通过 SPI 创建，不是 Spring Bean，因此以静态字段保存：
+ * 当前线程是否允许读从库（默认不允许，只有标注了 @ReadReplica 的只读方法才会开启），以及延迟正常的从库（由 ReplicaLagMonitor 定期更新）
+ */
+public final class ReadWriteRouteContext {
+
+    /**
+     * 当前线程是否允许读从库，为空表示不允许
+     */
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    /**
+     * 延迟正常的从库，只读，整体替换
+     */
+    private static volatile Set<String> availableReplicas = Collections.emptySet();
+
+    /**
+     * 从库状态的有效期，延迟检测停止更新（如定时任务阻塞）后不再使用从库
+     */
+    private static volatile long availableUntil;
+
+    /**
+     * 是否配置了从库
+     */
+    private static volatile boolean enabled;
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private ReadWriteRouteContext() {
+    }
+
+    /**
+     * 在当前线程开启读从库
+     *
+     * @return 开启前的状态，需传给 restore 恢复
+     */
+    public static Boolean enterReplicaRead() {
+        Boolean previous = REPLICA_READ.get();
+        REPLICA_READ.set(Boolean.TRUE);
+        return previous;
+    }
+
+    /**
+     * 恢复当前线程读从库的状态
+     *
+     * @param previous enterReplicaRead 的返回值
+     */
+    public static void restore(Boolean previous) {
+        if (previous == null) {
+            REPLICA_READ.remove();
+        } else {
+            REPLICA_READ.set(previous);
+        }
+    }
+
+    /**
+     * 在主库上执行，用于读从库的方法中不能容忍延迟的查询（如加载后增量维护的快照）
+     *
+     * @param supplier 查询
+     * @return 查询结果
+     */
+    public static <T> T callOnPrimary(Supplier<T> supplier) {
+        Boolean previous = REPLICA_READ.get();
+        if (previous == null) {
+            return supplier.get();
+        }
+        REPLICA_READ.set(Boolean.FALSE);
+        try {
+            return supplier.get();
+        } finally {
+            REPLICA_READ.set(previous);
+        }
+    }
+
+    /**
+     * 当前线程写入了数据，本次调用剩余的查询改为读主库，保证读到自己的写入
+     */
+    public static void markWritten() {
+        if (REPLICA_READ.get() != null) {
+            REPLICA_READ.set(Boolean.FALSE);
+        }
+    }
+
+    /**
+     * 当前线程是否允许读从库
+     */
+    public static boolean isReplicaRead() {
+        return Boolean.TRUE.equals(REPLICA_READ.get());
+    }
+
+    /**
+     * 是否配置了从库
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ReadWriteRouteContext.enabled = enabled;
+    }
+
+    /**
+     * 是否有延迟正常的从库，没有配置读写分离时始终为 false
+     */
+    public static boolean hasAvailableReplica() {
+        return !availableReplicas.isEmpty() && System.currentTimeMillis() < availableUntil;
+    }
+
+    /**
+     * 替换延迟正常的从库
+     *
+     * @param replicas   从库数据源名称
+     * @param validUntil 有效期（时间戳，毫秒）
+     */
+    public static void updateAvailableReplicas(Collection<String> replicas, long validUntil) {
+        availableReplicas = Collections.unmodifiableSet(new HashSet<>(replicas));
+        availableUntil = validUntil;
+    }
+
+    /**
+     * 为当前线程的查询选择从库，在延迟正常的从库中轮询
+     *
+     * @param readDataSourceNames 配置的从库
+     * @return 从库名称，当前线程不允许读从库或没有可用从库时返回 null（应读主库）
+     */
+    public static String chooseReplica(List<String> readDataSourceNames) {
+        if (!isReplicaRead() || !hasAvailableReplica()) {
+            return null;
+        }
+        Set<String> replicas = availableReplicas;
+        int size = readDataSourceNames.size();
+        int start = Math.abs(COUNTER.getAndIncrement() % Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            String name = readDataSourceNames.get((start + i) % size);
+            if (replicas.contains(name)) {
+                return name;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,133 @@
+package com.acaah.artsync.manager.readwrite;
+
+import com.acaah.artsync.constant.UserConstant;
+import com.acaah.artsync.model.entity.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读写分离的读己之写（read-your-writes）管理
+ * 用户写入数据后，在 Redis 中记录一个短时间的标记（多个实例共享），标记有效期内该用户标注了 @ReadReplica 的查询仍读主库；
+ * 列表缓存的数据范围失效后同样记录标记，有效期内重新加载缓存时读主库，避免把从库上的旧数据写入新版本的缓存。
+ * 标记有效期应不小于从库允许的最大延迟加上延迟检测的间隔，过期后再读从库一定能读到这次写入
+ */
+@Slf4j
+@Component
+public class ReadWriteRouteManager {
+
+    private static final String USER_WRITTEN_KEY = "artsync:rw:written:user:%s";
+
+    private static final String SCOPE_WRITTEN_KEY = "artsync:rw:written:scope:%s";
+
+    /**
+     * 请求中已记录过写入标记的属性名
+     */
+    private static final String WRITTEN_ATTRIBUTE = ReadWriteRouteManager.class.getName() + ".WRITTEN";
+
+    /**
+     * 写入后读主库的时间（毫秒）
+     */
+    @Value("${picture.read-write.sticky-ms:5000}")
+    private long stickyMs;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    public long getStickyMs() {
+        return stickyMs;
+    }
+
+    /**
+     * 记录当前登录用户刚写入过数据，同一请求只记录一次；不在请求中或未登录时不记录
+     */
+    public void markLoginUserWritten() {
+        HttpServletRequest request = getCurrentRequest();
+        if (request == null || request.getAttribute(WRITTEN_ATTRIBUTE) != null) {
+            return;
+        }
+        Long loginUserId = getLoginUserId(request);
+        if (loginUserId != null) {
+            request.setAttribute(WRITTEN_ATTRIBUTE, Boolean.TRUE);
+            this.markWritten(String.format(USER_WRITTEN_KEY, loginUserId));
+        }
+    }
+
+    /**
+     * 当前登录用户是否刚写入过数据（应读主库），未登录（如浏览公共图库）时为 false
+     */
+    public boolean isLoginUserRecentlyWritten() {
+        Long loginUserId = getLoginUserId(getCurrentRequest());
+        return loginUserId != null && this.isRecentlyWritten(String.format(USER_WRITTEN_KEY, loginUserId));
+    }
+
+    /**
+     * 记录数据范围（如某个空间的图片列表）刚发生过修改
+     *
+     * @param scope 数据范围
+     */
+    public void markScopeWritten(String scope) {
+        this.markWritten(String.format(SCOPE_WRITTEN_KEY, scope));
+    }
+
+    /**
+     * 数据范围是否刚发生过修改（应读主库）
+     *
+     * @param scope 数据范围
+     */
+    public boolean isScopeRecentlyWritten(String scope) {
+        return this.isRecentlyWritten(String.format(SCOPE_WRITTEN_KEY, scope));
+    }
+
+    private void markWritten(String key) {
+        // 没有配置从库时全部读主库，不需要标记；从库暂时不可用时仍需标记，恢复后可能还没有同步到这次写入
+        if (!ReadWriteRouteContext.isEnabled()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForValue().set(key, "1", stickyMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("记录写入标记失败, key = {}", key, e);
+        }
+    }
+
+    /**
+     * Redis 不可用时按刚写入过处理，宁可读主库也不读到旧数据
+     */
+    private boolean isRecentlyWritten(String key) {
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.hasKey(key));
+        } catch (Exception e) {
+            log.warn("查询写入标记失败, key = {}", key, e);
+            return true;
+        }
+    }
+
+    private static HttpServletRequest getCurrentRequest() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return requestAttributes instanceof ServletRequestAttributes
+                ? ((ServletRequestAttributes) requestAttributes).getRequest()
+                : null;
+    }
+
+    /**
+     * 从会话中获取登录用户 id，不查询数据库
+     */
+    private static Long getLoginUserId(HttpServletRequest request) {
+        HttpSession session = request == null ? null : request.getSession(false);
+        if (session == null) {
+            return null;
+        }
+        Object userObj = session.getAttribute(UserConstant.USER_LOGIN_STATE);
+        return userObj instanceof User ? ((User) userObj).getId() : null;
+    }
+}
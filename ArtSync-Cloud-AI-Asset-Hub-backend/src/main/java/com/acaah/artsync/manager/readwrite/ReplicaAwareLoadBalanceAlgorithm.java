@@ -0,0 +1,39 @@
+package com.acaah.artsync.manager.readwrite;
+
+import org.apache.shardingsphere.readwritesplitting.spi.ReadQueryLoadBalanceAlgorithm;
+
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 读写分离的读库负载均衡算法（通过 SPI 注册，type 为 REPLICA_AWARE）
+ * ShardingSphere 默认把事务外的查询都发往从库，这里改为默认读主库：只有当前线程开启了读从库（@ReadReplica），
+ * 且存在复制延迟在阈值内的从库时才轮询从库，否则返回主库
+ */
+public class ReplicaAwareLoadBalanceAlgorithm implements ReadQueryLoadBalanceAlgorithm {
+
+    public static final String TYPE = "REPLICA_AWARE";
+
+    private Properties props = new Properties();
+
+    @Override
+    public String getDataSource(String name, String writeDataSourceName, List<String> readDataSourceNames) {
+        String replicaName = ReadWriteRouteContext.chooseReplica(readDataSourceNames);
+        return replicaName == null ? writeDataSourceName : replicaName;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public Properties getProps() {
+        return props;
+    }
+
+    @Override
+    public void init(Properties properties) {
+        this.props = properties;
+    }
+}
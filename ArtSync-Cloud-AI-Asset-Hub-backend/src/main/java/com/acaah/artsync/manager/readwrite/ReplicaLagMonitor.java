@@ -0,0 +1,131 @@
+package com.acaah.artsync.manager.readwrite;
+
+import com.acaah.artsync.manager.sharding.DynamicShardingManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 从库复制延迟检测
+ * 每次检测先在主库的心跳表 replica_heartbeat 中写入当前时间，再读取各从库中复制过来的时间，两者之差即为复制延迟
+ * （两个时间都由主库生成，不受服务器时钟偏差影响）。延迟超过阈值、查询失败或检测停止更新时，从库不再参与读取，查询回退到主库
+ */
+@Slf4j
+@Component
+public class ReplicaLagMonitor {
+
+    private static final String UPDATE_HEARTBEAT_SQL = "UPDATE replica_heartbeat SET beatTime = NOW(3) WHERE id = 1";
+
+    private static final String SELECT_HEARTBEAT_SQL = "SELECT beatTime FROM replica_heartbeat WHERE id = 1";
+
+    /**
+     * 检测结果的有效期为检测间隔的倍数，连续几次没有完成检测时不再使用从库
+     */
+    private static final int VALID_CHECK_TIMES = 3;
+
+    /**
+     * 检测查询的超时时间（秒）
+     */
+    private static final int QUERY_TIMEOUT_SECONDS = 1;
+
+    /**
+     * 从库允许的最大复制延迟（毫秒）
+     */
+    @Value("${picture.read-write.max-lag-ms:1000}")
+    private long maxLagMs;
+
+    @Value("${picture.read-write.check-interval-ms:1000}")
+    private long checkIntervalMs;
+
+    @Resource
+    private DynamicShardingManager dynamicShardingManager;
+
+    @Resource
+    private ReadWriteRouteManager readWriteRouteManager;
+
+    /**
+     * 配置的从库，为空表示没有配置读写分离
+     */
+    private List<String> replicaNames = Collections.emptyList();
+
+    /**
+     * 上次检测时可用的从库，用于只在状态变化时输出日志
+     */
+    private Set<String> lastAvailableReplicas = Collections.emptySet();
+
+    @PostConstruct
+    public void init() {
+        replicaNames = dynamicShardingManager.getReadDataSourceNames();
+        if (replicaNames.isEmpty()) {
+            log.info("未配置读写分离，全部查询读主库");
+            return;
+        }
+        long minStickyMs = maxLagMs + checkIntervalMs * VALID_CHECK_TIMES;
+        if (readWriteRouteManager.getStickyMs() < minStickyMs) {
+            log.warn("写入后读主库的时间 {}ms 小于从库最大延迟与检测有效期之和 {}ms，写入后可能读到从库上的旧数据",
+                    readWriteRouteManager.getStickyMs(), minStickyMs);
+        }
+        ReadWriteRouteContext.setEnabled(true);
+        log.info("读写分离已启用，主库: {}，从库: {}", dynamicShardingManager.getWriteDataSourceName(), replicaNames);
+    }
+
+    /**
+     * 定期检测各从库的复制延迟
+     */
+    @Scheduled(initialDelayString = "${picture.read-write.check-interval-ms:1000}",
+            fixedDelayString = "${picture.read-write.check-interval-ms:1000}")
+    public void checkReplicaLag() {
+        if (replicaNames.isEmpty()) {
+            return;
+        }
+        long checkTime = System.currentTimeMillis();
+        Set<String> availableReplicas = new LinkedHashSet<>();
+        try {
+            JdbcTemplate primary = this.createJdbcTemplate(dynamicShardingManager.getWriteDataSourceName());
+            primary.update(UPDATE_HEARTBEAT_SQL);
+            Timestamp primaryBeat = primary.queryForObject(SELECT_HEARTBEAT_SQL, Timestamp.class);
+            for (String replicaName : replicaNames) {
+                try {
+                    Timestamp replicaBeat = this.createJdbcTemplate(replicaName)
+                            .queryForObject(SELECT_HEARTBEAT_SQL, Timestamp.class);
+                    long lagMs = primaryBeat.getTime() - replicaBeat.getTime();
+                    if (lagMs <= maxLagMs) {
+                        availableReplicas.add(replicaName);
+                    } else if (lastAvailableReplicas.contains(replicaName)) {
+                        log.warn("从库 {} 复制延迟 {}ms 超过 {}ms，查询回退到主库", replicaName, lagMs, maxLagMs);
+                    }
+                } catch (Exception e) {
+                    if (lastAvailableReplicas.contains(replicaName)) {
+                        log.warn("检测从库 {} 复制延迟失败，查询回退到主库", replicaName, e);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("写入主库心跳失败，查询全部读主库", e);
+        }
+        ReadWriteRouteContext.updateAvailableReplicas(availableReplicas,
+                checkTime + checkIntervalMs * VALID_CHECK_TIMES);
+        for (String replicaName : availableReplicas) {
+            if (!lastAvailableReplicas.contains(replicaName)) {
+                log.info("从库 {} 复制延迟恢复正常，开始分担查询", replicaName);
+            }
+        }
+        lastAvailableReplicas = availableReplicas;
+    }
+
+    private JdbcTemplate createJdbcTemplate(String dataSourceName) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dynamicShardingManager.getPhysicalDataSource(dataSourceName));
+        jdbcTemplate.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+        return jdbcTemplate;
+    }
+}
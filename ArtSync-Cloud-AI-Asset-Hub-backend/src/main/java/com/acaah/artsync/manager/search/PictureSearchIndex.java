@@ -0,0 +1,362 @@
+package com.acaah.artsync.manager.search;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 图片名称、简介的倒排索引
+ * 每次写入文档都分配新的递增序号，旧序号标记删除；删除比例过高时整体压缩。
+ * 检索时对查询词的倒排表求交集，按 BM25 打分，并在索引内按空间和审核状态过滤
+ */
+public class PictureSearchIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x41535049;
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /**
+     * 名称比简介更能代表图片内容，名称中的词按多倍词频计入
+     */
+    private static final int NAME_WEIGHT = 2;
+
+    private static final double BM25_K1 = 1.2;
+
+    private static final double BM25_B = 0.75;
+
+    /**
+     * 公共图库的空间 id（数据库中为 null）
+     */
+    private static final long PUBLIC_SPACE_ID = 0L;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, PostingList> postingMap = new HashMap<>();
+
+    /**
+     * 图片 id => 当前有效的文档序号
+     */
+    private final Map<Long, Integer> ordinalMap = new HashMap<>();
+
+    private long[] pictureIds = new long[1024];
+
+    private long[] spaceIds = new long[1024];
+
+    private byte[] reviewStatuses = new byte[1024];
+
+    private int[] docLengths = new int[1024];
+
+    /**
+     * 文档内容的摘要，内容未变化时跳过重建
+     */
+    private int[] contentHashes = new int[1024];
+
+    private BitSet deleted = new BitSet();
+
+    private int ordinalCount;
+
+    private int liveCount;
+
+    private long totalDocLength;
+
+    /**
+     * 新增或更新图片
+     *
+     * @param pictureId    图片 id
+     * @param spaceId      空间 id，为空表示公共图库
+     * @param reviewStatus 审核状态
+     * @param name         图片名称
+     * @param introduction 图片简介
+     */
+    public void put(long pictureId, Long spaceId, Integer reviewStatus, String name, String introduction) {
+        long space = spaceId == null ? PUBLIC_SPACE_ID : spaceId;
+        byte status = reviewStatus == null ? 0 : reviewStatus.byteValue();
+        int contentHash = Objects.hash(space, status, name, introduction);
+        // 分词在锁外进行
+        Map<String, Integer> termFrequencyMap = new HashMap<>();
+        for (String token : PictureTextAnalyzer.analyzeForIndex(name)) {
+            termFrequencyMap.merge(token, NAME_WEIGHT, Integer::sum);
+        }
+        for (String token : PictureTextAnalyzer.analyzeForIndex(introduction)) {
+            termFrequencyMap.merge(token, 1, Integer::sum);
+        }
+        int docLength = termFrequencyMap.values().stream().mapToInt(Integer::intValue).sum();
+        lock.writeLock().lock();
+        try {
+            Integer oldOrdinal = ordinalMap.get(pictureId);
+            if (oldOrdinal != null && contentHashes[oldOrdinal] == contentHash) {
+                return;
+            }
+            removeInternal(pictureId);
+            int ordinal = ordinalCount++;
+            ensureCapacity(ordinalCount);
+            pictureIds[ordinal] = pictureId;
+            spaceIds[ordinal] = space;
+            reviewStatuses[ordinal] = status;
+            docLengths[ordinal] = docLength;
+            contentHashes[ordinal] = contentHash;
+            ordinalMap.put(pictureId, ordinal);
+            liveCount++;
+            totalDocLength += docLength;
+            termFrequencyMap.forEach((term, termFrequency) ->
+                    postingMap.computeIfAbsent(term, key -> new PostingList()).add(ordinal, termFrequency));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除图片
+     *
+     * @param pictureId 图片 id
+     */
+    public void remove(long pictureId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(pictureId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索图片
+     *
+     * @param queryText    查询文本
+     * @param spaceId      空间 id，为空时不限制
+     * @param nullSpaceId  是否只检索公共图库
+     * @param reviewStatus 审核状态，为空时不限制
+     * @param limit        最多返回数量
+     * @return 图片 id，按相关度从高到低排列
+     */
+    public long[] search(String queryText, Long spaceId, boolean nullSpaceId, Integer reviewStatus, int limit) {
+        Set<String> terms = new LinkedHashSet<>(PictureTextAnalyzer.analyzeForQuery(queryText));
+        if (terms.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+        Long spaceFilter = spaceId != null ? spaceId : (nullSpaceId ? Long.valueOf(PUBLIC_SPACE_ID) : null);
+        lock.readLock().lock();
+        try {
+            // 任一查询词不存在则没有文档包含全部查询词
+            List<PostingList> postingLists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                PostingList postingList = postingMap.get(term);
+                if (postingList == null || postingList.isEmpty()) {
+                    return new long[0];
+                }
+                postingLists.add(postingList);
+            }
+            // 从最短的倒排表开始求交集
+            postingLists.sort(Comparator.comparingInt(PostingList::docCount));
+            int termCount = postingLists.size();
+            PostingList.Cursor[] cursors = new PostingList.Cursor[termCount];
+            double[] idfs = new double[termCount];
+            for (int t = 0; t < termCount; t++) {
+                cursors[t] = postingLists.get(t).cursor();
+                int df = Math.min(postingLists.get(t).docCount(), liveCount);
+                idfs[t] = Math.log(1 + (liveCount - df + 0.5) / (df + 0.5));
+            }
+            double avgDocLength = liveCount == 0 ? 1 : Math.max(1.0, (double) totalDocLength / liveCount);
+            // 最小堆，堆顶为当前保留结果中得分最低的
+            PriorityQueue<double[]> heap = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+            PostingList.Cursor lead = cursors[0];
+            outer:
+            while (lead.next()) {
+                int ordinal = lead.ordinal();
+                for (int t = 1; t < termCount; t++) {
+                    if (!cursors[t].advance(ordinal)) {
+                        break outer;
+                    }
+                    if (cursors[t].ordinal() != ordinal) {
+                        // 其他倒排表跳过了该文档，让主倒排表追上
+                        if (!lead.advance(cursors[t].ordinal())) {
+                            break outer;
+                        }
+                        ordinal = lead.ordinal();
+                        t = 0;
+                    }
+                }
+                if (deleted.get(ordinal)
+                        || (spaceFilter != null && spaceIds[ordinal] != spaceFilter)
+                        || (reviewStatus != null && reviewStatuses[ordinal] != reviewStatus)) {
+                    continue;
+                }
+                double lengthNorm = BM25_K1 * (1 - BM25_B + BM25_B * docLengths[ordinal] / avgDocLength);
+                double score = 0;
+                for (int t = 0; t < termCount; t++) {
+                    int tf = cursors[t].termFrequency();
+                    score += idfs[t] * tf * (BM25_K1 + 1) / (tf + lengthNorm);
+                }
+                if (heap.size() < limit) {
+                    heap.offer(new double[]{score, ordinal});
+                } else if (score > heap.peek()[0]) {
+                    heap.poll();
+                    heap.offer(new double[]{score, ordinal});
+                }
+            }
+            long[] result = new long[heap.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = pictureIds[(int) heap.poll()[1]];
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 有效文档数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已删除的序号超过三分之一时需要压缩
+     */
+    public boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            return ordinalCount > 1024 && ordinalCount - liveCount > ordinalCount / 3;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 压缩索引：丢弃已删除的文档并重新分配连续序号
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            int[] ordinalMapping = new int[ordinalCount];
+            int newCount = 0;
+            for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+                if (deleted.get(ordinal)) {
+                    ordinalMapping[ordinal] = -1;
+                    continue;
+                }
+                ordinalMapping[ordinal] = newCount;
+                pictureIds[newCount] = pictureIds[ordinal];
+                spaceIds[newCount] = spaceIds[ordinal];
+                reviewStatuses[newCount] = reviewStatuses[ordinal];
+                docLengths[newCount] = docLengths[ordinal];
+                contentHashes[newCount] = contentHashes[ordinal];
+                ordinalMap.put(pictureIds[newCount], newCount);
+                newCount++;
+            }
+            Iterator<Map.Entry<String, PostingList>> iterator = postingMap.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, PostingList> entry = iterator.next();
+                PostingList remapped = entry.getValue().remap(ordinalMapping);
+                if (remapped.isEmpty()) {
+                    iterator.remove();
+                } else {
+                    entry.setValue(remapped);
+                }
+            }
+            ordinalCount = newCount;
+            deleted = new BitSet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写出快照，写出期间可以并发检索，但写入会等待
+     */
+    public void writeSnapshot(DataOutput out, long watermark) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(watermark);
+            out.writeInt(ordinalCount);
+            for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+                out.writeLong(pictureIds[ordinal]);
+                out.writeLong(spaceIds[ordinal]);
+                out.writeByte(reviewStatuses[ordinal]);
+                out.writeInt(docLengths[ordinal]);
+                out.writeInt(contentHashes[ordinal]);
+                out.writeBoolean(deleted.get(ordinal));
+            }
+            out.writeInt(postingMap.size());
+            for (Map.Entry<String, PostingList> entry : postingMap.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 从快照读取索引
+     *
+     * @return 快照中记录的数据同步位置
+     */
+    public long readSnapshot(DataInput in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+            throw new IOException("索引快照格式不匹配");
+        }
+        lock.writeLock().lock();
+        try {
+            long watermark = in.readLong();
+            int count = in.readInt();
+            ensureCapacity(count);
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                pictureIds[ordinal] = in.readLong();
+                spaceIds[ordinal] = in.readLong();
+                reviewStatuses[ordinal] = in.readByte();
+                docLengths[ordinal] = in.readInt();
+                contentHashes[ordinal] = in.readInt();
+                if (in.readBoolean()) {
+                    deleted.set(ordinal);
+                } else {
+                    ordinalMap.put(pictureIds[ordinal], ordinal);
+                    liveCount++;
+                    totalDocLength += docLengths[ordinal];
+                }
+            }
+            ordinalCount = count;
+            int termCount = in.readInt();
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                postingMap.put(term, PostingList.read(in));
+            }
+            return watermark;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeInternal(long pictureId) {
+        Integer ordinal = ordinalMap.remove(pictureId);
+        if (ordinal == null) {
+            return;
+        }
+        deleted.set(ordinal);
+        liveCount--;
+        totalDocLength -= docLengths[ordinal];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= pictureIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(pictureIds.length * 2, capacity);
+        pictureIds = Arrays.copyOf(pictureIds, newCapacity);
+        spaceIds = Arrays.copyOf(spaceIds, newCapacity);
+        reviewStatuses = Arrays.copyOf(reviewStatuses, newCapacity);
+        docLengths = Arrays.copyOf(docLengths, newCapacity);
+        contentHashes = Arrays.copyOf(contentHashes, newCapacity);
+    }
+}
@@ -0,0 +1,249 @@
+package com.acaah.artsync.manager.search;
+
+import cn.hutool.core.collection.CollUtil;
+import com.acaah.artsync.mapper.PictureMapper;
+import com.acaah.artsync.model.entity.Picture;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 图片全文索引管理
+ * 启动后优先从本地快照恢复索引，再按 updateTime 从数据库追平；
+ * 本实例的写操作直接同步索引，其他实例的修改由定时增量同步兜底（逻辑删除同样会更新 updateTime）
+ */
+@Slf4j
+@Component
+public class PictureSearchIndexManager {
+
+    /**
+     * 每批同步的图片数量
+     */
+    private static final int SYNC_BATCH_SIZE = 1000;
+
+    /**
+     * 增量同步的时间窗口向前重叠，兜底时钟误差和同步时尚未提交的事务
+     */
+    private static final long SYNC_OVERLAP_MILLIS = 5_000L;
+
+    /**
+     * 快照最短写出间隔
+     */
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 10 * 60 * 1000L;
+
+    @Value("${picture.search.snapshot-path:data/picture-search-index.bin}")
+    private String snapshotPath;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    /**
+     * 索引，尚未就绪时为 null
+     */
+    private volatile PictureSearchIndex index;
+
+    /**
+     * 已同步到的最大更新时间（毫秒）
+     */
+    private volatile long watermark;
+
+    /**
+     * 上次写出快照后索引是否有变化
+     */
+    private volatile boolean dirty;
+
+    private long lastSnapshotMillis;
+
+    /**
+     * 索引是否可用
+     */
+    public boolean isReady() {
+        return index != null;
+    }
+
+    /**
+     * 检索图片
+     *
+     * @param queryText    查询文本
+     * @param spaceId      空间 id，为空时不限制
+     * @param nullSpaceId  是否只检索公共图库
+     * @param reviewStatus 审核状态，为空时不限制
+     * @param limit        最多返回数量
+     * @return 图片 id，按相关度从高到低排列；索引未就绪时为空
+     */
+    public long[] search(String queryText, Long spaceId, boolean nullSpaceId, Integer reviewStatus, int limit) {
+        PictureSearchIndex current = index;
+        if (current == null) {
+            return new long[0];
+        }
+        return current.search(queryText, spaceId, nullSpaceId, reviewStatus, limit);
+    }
+
+    /**
+     * 图片新增后同步索引
+     *
+     * @param picture 图片（需包含 id、spaceId、name、introduction、reviewStatus）
+     */
+    public void onPictureSaved(Picture picture) {
+        PictureSearchIndex current = index;
+        if (current == null || picture.getId() == null) {
+            return;
+        }
+        current.put(picture.getId(), picture.getSpaceId(), picture.getReviewStatus(),
+                picture.getName(), picture.getIntroduction());
+        dirty = true;
+    }
+
+    /**
+     * 图片修改后从数据库重新读取并同步索引
+     *
+     * @param spaceId    图片所属空间 id，用于定位分表，未知时为空
+     * @param pictureIds 图片 id
+     */
+    public void onPicturesUpdated(Long spaceId, Collection<Long> pictureIds) {
+        if (index == null || CollUtil.isEmpty(pictureIds)) {
+            return;
+        }
+        try {
+            List<Picture> pictureList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                    .select(Picture::getId, Picture::getSpaceId, Picture::getName, Picture::getIntroduction,
+                            Picture::getReviewStatus)
+                    .eq(spaceId != null, Picture::getSpaceId, spaceId)
+                    .in(Picture::getId, pictureIds));
+            pictureList.forEach(this::onPictureSaved);
+        } catch (Exception e) {
+            // 索引同步失败不影响业务，由定时同步兜底
+            log.warn("同步图片全文索引失败, pictureIds = {}", pictureIds, e);
+        }
+    }
+
+    /**
+     * 图片删除后同步索引
+     *
+     * @param pictureId 图片 id
+     */
+    public void onPictureDeleted(Long pictureId) {
+        PictureSearchIndex current = index;
+        if (current == null || pictureId == null) {
+            return;
+        }
+        current.remove(pictureId);
+        dirty = true;
+    }
+
+    /**
+     * 首次执行时加载索引，之后增量同步其他实例的修改，并按需压缩和写出快照
+     */
+    @Scheduled(initialDelay = 5_000L, fixedDelay = 60_000L)
+    public void syncIndex() {
+        try {
+            if (index == null) {
+                this.initialize();
+            } else {
+                this.syncFromDatabase(index, new Date(watermark - SYNC_OVERLAP_MILLIS));
+            }
+            if (index.needsCompaction()) {
+                index.compact();
+            }
+            if (dirty && System.currentTimeMillis() - lastSnapshotMillis > SNAPSHOT_INTERVAL_MILLIS) {
+                this.writeSnapshot();
+            }
+        } catch (Exception e) {
+            log.error("同步图片全文索引失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (index != null && dirty) {
+            this.writeSnapshot();
+        }
+    }
+
+    private void initialize() {
+        long startMillis = System.currentTimeMillis();
+        PictureSearchIndex newIndex = new PictureSearchIndex();
+        Date updatedSince = null;
+        Path path = Paths.get(snapshotPath);
+        if (Files.isRegularFile(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                watermark = newIndex.readSnapshot(in);
+                updatedSince = new Date(watermark - SYNC_OVERLAP_MILLIS);
+                log.info("从快照加载图片全文索引, size = {}", newIndex.size());
+            } catch (IOException e) {
+                log.warn("图片全文索引快照不可用，重新构建", e);
+                newIndex = new PictureSearchIndex();
+                watermark = 0L;
+            }
+        }
+        // 没有快照时全量构建，否则只追平快照之后的修改
+        this.syncFromDatabase(newIndex, updatedSince);
+        index = newIndex;
+        dirty = updatedSince == null;
+        log.info("图片全文索引就绪, size = {}, 耗时 {} ms", newIndex.size(), System.currentTimeMillis() - startMillis);
+    }
+
+    private void syncFromDatabase(PictureSearchIndex targetIndex, Date updatedSince) {
+        long lastId = 0L;
+        long maxUpdateTime = watermark;
+        boolean changed = false;
+        while (true) {
+            List<Picture> pictureList = pictureMapper.listPictureForSearchIndex(updatedSince, lastId, SYNC_BATCH_SIZE);
+            for (Picture picture : pictureList) {
+                if (picture.getIsDelete() != null && picture.getIsDelete() != 0) {
+                    targetIndex.remove(picture.getId());
+                } else {
+                    targetIndex.put(picture.getId(), picture.getSpaceId(), picture.getReviewStatus(),
+                            picture.getName(), picture.getIntroduction());
+                }
+                if (picture.getUpdateTime() != null) {
+                    maxUpdateTime = Math.max(maxUpdateTime, picture.getUpdateTime().getTime());
+                }
+                changed = true;
+            }
+            if (pictureList.size() < SYNC_BATCH_SIZE) {
+                break;
+            }
+            lastId = pictureList.get(pictureList.size() - 1).getId();
+        }
+        watermark = maxUpdateTime;
+        if (changed) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换，避免写到一半的快照被加载
+     */
+    private synchronized void writeSnapshot() {
+        Path path = Paths.get(snapshotPath).toAbsolutePath();
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            long snapshotWatermark = watermark;
+            dirty = false;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                index.writeSnapshot(out, snapshotWatermark);
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastSnapshotMillis = System.currentTimeMillis();
+            log.info("写出图片全文索引快照, path = {}", path);
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("写出图片全文索引快照失败", e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.acaah.artsync.manager.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图片文本分词
+ * 字母数字按连续片段切分为词（统一小写）；中日韩文字没有空格分隔，按 n-gram 切分：
+ * 建索引时输出单字和相邻两字，查询时只用两字（单字查询除外），使查询结果接近子串匹配
+ */
+public final class PictureTextAnalyzer {
+
+    /**
+     * 单个词的最大长度，超长部分截断
+     */
+    private static final int MAX_TOKEN_LENGTH = 32;
+
+    private PictureTextAnalyzer() {
+    }
+
+    /**
+     * 建索引时分词
+     *
+     * @param text 文本
+     * @return 词（可重复，用于统计词频）
+     */
+    public static List<String> analyzeForIndex(String text) {
+        return analyze(text, false);
+    }
+
+    /**
+     * 查询时分词
+     *
+     * @param text 查询文本
+     * @return 词（可重复）
+     */
+    public static List<String> analyzeForQuery(String text) {
+        return analyze(text, true);
+    }
+
+    private static List<String> analyze(String text, boolean forQuery) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                // 连续的中日韩文字
+                List<String> chars = new ArrayList<>();
+                while (i < length && isCjk(codePoint = text.codePointAt(i))) {
+                    chars.add(new String(Character.toChars(codePoint)));
+                    i += Character.charCount(codePoint);
+                }
+                if (!forQuery || chars.size() == 1) {
+                    tokens.addAll(chars);
+                }
+                for (int j = 0; j + 1 < chars.size(); j++) {
+                    tokens.add(chars.get(j) + chars.get(j + 1));
+                }
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                // 连续的字母数字
+                StringBuilder word = new StringBuilder();
+                while (i < length && !isCjk(codePoint = text.codePointAt(i)) && Character.isLetterOrDigit(codePoint)) {
+                    if (word.length() < MAX_TOKEN_LENGTH) {
+                        word.appendCodePoint(Character.toLowerCase(codePoint));
+                    }
+                    i += Character.charCount(codePoint);
+                }
+                tokens.add(word.toString());
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,177 @@
+package com.acaah.artsync.manager.search;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 倒排表
+ * 文档序号只增不减，按 (序号差值, 词频) 以变长整数编码追加到字节数组中，
+ * 相比存储 long 类型的图片 id 通常只需 2 ~ 3 个字节一条
+ */
+final class PostingList {
+
+    private byte[] data;
+
+    private int length;
+
+    private int docCount;
+
+    private int lastOrdinal = -1;
+
+    PostingList() {
+        this.data = new byte[8];
+    }
+
+    private PostingList(byte[] data, int docCount, int lastOrdinal) {
+        this.data = data;
+        this.length = data.length;
+        this.docCount = docCount;
+        this.lastOrdinal = lastOrdinal;
+    }
+
+    /**
+     * 追加文档，序号必须大于已有的所有序号
+     */
+    void add(int ordinal, int termFrequency) {
+        if (ordinal <= lastOrdinal) {
+            throw new IllegalArgumentException("倒排表只能按序号递增追加");
+        }
+        ensureCapacity(10);
+        writeVarInt(ordinal - lastOrdinal);
+        writeVarInt(termFrequency);
+        lastOrdinal = ordinal;
+        docCount++;
+    }
+
+    /**
+     * 包含的文档数（含已删除的文档）
+     */
+    int docCount() {
+        return docCount;
+    }
+
+    boolean isEmpty() {
+        return docCount == 0;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * 按新的序号重写倒排表，丢弃映射为 -1 的文档
+     *
+     * @param ordinalMapping 旧序号 => 新序号
+     * @return 新的倒排表
+     */
+    PostingList remap(int[] ordinalMapping) {
+        PostingList remapped = new PostingList();
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            int newOrdinal = ordinalMapping[cursor.ordinal];
+            if (newOrdinal >= 0) {
+                remapped.add(newOrdinal, cursor.termFrequency);
+            }
+        }
+        remapped.trim();
+        return remapped;
+    }
+
+    void trim() {
+        if (data.length != length) {
+            data = Arrays.copyOf(data, length);
+        }
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(docCount);
+        out.writeInt(lastOrdinal);
+        out.writeInt(length);
+        out.write(data, 0, length);
+    }
+
+    static PostingList read(DataInput in) throws IOException {
+        int docCount = in.readInt();
+        int lastOrdinal = in.readInt();
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new PostingList(data, docCount, lastOrdinal);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+        }
+    }
+
+    private void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    /**
+     * 顺序读取倒排表
+     */
+    final class Cursor {
+
+        private int position;
+
+        private int ordinal = -1;
+
+        private int termFrequency;
+
+        /**
+         * 移动到下一个文档
+         *
+         * @return 没有更多文档时返回 false
+         */
+        boolean next() {
+            if (position >= length) {
+                ordinal = Integer.MAX_VALUE;
+                return false;
+            }
+            ordinal += readVarInt();
+            termFrequency = readVarInt();
+            return true;
+        }
+
+        /**
+         * 移动到第一个序号不小于 target 的文档
+         *
+         * @return 没有这样的文档时返回 false
+         */
+        boolean advance(int target) {
+            while (ordinal < target) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int ordinal() {
+            return ordinal;
+        }
+
+        int termFrequency() {
+            return termFrequency;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
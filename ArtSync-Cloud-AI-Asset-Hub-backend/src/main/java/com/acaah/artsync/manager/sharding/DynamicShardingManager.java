@@ -1,25 +1,39 @@
 package com.acaah.artsync.manager.sharding;
 
 import com.baomidou.mybatisplus.extension.toolkit.SqlRunner;
+import com.acaah.artsync.manager.readwrite.ReadWriteRouteContext;
 import com.acaah.artsync.model.entity.Space;
 import com.acaah.artsync.model.enums.SpaceLevelEnum;
 import com.acaah.artsync.model.enums.SpaceTypeEnum;
-import com.acaah.artsync.service.SpaceService;
+import com.acaah.artsync.service.SpaceShardService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.shardingsphere.driver.jdbc.core.connection.ShardingSphereConnection;
 import org.apache.shardingsphere.infra.metadata.database.rule.ShardingSphereRuleMetaData;
 import org.apache.shardingsphere.mode.manager.ContextManager;
+import org.apache.shardingsphere.readwritesplitting.api.ReadwriteSplittingRuleConfiguration;
+import org.apache.shardingsphere.readwritesplitting.api.rule.ReadwriteSplittingDataSourceRuleConfiguration;
+import org.apache.shardingsphere.readwritesplitting.api.strategy.StaticReadwriteSplittingStrategyConfiguration;
 import org.apache.shardingsphere.sharding.api.config.ShardingRuleConfiguration;
 import org.apache.shardingsphere.sharding.api.config.rule.ShardingTableRuleConfiguration;
 import org.apache.shardingsphere.sharding.rule.ShardingRule;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -32,43 +46,163 @@ public class DynamicShardingManager {
     private DataSource dataSource;
 
     @Resource
-    private SpaceService spaceService;
+    private SpaceShardService spaceShardService;
 
-    private static final String LOGIC_TABLE_NAME = "picture";
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private static final String LOGIC_TABLE_NAME = PictureShardingRouter.LOGIC_TABLE_NAME;
 
     private static final String DATABASE_NAME = "logic_db"; // 配置文件中的数据库名称
 
+    private static final String DATA_SOURCE_NAME = "picture"; // 配置文件中的实际数据源名称（配置了读写分离时为读写分离的逻辑数据源）
+
+    /**
+     * 新建分表的广播频道，消息内容为空间 id
+     */
+    private static final String TABLE_CREATED_CHANNEL = "artsync:sharding:picture:table-created";
+
+    /**
+     * 分表变更的版本号，每次有空间切换到分表时加 1；写入前比较版本号，发现本节点落后时立即校准
+     */
+    public static final String SHARDING_VERSION_KEY = "artsync:sharding:picture:version";
+
+    /**
+     * 启动和定期校准时分页扫描空间的每页数量
+     */
+    private static final int SCAN_PAGE_SIZE = 1000;
+
+    /**
+     * 是否已成功更新过分片规则，之前即使没有分表也需要更新一次
+     */
+    private volatile boolean ruleInitialized;
+
+    /**
+     * 本节点已校准到的版本号
+     */
+    private volatile long appliedVersion = -1;
+
     @PostConstruct
     public void initialize() {
         log.info("初始化动态分表配置...");
-        updateShardingTableNodes();
+        // 先订阅再扫描，扫描期间其他节点新建的分表也不会遗漏
+        redisMessageListenerContainer.addMessageListener(this::onTableCreated, new ChannelTopic(TABLE_CREATED_CHANNEL));
+        reconcile();
     }
 
     /**
-     * 获取所有动态表名，包括初始表 picture 和分表 picture_{spaceId}
+     * 定期校准，兜底 Redis 断线期间丢失的广播
      */
-    private Set<String> fetchAllPictureTableNames() {
-        // 为了测试方便，直接对所有团队空间分表（实际上线改为仅对旗舰版生效）
-        Set<Long> spaceIds = spaceService.lambdaQuery()
-                .eq(Space::getSpaceType, SpaceTypeEnum.TEAM.getValue())
-                .list()
-                .stream()
-                .map(Space::getId)
-                .collect(Collectors.toSet());
-        Set<String> tableNames = spaceIds.stream()
-                .map(spaceId -> LOGIC_TABLE_NAME + "_" + spaceId)
-                .collect(Collectors.toSet());
-        tableNames.add(LOGIC_TABLE_NAME); // 添加初始逻辑表
-        return tableNames;
+    @Scheduled(initialDelay = 5 * 60 * 1000, fixedDelay = 5 * 60 * 1000)
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("校准动态分表配置失败", e);
+        }
+    }
+
+    /**
+     * 本节点的分表配置落后于集群时立即校准（写入图片前调用）
+     *
+     * @param remoteVersion Redis 中的版本号，为空表示还没有变更
+     */
+    public void syncIfStale(Long remoteVersion) {
+        if (remoteVersion == null || remoteVersion <= appliedVersion) {
+            return;
+        }
+        synchronized (this) {
+            if (remoteVersion > appliedVersion) {
+                reconcile();
+            }
+        }
+    }
+
+    /**
+     * 空间的图片已切换到分表（新建分表或迁移完成）：更新本节点规则并通知其他节点
+     *
+     * @param spaceId 空间 id
+     */
+    public void onSpaceRouted(long spaceId) {
+        addShardedSpaceIds(Collections.singleton(spaceId));
+        publishTableCreated(spaceId);
+    }
+
+    /**
+     * 以数据库为准校准分表配置，先读取版本号再扫描，扫描期间的变更会在下次比较版本号时发现
+     */
+    private void reconcile() {
+        long version = this.readRemoteVersion();
+        addShardedSpaceIds(fetchShardedSpaceIds());
+        appliedVersion = Math.max(appliedVersion, version);
+    }
+
+    private long readRemoteVersion() {
+        String version = stringRedisTemplate.opsForValue().get(SHARDING_VERSION_KEY);
+        return version == null ? 0L : Long.parseLong(version);
+    }
+
+    /**
+     * 获取已切换到分表的空间 id（space_shard 中清理中或已完成的空间）
+     * 按空间 id 分页扫描，每次只查询一页 id，避免一次加载全部空间
+     */
+    private Set<Long> fetchShardedSpaceIds() {
+        Set<Long> spaceIds = new HashSet<>();
+        long lastId = 0;
+        while (true) {
+            List<Long> spaceIdList = spaceShardService.listRoutedSpaceIds(lastId, SCAN_PAGE_SIZE);
+            spaceIds.addAll(spaceIdList);
+            if (spaceIdList.size() < SCAN_PAGE_SIZE) {
+                return spaceIds;
+            }
+            lastId = spaceIdList.get(spaceIdList.size() - 1);
+        }
+    }
+
+    /**
+     * 收到其他节点（或本节点）新建分表的广播
+     */
+    private void onTableCreated(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            addShardedSpaceIds(Collections.singleton(Long.valueOf(body)));
+        } catch (Exception e) {
+            log.error("处理新建分表广播失败, message = {}", body, e);
+        }
     }
 
     /**
-     * 更新 ShardingSphere 的 actual-data-nodes 动态表名配置
+     * 增量加入已创建分表的空间，已全部存在时不修改规则
+     * 串行执行，多个节点或多次广播并发到达时不会互相覆盖
+     *
+     * @param spaceIds 空间 id
      */
-    private void updateShardingTableNodes() {
-        Set<String> tableNames = fetchAllPictureTableNames();
+    private synchronized void addShardedSpaceIds(Collection<Long> spaceIds) {
+        Set<Long> currentSpaceIds = PictureShardingRouter.getShardedSpaceIds();
+        if (ruleInitialized && currentSpaceIds.containsAll(spaceIds)) {
+            return;
+        }
+        Set<Long> mergedSpaceIds = new HashSet<>(currentSpaceIds);
+        mergedSpaceIds.addAll(spaceIds);
+        updateShardingTableNodes(mergedSpaceIds);
+    }
+
+    /**
+     * 更新 ShardingSphere 的 actual-data-nodes 动态表名配置，包括初始表 picture 和分表 picture_{spaceId}
+     * 表名从内存中的空间 id 生成，不查询数据库
+     *
+     * @param spaceIds 全部已创建分表的空间 id
+     */
+    private void updateShardingTableNodes(Set<Long> spaceIds) {
+        Set<String> tableNames = spaceIds.stream()
+                .map(PictureShardingRouter::getTableName)
+                .collect(Collectors.toSet());
+        tableNames.add(LOGIC_TABLE_NAME); // 添加初始逻辑表
         String newActualDataNodes = tableNames.stream()
-                .map(tableName -> "picture." + tableName) // 确保前缀合法
+                .map(tableName -> DATA_SOURCE_NAME + "." + tableName) // 确保前缀合法
                 .collect(Collectors.joining(","));
         log.info("动态分表 actual-data-nodes 配置: {}", newActualDataNodes);
 
@@ -97,8 +231,11 @@ public class DynamicShardingManager {
                     })
                     .collect(Collectors.toList());
             ruleConfig.setTables(updatedRules);
+            // alterRuleConfiguration 会用新规则重建该库的规则和元数据，不再 reloadDatabase 重新加载全部表的元数据
             contextManager.alterRuleConfiguration(DATABASE_NAME, Collections.singleton(ruleConfig));
-            contextManager.reloadDatabase(DATABASE_NAME);
+            // 规则中已有这些分表后，分片算法才能路由过去
+            PictureShardingRouter.updateShardedSpaceIds(spaceIds);
+            ruleInitialized = true;
             log.info("动态分表规则更新成功！");
         } else {
             log.error("未找到 ShardingSphere 的分片规则配置，动态分表更新失败。");
@@ -117,21 +254,107 @@ public class DynamicShardingManager {
         if (space.getSpaceType() == SpaceTypeEnum.TEAM.getValue() && space.getSpaceLevel() == SpaceLevelEnum.FLAGSHIP.getValue()) {
             // 获取空间ID并生成对应的表名
             Long spaceId = space.getId();
-            String tableName = "picture_" + spaceId;
+            String tableName = PictureShardingRouter.getTableName(spaceId);
             // 创建新表，使用picture表作为模板
             String createTableSql = "CREATE TABLE " + tableName + " LIKE picture";
             try {
                 // 执行创建表SQL
                 SqlRunner.db().update(createTableSql);
-                // 更新分表节点信息
-                updateShardingTableNodes();
+                // 登记分表，更新本节点的分表节点信息，再通知其他节点
+                spaceShardService.markTableCreated(spaceId);
+                onSpaceRouted(spaceId);
             } catch (Exception e) {
                 // 记录创建分表失败的错误日志
-                log.error("创建图片空间分表失败，空间 id = {}", space.getId());
+                log.error("创建图片空间分表失败，空间 id = {}", space.getId(), e);
             }
         }
     }
 
+    /**
+     * 增加版本号并广播新建的分表，失败时由定期校准兜底
+     */
+    private void publishTableCreated(Long spaceId) {
+        try {
+            stringRedisTemplate.opsForValue().increment(SHARDING_VERSION_KEY);
+            stringRedisTemplate.convertAndSend(TABLE_CREATED_CHANNEL, String.valueOf(spaceId));
+        } catch (Exception e) {
+            log.warn("广播新建分表失败，等待定期校准, spaceId = {}", spaceId, e);
+        }
+    }
+
+    /**
+     * 获取分表所在的实际数据源（配置了读写分离时为主库），用于直接读写指定的实际表（不经过 ShardingSphere 路由）
+     */
+    public DataSource getActualDataSource() {
+        return getPhysicalDataSource(getWriteDataSourceName());
+    }
+
+    /**
+     * 获取直接查询实际表时使用的数据源：当前线程允许读从库（@ReadReplica）且有延迟正常的从库时为从库，否则为主库
+     */
+    public DataSource getReadDataSource() {
+        String replicaName = ReadWriteRouteContext.chooseReplica(getReadDataSourceNames());
+        return replicaName == null ? getActualDataSource() : getPhysicalDataSource(replicaName);
+    }
+
+    /**
+     * 主库的数据源名称，没有配置读写分离时为实际数据源本身
+     */
+    public String getWriteDataSourceName() {
+        return findReadwriteSplittingStrategy()
+                .map(StaticReadwriteSplittingStrategyConfiguration::getWriteDataSourceName)
+                .orElse(DATA_SOURCE_NAME);
+    }
+
+    /**
+     * 从库的数据源名称，没有配置读写分离时为空
+     */
+    public List<String> getReadDataSourceNames() {
+        return findReadwriteSplittingStrategy()
+                .map(StaticReadwriteSplittingStrategyConfiguration::getReadDataSourceNames)
+                .orElse(Collections.emptyList());
+    }
+
+    /**
+     * 按名称获取 ShardingSphere 管理的物理数据源
+     *
+     * @param dataSourceName 数据源名称（主库或从库）
+     */
+    public DataSource getPhysicalDataSource(String dataSourceName) {
+        Map<String, DataSource> dataSourceMap = getContextManager().getMetaDataContexts()
+                .getMetaData()
+                .getDatabases()
+                .get(DATABASE_NAME)
+                .getResource()
+                .getDataSources();
+        DataSource actualDataSource = dataSourceMap.get(dataSourceName);
+        if (actualDataSource == null && dataSourceMap.size() == 1) {
+            actualDataSource = dataSourceMap.values().iterator().next();
+        }
+        if (actualDataSource == null) {
+            throw new IllegalStateException("未找到 ShardingSphere 的实际数据源: " + dataSourceName);
+        }
+        return actualDataSource;
+    }
+
+    /**
+     * 实际数据源 picture 配置的读写分离（静态）策略，读写分离的逻辑数据源需与分片规则中的数据源同名
+     */
+    private Optional<StaticReadwriteSplittingStrategyConfiguration> findReadwriteSplittingStrategy() {
+        Collection<ReadwriteSplittingRuleConfiguration> ruleConfigs = getContextManager().getMetaDataContexts()
+                .getMetaData()
+                .getDatabases()
+                .get(DATABASE_NAME)
+                .getRuleMetaData()
+                .findRuleConfigurations(ReadwriteSplittingRuleConfiguration.class);
+        return ruleConfigs.stream()
+                .flatMap(ruleConfig -> ruleConfig.getDataSources().stream())
+                .filter(dataSourceConfig -> DATA_SOURCE_NAME.equals(dataSourceConfig.getName()))
+                .map(ReadwriteSplittingDataSourceRuleConfiguration::getStaticStrategy)
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
     /**
      * 获取 ShardingSphere ContextManager
      */
@@ -0,0 +1,68 @@
+package com.acaah.artsync.manager.sharding;
+
+import com.google.common.collect.Range;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingAlgorithm;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingValue;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 图片分表算法（complex 策略）
+ * 一次拿到 spaceId 的全部条件：IN 条件只路由到涉及的表，范围条件路由到范围内的分表和逻辑表，
+ * 没有 spaceId 条件时（如管理员查询全部图片）显式广播到全部表，由 ShardingSphere 归并结果
+ * <p>
+ * 配置示例：
+ * <pre>
+ * tables.picture.table-strategy.complex.sharding-columns: spaceId
+ * tables.picture.table-strategy.complex.sharding-algorithm-name: picture_sharding_algorithm
+ * sharding-algorithms.picture_sharding_algorithm.type: CLASS_BASED
+ * sharding-algorithms.picture_sharding_algorithm.props.strategy: complex
+ * sharding-algorithms.picture_sharding_algorithm.props.algorithmClassName: com.acaah.artsync.manager.sharding.PictureComplexShardingAlgorithm
+ * </pre>
+ */
+public class PictureComplexShardingAlgorithm implements ComplexKeysShardingAlgorithm<Long> {
+
+    private static final String SHARDING_COLUMN = "spaceId";
+
+    private Properties props = new Properties();
+
+    @Override
+    public Collection<String> doSharding(Collection<String> availableTargetNames, ComplexKeysShardingValue<Long> shardingValue) {
+        Collection<Long> spaceIds = findByColumn(shardingValue.getColumnNameAndShardingValuesMap());
+        if (spaceIds != null && !spaceIds.isEmpty()) {
+            return PictureShardingRouter.routeAll(spaceIds);
+        }
+        Range<Long> range = findByColumn(shardingValue.getColumnNameAndRangeValuesMap());
+        if (range != null) {
+            return PictureShardingRouter.routeRange(range);
+        }
+        return PictureShardingRouter.routeAllTables();
+    }
+
+    /**
+     * 列名大小写取决于 SQL 写法，忽略大小写查找
+     */
+    private static <V> V findByColumn(Map<String, V> columnMap) {
+        if (columnMap == null) {
+            return null;
+        }
+        for (Map.Entry<String, V> entry : columnMap.entrySet()) {
+            if (SHARDING_COLUMN.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Properties getProps() {
+        return props;
+    }
+
+    @Override
+    public void init(Properties properties) {
+        this.props = properties;
+    }
+}
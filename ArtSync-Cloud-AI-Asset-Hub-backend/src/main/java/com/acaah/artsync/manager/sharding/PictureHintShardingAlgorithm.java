@@ -0,0 +1,36 @@
+package com.acaah.artsync.manager.sharding;
+
+import org.apache.shardingsphere.sharding.api.sharding.hint.HintShardingAlgorithm;
+import org.apache.shardingsphere.sharding.api.sharding.hint.HintShardingValue;
+
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * 图片分表算法（hint 策略）
+ * 由调用方通过 HintManager.addTableShardingValue("picture", spaceId) 指定空间，SQL 中无需带 spaceId 条件；
+ * 未指定任何空间时显式广播到全部表
+ */
+public class PictureHintShardingAlgorithm implements HintShardingAlgorithm<Long> {
+
+    private Properties props = new Properties();
+
+    @Override
+    public Collection<String> doSharding(Collection<String> availableTargetNames, HintShardingValue<Long> shardingValue) {
+        Collection<Long> spaceIds = shardingValue.getValues();
+        if (spaceIds == null || spaceIds.isEmpty()) {
+            return PictureShardingRouter.routeAllTables();
+        }
+        return PictureShardingRouter.routeAll(spaceIds);
+    }
+
+    @Override
+    public Properties getProps() {
+        return props;
+    }
+
+    @Override
+    public void init(Properties properties) {
+        this.props = properties;
+    }
+}
@@ -0,0 +1,463 @@
+package com.acaah.artsync.manager.sharding;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.acaah.artsync.exception.ErrorCode;
+import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.mapper.SpaceMapper;
+import com.acaah.artsync.model.entity.Space;
+import com.acaah.artsync.model.entity.SpaceShard;
+import com.acaah.artsync.model.enums.SpaceLevelEnum;
+import com.acaah.artsync.model.enums.SpaceShardStatusEnum;
+import com.acaah.artsync.model.enums.SpaceTypeEnum;
+import com.acaah.artsync.service.SpaceShardService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片分表在线迁移
+ * 已有的团队空间升级为旗舰版后，图片仍在逻辑表 picture 中，需要迁移到独立的分表 picture_{spaceId}：
+ * 1. 复制：按 id 顺序分批把空间的图片复制到分表，记录开始时间；
+ * 2. 增量同步：切换前分表不在路由中，复制期间的新增、修改、删除（逻辑删除）都只写入逻辑表，
+ * 按 updateTime 找出开始时间之后变化的图片重新复制，直到一轮只剩少量变化；
+ * 3. 切换：短暂冻结该空间图片的全部写入，等待进行中的写入完成后做最后一轮同步，
+ * 把逻辑表中的旧数据标记为已迁移（isDelete = 2，查询只读取 isDelete = 0 的行），再切换路由并广播到所有节点。
+ * 没有 spaceId 的按 id 查询、修改会同时路由到逻辑表和分表，标记后只会命中分表中的一行；
+ * 4. 清理：分批删除逻辑表中标记为已迁移的数据；切换前后仍写入逻辑表的图片先补复制到分表再删除。
+ * 进度保存在 space_shard 中，每批之间按配置的间隔休眠；任意节点都可以接着执行中断的任务，同一空间同时只有一个节点执行
+ */
+@Slf4j
+@Component
+public class PictureShardMigrationManager {
+
+    private static final String LOCK_KEY_PREFIX = "artsync:sharding:picture:migration:lock:";
+
+    /**
+     * 切换期间冻结空间图片的写入
+     */
+    private static final String FREEZE_KEY_PREFIX = "artsync:sharding:picture:freeze:";
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * 切换时隐藏逻辑表中旧数据的每批数量
+     */
+    private static final int HIDE_BATCH_SIZE = 5000;
+
+    /**
+     * 逻辑表中已迁到分表、等待清理的图片的 isDelete 值；
+     * 与逻辑删除的 1 区分，切换失败时可以恢复，清理时可以直接删除
+     */
+    private static final int MIGRATED_DELETE_FLAG = 2;
+
+    private static final int MAX_BATCH_SIZE = 5000;
+
+    private static final int DEFAULT_BATCH_INTERVAL = 200;
+
+    private static final int MAX_BATCH_INTERVAL = 60000;
+
+    private static final String LOGIC_TABLE_NAME = PictureShardingRouter.LOGIC_TABLE_NAME;
+
+    /**
+     * 冻结后等待进行中的写入完成的时间（毫秒）
+     */
+    @Value("${picture.shard-migration.drain-ms:3000}")
+    private long drainMs;
+
+    @Resource
+    private SpaceShardService spaceShardService;
+
+    @Resource
+    private SpaceMapper spaceMapper;
+
+    @Resource
+    private DynamicShardingManager dynamicShardingManager;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource(name = "pictureShardMigrationExecutor")
+    private ThreadPoolExecutor pictureShardMigrationExecutor;
+
+    /**
+     * 开始或继续迁移，同时更新限流参数
+     *
+     * @param spaceId       空间 id
+     * @param batchSize     每批处理的数量，为空时不修改
+     * @param batchInterval 两批之间的间隔（毫秒），为空时不修改
+     * @return 迁移进度
+     */
+    public SpaceShard startMigration(long spaceId, Integer batchSize, Integer batchInterval) {
+        ThrowUtils.throwIf(batchSize != null && (batchSize <= 0 || batchSize > MAX_BATCH_SIZE),
+                ErrorCode.PARAMS_ERROR, "每批数量应在 1 到 " + MAX_BATCH_SIZE + " 之间");
+        ThrowUtils.throwIf(batchInterval != null && (batchInterval < 0 || batchInterval > MAX_BATCH_INTERVAL),
+                ErrorCode.PARAMS_ERROR, "批次间隔应在 0 到 " + MAX_BATCH_INTERVAL + " 毫秒之间");
+        Space space = spaceMapper.selectById(spaceId);
+        ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+        ThrowUtils.throwIf(space.getSpaceType() != SpaceTypeEnum.TEAM.getValue()
+                        || space.getSpaceLevel() != SpaceLevelEnum.FLAGSHIP.getValue(),
+                ErrorCode.OPERATION_ERROR, "仅旗舰版团队空间使用独立分表");
+        SpaceShard spaceShard = spaceShardService.getBySpaceId(spaceId);
+        if (spaceShard == null) {
+            spaceShard = this.createMigration(spaceId, batchSize, batchInterval);
+        } else if (spaceShard.getStatus() != SpaceShardStatusEnum.DONE.getValue()) {
+            spaceShardService.lambdaUpdate()
+                    .eq(SpaceShard::getSpaceId, spaceId)
+                    .set(SpaceShard::getPaused, 0)
+                    .set(batchSize != null, SpaceShard::getBatchSize, batchSize)
+                    .set(batchInterval != null, SpaceShard::getBatchInterval, batchInterval)
+                    .update();
+        }
+        if (spaceShard.getStatus() != SpaceShardStatusEnum.DONE.getValue()) {
+            this.submit(spaceId);
+        }
+        return spaceShardService.getBySpaceId(spaceId);
+    }
+
+    /**
+     * 暂停迁移，当前批次完成后停止；复制、增量同步阶段暂停不影响读写
+     *
+     * @param spaceId 空间 id
+     */
+    public void pauseMigration(long spaceId) {
+        boolean result = spaceShardService.lambdaUpdate()
+                .eq(SpaceShard::getSpaceId, spaceId)
+                .ne(SpaceShard::getStatus, SpaceShardStatusEnum.DONE.getValue())
+                .set(SpaceShard::getPaused, 1)
+                .update();
+        ThrowUtils.throwIf(!result, ErrorCode.NOT_FOUND_ERROR, "没有进行中的迁移");
+    }
+
+    /**
+     * 获取迁移进度
+     *
+     * @param spaceId 空间 id
+     * @return 迁移进度，空间没有分表时为 null
+     */
+    public SpaceShard getMigration(long spaceId) {
+        return spaceShardService.getBySpaceId(spaceId);
+    }
+
+    /**
+     * 写入（新增、修改、删除）空间的图片前检查：切换期间拒绝写入；本节点的分表配置落后时先校准，避免写入已经迁走的逻辑表
+     * 一次 Redis 读取同时取得冻结标记和版本号
+     *
+     * @param spaceId 空间 id，公共图库为 null
+     */
+    public void checkWritable(Long spaceId) {
+        if (spaceId == null) {
+            return;
+        }
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(
+                Arrays.asList(FREEZE_KEY_PREFIX + spaceId, DynamicShardingManager.SHARDING_VERSION_KEY));
+        if (CollUtil.isEmpty(values)) {
+            return;
+        }
+        ThrowUtils.throwIf(values.get(0) != null, ErrorCode.OPERATION_ERROR, "空间数据迁移中，请稍后重试");
+        String version = values.get(1);
+        dynamicShardingManager.syncIfStale(version == null ? null : Long.valueOf(version));
+    }
+
+    /**
+     * 定期继续未完成、未暂停的迁移（节点重启或执行失败后）
+     */
+    @Scheduled(initialDelay = 60 * 1000, fixedDelay = 60 * 1000)
+    public void resumeMigrations() {
+        try {
+            spaceShardService.lambdaQuery()
+                    .select(SpaceShard::getSpaceId)
+                    .ne(SpaceShard::getStatus, SpaceShardStatusEnum.DONE.getValue())
+                    .eq(SpaceShard::getPaused, 0)
+                    .list()
+                    .forEach(spaceShard -> this.submit(spaceShard.getSpaceId()));
+        } catch (Exception e) {
+            log.error("继续分表迁移失败", e);
+        }
+    }
+
+    /**
+     * 创建分表并登记迁移任务，开始时间取数据库时间，与 updateTime 一致
+     */
+    private SpaceShard createMigration(long spaceId, Integer batchSize, Integer batchInterval) {
+        JdbcTemplate jdbcTemplate = this.getJdbcTemplate();
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + PictureShardingRouter.getTableName(spaceId)
+                + " LIKE " + LOGIC_TABLE_NAME);
+        Long totalCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + LOGIC_TABLE_NAME
+                + " WHERE spaceId = ?", Long.class, spaceId);
+        SpaceShard spaceShard = new SpaceShard();
+        spaceShard.setSpaceId(spaceId);
+        spaceShard.setStatus(SpaceShardStatusEnum.COPYING.getValue());
+        spaceShard.setPaused(0);
+        spaceShard.setLastPictureId(0L);
+        spaceShard.setCopiedCount(0L);
+        spaceShard.setTotalCount(ObjUtil.defaultIfNull(totalCount, 0L));
+        spaceShard.setBatchSize(ObjUtil.defaultIfNull(batchSize, DEFAULT_BATCH_SIZE));
+        spaceShard.setBatchInterval(ObjUtil.defaultIfNull(batchInterval, DEFAULT_BATCH_INTERVAL));
+        spaceShard.setSyncTime(this.getDatabaseTime(jdbcTemplate));
+        try {
+            spaceShardService.save(spaceShard);
+        } catch (DuplicateKeyException e) {
+            // 其他请求已登记
+            return spaceShardService.getBySpaceId(spaceId);
+        }
+        log.info("开始分表迁移, spaceId = {}, totalCount = {}", spaceId, spaceShard.getTotalCount());
+        return spaceShard;
+    }
+
+    private void submit(long spaceId) {
+        try {
+            pictureShardMigrationExecutor.execute(() -> this.runMigration(spaceId));
+        } catch (RejectedExecutionException e) {
+            log.info("分表迁移任务排队已满，稍后继续, spaceId = {}", spaceId);
+        }
+    }
+
+    /**
+     * 执行迁移，每批之后重新读取任务，使暂停和限流参数的修改在下一批生效
+     */
+    private void runMigration(long spaceId) {
+        String lockKey = LOCK_KEY_PREFIX + spaceId;
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, "1", 1, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                SpaceShard spaceShard = spaceShardService.getBySpaceId(spaceId);
+                if (spaceShard == null || spaceShard.getPaused() == 1
+                        || spaceShard.getStatus() == SpaceShardStatusEnum.DONE.getValue()) {
+                    return;
+                }
+                stringRedisTemplate.expire(lockKey, 1, TimeUnit.MINUTES);
+                SpaceShardStatusEnum status = SpaceShardStatusEnum.getEnumByValue(spaceShard.getStatus());
+                if (status == SpaceShardStatusEnum.COPYING) {
+                    this.copyBatch(spaceShard);
+                } else if (status == SpaceShardStatusEnum.CATCHING_UP) {
+                    this.catchUp(spaceShard, lockKey);
+                } else if (status == SpaceShardStatusEnum.CLEANING) {
+                    this.cleanBatch(spaceShard);
+                }
+                Thread.sleep(spaceShard.getBatchInterval());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("分表迁移失败，稍后继续, spaceId = {}", spaceId, e);
+            spaceShardService.lambdaUpdate()
+                    .eq(SpaceShard::getSpaceId, spaceId)
+                    .set(SpaceShard::getErrorMessage, StrUtil.maxLength(e.getMessage(), 500))
+                    .update();
+        } finally {
+            stringRedisTemplate.delete(lockKey);
+        }
+    }
+
+    /**
+     * 复制一批图片，复制完成后进入增量同步
+     */
+    private void copyBatch(SpaceShard spaceShard) {
+        long spaceId = spaceShard.getSpaceId();
+        JdbcTemplate jdbcTemplate = this.getJdbcTemplate();
+        List<Long> idList = jdbcTemplate.queryForList("SELECT id FROM " + LOGIC_TABLE_NAME
+                        + " WHERE spaceId = ? AND id > ? ORDER BY id LIMIT ?", Long.class,
+                spaceId, spaceShard.getLastPictureId(), spaceShard.getBatchSize());
+        if (idList.isEmpty()) {
+            spaceShardService.lambdaUpdate()
+                    .eq(SpaceShard::getSpaceId, spaceId)
+                    .set(SpaceShard::getStatus, SpaceShardStatusEnum.CATCHING_UP.getValue())
+                    .set(SpaceShard::getLastPictureId, 0L)
+                    .update();
+            log.info("分表迁移复制完成，开始增量同步, spaceId = {}", spaceId);
+            return;
+        }
+        long maxId = idList.get(idList.size() - 1);
+        // 分表与逻辑表结构相同，整行复制；REPLACE 保证重试时幂等
+        jdbcTemplate.update("REPLACE INTO " + PictureShardingRouter.getTableName(spaceId)
+                        + " SELECT * FROM " + LOGIC_TABLE_NAME + " WHERE spaceId = ? AND id > ? AND id <= ?",
+                spaceId, spaceShard.getLastPictureId(), maxId);
+        spaceShardService.lambdaUpdate()
+                .eq(SpaceShard::getSpaceId, spaceId)
+                .set(SpaceShard::getLastPictureId, maxId)
+                .setSql("copiedCount = copiedCount + " + idList.size())
+                .update();
+    }
+
+    /**
+     * 增量同步一轮：重新复制上次同步之后变化的图片
+     * 一轮的变化不超过一批时切换路由，否则以本轮开始时间作为下一轮的起点
+     */
+    private void catchUp(SpaceShard spaceShard, String lockKey) throws InterruptedException {
+        long spaceId = spaceShard.getSpaceId();
+        JdbcTemplate jdbcTemplate = this.getJdbcTemplate();
+        Date roundStartTime = this.getDatabaseTime(jdbcTemplate);
+        long changedCount = this.copyChangedPictures(spaceShard, lockKey);
+        if (changedCount > spaceShard.getBatchSize()) {
+            // updateTime 精确到秒，回退 1 秒避免漏掉同一秒内的修改
+            spaceShardService.lambdaUpdate()
+                    .eq(SpaceShard::getSpaceId, spaceId)
+                    .set(SpaceShard::getSyncTime, new Date(roundStartTime.getTime() - 1000))
+                    .update();
+            return;
+        }
+        this.cutover(spaceShard, lockKey);
+    }
+
+    /**
+     * 切换路由：冻结写入，等待进行中的写入完成，最后同步一轮后把空间加入分表路由并广播
+     */
+    private void cutover(SpaceShard spaceShard, String lockKey) throws InterruptedException {
+        long spaceId = spaceShard.getSpaceId();
+        String freezeKey = FREEZE_KEY_PREFIX + spaceId;
+        stringRedisTemplate.opsForValue().set(freezeKey, "1", 1, TimeUnit.MINUTES);
+        try {
+            Thread.sleep(drainMs);
+            this.copyChangedPictures(spaceShard, lockKey);
+            try {
+                this.hideMigratedPictures(spaceId, freezeKey, lockKey);
+                spaceShardService.lambdaUpdate()
+                        .eq(SpaceShard::getSpaceId, spaceId)
+                        .set(SpaceShard::getStatus, SpaceShardStatusEnum.CLEANING.getValue())
+                        .set(SpaceShard::getLastPictureId, 0L)
+                        .update();
+            } catch (Exception e) {
+                // 还没有切换路由，恢复逻辑表中的数据，稍后重新切换
+                this.getJdbcTemplate().update("UPDATE " + LOGIC_TABLE_NAME + " SET isDelete = 0, updateTime = updateTime"
+                        + " WHERE spaceId = ? AND isDelete = ?", spaceId, MIGRATED_DELETE_FLAG);
+                throw e;
+            }
+            // 先更新本节点并增加版本号，其他节点写入前发现版本落后会先校准，再解除冻结
+            dynamicShardingManager.onSpaceRouted(spaceId);
+            log.info("分表迁移已切换路由，开始清理逻辑表, spaceId = {}", spaceId);
+        } finally {
+            stringRedisTemplate.delete(freezeKey);
+        }
+    }
+
+    /**
+     * 在冻结期间把逻辑表中该空间未删除的图片标记为已迁移，分批执行并为冻结标记和任务锁续期；
+     * 保留 updateTime，不影响清理时与分表的比较
+     */
+    private void hideMigratedPictures(long spaceId, String freezeKey, String lockKey) {
+        JdbcTemplate jdbcTemplate = this.getJdbcTemplate();
+        while (true) {
+            int updated = jdbcTemplate.update("UPDATE " + LOGIC_TABLE_NAME
+                            + " SET isDelete = ?, updateTime = updateTime WHERE spaceId = ? AND isDelete = 0 LIMIT ?",
+                    MIGRATED_DELETE_FLAG, spaceId, HIDE_BATCH_SIZE);
+            if (updated < HIDE_BATCH_SIZE) {
+                return;
+            }
+            stringRedisTemplate.expire(freezeKey, 1, TimeUnit.MINUTES);
+            stringRedisTemplate.expire(lockKey, 1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * 按 id 分批重新复制同步时间之后变化过的图片
+     *
+     * @return 复制的数量
+     */
+    private long copyChangedPictures(SpaceShard spaceShard, String lockKey) throws InterruptedException {
+        long spaceId = spaceShard.getSpaceId();
+        JdbcTemplate jdbcTemplate = this.getJdbcTemplate();
+        String tableName = PictureShardingRouter.getTableName(spaceId);
+        long lastId = 0;
+        long changedCount = 0;
+        while (true) {
+            List<Long> idList = jdbcTemplate.queryForList("SELECT id FROM " + LOGIC_TABLE_NAME
+                            + " WHERE spaceId = ? AND updateTime >= ? AND id > ? ORDER BY id LIMIT ?", Long.class,
+                    spaceId, spaceShard.getSyncTime(), lastId, spaceShard.getBatchSize());
+            if (idList.isEmpty()) {
+                return changedCount;
+            }
+            String placeholders = String.join(",", Collections.nCopies(idList.size(), "?"));
+            jdbcTemplate.update("REPLACE INTO " + tableName + " SELECT * FROM " + LOGIC_TABLE_NAME
+                    + " WHERE id IN (" + placeholders + ")", idList.toArray());
+            changedCount += idList.size();
+            lastId = idList.get(idList.size() - 1);
+            stringRedisTemplate.expire(lockKey, 1, TimeUnit.MINUTES);
+            if (idList.size() < spaceShard.getBatchSize()) {
+                return changedCount;
+            }
+            Thread.sleep(spaceShard.getBatchInterval());
+        }
+    }
+
+    /**
+     * 按 id 顺序清理逻辑表中的一批图片：标记为已迁移的行在切换前已同步到分表，直接删除；
+     * 其余的行只删除分表中已存在、且分表中的数据不比逻辑表旧的行，
+     * 最后一轮同步之后仍写入了逻辑表的图片（分表中没有或更旧）先补复制到分表再删除。
+     * 一遍扫描结束后再从头扫描一遍，没有剩余数据时迁移完成
+     */
+    private void cleanBatch(SpaceShard spaceShard) {
+        long spaceId = spaceShard.getSpaceId();
+        // 直接在实际表上执行，经过 ShardingSphere 时会被路由到分表
+        JdbcTemplate jdbcTemplate = this.getJdbcTemplate();
+        String tableName = PictureShardingRouter.getTableName(spaceId);
+        long lastId = spaceShard.getLastPictureId();
+        List<Long> idList = jdbcTemplate.queryForList("SELECT id FROM " + LOGIC_TABLE_NAME
+                        + " WHERE spaceId = ? AND id > ? ORDER BY id LIMIT ?", Long.class,
+                spaceId, lastId, spaceShard.getBatchSize());
+        if (idList.isEmpty()) {
+            if (lastId > 0) {
+                // 从头再扫描一遍，清理扫描期间补复制或新写入逻辑表的数据
+                spaceShardService.lambdaUpdate()
+                        .eq(SpaceShard::getSpaceId, spaceId)
+                        .set(SpaceShard::getLastPictureId, 0L)
+                        .update();
+                return;
+            }
+            spaceShardService.lambdaUpdate()
+                    .eq(SpaceShard::getSpaceId, spaceId)
+                    .set(SpaceShard::getStatus, SpaceShardStatusEnum.DONE.getValue())
+                    .set(SpaceShard::getErrorMessage, null)
+                    .update();
+            log.info("分表迁移完成, spaceId = {}", spaceId);
+            return;
+        }
+        String placeholders = String.join(",", Collections.nCopies(idList.size(), "?"));
+        Object[] ids = idList.toArray();
+        Object[] flagAndIds = new Object[ids.length + 1];
+        flagAndIds[0] = MIGRATED_DELETE_FLAG;
+        System.arraycopy(ids, 0, flagAndIds, 1, ids.length);
+        jdbcTemplate.update("DELETE FROM " + LOGIC_TABLE_NAME + " WHERE isDelete = ? AND id IN (" + placeholders + ")",
+                flagAndIds);
+        List<Long> staleIdList = jdbcTemplate.queryForList("SELECT p.id FROM " + LOGIC_TABLE_NAME + " p LEFT JOIN "
+                + tableName + " s ON s.id = p.id WHERE p.id IN (" + placeholders + ")"
+                + " AND (s.id IS NULL OR p.updateTime > s.updateTime)", Long.class, ids);
+        if (!staleIdList.isEmpty()) {
+            jdbcTemplate.update("REPLACE INTO " + tableName + " SELECT * FROM " + LOGIC_TABLE_NAME + " WHERE id IN ("
+                    + String.join(",", Collections.nCopies(staleIdList.size(), "?")) + ")", staleIdList.toArray());
+            log.warn("清理时发现最后一轮同步之后写入逻辑表的图片, 已补复制到分表, spaceId = {}, count = {}",
+                    spaceId, staleIdList.size());
+        }
+        jdbcTemplate.update("DELETE p FROM " + LOGIC_TABLE_NAME + " p JOIN " + tableName + " s ON s.id = p.id"
+                + " WHERE p.id IN (" + placeholders + ") AND p.updateTime <= s.updateTime", ids);
+        spaceShardService.lambdaUpdate()
+                .eq(SpaceShard::getSpaceId, spaceId)
+                .set(SpaceShard::getLastPictureId, idList.get(idList.size() - 1))
+                .update();
+    }
+
+    private JdbcTemplate getJdbcTemplate() {
+        return new JdbcTemplate(dynamicShardingManager.getActualDataSource());
+    }
+
+    private Date getDatabaseTime(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT NOW()", Date.class);
+    }
+}
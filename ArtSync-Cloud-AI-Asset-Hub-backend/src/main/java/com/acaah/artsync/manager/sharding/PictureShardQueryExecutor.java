@@ -0,0 +1,378 @@
+package com.acaah.artsync.manager.sharding;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.acaah.artsync.exception.BusinessException;
+import com.acaah.artsync.exception.ErrorCode;
+import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.manager.readwrite.ReadWriteRouteContext;
+import com.acaah.artsync.model.entity.Picture;
+import com.acaah.artsync.service.SpaceShardService;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 图片跨分表查询执行器
+ * 没有 spaceId 条件的查询（管理员查询全部图片、全部 / 公共图库分析）会涉及逻辑表和全部 picture_{spaceId} 分表，
+ * 交给 ShardingSphere 时按表依次执行并在内存中归并。这里直接在实际数据源上为每张表生成一条 SQL，在有界线程池中并行执行：
+ * 分页查询把排序和 LIMIT 下推到每张表，再多路归并；聚合查询在每张表分别聚合，再合并 COUNT / SUM 等可累加的结果。
+ * 调用方开启了读从库（@ReadReplica）时在延迟正常的从库上执行，否则在主库上执行
+ */
+@Slf4j
+@Component
+public class PictureShardQueryExecutor {
+
+    /**
+     * MyBatis-Plus 条件中的参数占位符
+     */
+    private static final Pattern PARAM_PATTERN = Pattern.compile("#\\{ew\\.paramNameValuePairs\\.(\\w+)[^}]*}");
+
+    /**
+     * 每张表最多返回的行数（页码 * 每页数量），避免深翻页时每张表都返回大量数据
+     */
+    private static final long MAX_PAGE_WINDOW = 10000;
+
+    private static final String LOGIC_TABLE_NAME = PictureShardingRouter.LOGIC_TABLE_NAME;
+
+    @Value("${picture.shard-query.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Resource
+    private DynamicShardingManager dynamicShardingManager;
+
+    @Resource
+    private SpaceShardService spaceShardService;
+
+    @Resource(name = "pictureShardQueryExecutor")
+    private ThreadPoolExecutor pictureShardQueryExecutor;
+
+    /**
+     * 获取查询涉及的实际表
+     *
+     * @param publicOnly 是否只查询公共图库，公共图库只存在于逻辑表中
+     * @return 实际表名
+     */
+    public Collection<String> resolveTables(boolean publicOnly) {
+        if (publicOnly) {
+            return Collections.singletonList(LOGIC_TABLE_NAME);
+        }
+        return PictureShardingRouter.routeAllTables();
+    }
+
+    /**
+     * 跨分表分页查询
+     *
+     * @param filterWrapper 过滤条件，不能包含排序
+     * @param sortField     排序字段，为空时按 id 降序
+     * @param asc           是否升序
+     * @param current       页码
+     * @param size          每页数量
+     * @param tables        实际表名
+     * @return 分页结果
+     */
+    public Page<Picture> page(QueryWrapper<Picture> filterWrapper, String sortField, boolean asc,
+                              long current, long size, Collection<String> tables) {
+        ThrowUtils.throwIf(current < 1 || size < 1, ErrorCode.PARAMS_ERROR);
+        String orderField = StrUtil.isBlank(sortField) ? "id" : sortField;
+        ThrowUtils.throwIf(!ReflectUtil.hasField(Picture.class, orderField) || "serialVersionUID".equals(orderField),
+                ErrorCode.PARAMS_ERROR, "排序字段不存在");
+        boolean ascending = StrUtil.isNotBlank(sortField) && asc;
+        long offset = (current - 1) * size;
+        long window = offset + size;
+        ThrowUtils.throwIf(window > MAX_PAGE_WINDOW, ErrorCode.PARAMS_ERROR, "翻页过深，请缩小查询范围");
+
+        SqlCondition condition = SqlCondition.of(filterWrapper);
+        String direction = ascending ? " ASC" : " DESC";
+        String orderBy = " ORDER BY " + orderField + direction + ", id" + direction;
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dynamicShardingManager.getReadDataSource());
+        BeanPropertyRowMapper<Picture> rowMapper = new BeanPropertyRowMapper<>(Picture.class);
+        // 每张表只需要返回前 offset + size 条，合并后跳过 offset 条
+        String logicTableCondition = this.getLogicTableCondition(tables);
+        List<ShardPage> shardPageList = this.fanOut(tables, table -> {
+            String where = condition.toWhere() + (LOGIC_TABLE_NAME.equals(table) ? logicTableCondition : "");
+            Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + where, Long.class,
+                    condition.getArgs());
+            List<Picture> records = total == null || total <= offset ? Collections.emptyList()
+                    : jdbcTemplate.query("SELECT * FROM " + table + where + orderBy + " LIMIT " + window,
+                    rowMapper, condition.getArgs());
+            return new ShardPage(total == null ? 0 : total, records);
+        });
+
+        long total = 0;
+        List<Iterator<Picture>> sourceList = new ArrayList<>(shardPageList.size());
+        for (ShardPage shardPage : shardPageList) {
+            total += shardPage.total;
+            sourceList.add(shardPage.records.iterator());
+        }
+        Comparator<Picture> comparator = buildComparator(orderField);
+        ShardMergeIterator<Picture> mergeIterator = new ShardMergeIterator<>(sourceList,
+                ascending ? comparator : comparator.reversed());
+        mergeIterator.skip(offset);
+        List<Picture> records = new ArrayList<>((int) size);
+        while (records.size() < size && mergeIterator.hasNext()) {
+            records.add(mergeIterator.next());
+        }
+        Page<Picture> page = new Page<>(current, size, total);
+        page.setRecords(records);
+        return page;
+    }
+
+    /**
+     * 跨分表查询排序后的前 limit 条，不统计总数，用于游标分页
+     *
+     * @param filterWrapper 过滤条件（可包含游标条件），不能包含排序
+     * @param sortField     排序字段
+     * @param asc           是否升序
+     * @param limit         最多返回的数量
+     * @param tables        实际表名
+     * @return 按排序字段和 id 归并后的结果
+     */
+    public List<Picture> list(QueryWrapper<Picture> filterWrapper, String sortField, boolean asc, long limit,
+                              Collection<String> tables) {
+        ThrowUtils.throwIf(limit < 1 || limit > MAX_PAGE_WINDOW, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(!ReflectUtil.hasField(Picture.class, sortField) || "serialVersionUID".equals(sortField),
+                ErrorCode.PARAMS_ERROR, "排序字段不存在");
+        SqlCondition condition = SqlCondition.of(filterWrapper);
+        String direction = asc ? " ASC" : " DESC";
+        String orderBy = " ORDER BY " + sortField + direction + ", id" + direction;
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dynamicShardingManager.getReadDataSource());
+        BeanPropertyRowMapper<Picture> rowMapper = new BeanPropertyRowMapper<>(Picture.class);
+        String logicTableCondition = this.getLogicTableCondition(tables);
+        List<List<Picture>> shardRecordList = this.fanOut(tables, table ->
+                jdbcTemplate.query("SELECT * FROM " + table + condition.toWhere()
+                        + (LOGIC_TABLE_NAME.equals(table) ? logicTableCondition : "") + orderBy + " LIMIT " + limit,
+                        rowMapper, condition.getArgs()));
+
+        List<Iterator<Picture>> sourceList = shardRecordList.stream().map(List::iterator).collect(Collectors.toList());
+        Comparator<Picture> comparator = buildComparator(sortField);
+        ShardMergeIterator<Picture> mergeIterator = new ShardMergeIterator<>(sourceList,
+                asc ? comparator : comparator.reversed());
+        List<Picture> records = new ArrayList<>((int) limit);
+        while (records.size() < limit && mergeIterator.hasNext()) {
+            records.add(mergeIterator.next());
+        }
+        return records;
+    }
+
+    /**
+     * 跨分表统计数量
+     *
+     * @param filterWrapper 过滤条件，不能包含排序
+     * @param tables        实际表名
+     * @return 各表数量之和
+     */
+    public long count(QueryWrapper<Picture> filterWrapper, Collection<String> tables) {
+        SqlCondition condition = SqlCondition.of(filterWrapper);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dynamicShardingManager.getReadDataSource());
+        String logicTableCondition = this.getLogicTableCondition(tables);
+        List<Long> countList = this.fanOut(tables, table ->
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + condition.toWhere()
+                        + (LOGIC_TABLE_NAME.equals(table) ? logicTableCondition : ""), Long.class, condition.getArgs()));
+        return countList.stream().mapToLong(count -> count == null ? 0L : count).sum();
+    }
+
+    /**
+     * 跨分表聚合查询
+     * 查询列只能是分组字段和可累加的聚合（COUNT、SUM），各表的结果按分组字段合并，聚合列相加
+     *
+     * @param queryWrapper 查询条件，需通过 select 指定查询列；分组、排序不在这里设置
+     * @param groupColumns 分组字段（查询列的别名），为空表示不分组
+     * @param tables       实际表名
+     * @return 合并后的结果，按分组首次出现的顺序
+     */
+    public List<Map<String, Object>> aggregate(QueryWrapper<Picture> queryWrapper, List<String> groupColumns,
+                                               Collection<String> tables) {
+        String select = queryWrapper.getSqlSelect();
+        ThrowUtils.throwIf(StrUtil.isBlank(select), ErrorCode.PARAMS_ERROR, "未指定查询列");
+        SqlCondition condition = SqlCondition.of(queryWrapper);
+        String groupBy = CollUtil.isEmpty(groupColumns) ? "" : " GROUP BY " + String.join(", ", groupColumns);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dynamicShardingManager.getReadDataSource());
+        String logicTableCondition = this.getLogicTableCondition(tables);
+        List<List<Map<String, Object>>> shardResultList = this.fanOut(tables, table ->
+                jdbcTemplate.queryForList("SELECT " + select + " FROM " + table + condition.toWhere()
+                        + (LOGIC_TABLE_NAME.equals(table) ? logicTableCondition : "") + groupBy, condition.getArgs()));
+
+        // 分组字段的值 => 合并后的行
+        Map<List<Object>, Map<String, Object>> mergedMap = new LinkedHashMap<>();
+        for (List<Map<String, Object>> shardResult : shardResultList) {
+            for (Map<String, Object> row : shardResult) {
+                List<Object> key = new ArrayList<>(CollUtil.size(groupColumns));
+                if (groupColumns != null) {
+                    for (String groupColumn : groupColumns) {
+                        key.add(row.get(groupColumn));
+                    }
+                }
+                Map<String, Object> merged = mergedMap.get(key);
+                if (merged == null) {
+                    mergedMap.put(key, row);
+                    continue;
+                }
+                for (Map.Entry<String, Object> entry : row.entrySet()) {
+                    if (groupColumns != null && groupColumns.contains(entry.getKey())) {
+                        continue;
+                    }
+                    Object value = entry.getValue();
+                    Object mergedValue = merged.get(entry.getKey());
+                    if (value instanceof Number || mergedValue instanceof Number) {
+                        // 空表的 SUM 为 NULL，按 0 处理
+                        merged.put(entry.getKey(), NumberUtil.add((Number) mergedValue, (Number) value));
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(mergedMap.values());
+    }
+
+    /**
+     * 已切换到分表、但逻辑表中的旧数据还没清理完的空间，查询逻辑表时需要排除，否则与分表重复
+     *
+     * @return 追加到逻辑表查询条件后的 SQL，不需要排除时为空字符串
+     */
+    private String getLogicTableCondition(Collection<String> tables) {
+        if (tables.size() <= 1 || !tables.contains(LOGIC_TABLE_NAME)) {
+            return "";
+        }
+        // 迁移状态需与内存中的分表路由一致，读主库
+        List<Long> cleaningSpaceIdList = ReadWriteRouteContext.callOnPrimary(spaceShardService::listCleaningSpaceIds);
+        if (cleaningSpaceIdList.isEmpty()) {
+            return "";
+        }
+        String spaceIds = cleaningSpaceIdList.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return " AND (spaceId IS NULL OR spaceId NOT IN (" + spaceIds + "))";
+    }
+
+    /**
+     * 在线程池中并行查询每张表，结果顺序与表的顺序一致
+     * 线程池有界，表数量超过线程数时排队执行；整体超时后取消未完成的查询
+     */
+    private <T> List<T> fanOut(Collection<String> tables, Function<String, T> query) {
+        List<CompletableFuture<T>> futureList = new ArrayList<>(tables.size());
+        for (String table : tables) {
+            futureList.add(CompletableFuture.supplyAsync(() -> query.apply(table), pictureShardQueryExecutor));
+        }
+        try {
+            CompletableFuture.allOf(futureList.toArray(new CompletableFuture[0])).get(timeoutMs, TimeUnit.MILLISECONDS);
+            List<T> resultList = new ArrayList<>(futureList.size());
+            for (CompletableFuture<T> future : futureList) {
+                resultList.add(future.join());
+            }
+            return resultList;
+        } catch (TimeoutException e) {
+            futureList.forEach(future -> future.cancel(true));
+            log.error("跨分表查询超时, tables = {}", tables.size());
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "查询超时，请缩小查询范围");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futureList.forEach(future -> future.cancel(true));
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "查询被中断");
+        } catch (ExecutionException e) {
+            futureList.forEach(future -> future.cancel(true));
+            log.error("跨分表查询失败", e.getCause());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "查询失败");
+        }
+    }
+
+    /**
+     * 与 SQL 中 ORDER BY field ASC, id ASC 一致的比较器，降序时整体反转
+     * NULL 视为最小值；字符串忽略大小写，与 MySQL 默认的排序规则接近
+     */
+    private static Comparator<Picture> buildComparator(String orderField) {
+        Comparator<Picture> comparator = (a, b) -> compareValue(ReflectUtil.getFieldValue(a, orderField),
+                ReflectUtil.getFieldValue(b, orderField));
+        if ("id".equals(orderField)) {
+            return comparator;
+        }
+        return comparator.thenComparing(Picture::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValue(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof String && b instanceof String) {
+            return String.CASE_INSENSITIVE_ORDER.compare((String) a, (String) b);
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    /**
+     * 单张表的分页结果
+     */
+    private static class ShardPage {
+
+        private final long total;
+
+        private final List<Picture> records;
+
+        ShardPage(long total, List<Picture> records) {
+            this.total = total;
+            this.records = records;
+        }
+    }
+
+    /**
+     * 由 MyBatis-Plus 条件转换得到的 JDBC 条件，参数占位符替换为 ?，并自动追加逻辑删除条件
+     */
+    private static class SqlCondition {
+
+        private final String sql;
+
+        private final Object[] args;
+
+        private SqlCondition(String sql, Object[] args) {
+            this.sql = sql;
+            this.args = args;
+        }
+
+        static SqlCondition of(QueryWrapper<Picture> queryWrapper) {
+            String segment = queryWrapper.getExpression().getNormal().getSqlSegment();
+            Map<String, Object> paramMap = queryWrapper.getParamNameValuePairs();
+            List<Object> argList = new ArrayList<>();
+            StringBuffer sql = new StringBuffer();
+            Matcher matcher = PARAM_PATTERN.matcher(StrUtil.nullToEmpty(segment));
+            while (matcher.find()) {
+                argList.add(paramMap.get(matcher.group(1)));
+                matcher.appendReplacement(sql, "?");
+            }
+            matcher.appendTail(sql);
+            return new SqlCondition(sql.toString(), argList.toArray());
+        }
+
+        String toWhere() {
+            // 直接查询实际表，不会经过 MyBatis-Plus 的逻辑删除处理
+            return StrUtil.isBlank(sql) ? " WHERE isDelete = 0" : " WHERE isDelete = 0 AND (" + sql + ")";
+        }
+
+        Object[] getArgs() {
+            return Arrays.copyOf(args, args.length);
+        }
+    }
+}
@@ -4,42 +4,35 @@ import org.apache.shardingsphere.sharding.api.sharding.standard.PreciseShardingV
 import org.apache.shardingsphere.sharding.api.sharding.standard.RangeShardingValue;
 import org.apache.shardingsphere.sharding.api.sharding.standard.StandardShardingAlgorithm;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Properties;
 
+/**
+ * 图片分表算法（standard 策略）
+ * 等值条件按 spaceId 路由到分表或逻辑表，IN 条件由 ShardingSphere 逐个调用后合并；范围条件只路由到范围内的分表和逻辑表
+ */
 public class PictureShardingAlgorithm implements StandardShardingAlgorithm<Long> {
 
+    private Properties props = new Properties();
+
     @Override
     public String doSharding(Collection<String> availableTargetNames, PreciseShardingValue<Long> preciseShardingValue) {
-        Long spaceId = preciseShardingValue.getValue();
-        String logicTableName = preciseShardingValue.getLogicTableName();
-        // spaceId 为 null 表示查询所有图片
-        if (spaceId == null) {
-            return logicTableName;
-        }
-        // 根据 spaceId 动态生成分表名 availableTargetNames 始终为 picture，无法返回真实的分表
-        String realTableName = "picture_" + spaceId;
-        if (availableTargetNames.contains(realTableName)) {
-            return realTableName;
-        } else {
-            return logicTableName;
-        }
+        // spaceId 为 null 表示公共图库，没有分表的空间也在逻辑表中
+        return PictureShardingRouter.route(preciseShardingValue.getValue());
     }
 
-
     @Override
-    public Collection<String> doSharding(Collection<String> collection, RangeShardingValue<Long> rangeShardingValue) {
-        return new ArrayList<>();
+    public Collection<String> doSharding(Collection<String> availableTargetNames, RangeShardingValue<Long> rangeShardingValue) {
+        return PictureShardingRouter.routeRange(rangeShardingValue.getValueRange());
     }
 
     @Override
     public Properties getProps() {
-        return null;
+        return props;
     }
 
     @Override
     public void init(Properties properties) {
-
+        this.props = properties;
     }
 }
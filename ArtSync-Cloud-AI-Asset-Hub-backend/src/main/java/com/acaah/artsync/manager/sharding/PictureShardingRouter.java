@@ -0,0 +1,136 @@
+package com.acaah.artsync.manager.sharding;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 图片分表路由
+ * 分片算法由 ShardingSphere 反射创建，不是 Spring Bean，因此分表空间 id 以静态字段保存，
+ * 由 DynamicShardingManager 在分片规则更新成功后整体替换；查询时只做哈希查找，不遍历表名列表
+ */
+public final class PictureShardingRouter {
+
+    /**
+     * 逻辑表，同时也是非分表空间和公共图库的实际表
+     */
+    public static final String LOGIC_TABLE_NAME = "picture";
+
+    /**
+     * 已创建分表的空间 id，只读，整体替换
+     */
+    private static volatile Set<Long> shardedSpaceIds = Collections.emptySet();
+
+    private PictureShardingRouter() {
+    }
+
+    /**
+     * 替换已创建分表的空间 id，需在分片规则中的 actual-data-nodes 更新成功后调用
+     *
+     * @param spaceIds 空间 id
+     */
+    public static void updateShardedSpaceIds(Collection<Long> spaceIds) {
+        shardedSpaceIds = Collections.unmodifiableSet(new HashSet<>(spaceIds));
+    }
+
+    /**
+     * 当前已创建分表的空间 id（只读）
+     */
+    public static Set<Long> getShardedSpaceIds() {
+        return shardedSpaceIds;
+    }
+
+    /**
+     * 空间是否已有独立分表
+     */
+    public static boolean isSharded(Long spaceId) {
+        return spaceId != null && shardedSpaceIds.contains(spaceId);
+    }
+
+    /**
+     * 空间对应的分表名
+     */
+    public static String getTableName(long spaceId) {
+        return LOGIC_TABLE_NAME + "_" + spaceId;
+    }
+
+    /**
+     * 单个 spaceId 对应的实际表，spaceId 为空（公共图库）或没有分表时为逻辑表
+     *
+     * @param spaceId 空间 id，ShardingSphere 传入的值类型取决于参数，统一按数字处理
+     * @return 实际表名
+     */
+    public static String route(Object spaceId) {
+        if (!(spaceId instanceof Number)) {
+            return LOGIC_TABLE_NAME;
+        }
+        long id = ((Number) spaceId).longValue();
+        return shardedSpaceIds.contains(id) ? getTableName(id) : LOGIC_TABLE_NAME;
+    }
+
+    /**
+     * 多个 spaceId（IN 条件）对应的实际表，只返回涉及到的表
+     *
+     * @param spaceIds 空间 id
+     * @return 去重后的实际表名
+     */
+    public static Collection<String> routeAll(Collection<?> spaceIds) {
+        Set<String> tableNames = new LinkedHashSet<>();
+        for (Object spaceId : spaceIds) {
+            tableNames.add(route(spaceId));
+        }
+        return tableNames;
+    }
+
+    /**
+     * spaceId 范围条件对应的实际表：范围内的分表，以及可能包含范围内非分表空间的逻辑表
+     *
+     * @param range 空间 id 范围
+     * @return 实际表名
+     */
+    public static Collection<String> routeRange(Range<? extends Comparable<?>> range) {
+        Set<String> tableNames = new LinkedHashSet<>();
+        tableNames.add(LOGIC_TABLE_NAME);
+        for (Long spaceId : shardedSpaceIds) {
+            if (contains(range, spaceId)) {
+                tableNames.add(getTableName(spaceId));
+            }
+        }
+        return tableNames;
+    }
+
+    /**
+     * 全部实际表，用于没有 spaceId 条件的查询（如管理员查询全部图片），显式广播到各分表后归并
+     */
+    public static Collection<String> routeAllTables() {
+        Set<Long> spaceIds = shardedSpaceIds;
+        Set<String> tableNames = new LinkedHashSet<>(spaceIds.size() + 1);
+        tableNames.add(LOGIC_TABLE_NAME);
+        for (Long spaceId : spaceIds) {
+            tableNames.add(getTableName(spaceId));
+        }
+        return tableNames;
+    }
+
+    /**
+     * 范围端点的类型取决于参数（Integer / Long），按数字比较
+     */
+    private static boolean contains(Range<? extends Comparable<?>> range, long value) {
+        if (range.hasLowerBound()) {
+            long lower = ((Number) range.lowerEndpoint()).longValue();
+            if (value < lower || (value == lower && range.lowerBoundType() == BoundType.OPEN)) {
+                return false;
+            }
+        }
+        if (range.hasUpperBound()) {
+            long upper = ((Number) range.upperEndpoint()).longValue();
+            return value < upper || (value == upper && range.upperBoundType() == BoundType.CLOSED);
+        }
+        return true;
+    }
+}
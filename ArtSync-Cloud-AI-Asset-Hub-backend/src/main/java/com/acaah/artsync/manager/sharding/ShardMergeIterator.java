@@ -0,0 +1,80 @@
+package com.acaah.artsync.manager.sharding;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 多路归并迭代器
+ * 各分表的结果已按同一排序规则有序，堆中只保存每路的当前元素，每次取出最小的一个后从同一路补充；
+ * 取出前 n 个元素只需 O(n log k) 次比较（k 为分表数），不需要把全部结果合并后再排序
+ *
+ * @param <T> 元素类型
+ */
+public class ShardMergeIterator<T> implements Iterator<T> {
+
+    private final PriorityQueue<Head<T>> queue;
+
+    /**
+     * @param sources    各分表的有序结果
+     * @param comparator 排序规则，需与各分表的 ORDER BY 一致
+     */
+    public ShardMergeIterator(Collection<? extends Iterator<T>> sources, Comparator<? super T> comparator) {
+        this.queue = new PriorityQueue<>(Math.max(sources.size(), 1),
+                (a, b) -> comparator.compare(a.value, b.value));
+        for (Iterator<T> source : sources) {
+            if (source.hasNext()) {
+                queue.add(new Head<>(source.next(), source));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !queue.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Head<T> head = queue.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        T value = head.value;
+        if (head.source.hasNext()) {
+            // 复用节点，避免每个元素都创建对象
+            head.value = head.source.next();
+            queue.add(head);
+        }
+        return value;
+    }
+
+    /**
+     * 跳过前 n 个元素
+     *
+     * @param n 跳过的数量
+     * @return 实际跳过的数量
+     */
+    public long skip(long n) {
+        long skipped = 0;
+        while (skipped < n && hasNext()) {
+            next();
+            skipped++;
+        }
+        return skipped;
+    }
+
+    private static class Head<T> {
+
+        private T value;
+
+        private final Iterator<T> source;
+
+        Head(T value, Iterator<T> source) {
+            this.value = value;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.acaah.artsync.manager.tag;
+
+import cn.hutool.core.util.StrUtil;
+import com.acaah.artsync.mapper.PictureMapper;
+import com.acaah.artsync.model.entity.Picture;
+import com.acaah.artsync.service.PictureTagService;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片标签迁移
+ * 按 id 分批把 picture.tags（JSON）迁移到 picture_tag 关联表，迁移期间服务照常运行：
+ * 新的编辑会同时写入关联表，标签查询在迁移完成前仍使用 JSON 字段；
+ * 进度保存在 Redis 中，中断后再次启动会从上次的位置继续
+ */
+@Slf4j
+@Component
+public class PictureTagBackfillManager {
+
+    private static final String CURSOR_KEY = "artsync:picture:tag:backfill:cursor";
+
+    private static final String DONE_KEY = "artsync:picture:tag:backfill:done";
+
+    private static final String LOCK_KEY = "artsync:picture:tag:backfill:lock";
+
+    /**
+     * 每批迁移的图片数量
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * 批次间隔（毫秒），避免持续占满数据库
+     */
+    private static final long BATCH_INTERVAL_MILLIS = 50;
+
+    /**
+     * 锁的过期时间（分钟），每批迁移后续期，实例宕机后可由其他实例接手
+     */
+    private static final long LOCK_EXPIRE_MINUTES = 5;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private PictureTagService pictureTagService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private TagCountReconcileManager tagCountReconcileManager;
+
+    @Resource(name = "pictureTagBackfillExecutor")
+    private ThreadPoolExecutor pictureTagBackfillExecutor;
+
+    /**
+     * 迁移完成后不会再回退，完成后不必再访问 Redis
+     */
+    private volatile boolean backfillDone;
+
+    /**
+     * 标签查询是否可以使用关联表
+     */
+    public boolean isBackfillDone() {
+        if (!backfillDone) {
+            backfillDone = Boolean.TRUE.equals(stringRedisTemplate.hasKey(DONE_KEY));
+        }
+        return backfillDone;
+    }
+
+    /**
+     * 启动迁移
+     *
+     * @return 迁移已完成或其他实例正在迁移时返回 false
+     */
+    public boolean startBackfill() {
+        if (this.isBackfillDone()) {
+            return false;
+        }
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, "1", LOCK_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return false;
+        }
+        try {
+            pictureTagBackfillExecutor.execute(this::runBackfill);
+        } catch (RejectedExecutionException e) {
+            stringRedisTemplate.delete(LOCK_KEY);
+            return false;
+        }
+        return true;
+    }
+
+    private void runBackfill() {
+        String cursorValue = stringRedisTemplate.opsForValue().get(CURSOR_KEY);
+        long lastId = StrUtil.isBlank(cursorValue) ? 0L : Long.parseLong(cursorValue);
+        long migratedCount = 0;
+        log.info("开始迁移图片标签, lastId = {}", lastId);
+        try {
+            while (true) {
+                // 按主键分批，只查询迁移需要的字段；不查总数
+                List<Picture> pictureList = pictureMapper.selectPage(new Page<>(1, BATCH_SIZE, false),
+                        new LambdaQueryWrapper<Picture>()
+                                .select(Picture::getId, Picture::getSpaceId, Picture::getTags)
+                                .gt(Picture::getId, lastId)
+                                .orderByAsc(Picture::getId))
+                        .getRecords();
+                if (pictureList.isEmpty()) {
+                    break;
+                }
+                migratedCount += pictureTagService.backfillPictureTags(pictureList);
+                lastId = pictureList.get(pictureList.size() - 1).getId();
+                stringRedisTemplate.opsForValue().set(CURSOR_KEY, String.valueOf(lastId));
+                stringRedisTemplate.expire(LOCK_KEY, LOCK_EXPIRE_MINUTES, TimeUnit.MINUTES);
+                if (pictureList.size() < BATCH_SIZE) {
+                    break;
+                }
+                Thread.sleep(BATCH_INTERVAL_MILLIS);
+            }
+            // 迁移写入的关联没有累加使用次数，标记完成前先校准一次
+            tagCountReconcileManager.reconcile();
+            stringRedisTemplate.opsForValue().set(DONE_KEY, "1");
+            backfillDone = true;
+            log.info("图片标签迁移完成, 本次迁移图片数 = {}", migratedCount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("图片标签迁移被中断, lastId = {}", lastId);
+        } catch (Exception e) {
+            log.error("图片标签迁移失败, lastId = {}", lastId, e);
+        } finally {
+            stringRedisTemplate.delete(LOCK_KEY);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.acaah.artsync.manager.tag;
+
+import com.acaah.artsync.service.TagCountService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 标签使用次数校准
+ * 使用次数在标签关联增删时增量维护，定期根据 picture_tag 重新统计，修正未走增量路径或并发导致的偏差；
+ * 首次校准完成前计数不完整，标签分析仍按原方式统计
+ */
+@Slf4j
+@Component
+public class TagCountReconcileManager {
+
+    private static final String READY_KEY = "artsync:tag:count:ready";
+
+    private static final String LOCK_KEY = "artsync:tag:count:reconcile:lock";
+
+    /**
+     * 锁的过期时间（分钟）
+     */
+    private static final long LOCK_EXPIRE_MINUTES = 10;
+
+    @Resource
+    private TagCountService tagCountService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 校准完成过一次后计数即可使用，不必再访问 Redis
+     */
+    private volatile boolean ready;
+
+    /**
+     * 标签使用次数是否可以直接使用
+     */
+    public boolean isReady() {
+        if (!ready) {
+            ready = Boolean.TRUE.equals(stringRedisTemplate.hasKey(READY_KEY));
+        }
+        return ready;
+    }
+
+    /**
+     * 启动后执行一次，之后每 6 小时校准一次；多个实例同时只有一个执行
+     */
+    @Scheduled(initialDelay = 60_000L, fixedDelay = 6 * 3600_000L)
+    public void scheduledReconcile() {
+        try {
+            this.reconcile();
+        } catch (Exception e) {
+            log.error("标签使用次数校准失败", e);
+        }
+    }
+
+    /**
+     * 立即校准
+     *
+     * @return 其他实例正在校准时返回 false
+     */
+    public boolean reconcile() {
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, "1", LOCK_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return false;
+        }
+        try {
+            tagCountService.reconcileTagCount();
+            stringRedisTemplate.opsForValue().set(READY_KEY, "1");
+            ready = true;
+            return true;
+        } finally {
+            stringRedisTemplate.delete(LOCK_KEY);
+        }
+    }
+}
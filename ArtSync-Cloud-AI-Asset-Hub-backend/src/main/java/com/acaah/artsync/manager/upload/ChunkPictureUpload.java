@@ -0,0 +1,302 @@
+package com.acaah.artsync.manager.upload;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.acaah.artsync.exception.BusinessException;
+import com.acaah.artsync.exception.ErrorCode;
+import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.manager.CosManager;
+import com.acaah.artsync.model.dto.file.UploadPictureResult;
+import com.qcloud.cos.model.CompleteMultipartUploadResult;
+import com.qcloud.cos.model.PartETag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片图片上传
+ * 基于对象存储的分块上传实现，会话状态与已确认的分片保存在 Redis 中，支持断点续传
+ */
+@Slf4j
+@Component
+public class ChunkPictureUpload {
+
+    /**
+     * 分片大小，对象存储要求除最后一块外每块不小于 1MB
+     */
+    public static final long PART_SIZE = 5 * 1024 * 1024L;
+
+    /**
+     * 分片上传允许的最大文件大小
+     */
+    public static final long MAX_FILE_SIZE = 100 * 1024 * 1024L;
+
+    /**
+     * 允许上传的文件后缀
+     */
+    private static final List<String> ALLOW_FORMAT_LIST = Arrays.asList("jpeg", "png", "jpg", "webp");
+
+    /**
+     * 会话过期时间（小时），每次上传分片都会续期
+     */
+    private static final long SESSION_EXPIRE_HOURS = 24;
+
+    private static final String SESSION_KEY = "artsync:picture:chunk:session:%s";
+
+    private static final String PARTS_KEY = "artsync:picture:chunk:parts:%s";
+
+    private static final String FILE_KEY = "artsync:picture:chunk:file:%s:%s";
+
+    /**
+     * 分片合并后的上传结果，保存图片失败时客户端重试完成上传，直接使用已合并的对象
+     */
+    private static final String RESULT_KEY = "artsync:picture:chunk:result:%s";
+
+    @Resource
+    private CosManager cosManager;
+
+    @Resource
+    private UploadPictureResultBuilder uploadPictureResultBuilder;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 同时传输到对象存储的分片数，分片在请求线程中直接传输
+     */
+    private final Semaphore partUploadPermits = new Semaphore(Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * 校验待上传的文件
+     *
+     * @param fileName 原始文件名
+     * @param fileSize 文件大小
+     */
+    public void validPicture(String fileName, Long fileSize) {
+        ThrowUtils.throwIf(StrUtil.isBlank(fileName), ErrorCode.PARAMS_ERROR, "文件名不能为空");
+        ThrowUtils.throwIf(fileSize == null || fileSize <= 0, ErrorCode.PARAMS_ERROR, "文件大小错误");
+        ThrowUtils.throwIf(fileSize > MAX_FILE_SIZE, ErrorCode.PARAMS_ERROR, "文件大小不能超过 100MB");
+        String fileSuffix = FileUtil.getSuffix(fileName);
+        ThrowUtils.throwIf(!ALLOW_FORMAT_LIST.contains(fileSuffix), ErrorCode.PARAMS_ERROR, "文件类型错误");
+    }
+
+    /**
+     * 查找可以续传的会话
+     *
+     * @param userId   用户 id
+     * @param fileHash 客户端计算的文件摘要
+     * @return 会话不存在或已过期时返回 null
+     */
+    public ChunkUploadSession findResumableSession(Long userId, String fileHash) {
+        if (StrUtil.isBlank(fileHash)) {
+            return null;
+        }
+        String uploadId = stringRedisTemplate.opsForValue().get(String.format(FILE_KEY, userId, fileHash));
+        if (StrUtil.isBlank(uploadId)) {
+            return null;
+        }
+        return getSession(uploadId);
+    }
+
+    /**
+     * 创建分片上传会话
+     *
+     * @param session          会话信息（文件名、大小、用户、空间等），uploadId 与分片信息由本方法填充
+     * @param uploadPathPrefix 上传路径前缀
+     * @return 创建后的会话
+     */
+    public ChunkUploadSession createSession(ChunkUploadSession session, String uploadPathPrefix) {
+        String originalFilename = session.getOriginalFilename();
+        // 与普通上传相同的路径规则，不使用原始文件名
+        String uploadFilename = String.format("%s_%s.%s", DateUtil.formatDate(new Date()), RandomUtil.randomString(16),
+                FileUtil.getSuffix(originalFilename));
+        String uploadPath = String.format("/%s/%s", uploadPathPrefix, uploadFilename);
+        String uploadId = cosManager.initiateMultipartUpload(uploadPath);
+        long fileSize = session.getFileSize();
+        session.setUploadId(uploadId);
+        session.setUploadPath(uploadPath);
+        session.setPartSize(PART_SIZE);
+        session.setTotalParts((int) ((fileSize + PART_SIZE - 1) / PART_SIZE));
+        stringRedisTemplate.opsForValue().set(String.format(SESSION_KEY, uploadId), JSONUtil.toJsonStr(session),
+                SESSION_EXPIRE_HOURS, TimeUnit.HOURS);
+        if (StrUtil.isNotBlank(session.getFileHash())) {
+            stringRedisTemplate.opsForValue().set(String.format(FILE_KEY, session.getUserId(), session.getFileHash()),
+                    uploadId, SESSION_EXPIRE_HOURS, TimeUnit.HOURS);
+        }
+        return session;
+    }
+
+    /**
+     * 获取分片上传会话
+     *
+     * @param uploadId 分块上传 ID
+     * @return 会话不存在或已过期时返回 null
+     */
+    public ChunkUploadSession getSession(String uploadId) {
+        if (StrUtil.isBlank(uploadId)) {
+            return null;
+        }
+        String sessionJson = stringRedisTemplate.opsForValue().get(String.format(SESSION_KEY, uploadId));
+        if (StrUtil.isBlank(sessionJson)) {
+            return null;
+        }
+        return JSONUtil.toBean(sessionJson, ChunkUploadSession.class);
+    }
+
+    /**
+     * 获取已确认的分片编号（升序）
+     *
+     * @param uploadId 分块上传 ID
+     * @return 分片编号列表
+     */
+    public List<Integer> listUploadedPartNumbers(String uploadId) {
+        List<Integer> partNumbers = new ArrayList<>();
+        for (Object partNumber : stringRedisTemplate.opsForHash().keys(String.format(PARTS_KEY, uploadId))) {
+            partNumbers.add(Integer.parseInt(partNumber.toString()));
+        }
+        partNumbers.sort(Integer::compareTo);
+        return partNumbers;
+    }
+
+    /**
+     * 上传单个分片
+     * 分片在请求线程中传输到对象存储，不同分片的请求可以并发执行（并发数有上限）；传输成功后才记录到 Redis
+     *
+     * @param session    会话
+     * @param partNumber 分片编号，从 1 开始
+     * @param file       分片数据
+     */
+    public void uploadPart(ChunkUploadSession session, Integer partNumber, MultipartFile file) {
+        ThrowUtils.throwIf(file == null, ErrorCode.PARAMS_ERROR, "分片不能为空");
+        int totalParts = session.getTotalParts();
+        ThrowUtils.throwIf(partNumber == null || partNumber < 1 || partNumber > totalParts,
+                ErrorCode.PARAMS_ERROR, "分片编号错误");
+        // 除最后一块外，每块必须等于分片大小；最后一块为剩余部分
+        long expectedSize = partNumber < totalParts
+                ? session.getPartSize()
+                : session.getFileSize() - session.getPartSize() * (totalParts - 1);
+        ThrowUtils.throwIf(file.getSize() != expectedSize, ErrorCode.PARAMS_ERROR, "分片大小错误");
+        byte[] partBytes;
+        try {
+            partBytes = file.getBytes();
+        } catch (Exception e) {
+            log.error("读取分片失败, uploadId = {}, partNumber = {}", session.getUploadId(), partNumber, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取分片失败");
+        }
+        // 并发传输的分片数有限，超出时直接拒绝，由客户端稍后重试该分片
+        if (!partUploadPermits.tryAcquire()) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "上传繁忙，请稍后重试该分片");
+        }
+        PartETag partETag;
+        try {
+            partETag = cosManager.uploadPart(session.getUploadPath(), session.getUploadId(), partNumber,
+                    new ByteArrayInputStream(partBytes), partBytes.length);
+        } catch (Exception e) {
+            log.error("分片上传到对象存储失败, uploadId = {}, partNumber = {}", session.getUploadId(), partNumber, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "分片上传失败，请重试该分片");
+        } finally {
+            partUploadPermits.release();
+        }
+        // 记录已确认的分片，并为会话续期
+        String partsKey = String.format(PARTS_KEY, session.getUploadId());
+        stringRedisTemplate.opsForHash().put(partsKey, String.valueOf(partNumber), partETag.getETag());
+        stringRedisTemplate.expire(partsKey, SESSION_EXPIRE_HOURS, TimeUnit.HOURS);
+        stringRedisTemplate.expire(String.format(SESSION_KEY, session.getUploadId()), SESSION_EXPIRE_HOURS, TimeUnit.HOURS);
+        if (StrUtil.isNotBlank(session.getFileHash())) {
+            stringRedisTemplate.expire(String.format(FILE_KEY, session.getUserId(), session.getFileHash()),
+                    SESSION_EXPIRE_HOURS, TimeUnit.HOURS);
+        }
+    }
+
+    /**
+     * 完成分片上传，合并分片并封装返回结果
+     * 会话保留到图片保存成功后由调用方删除（removeSession）；保存失败时客户端可以重试，已合并的对象直接复用
+     *
+     * @param session 会话
+     * @return 上传结果
+     */
+    public UploadPictureResult complete(ChunkUploadSession session) {
+        String uploadId = session.getUploadId();
+        String resultKey = String.format(RESULT_KEY, uploadId);
+        String resultJson = stringRedisTemplate.opsForValue().get(resultKey);
+        if (StrUtil.isNotBlank(resultJson)) {
+            return JSONUtil.toBean(resultJson, UploadPictureResult.class);
+        }
+        Map<Object, Object> parts = stringRedisTemplate.opsForHash().entries(String.format(PARTS_KEY, uploadId));
+        ThrowUtils.throwIf(parts.size() != session.getTotalParts(), ErrorCode.PARAMS_ERROR, "仍有分片未上传");
+        List<PartETag> partETags = new ArrayList<>(parts.size());
+        for (int partNumber = 1; partNumber <= session.getTotalParts(); partNumber++) {
+            Object eTag = parts.get(String.valueOf(partNumber));
+            ThrowUtils.throwIf(eTag == null, ErrorCode.PARAMS_ERROR, "仍有分片未上传");
+            partETags.add(new PartETag(partNumber, eTag.toString()));
+        }
+        CompleteMultipartUploadResult completeResult;
+        try {
+            completeResult = cosManager.completeMultipartPictureUpload(session.getUploadPath(), uploadId, partETags,
+                    session.getFileSize());
+        } catch (Exception e) {
+            log.error("合并分片失败, uploadId = {}", uploadId, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
+        }
+        UploadPictureResult uploadPictureResult = uploadPictureResultBuilder.build(session.getOriginalFilename(),
+                session.getUploadPath(), session.getFileSize(), completeResult.getCiUploadResult());
+        // 分块上传 ID 合并后即失效，保存结果供重试使用
+        stringRedisTemplate.opsForValue().set(resultKey, JSONUtil.toJsonStr(uploadPictureResult),
+                SESSION_EXPIRE_HOURS, TimeUnit.HOURS);
+        return uploadPictureResult;
+    }
+
+    /**
+     * 取消分片上传，释放对象存储中已上传的分片（已合并时删除合并后的对象）
+     *
+     * @param session 会话
+     */
+    public void abort(ChunkUploadSession session) {
+        String resultJson = stringRedisTemplate.opsForValue().get(String.format(RESULT_KEY, session.getUploadId()));
+        try {
+            if (StrUtil.isNotBlank(resultJson)) {
+                // 已合并但图片没有保存成功，删除合并后的对象
+                UploadPictureResult uploadPictureResult = JSONUtil.toBean(resultJson, UploadPictureResult.class);
+                cosManager.deleteObject(session.getUploadPath());
+                cosManager.deleteObjectByUrl(uploadPictureResult.getUrl());
+                cosManager.deleteObjectByUrl(uploadPictureResult.getThumbnailUrl());
+            } else {
+                cosManager.abortMultipartUpload(session.getUploadPath(), session.getUploadId());
+            }
+        } catch (Exception e) {
+            // 分块可能已被合并或过期清理，不影响会话删除
+            log.warn("取消分片上传失败, uploadId = {}", session.getUploadId(), e);
+        }
+        removeSession(session);
+    }
+
+    /**
+     * 删除会话相关的缓存，图片保存成功或取消上传后调用
+     *
+     * @param session 会话
+     */
+    public void removeSession(ChunkUploadSession session) {
+        List<String> keys = new ArrayList<>();
+        keys.add(String.format(SESSION_KEY, session.getUploadId()));
+        keys.add(String.format(PARTS_KEY, session.getUploadId()));
+        keys.add(String.format(RESULT_KEY, session.getUploadId()));
+        if (StrUtil.isNotBlank(session.getFileHash())) {
+            keys.add(String.format(FILE_KEY, session.getUserId(), session.getFileHash()));
+        }
+        stringRedisTemplate.delete(keys);
+    }
+}
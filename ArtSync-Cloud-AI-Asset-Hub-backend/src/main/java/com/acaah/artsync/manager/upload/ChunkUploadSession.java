@@ -0,0 +1,70 @@
+package com.acaah.artsync.manager.upload;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 分片上传会话
+ * 保存在 Redis 中，客户端中断后可凭 uploadId 继续上传
+ */
+@Data
+public class ChunkUploadSession implements Serializable {
+
+    /**
+     * 对象存储分块上传 ID
+     */
+    private String uploadId;
+
+    /**
+     * 对象存储中的文件路径
+     */
+    private String uploadPath;
+
+    /**
+     * 原始文件名
+     */
+    private String originalFilename;
+
+    /**
+     * 文件总大小
+     */
+    private Long fileSize;
+
+    /**
+     * 分片大小（最后一个分片可能更小）
+     */
+    private Long partSize;
+
+    /**
+     * 分片总数
+     */
+    private Integer totalParts;
+
+    /**
+     * 文件摘要（客户端提供，仅用于断点续传时查找会话）
+     */
+    private String fileHash;
+
+    /**
+     * 上传用户 id
+     */
+    private Long userId;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 图片 id（用于修改）
+     */
+    private Long pictureId;
+
+    /**
+     * 图片名称
+     */
+    private String picName;
+
+    private static final long serialVersionUID = 1L;
+}
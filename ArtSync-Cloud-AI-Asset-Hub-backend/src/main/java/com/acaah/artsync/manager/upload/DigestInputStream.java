@@ -0,0 +1,71 @@
+package com.acaah.artsync.manager.upload;
+
+import cn.hutool.core.util.HexUtil;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 边读边统计的输入流
+ * 数据流经时同步累计字节数并计算 SHA-256 摘要，无需额外读取一遍文件
+ */
+public class DigestInputStream extends FilterInputStream {
+
+    private final MessageDigest messageDigest;
+
+    private long byteCount;
+
+    public DigestInputStream(InputStream in) {
+        super(in);
+        try {
+            this.messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            messageDigest.update((byte) b);
+            byteCount++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            messageDigest.update(b, off, n);
+            byteCount += n;
+        }
+        return n;
+    }
+
+    /**
+     * 摘要依赖顺序读取，不支持 mark / reset
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * 已读取的字节数
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * 已读取内容的 SHA-256 摘要（十六进制），调用后摘要状态会被重置
+     */
+    public String getSha256Hex() {
+        return HexUtil.encodeHexStr(messageDigest.digest());
+    }
+}
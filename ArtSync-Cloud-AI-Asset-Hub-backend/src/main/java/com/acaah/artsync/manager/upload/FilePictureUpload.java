@@ -1,12 +1,14 @@
 package com.acaah.artsync.manager.upload;
 
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
 
@@ -38,6 +40,22 @@ public class FilePictureUpload extends PictureUploadTemplate {
         return multipartFile.getOriginalFilename();
     }
 
+    @Override
+    protected String computeHash(Object inputSource) throws Exception {
+        MultipartFile multipartFile = (MultipartFile) inputSource;
+        // 表单文件已在服务端，预先读取一遍计算摘要，命中时即可省去上传
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            return DigestUtil.sha256Hex(inputStream);
+        }
+    }
+
+    @Override
+    protected UploadStream openStream(Object inputSource) throws Exception {
+        MultipartFile multipartFile = (MultipartFile) inputSource;
+        // 表单文件大小始终已知，直接流式上传
+        return new UploadStream(multipartFile.getInputStream(), multipartFile.getSize());
+    }
+
     @Override
     protected void processFile(Object inputSource, File file) throws Exception {
         MultipartFile multipartFile = (MultipartFile) inputSource;
@@ -0,0 +1,52 @@
+package com.acaah.artsync.manager.upload;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按域名限速
+ * 同一域名的请求之间至少间隔固定时间，避免批量抓取时对单个站点请求过快被封禁
+ */
+@Component
+public class HostRateLimiter {
+
+    /**
+     * 同一域名两次请求的最小间隔（毫秒）
+     */
+    private static final long MIN_INTERVAL_MILLIS = 200;
+
+    /**
+     * 域名 => 下一个可用的请求时间点（纳秒）
+     */
+    private final Map<String, AtomicLong> nextPermitNanosMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取指定域名的请求许可，必要时阻塞等待
+     *
+     * @param host 域名
+     */
+    public void acquire(String host) throws InterruptedException {
+        AtomicLong nextPermitNanos = nextPermitNanosMap.computeIfAbsent(host, key -> new AtomicLong(System.nanoTime()));
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(MIN_INTERVAL_MILLIS);
+        long now;
+        long permitNanos;
+        // 预定一个时间槽，多个线程并发获取时依次顺延
+        while (true) {
+            now = System.nanoTime();
+            long next = nextPermitNanos.get();
+            // nanoTime 只能比较差值
+            permitNanos = next - now > 0 ? next : now;
+            if (nextPermitNanos.compareAndSet(next, permitNanos + intervalNanos)) {
+                break;
+            }
+        }
+        long waitNanos = permitNanos - now;
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
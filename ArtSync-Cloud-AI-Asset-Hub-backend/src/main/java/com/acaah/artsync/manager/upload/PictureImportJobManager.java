@@ -0,0 +1,123 @@
+package com.acaah.artsync.manager.upload;
+
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.acaah.artsync.model.enums.PictureImportJobStatusEnum;
+import com.acaah.artsync.model.vo.PictureUploadBatchJobVO;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量导入任务进度管理
+ * 进度保存在 Redis 中，任何实例都可以查询
+ */
+@Component
+public class PictureImportJobManager {
+
+    private static final String JOB_KEY = "artsync:picture:import:job:%s";
+
+    /**
+     * 任务进度保留时间（小时）
+     */
+    private static final long JOB_EXPIRE_HOURS = 24;
+
+    private static final String FIELD_USER_ID = "userId";
+
+    private static final String FIELD_STATUS = "status";
+
+    private static final String FIELD_TOTAL = "total";
+
+    private static final String FIELD_UPLOADED = "uploadedCount";
+
+    private static final String FIELD_FAILED = "failedCount";
+
+    private static final String FIELD_ERROR = "errorMessage";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 创建任务
+     *
+     * @param jobId  任务 id
+     * @param userId 创建用户 id
+     * @param total  目标数量
+     */
+    public void createJob(String jobId, Long userId, int total) {
+        String key = String.format(JOB_KEY, jobId);
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_USER_ID, String.valueOf(userId));
+        fields.put(FIELD_STATUS, PictureImportJobStatusEnum.RUNNING.getValue());
+        fields.put(FIELD_TOTAL, String.valueOf(total));
+        fields.put(FIELD_UPLOADED, "0");
+        fields.put(FIELD_FAILED, "0");
+        stringRedisTemplate.opsForHash().putAll(key, fields);
+        stringRedisTemplate.expire(key, JOB_EXPIRE_HOURS, TimeUnit.HOURS);
+    }
+
+    /**
+     * 累加成功数量
+     */
+    public void increaseUploaded(String jobId, int delta) {
+        stringRedisTemplate.opsForHash().increment(String.format(JOB_KEY, jobId), FIELD_UPLOADED, delta);
+    }
+
+    /**
+     * 累加失败数量
+     */
+    public void increaseFailed(String jobId, int delta) {
+        stringRedisTemplate.opsForHash().increment(String.format(JOB_KEY, jobId), FIELD_FAILED, delta);
+    }
+
+    /**
+     * 标记任务完成
+     */
+    public void finishJob(String jobId) {
+        stringRedisTemplate.opsForHash().put(String.format(JOB_KEY, jobId), FIELD_STATUS,
+                PictureImportJobStatusEnum.SUCCEED.getValue());
+    }
+
+    /**
+     * 标记任务失败
+     */
+    public void failJob(String jobId, String errorMessage) {
+        String key = String.format(JOB_KEY, jobId);
+        stringRedisTemplate.opsForHash().put(key, FIELD_STATUS, PictureImportJobStatusEnum.FAILED.getValue());
+        stringRedisTemplate.opsForHash().put(key, FIELD_ERROR, StrUtil.nullToEmpty(errorMessage));
+    }
+
+    /**
+     * 获取任务创建用户 id
+     *
+     * @return 任务不存在或已过期时返回 null
+     */
+    public Long getJobUserId(String jobId) {
+        Object userId = stringRedisTemplate.opsForHash().get(String.format(JOB_KEY, jobId), FIELD_USER_ID);
+        return userId == null ? null : Long.valueOf(userId.toString());
+    }
+
+    /**
+     * 获取任务进度
+     *
+     * @return 任务不存在或已过期时返回 null
+     */
+    public PictureUploadBatchJobVO getJob(String jobId) {
+        Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(String.format(JOB_KEY, jobId));
+        if (ObjUtil.isEmpty(fields)) {
+            return null;
+        }
+        PictureUploadBatchJobVO jobVO = new PictureUploadBatchJobVO();
+        jobVO.setJobId(jobId);
+        jobVO.setStatus((String) fields.get(FIELD_STATUS));
+        jobVO.setTotal(Integer.valueOf((String) fields.get(FIELD_TOTAL)));
+        jobVO.setUploadedCount(Integer.valueOf((String) fields.get(FIELD_UPLOADED)));
+        jobVO.setFailedCount(Integer.valueOf((String) fields.get(FIELD_FAILED)));
+        jobVO.setErrorMessage((String) fields.get(FIELD_ERROR));
+        return jobVO;
+    }
+}
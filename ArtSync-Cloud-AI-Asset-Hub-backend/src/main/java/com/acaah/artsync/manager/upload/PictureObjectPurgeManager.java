@@ -0,0 +1,77 @@
+package com.acaah.artsync.manager.upload;
+
+import cn.hutool.core.util.StrUtil;
+import com.acaah.artsync.manager.CosManager;
+import com.acaah.artsync.model.entity.PictureObject;
+import com.acaah.artsync.service.PictureObjectService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片存储对象清理
+ * 释放引用时不立即删除文件：此时可能有上传刚命中该内容、正准备增加引用。
+ * 引用归零的对象在宽限期内可被重新引用，超过宽限期后在这里先条件删除登记，再删除对象存储中的文件
+ */
+@Slf4j
+@Component
+public class PictureObjectPurgeManager {
+
+    private static final String LOCK_KEY = "artsync:picture:object:purge:lock";
+
+    /**
+     * 锁的过期时间（分钟）
+     */
+    private static final long LOCK_EXPIRE_MINUTES = 10;
+
+    private static final int PURGE_BATCH_SIZE = 200;
+
+    @Resource
+    private PictureObjectService pictureObjectService;
+
+    @Resource
+    private CosManager cosManager;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 每 10 分钟清理一次；多个实例同时只有一个执行
+     */
+    @Scheduled(initialDelay = 600_000L, fixedDelay = 600_000L)
+    public void scheduledPurge() {
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, "1", LOCK_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            List<PictureObject> purgedList;
+            do {
+                purgedList = pictureObjectService.purgeUnreferenced(PURGE_BATCH_SIZE);
+                purgedList.forEach(this::deleteFile);
+            } while (purgedList.size() == PURGE_BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("清理图片存储对象失败", e);
+        } finally {
+            stringRedisTemplate.delete(LOCK_KEY);
+        }
+    }
+
+    private void deleteFile(PictureObject pictureObject) {
+        try {
+            cosManager.deleteObjectByUrl(pictureObject.getUrl());
+            String thumbnailUrl = pictureObject.getThumbnailUrl();
+            if (StrUtil.isNotBlank(thumbnailUrl) && !StrUtil.equals(thumbnailUrl, pictureObject.getUrl())) {
+                cosManager.deleteObjectByUrl(thumbnailUrl);
+            }
+        } catch (Exception e) {
+            log.error("删除图片文件失败, picHash = {}, url = {}", pictureObject.getPicHash(), pictureObject.getUrl(), e);
+        }
+    }
+}
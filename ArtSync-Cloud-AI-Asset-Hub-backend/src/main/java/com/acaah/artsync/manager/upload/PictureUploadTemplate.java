@@ -1,25 +1,23 @@
 package com.acaah.artsync.manager.upload;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.exceptions.ExceptionUtil;
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.RandomUtil;
-import com.acaah.artsync.config.CosClientConfig;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.manager.CosManager;
 import com.acaah.artsync.model.dto.file.UploadPictureResult;
+import com.acaah.artsync.service.PictureObjectService;
 import com.qcloud.cos.model.PutObjectResult;
 import com.qcloud.cos.model.ciModel.persistence.CIObject;
-import com.qcloud.cos.model.ciModel.persistence.ImageInfo;
-import com.qcloud.cos.model.ciModel.persistence.ProcessResults;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.annotation.Resource;
 import java.io.File;
 import java.util.Date;
-import java.util.List;
 
 /**
  * 图片上传模板类，定义了图片上传的基本流程，使用模板方法模式
@@ -27,8 +25,9 @@ import java.util.List;
  * 该类提供了图片上传的完整流程，包括：
  * - 图片校验
  * - 文件名生成
- * - 临时文件创建
- * - 文件处理
+ * - 按内容摘要复用已存储的图片
+ * - 流式上传到对象存储（内容长度已知时）
+ * - 临时文件创建与文件处理（内容长度未知时）
  * - 上传到对象存储
  * - 结果封装
  * - 临时文件清理
@@ -37,10 +36,13 @@ import java.util.List;
 public abstract class PictureUploadTemplate {
 
     @Resource
-    private CosClientConfig cosClientConfig;
+    private CosManager cosManager;
 
     @Resource
-    private CosManager cosManager;
+    private UploadPictureResultBuilder uploadPictureResultBuilder;
+
+    @Resource
+    private PictureObjectService pictureObjectService;
 
     /**
      * 上传图片
@@ -65,41 +67,95 @@ public abstract class PictureUploadTemplate {
 //        }
         String uploadPath = String.format("/%s/%s", uploadPathPrefix, uploadFilename);
         File file = null;
+        UploadStream uploadStream = null;
         try {
-            // 3. 创建临时文件，获取文件到服务器
-            file = File.createTempFile(uploadPath, null);
-            // 处理文件来源
-            processFile(inputSource, file);
-            // 4. 上传图片到对象存储
-            PutObjectResult putObjectResult = cosManager.putPictureObject(uploadPath, file);
-            // 5. 获取图片信息对象，封装返回结果
-            ImageInfo imageInfo = putObjectResult.getCiUploadResult().getOriginalInfo().getImageInfo();
-            // 获取到图片处理结果
-            ProcessResults processResults = putObjectResult.getCiUploadResult().getProcessResults();
-            List<CIObject> objectList = processResults.getObjectList();
-            if (CollUtil.isNotEmpty(objectList)) {
-                // 获取压缩之后得到的文件信息
-                CIObject compressedCiObject = objectList.get(0);
-                // 缩略图默认等于压缩图
-                CIObject thumbnailCiObject = compressedCiObject;
-                // 有生成缩略图，才获取缩略图
-                if (objectList.size() > 1) {
-                    thumbnailCiObject = objectList.get(1);
+            // 3. 内容已存储过则直接复用，跳过上传与图片处理
+            String preComputedHash = computeHash(inputSource);
+            UploadPictureResult existPictureResult = pictureObjectService.getUploadPictureResult(preComputedHash);
+            if (existPictureResult != null) {
+                existPictureResult.setPicName(FileUtil.mainName(originalFilename));
+                return existPictureResult;
+            }
+            // 打开输入源，长度已知时直接流式上传，否则落盘到临时文件
+            uploadStream = openStream(inputSource);
+            PutObjectResult putObjectResult;
+            long picSize;
+            String picHash;
+            if (uploadStream != null && uploadStream.getContentLength() >= 0) {
+                long contentLength = uploadStream.getContentLength();
+                DigestInputStream digestInputStream = new DigestInputStream(uploadStream.getInputStream());
+                // 4. 上传图片到对象存储
+                putObjectResult = cosManager.putPictureObject(uploadPath, digestInputStream, contentLength);
+                // 实际读取的字节数必须与声明的长度一致，否则说明数据被截断，删除已上传的不完整对象
+                if (digestInputStream.getByteCount() != contentLength) {
+                    this.deleteUploadedObjects(uploadPath, putObjectResult);
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传数据不完整");
+                }
+                picSize = contentLength;
+                picHash = digestInputStream.getSha256Hex();
+            } else {
+                file = File.createTempFile(uploadPath, null);
+                if (uploadStream != null) {
+                    // 已打开的数据流直接写入临时文件，同时计算摘要
+                    DigestInputStream digestInputStream = new DigestInputStream(uploadStream.getInputStream());
+                    FileUtil.writeFromStream(digestInputStream, file, false);
+                    picHash = digestInputStream.getSha256Hex();
+                } else {
+                    // 处理文件来源
+                    processFile(inputSource, file);
+                    picHash = DigestUtil.sha256Hex(file);
                 }
-                // 封装压缩图的返回结果
-                return buildResult(originalFilename, compressedCiObject, thumbnailCiObject, imageInfo);
+                picSize = FileUtil.size(file);
+                // 4. 上传图片到对象存储
+                putObjectResult = cosManager.putPictureObject(uploadPath, file);
             }
-            return buildResult(originalFilename, file, uploadPath, imageInfo);
+            // 5. 获取图片信息对象，封装返回结果
+            UploadPictureResult uploadPictureResult = uploadPictureResultBuilder.build(originalFilename, uploadPath,
+                    picSize, putObjectResult.getCiUploadResult());
+            uploadPictureResult.setPicHash(picHash);
+            return uploadPictureResult;
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
+            // 读取输入源时的校验失败（如超出大小）可能被对象存储 SDK 包装，还原为原始错误
+            Throwable businessCause = ExceptionUtil.getCausedBy(e, BusinessException.class);
+            if (businessCause != null) {
+                throw (BusinessException) businessCause;
+            }
             log.error("图片上传到对象存储失败", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
         } finally {
-            // 6. 临时文件清理
+            // 6. 关闭数据流，清理临时文件
+            if (uploadStream != null) {
+                IoUtil.close(uploadStream.getInputStream());
+            }
             this.deleteTempFile(file);
         }
 
     }
 
+    /**
+     * 打开输入源的数据流，用于流式上传
+     * 默认不支持，返回 null 时回退到 processFile 落盘
+     *
+     * @param inputSource 输入源
+     * @return 数据流及内容长度，内容长度未知时会先落盘再上传
+     */
+    protected UploadStream openStream(Object inputSource) throws Exception {
+        return null;
+    }
+
+    /**
+     * 在上传前计算输入源内容的 SHA-256 摘要，用于命中已存储的图片时跳过上传
+     * 默认不计算（例如 URL 只能边下载边计算），返回 null 时在上传过程中计算
+     *
+     * @param inputSource 输入源
+     * @return 摘要（十六进制）
+     */
+    protected String computeHash(Object inputSource) throws Exception {
+        return null;
+    }
+
     /**
      * 校验输入源（本地文件或 URL）
      */
@@ -111,68 +167,28 @@ public abstract class PictureUploadTemplate {
     protected abstract String getOriginFilename(Object inputSource);
 
     /**
-     * 处理输入源并生成本地临时文件
+     * 处理输入源并生成本地临时文件（无法流式上传时使用）
      */
     protected abstract void processFile(Object inputSource, File file) throws Exception;
 
     /**
-     * 封装返回结果
-     *
-     * @param originalFilename   原始文件名
-     * @param compressedCiObject 压缩后的对象
-     * @param thumbnailCiObject 缩略图对象
-     * @param imageInfo 图片信息
-     * @return
-     */
-    private UploadPictureResult buildResult(String originalFilename, CIObject compressedCiObject, CIObject thumbnailCiObject,
-                                            ImageInfo imageInfo) {
-        // 计算宽高
-        int picWidth = compressedCiObject.getWidth();
-        int picHeight = compressedCiObject.getHeight();
-        double picScale = NumberUtil.round(picWidth * 1.0 / picHeight, 2).doubleValue();
-        // 封装返回结果
-        UploadPictureResult uploadPictureResult = new UploadPictureResult();
-        // 设置压缩后的原图地址
-        uploadPictureResult.setUrl(cosClientConfig.getHost() + "/" + compressedCiObject.getKey());
-        uploadPictureResult.setPicName(FileUtil.mainName(originalFilename));
-        uploadPictureResult.setPicSize(compressedCiObject.getSize().longValue());
-        uploadPictureResult.setPicWidth(picWidth);
-        uploadPictureResult.setPicHeight(picHeight);
-        uploadPictureResult.setPicScale(picScale);
-        uploadPictureResult.setPicFormat(compressedCiObject.getFormat());
-        uploadPictureResult.setPicColor(imageInfo.getAve());
-        // 设置缩略图地址
-        uploadPictureResult.setThumbnailUrl(cosClientConfig.getHost() + "/" + thumbnailCiObject.getKey());
-        // 返回可访问的地址
-        return uploadPictureResult;
-    }
-
-    /**
-     * 封装返回结果
+     * 删除已上传的对象，包括图片处理生成的压缩图和缩略图
      *
-     * @param originalFilename
-     * @param file
-     * @param uploadPath
-     * @param imageInfo        对象存储返回的图片信息
-     * @return
+     * @param uploadPath      原图路径
+     * @param putObjectResult 上传结果
      */
-    private UploadPictureResult buildResult(String originalFilename, File file, String uploadPath, ImageInfo imageInfo) {
-        // 计算宽高
-        int picWidth = imageInfo.getWidth();
-        int picHeight = imageInfo.getHeight();
-        double picScale = NumberUtil.round(picWidth * 1.0 / picHeight, 2).doubleValue();
-        // 封装返回结果
-        UploadPictureResult uploadPictureResult = new UploadPictureResult();
-        uploadPictureResult.setUrl(cosClientConfig.getHost() + "/" + uploadPath);
-        uploadPictureResult.setPicName(FileUtil.mainName(originalFilename));
-        uploadPictureResult.setPicSize(FileUtil.size(file));
-        uploadPictureResult.setPicWidth(picWidth);
-        uploadPictureResult.setPicHeight(picHeight);
-        uploadPictureResult.setPicScale(picScale);
-        uploadPictureResult.setPicFormat(imageInfo.getFormat());
-        uploadPictureResult.setPicColor(imageInfo.getAve());
-        // 返回可访问的地址
-        return uploadPictureResult;
+    private void deleteUploadedObjects(String uploadPath, PutObjectResult putObjectResult) {
+        try {
+            cosManager.deleteObject(uploadPath);
+            if (putObjectResult.getCiUploadResult() != null
+                    && putObjectResult.getCiUploadResult().getProcessResults() != null) {
+                for (CIObject ciObject : putObjectResult.getCiUploadResult().getProcessResults().getObjectList()) {
+                    cosManager.deleteObject(ciObject.getKey());
+                }
+            }
+        } catch (Exception e) {
+            log.error("删除不完整的上传对象失败, key = {}", uploadPath, e);
+        }
     }
 
     /**
@@ -0,0 +1,62 @@
+package com.acaah.artsync.manager.upload;
+
+import com.acaah.artsync.exception.BusinessException;
+import com.acaah.artsync.exception.ErrorCode;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 限制读取大小的输入流
+ * 读取的字节数一旦超过上限立即中止，不依赖对方声明的 Content-Length
+ */
+public class SizeLimitInputStream extends FilterInputStream {
+
+    private final long maxSize;
+
+    private final String message;
+
+    private long byteCount;
+
+    /**
+     * @param in      原始输入流
+     * @param maxSize 允许读取的最大字节数
+     * @param message 超出上限时的提示信息
+     */
+    public SizeLimitInputStream(InputStream in, long maxSize, String message) {
+        super(in);
+        this.maxSize = maxSize;
+        this.message = message;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(int n) {
+        byteCount += n;
+        if (byteCount > maxSize) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, message);
+        }
+    }
+}
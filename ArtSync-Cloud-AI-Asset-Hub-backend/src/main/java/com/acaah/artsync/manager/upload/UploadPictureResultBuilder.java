@@ -0,0 +1,116 @@
+package com.acaah.artsync.manager.upload;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.NumberUtil;
+import com.acaah.artsync.config.CosClientConfig;
+import com.acaah.artsync.model.dto.file.UploadPictureResult;
+import com.qcloud.cos.model.ciModel.persistence.CIObject;
+import com.qcloud.cos.model.ciModel.persistence.CIUploadResult;
+import com.qcloud.cos.model.ciModel.persistence.ImageInfo;
+import com.qcloud.cos.model.ciModel.persistence.ProcessResults;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+/**
+ * 图片上传结果封装
+ * 将数据万象返回的图片处理结果转换为 UploadPictureResult，普通上传和分片上传共用
+ */
+@Component
+public class UploadPictureResultBuilder {
+
+    @Resource
+    private CosClientConfig cosClientConfig;
+
+    /**
+     * 根据数据万象处理结果封装返回结果
+     *
+     * @param originalFilename 原始文件名
+     * @param uploadPath       上传路径
+     * @param picSize          原图大小
+     * @param ciUploadResult   数据万象处理结果
+     * @return
+     */
+    public UploadPictureResult build(String originalFilename, String uploadPath, long picSize, CIUploadResult ciUploadResult) {
+        // 获取图片信息对象
+        ImageInfo imageInfo = ciUploadResult.getOriginalInfo().getImageInfo();
+        // 获取到图片处理结果
+        ProcessResults processResults = ciUploadResult.getProcessResults();
+        List<CIObject> objectList = processResults.getObjectList();
+        if (CollUtil.isNotEmpty(objectList)) {
+            // 获取压缩之后得到的文件信息
+            CIObject compressedCiObject = objectList.get(0);
+            // 缩略图默认等于压缩图
+            CIObject thumbnailCiObject = compressedCiObject;
+            // 有生成缩略图，才获取缩略图
+            if (objectList.size() > 1) {
+                thumbnailCiObject = objectList.get(1);
+            }
+            // 封装压缩图的返回结果
+            return buildResult(originalFilename, compressedCiObject, thumbnailCiObject, imageInfo);
+        }
+        return buildResult(originalFilename, picSize, uploadPath, imageInfo);
+    }
+
+    /**
+     * 封装返回结果
+     *
+     * @param originalFilename   原始文件名
+     * @param compressedCiObject 压缩后的对象
+     * @param thumbnailCiObject 缩略图对象
+     * @param imageInfo 图片信息
+     * @return
+     */
+    private UploadPictureResult buildResult(String originalFilename, CIObject compressedCiObject, CIObject thumbnailCiObject,
+                                            ImageInfo imageInfo) {
+        // 计算宽高
+        int picWidth = compressedCiObject.getWidth();
+        int picHeight = compressedCiObject.getHeight();
+        double picScale = NumberUtil.round(picWidth * 1.0 / picHeight, 2).doubleValue();
+        // 封装返回结果
+        UploadPictureResult uploadPictureResult = new UploadPictureResult();
+        // 设置压缩后的原图地址
+        uploadPictureResult.setUrl(cosClientConfig.getHost() + "/" + compressedCiObject.getKey());
+        uploadPictureResult.setPicName(FileUtil.mainName(originalFilename));
+        uploadPictureResult.setPicSize(compressedCiObject.getSize().longValue());
+        uploadPictureResult.setPicWidth(picWidth);
+        uploadPictureResult.setPicHeight(picHeight);
+        uploadPictureResult.setPicScale(picScale);
+        uploadPictureResult.setPicFormat(compressedCiObject.getFormat());
+        uploadPictureResult.setPicColor(imageInfo.getAve());
+        // 设置缩略图地址
+        uploadPictureResult.setThumbnailUrl(cosClientConfig.getHost() + "/" + thumbnailCiObject.getKey());
+        // 返回可访问的地址
+        return uploadPictureResult;
+    }
+
+    /**
+     * 封装返回结果
+     *
+     * @param originalFilename
+     * @param picSize          原图大小
+     * @param uploadPath
+     * @param imageInfo        对象存储返回的图片信息
+     * @return
+     */
+    private UploadPictureResult buildResult(String originalFilename, long picSize, String uploadPath, ImageInfo imageInfo) {
+        // 计算宽高
+        int picWidth = imageInfo.getWidth();
+        int picHeight = imageInfo.getHeight();
+        double picScale = NumberUtil.round(picWidth * 1.0 / picHeight, 2).doubleValue();
+        // 封装返回结果
+        UploadPictureResult uploadPictureResult = new UploadPictureResult();
+        uploadPictureResult.setUrl(cosClientConfig.getHost() + "/" + uploadPath);
+        uploadPictureResult.setPicName(FileUtil.mainName(originalFilename));
+        uploadPictureResult.setPicSize(picSize);
+        uploadPictureResult.setPicWidth(picWidth);
+        uploadPictureResult.setPicHeight(picHeight);
+        uploadPictureResult.setPicScale(picScale);
+        uploadPictureResult.setPicFormat(imageInfo.getFormat());
+        uploadPictureResult.setPicColor(imageInfo.getAve());
+        // 返回可访问的地址
+        return uploadPictureResult;
+    }
+}
@@ -0,0 +1,25 @@
+package com.acaah.artsync.manager.upload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.InputStream;
+
+/**
+ * 上传输入流
+ * 封装输入源打开后的数据流及其内容长度
+ */
+@Data
+@AllArgsConstructor
+public class UploadStream {
+
+    /**
+     * 数据流
+     */
+    private InputStream inputStream;
+
+    /**
+     * 内容长度，未知时为 -1
+     */
+    private long contentLength;
+}
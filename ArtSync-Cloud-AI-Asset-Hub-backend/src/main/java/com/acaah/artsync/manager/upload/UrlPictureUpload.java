@@ -1,25 +1,50 @@
 package com.acaah.artsync.manager.upload;
 
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.HttpResponse;
+import cn.hutool.http.Header;
 import cn.hutool.http.HttpStatus;
-import cn.hutool.http.HttpUtil;
-import cn.hutool.http.Method;
 import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
 @Service
 public class UrlPictureUpload extends PictureUploadTemplate {
 
+    /**
+     * 允许的最大文件大小
+     */
+    public static final long MAX_FILE_SIZE = 2 * 1024 * 1024L;
+
+    /**
+     * 识别图片格式需要读取的文件头长度
+     */
+    private static final int MAGIC_LENGTH = 12;
+
+    /**
+     * 允许的图片类型
+     */
+    private static final List<String> ALLOW_CONTENT_TYPES = Arrays.asList("image/jpeg", "image/jpg", "image/png", "image/webp");
+
+    @Resource
+    private HttpClient pictureHttpClient;
+
     @Override
     protected void validPicture(Object inputSource) {
         String fileUrl = (String) inputSource;
@@ -36,41 +61,7 @@ public class UrlPictureUpload extends PictureUploadTemplate {
         ThrowUtils.throwIf(!fileUrl.startsWith("http://") && !fileUrl.startsWith("https://"),
                 ErrorCode.PARAMS_ERROR, "仅支持 HTTP 或 HTTPS 协议的文件地址"
         );
-        // 4. 发送 HEAD 请求验证文件是否存在
-        HttpResponse httpResponse = null;
-        try {
-            httpResponse = HttpUtil.createRequest(Method.HEAD, fileUrl)
-                    .execute();
-            // 未正常返回，无需执行其他判断
-            if (httpResponse.getStatus() != HttpStatus.HTTP_OK) {
-                return;
-            }
-            // 5. 文件存在，文件类型校验
-            String contentType = httpResponse.header("Content-Type");
-            // 不为空，才校验是否合法，这样校验规则相对宽松
-            if (StrUtil.isNotBlank(contentType)) {
-                // 允许的图片类型
-                final List<String> ALLOW_CONTENT_TYPES = Arrays.asList("image/jpeg", "image/jpg", "image/png", "image/webp");
-                ThrowUtils.throwIf(!ALLOW_CONTENT_TYPES.contains(contentType.toLowerCase()),
-                        ErrorCode.PARAMS_ERROR, "文件类型错误");
-            }
-            // 6. 文件存在，文件大小校验
-            String contentLengthStr = httpResponse.header("Content-Length");
-            if (StrUtil.isNotBlank(contentLengthStr)) {
-                try {
-                    long contentLength = Long.parseLong(contentLengthStr);
-                    final long ONE_M = 1024 * 1024;
-                    ThrowUtils.throwIf(contentLength > 2 * ONE_M, ErrorCode.PARAMS_ERROR, "文件大小不能超过 2MB");
-                } catch (NumberFormatException e) {
-                    throw new BusinessException(ErrorCode.PARAMS_ERROR, "文件大小格式异常");
-                }
-            }
-        } finally {
-            // 记得释放资源
-            if (httpResponse != null) {
-                httpResponse.close();
-            }
-        }
+        // 文件是否存在、类型和大小在下载时校验，不再单独发送 HEAD 请求
     }
 
     @Override
@@ -79,10 +70,81 @@ public class UrlPictureUpload extends PictureUploadTemplate {
         return FileUtil.mainName(fileUrl);
     }
 
+    @Override
+    protected UploadStream openStream(Object inputSource) throws Exception {
+        String fileUrl = (String) inputSource;
+        HttpResponse<InputStream> httpResponse = pictureHttpClient.send(buildGetRequest(fileUrl),
+                HttpResponse.BodyHandlers.ofInputStream());
+        InputStream body = httpResponse.body();
+        try {
+            // 1. 文件存在
+            ThrowUtils.throwIf(httpResponse.statusCode() != HttpStatus.HTTP_OK, ErrorCode.OPERATION_ERROR, "文件下载失败");
+            // 2. 声明了类型，才校验是否合法，真实类型以文件头为准
+            String contentType = httpResponse.headers().firstValue(Header.CONTENT_TYPE.getValue()).orElse(null);
+            if (StrUtil.isNotBlank(contentType)) {
+                String mimeType = StrUtil.subBefore(contentType, ";", false).trim().toLowerCase();
+                ThrowUtils.throwIf(!ALLOW_CONTENT_TYPES.contains(mimeType), ErrorCode.PARAMS_ERROR, "文件类型错误");
+            }
+            // 3. 声明了大小，超出时不必再下载
+            long contentLength = httpResponse.headers().firstValueAsLong(Header.CONTENT_LENGTH.getValue()).orElse(-1L);
+            ThrowUtils.throwIf(contentLength > MAX_FILE_SIZE, ErrorCode.PARAMS_ERROR, "文件大小不能超过 2MB");
+            // 压缩编码的内容长度不是图片实际大小，按未知长度处理
+            if (httpResponse.headers().firstValue(Header.CONTENT_ENCODING.getValue()).isPresent()) {
+                contentLength = -1;
+            }
+            // 4. 根据文件头识别格式
+            BufferedInputStream bufferedInputStream = new BufferedInputStream(body);
+            bufferedInputStream.mark(MAGIC_LENGTH);
+            byte[] magic = bufferedInputStream.readNBytes(MAGIC_LENGTH);
+            bufferedInputStream.reset();
+            ThrowUtils.throwIf(!isAllowedPicture(magic), ErrorCode.PARAMS_ERROR, "文件类型错误");
+            // 5. 边下载边计数，未声明大小的文件超出上限时立即中止
+            InputStream limitedInputStream = new SizeLimitInputStream(bufferedInputStream, MAX_FILE_SIZE,
+                    "文件大小不能超过 2MB");
+            return new UploadStream(limitedInputStream, contentLength);
+        } catch (Exception e) {
+            IoUtil.close(body);
+            throw e;
+        }
+    }
+
     @Override
     protected void processFile(Object inputSource, File file) throws Exception {
         String fileUrl = (String) inputSource;
         // 下载文件到临时目录
-        HttpUtil.downloadFile(fileUrl, file);
+        HttpResponse<InputStream> httpResponse = pictureHttpClient.send(buildGetRequest(fileUrl),
+                HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = httpResponse.body()) {
+            ThrowUtils.throwIf(httpResponse.statusCode() != HttpStatus.HTTP_OK, ErrorCode.OPERATION_ERROR, "文件下载失败");
+            FileUtil.writeFromStream(new SizeLimitInputStream(body, MAX_FILE_SIZE, "文件大小不能超过 2MB"), file, false);
+        }
+    }
+
+    private HttpRequest buildGetRequest(String fileUrl) {
+        return HttpRequest.newBuilder(URI.create(fileUrl))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    /**
+     * 根据文件头判断是否为 JPEG、PNG 或 WebP
+     *
+     * @param magic 文件头
+     * @return 是否允许
+     */
+    private boolean isAllowedPicture(byte[] magic) {
+        // JPEG: FF D8 FF
+        if (magic.length >= 3 && (magic[0] & 0xFF) == 0xFF && (magic[1] & 0xFF) == 0xD8 && (magic[2] & 0xFF) == 0xFF) {
+            return true;
+        }
+        // PNG: 89 50 4E 47 0D 0A 1A 0A
+        if (magic.length >= 8 && (magic[0] & 0xFF) == 0x89 && magic[1] == 'P' && magic[2] == 'N' && magic[3] == 'G'
+                && magic[4] == 0x0D && magic[5] == 0x0A && magic[6] == 0x1A && magic[7] == 0x0A) {
+            return true;
+        }
+        // WebP: "RIFF" + 4 字节长度 + "WEBP"
+        return magic.length >= 12 && magic[0] == 'R' && magic[1] == 'I' && magic[2] == 'F' && magic[3] == 'F'
+                && magic[8] == 'W' && magic[9] == 'E' && magic[10] == 'B' && magic[11] == 'P';
     }
 }
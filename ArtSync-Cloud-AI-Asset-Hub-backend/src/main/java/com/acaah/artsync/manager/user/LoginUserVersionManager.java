@@ -0,0 +1,105 @@
+package com.acaah.artsync.manager.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 登录用户版本号管理
+ * 每个用户在 Redis 中维护一个版本号，用户信息（角色、资料、账号等）修改时递增；
+ * 会话中同时保存用户信息和对应的版本号，版本号未变化时直接使用会话中的用户，无需每次请求都查询数据库
+ */
+@Slf4j
+@Component
+public class LoginUserVersionManager {
+
+    private static final String VERSION_KEY = "artsync:user:version:%s";
+
+    /**
+     * 本地缓存的版本号有效期，其他实例的修改最多延迟这么久可见
+     */
+    private static final Duration LOCAL_VERSION_TTL = Duration.ofSeconds(2);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 用户 id => 版本号
+     */
+    private final Cache<Long, Long> versionCache = Caffeine.newBuilder()
+            .maximumSize(100_000L)
+            .expireAfterWrite(LOCAL_VERSION_TTL)
+            .build();
+
+    private final LongAdder sessionHitCount = new LongAdder();
+
+    private final LongAdder loadCount = new LongAdder();
+
+    /**
+     * 获取用户当前的版本号
+     *
+     * @param userId 用户 id
+     * @return 版本号，Redis 不可用时返回 null（调用方应回源数据库）
+     */
+    public Long getVersion(Long userId) {
+        try {
+            return versionCache.get(userId, key -> {
+                String value = stringRedisTemplate.opsForValue().get(String.format(VERSION_KEY, key));
+                return value == null ? 0L : Long.parseLong(value);
+            });
+        } catch (Exception e) {
+            log.warn("获取用户版本号失败, userId = {}", userId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 递增用户的版本号，使所有会话中缓存的该用户信息失效
+     *
+     * @param userId 用户 id
+     */
+    public void bumpVersion(Long userId) {
+        Long version = stringRedisTemplate.opsForValue().increment(String.format(VERSION_KEY, userId));
+        if (version != null) {
+            versionCache.put(userId, version);
+        } else {
+            versionCache.invalidate(userId);
+        }
+    }
+
+    /**
+     * 记录一次直接使用会话中的用户
+     */
+    public void recordSessionHit() {
+        sessionHitCount.increment();
+    }
+
+    /**
+     * 记录一次从数据库重新加载用户
+     */
+    public void recordLoad() {
+        loadCount.increment();
+    }
+
+    /**
+     * 定期输出节省的数据库查询次数
+     */
+    @Scheduled(initialDelay = 300_000L, fixedDelay = 300_000L)
+    public void logStats() {
+        long sessionHit = sessionHitCount.sumThenReset();
+        long load = loadCount.sumThenReset();
+        long total = sessionHit + load;
+        if (total == 0) {
+            return;
+        }
+        log.info("登录用户缓存统计: 请求 {}, 使用会话缓存（避免查库） {}, 查库 {}, 命中率 {}%",
+                total, sessionHit, load, String.format("%.2f", sessionHit * 100.0 / total));
+    }
+}
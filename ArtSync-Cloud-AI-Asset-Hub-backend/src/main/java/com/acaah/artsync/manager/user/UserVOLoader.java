@@ -0,0 +1,95 @@
+package com.acaah.artsync.manager.user;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.collection.CollUtil;
+import com.acaah.artsync.manager.readwrite.ReadWriteRouteContext;
+import com.acaah.artsync.mapper.UserMapper;
+import com.acaah.artsync.model.entity.User;
+import com.acaah.artsync.model.vo.UserVO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 脱敏用户信息批量加载
+ * 组装封装类时先收集一批用户 id，命中本地缓存的直接返回，其余用一次 IN 查询取回；
+ * 图片、空间的创建者高度重复，列表接口大多数情况下无需查询用户表。
+ * 用户信息修改时主动失效，其他实例依赖较短的过期时间
+ */
+@Component
+public class UserVOLoader {
+
+    @Resource
+    private UserMapper userMapper;
+
+    /**
+     * 用户 id => 脱敏用户信息
+     */
+    private final Cache<Long, UserVO> userVOCache = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .build();
+
+    /**
+     * 加载单个用户
+     *
+     * @param userId 用户 id
+     * @return 脱敏用户信息，用户不存在时返回 null
+     */
+    public UserVO load(Long userId) {
+        if (userId == null || userId <= 0) {
+            return null;
+        }
+        return this.loadMany(Collections.singleton(userId)).get(userId);
+    }
+
+    /**
+     * 批量加载用户
+     *
+     * @param userIds 用户 id
+     * @return 用户 id => 脱敏用户信息，不存在的用户不包含在结果中
+     */
+    public Map<Long, UserVO> loadMany(Collection<Long> userIds) {
+        Map<Long, UserVO> userVOMap = new HashMap<>();
+        if (CollUtil.isEmpty(userIds)) {
+            return userVOMap;
+        }
+        Set<Long> missUserIds = new HashSet<>();
+        for (Long userId : userIds) {
+            if (userId == null) {
+                continue;
+            }
+            UserVO userVO = userVOCache.getIfPresent(userId);
+            if (userVO != null) {
+                userVOMap.put(userId, userVO);
+            } else {
+                missUserIds.add(userId);
+            }
+        }
+        if (missUserIds.isEmpty()) {
+            return userVOMap;
+        }
+        // 未命中的用户一次查询，结果会缓存，读主库避免缓存从库上修改前的用户信息
+        for (User user : ReadWriteRouteContext.callOnPrimary(() -> userMapper.selectBatchIds(missUserIds))) {
+            UserVO userVO = BeanUtil.copyProperties(user, UserVO.class);
+            userVOCache.put(user.getId(), userVO);
+            userVOMap.put(user.getId(), userVO);
+        }
+        return userVOMap;
+    }
+
+    /**
+     * 用户信息修改或删除后失效缓存
+     *
+     * @param userId 用户 id
+     */
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            userVOCache.invalidate(userId);
+        }
+    }
+}
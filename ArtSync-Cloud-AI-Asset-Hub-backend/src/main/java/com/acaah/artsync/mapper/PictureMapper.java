@@ -1,7 +1,14 @@
 package com.acaah.artsync.mapper;
 
 import com.acaah.artsync.model.entity.Picture;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.Date;
+import java.util.List;
 
 /**
 * @author Administrator
@@ -11,6 +18,26 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface PictureMapper extends BaseMapper<Picture> {
 
+    /**
+     * 查询全文索引需要同步的图片（包含已逻辑删除的图片）
+     *
+     * @param updatedSince 更新时间下限，为空时查询全部
+     * @param lastId       上一批最后一条的 id
+     * @param size         每批数量
+     * @return 图片（仅包含 id、spaceId、name、introduction、reviewStatus、isDelete、updateTime）
+     */
+    List<Picture> listPictureForSearchIndex(@Param("updatedSince") Date updatedSince,
+                                            @Param("lastId") long lastId,
+                                            @Param("size") int size);
+
+    /**
+     * 流式读取图片大小，逐行交给 resultHandler 处理，不在内存中保留结果
+     *
+     * @param queryWrapper  查询条件（需自行包含逻辑删除条件）
+     * @param resultHandler 处理每一行
+     */
+    void streamPictureSize(@Param(Constants.WRAPPER) Wrapper<Picture> queryWrapper,
+                           ResultHandler<Long> resultHandler);
 }
 
 
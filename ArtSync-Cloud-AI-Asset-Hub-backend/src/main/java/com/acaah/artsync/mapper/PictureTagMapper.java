@@ -0,0 +1,23 @@
+package com.acaah.artsync.mapper;
+
+import com.acaah.artsync.model.entity.PictureTag;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+* @description 针对表【picture_tag(图片标签关联)】的数据库操作Mapper
+* @Entity com.acaah.artsync.model.entity.PictureTag
+*/
+public interface PictureTagMapper extends BaseMapper<PictureTag> {
+
+    /**
+     * 查询已有标签关联的图片 id
+     *
+     * @param pictureIds 图片 id
+     * @return 其中已有关联记录的图片 id
+     */
+    List<Long> listTaggedPictureId(@Param("pictureIds") Collection<Long> pictureIds);
+}
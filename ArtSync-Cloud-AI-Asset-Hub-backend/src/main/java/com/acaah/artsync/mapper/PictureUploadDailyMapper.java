@@ -0,0 +1,40 @@
+package com.acaah.artsync.mapper;
+
+import com.acaah.artsync.model.entity.PictureUploadDaily;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+* @description 针对表【picture_upload_daily(每日上传数量)】的数据库操作Mapper
+* @Entity com.acaah.artsync.model.entity.PictureUploadDaily
+*/
+public interface PictureUploadDailyMapper extends BaseMapper<PictureUploadDaily> {
+
+    /**
+     * 批量累加上传数量，记录不存在时插入
+     *
+     * @param uploadDailyList 统计范围、用户 id、日期和增量
+     */
+    void incrementUploadCount(@Param("uploadDailyList") Collection<PictureUploadDaily> uploadDailyList);
+
+    /**
+     * 批量写入上传数量（覆盖原值），记录不存在时插入
+     *
+     * @param uploadDailyList 统计范围、用户 id、日期和数量
+     */
+    void upsertUploadCount(@Param("uploadDailyList") Collection<PictureUploadDaily> uploadDailyList);
+
+    /**
+     * 根据 picture 统计时间段内每个空间、用户每天的上传数量，公共图库的 scopeId 为 0
+     *
+     * @param startTime 开始时间（包含）
+     * @param endTime   结束时间（不包含）
+     * @return 统计范围、用户 id、日期和数量
+     */
+    List<PictureUploadDaily> countPictureUploadGroupByDay(@Param("startTime") Date startTime,
+                                                          @Param("endTime") Date endTime);
+}
@@ -0,0 +1,12 @@
+package com.acaah.artsync.mapper;
+
+import com.acaah.artsync.model.entity.SpaceShard;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+* @description 针对表【space_shard(空间分表状态)】的数据库操作Mapper
+* @Entity com.acaah.artsync.model.entity.SpaceShard
+*/
+public interface SpaceShardMapper extends BaseMapper<SpaceShard> {
+
+}
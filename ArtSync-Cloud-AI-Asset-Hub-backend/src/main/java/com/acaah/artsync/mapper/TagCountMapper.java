@@ -0,0 +1,43 @@
+package com.acaah.artsync.mapper;
+
+import com.acaah.artsync.model.entity.TagCount;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+* @description 针对表【tag_count(标签使用次数)】的数据库操作Mapper
+* @Entity com.acaah.artsync.model.entity.TagCount
+*/
+public interface TagCountMapper extends BaseMapper<TagCount> {
+
+    /**
+     * 批量累加使用次数，记录不存在时插入
+     *
+     * @param tagCountList 统计范围、标签 id 和增量
+     */
+    void incrementTagCount(@Param("tagCountList") Collection<TagCount> tagCountList);
+
+    /**
+     * 根据 picture_tag 按空间和标签分组统计，覆盖各空间（公共图库的 scopeId 为 0）的使用次数，记录不存在时插入
+     *
+     * @return 影响的行数
+     */
+    int upsertScopeTagCountFromPictureTag();
+
+    /**
+     * 根据 picture_tag 按标签分组统计，覆盖全部图片（scopeId 为 -1）的使用次数，记录不存在时插入
+     *
+     * @return 影响的行数
+     */
+    int upsertAllTagCountFromPictureTag();
+
+    /**
+     * 把 picture_tag 中已没有关联的使用次数置为 0
+     *
+     * @return 归零的记录数
+     */
+    int resetOrphanTagCount();
+}
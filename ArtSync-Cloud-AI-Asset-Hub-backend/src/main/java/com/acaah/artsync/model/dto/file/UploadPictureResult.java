@@ -48,4 +48,9 @@ public class UploadPictureResult {
      */
     private String picColor;
 
+    /**
+     * 原图内容 SHA-256 摘要
+     */
+    private String picHash;
+
 }
@@ -0,0 +1,44 @@
+package com.acaah.artsync.model.dto.picture;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 分片上传初始化请求
+ */
+@Data
+public class PictureChunkUploadInitRequest implements Serializable {
+
+    /**
+     * 图片 id（用于修改）
+     */
+    private Long id;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 图片名称
+     */
+    private String picName;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件大小
+     */
+    private Long fileSize;
+
+    /**
+     * 文件摘要（客户端计算，用于断点续传）
+     */
+    private String fileHash;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,24 @@
+package com.acaah.artsync.model.dto.picture;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 分片上传请求（上传分片、完成、取消）
+ */
+@Data
+public class PictureChunkUploadRequest implements Serializable {
+
+    /**
+     * 分块上传 ID
+     */
+    private String uploadId;
+
+    /**
+     * 分片编号，从 1 开始（仅上传分片时使用）
+     */
+    private Integer partNumber;
+
+    private static final long serialVersionUID = 1L;
+}
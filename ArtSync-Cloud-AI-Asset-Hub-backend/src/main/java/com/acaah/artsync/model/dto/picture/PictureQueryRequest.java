@@ -106,6 +106,16 @@ public class PictureQueryRequest extends PageRequest implements Serializable {
      */  
     private Long userId;
 
+    /**
+     * 游标（游标分页时使用，取上一页返回的 nextCursor，首页为空）
+     */
+    private String cursor;
+
+    /**
+     * 游标分页的总数统计方式：none（默认，不统计）/ exact（精确）/ approx（近似，允许短暂滞后）
+     */
+    private String totalMode;
+
 
     private static final long serialVersionUID = 1L;  
 }
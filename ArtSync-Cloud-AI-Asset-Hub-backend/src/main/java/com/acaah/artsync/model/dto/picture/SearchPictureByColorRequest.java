@@ -18,5 +18,10 @@ public class SearchPictureByColorRequest implements Serializable { // 类声明
      */
     private Long spaceId;
 
+    /**
+     * 距离计算方式：rgb（默认）/ ciede2000
+     */
+    private String distanceMode;
+
     private static final long serialVersionUID = 1L;
 }
@@ -0,0 +1,29 @@
+package com.acaah.artsync.model.dto.space;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 空间分表迁移请求
+ */
+@Data
+public class SpaceShardMigrateRequest implements Serializable {
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 每批处理的数量，为空时使用默认值或保持不变
+     */
+    private Integer batchSize;
+
+    /**
+     * 两批之间的间隔（毫秒），为空时使用默认值或保持不变
+     */
+    private Integer batchInterval;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -3,6 +3,8 @@ package com.acaah.artsync.model.dto.space.analyze;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import java.util.List;
+
 
 /**
  * 空间使用情况分析请求类
@@ -11,4 +13,8 @@ import lombok.EqualsAndHashCode;
 @Data
 public class SpaceSizeAnalyzeRequest extends SpaceAnalyzeRequest {
 
+    /**
+     * 分段的分界点（字节，严格递增），为空时使用默认分段：100KB、500KB、1MB
+     */
+    private List<Long> boundaries;
 }
@@ -10,4 +10,8 @@ import lombok.EqualsAndHashCode;
 @Data
 public class SpaceTagAnalyzeRequest extends SpaceAnalyzeRequest {
 
+    /**
+     * 返回使用次数前 N 的标签，为空时返回全部
+     */
+    private Integer topN;
 }
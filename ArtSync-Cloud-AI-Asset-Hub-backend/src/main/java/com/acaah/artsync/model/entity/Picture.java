@@ -122,6 +122,11 @@ public class Picture implements Serializable {
      */
     private String picColor;
 
+    /**
+     * 原图内容 SHA-256 摘要
+     */
+    private String picHash;
+
     /**  
      * 是否删除  
      */  
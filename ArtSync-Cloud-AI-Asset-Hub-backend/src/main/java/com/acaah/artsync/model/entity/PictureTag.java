@@ -0,0 +1,41 @@
+package com.acaah.artsync.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 图片标签关联
+ * @TableName picture_tag
+ */
+@TableName(value ="picture_tag")
+@Data
+public class PictureTag {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 图片 id
+     */
+    private Long pictureId;
+
+    /**
+     * 标签 id
+     */
+    private Long tagId;
+
+    /**
+     * 图片所属空间 id（为空表示公共图库）
+     */
+    private Long spaceId;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+}
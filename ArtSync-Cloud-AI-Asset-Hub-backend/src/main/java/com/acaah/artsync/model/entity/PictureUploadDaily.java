@@ -0,0 +1,46 @@
+package com.acaah.artsync.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 每日上传数量
+ * @TableName picture_upload_daily
+ */
+@TableName(value ="picture_upload_daily")
+@Data
+public class PictureUploadDaily {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 统计范围：空间 id，0 表示公共图库，-1 表示全部
+     */
+    private Long scopeId;
+
+    /**
+     * 上传用户 id
+     */
+    private Long userId;
+
+    /**
+     * 统计日期
+     */
+    private Date statDate;
+
+    /**
+     * 当日上传的图片数量
+     */
+    private Long uploadCount;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+}
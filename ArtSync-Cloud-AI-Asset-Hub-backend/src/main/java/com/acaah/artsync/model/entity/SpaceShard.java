@@ -0,0 +1,81 @@
+package com.acaah.artsync.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 空间分表状态
+ * @TableName space_shard
+ */
+@TableName(value ="space_shard")
+@Data
+public class SpaceShard {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 状态：0-复制中 1-增量同步中 2-清理中 3-已完成
+     */
+    private Integer status;
+
+    /**
+     * 是否暂停：0-否 1-是
+     */
+    private Integer paused;
+
+    /**
+     * 当前阶段已处理的最大图片 id
+     */
+    private Long lastPictureId;
+
+    /**
+     * 已复制的图片数量
+     */
+    private Long copiedCount;
+
+    /**
+     * 开始迁移时的图片数量
+     */
+    private Long totalCount;
+
+    /**
+     * 每批处理的数量
+     */
+    private Integer batchSize;
+
+    /**
+     * 两批之间的间隔（毫秒）
+     */
+    private Integer batchInterval;
+
+    /**
+     * 增量同步的起始时间
+     */
+    private Date syncTime;
+
+    /**
+     * 最近一次失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+}
@@ -0,0 +1,31 @@
+package com.acaah.artsync.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 标签
+ * @TableName tag
+ */
+@TableName(value ="tag")
+@Data
+public class Tag {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 标签名称
+     */
+    private String tagName;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+}
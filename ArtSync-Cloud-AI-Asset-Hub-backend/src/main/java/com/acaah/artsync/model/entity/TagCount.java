@@ -0,0 +1,41 @@
+package com.acaah.artsync.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 标签使用次数
+ * @TableName tag_count
+ */
+@TableName(value ="tag_count")
+@Data
+public class TagCount {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 统计范围：空间 id，0 表示公共图库，-1 表示全部
+     */
+    private Long scopeId;
+
+    /**
+     * 标签 id
+     */
+    private Long tagId;
+
+    /**
+     * 使用该标签的图片数量
+     */
+    private Long tagCount;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+}
@@ -0,0 +1,36 @@
+package com.acaah.artsync.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 颜色距离计算方式
+ */
+@Getter
+public enum ColorDistanceModeEnum {
+    RGB("RGB 欧氏距离", "rgb"),
+    CIEDE2000("CIEDE2000 感知色差", "ciede2000");
+
+    private final String text;
+    private final String value;
+
+    ColorDistanceModeEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     */
+    public static ColorDistanceModeEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (ColorDistanceModeEnum distanceModeEnum : ColorDistanceModeEnum.values()) {
+            if (distanceModeEnum.value.equals(value)) {
+                return distanceModeEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,37 @@
+package com.acaah.artsync.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 批量导入任务状态
+ */
+@Getter
+public enum PictureImportJobStatusEnum {
+    RUNNING("进行中", "running"),
+    SUCCEED("已完成", "succeed"),
+    FAILED("失败", "failed");
+
+    private final String text;
+    private final String value;
+
+    PictureImportJobStatusEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     */
+    public static PictureImportJobStatusEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (PictureImportJobStatusEnum jobStatusEnum : PictureImportJobStatusEnum.values()) {
+            if (jobStatusEnum.value.equals(value)) {
+                return jobStatusEnum;
+            }
+        }
+        return null;
+    }
+}
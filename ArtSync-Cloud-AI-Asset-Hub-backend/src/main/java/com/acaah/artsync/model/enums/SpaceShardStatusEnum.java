@@ -0,0 +1,48 @@
+package com.acaah.artsync.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 空间分表状态
+ * 复制中、增量同步中时图片仍在逻辑表 picture 中；清理中、已完成时已切换到分表 picture_{spaceId}
+ */
+@Getter
+public enum SpaceShardStatusEnum {
+
+    COPYING("复制中", 0),
+    CATCHING_UP("增量同步中", 1),
+    CLEANING("清理中", 2),
+    DONE("已完成", 3);
+
+    private final String text;
+
+    private final int value;
+
+    SpaceShardStatusEnum(String text, int value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 是否已切换到分表
+     */
+    public boolean isRouted() {
+        return this == CLEANING || this == DONE;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     */
+    public static SpaceShardStatusEnum getEnumByValue(Integer value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (SpaceShardStatusEnum statusEnum : SpaceShardStatusEnum.values()) {
+            if (statusEnum.value == value) {
+                return statusEnum;
+            }
+        }
+        return null;
+    }
+}
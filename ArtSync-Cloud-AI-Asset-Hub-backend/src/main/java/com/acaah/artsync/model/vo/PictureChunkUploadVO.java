@@ -0,0 +1,35 @@
+package com.acaah.artsync.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 分片上传会话视图
+ */
+@Data
+public class PictureChunkUploadVO implements Serializable {
+
+    /**
+     * 分块上传 ID
+     */
+    private String uploadId;
+
+    /**
+     * 分片大小（最后一个分片可能更小）
+     */
+    private Long partSize;
+
+    /**
+     * 分片总数
+     */
+    private Integer totalParts;
+
+    /**
+     * 已确认的分片编号，续传时跳过这些分片
+     */
+    private List<Integer> uploadedPartNumbers;
+
+    private static final long serialVersionUID = 1L;
+}
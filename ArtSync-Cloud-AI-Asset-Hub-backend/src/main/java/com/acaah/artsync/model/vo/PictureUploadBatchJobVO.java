@@ -0,0 +1,44 @@
+package com.acaah.artsync.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 批量导入任务进度
+ */
+@Data
+public class PictureUploadBatchJobVO implements Serializable {
+
+    /**
+     * 任务 id
+     */
+    private String jobId;
+
+    /**
+     * 任务状态：running / succeed / failed
+     */
+    private String status;
+
+    /**
+     * 目标数量
+     */
+    private Integer total;
+
+    /**
+     * 已成功导入的数量
+     */
+    private Integer uploadedCount;
+
+    /**
+     * 导入失败的数量（失败的图片会被跳过，由后续候选补足）
+     */
+    private Integer failedCount;
+
+    /**
+     * 任务失败原因
+     */
+    private String errorMessage;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,46 @@
+package com.acaah.artsync.service;
+
+import com.acaah.artsync.model.dto.file.UploadPictureResult;
+import com.acaah.artsync.model.entity.PictureObject;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.List;
+
+/**
+* @description 针对表【picture_object(图片存储对象)】的数据库操作Service
+*/
+public interface PictureObjectService extends IService<PictureObject> {
+
+    /**
+     * 根据内容摘要获取已存储的图片，用于跳过重复上传
+     *
+     * @param picHash 原图内容 SHA-256 摘要
+     * @return 已存储图片的上传结果（不含图片名称），不存在时返回 null
+     */
+    UploadPictureResult getUploadPictureResult(String picHash);
+
+    /**
+     * 为上传结果增加一次引用，摘要不存在时登记为新对象
+     * 需在保存图片的事务中调用，摘要已存在时返回已有对象，调用方应改用其地址
+     *
+     * @param uploadPictureResult 上传结果（picHash 不能为空）
+     * @return 该摘要对应的存储对象
+     */
+    PictureObject acquire(UploadPictureResult uploadPictureResult);
+
+    /**
+     * 释放一次引用
+     * 引用归零后保留登记和对象存储中的文件，宽限期内相同内容的上传仍可复用，超过宽限期后由 purgeUnreferenced 清理
+     *
+     * @param picHash 原图内容 SHA-256 摘要
+     */
+    void release(String picHash);
+
+    /**
+     * 删除引用归零且超过宽限期的登记
+     *
+     * @param limit 最多删除的数量
+     * @return 已删除的登记，调用方应清理对象存储中的文件
+     */
+    List<PictureObject> purgeUnreferenced(int limit);
+}
@@ -1,5 +1,6 @@
 package com.acaah.artsync.service;
 
+import com.acaah.artsync.common.CursorPage;
 import com.acaah.artsync.model.dto.picture.*;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
@@ -7,8 +8,12 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.acaah.artsync.api.alinyunai.model.CreateOutPaintingTaskResponse;
 import com.acaah.artsync.model.entity.Picture;
 import com.acaah.artsync.model.entity.User;
+import com.acaah.artsync.model.vo.PictureChunkUploadVO;
+import com.acaah.artsync.model.vo.PictureUploadBatchJobVO;
 import com.acaah.artsync.model.vo.PictureVO;
 
+import org.springframework.web.multipart.MultipartFile;
+
 import javax.servlet.http.HttpServletRequest;
 import java.util.List;
 
@@ -38,6 +43,43 @@ public interface PictureService extends IService<Picture> {
                             PictureUploadRequest pictureUploadRequest,
                             User loginUser);
 
+    /**
+     * 初始化分片上传，存在相同文件的未完成会话时直接续传
+     *
+     * @param initRequest 初始化请求
+     * @param loginUser   登录用户
+     * @return 会话信息及已上传的分片
+     */
+    PictureChunkUploadVO initPictureChunkUpload(PictureChunkUploadInitRequest initRequest, User loginUser);
+
+    /**
+     * 上传单个分片
+     *
+     * @param multipartFile      分片数据
+     * @param chunkUploadRequest 分片信息
+     * @param loginUser          登录用户
+     * @return 会话信息及已上传的分片
+     */
+    PictureChunkUploadVO uploadPictureChunk(MultipartFile multipartFile, PictureChunkUploadRequest chunkUploadRequest,
+                                            User loginUser);
+
+    /**
+     * 完成分片上传，合并分片并保存图片
+     *
+     * @param chunkUploadRequest 分片上传请求
+     * @param loginUser          登录用户
+     * @return 图片信息
+     */
+    PictureVO completePictureChunkUpload(PictureChunkUploadRequest chunkUploadRequest, User loginUser);
+
+    /**
+     * 取消分片上传
+     *
+     * @param chunkUploadRequest 分片上传请求
+     * @param loginUser          登录用户
+     */
+    void abortPictureChunkUpload(PictureChunkUploadRequest chunkUploadRequest, User loginUser);
+
     /**
      * 获取图片包装类（单条）
      *
@@ -64,6 +106,55 @@ public interface PictureService extends IService<Picture> {
      */
     QueryWrapper<Picture> getQueryWrapper(PictureQueryRequest pictureQueryRequest);
 
+    /**
+     * 分页获取图片列表（仅管理员），未指定空间时跨分表查询
+     *
+     * @param pictureQueryRequest
+     * @return
+     */
+    Page<Picture> listPictureByPage(PictureQueryRequest pictureQueryRequest);
+
+    /**
+     * 游标分页查询图片（按排序字段 + id 定位，不做深度 offset 扫描）
+     *
+     * @param pictureQueryRequest
+     * @return
+     */
+    CursorPage<Picture> listPictureByCursor(PictureQueryRequest pictureQueryRequest);
+
+    /**
+     * 分页获取图片封装类（有缓存），调用前需完成权限校验
+     *
+     * @param pictureQueryRequest
+     * @param request
+     * @return
+     */
+    Page<PictureVO> listPictureVOByPageWithCache(PictureQueryRequest pictureQueryRequest, HttpServletRequest request);
+
+    /**
+     * 图片发生变化后使对应范围的列表缓存失效
+     *
+     * @param spaceId 空间 id，为空表示公共图库
+     */
+    void onPictureListChanged(Long spaceId);
+
+    /**
+     * 通过全文索引分页检索图片（按相关度排序，指定排序字段时按该字段排序）
+     *
+     * @param pictureQueryRequest searchText 不能为空
+     * @return
+     */
+    Page<Picture> searchPictureByText(PictureQueryRequest pictureQueryRequest);
+
+    /**
+     * 获取图片包装类（游标分页）
+     *
+     * @param pictureCursorPage
+     * @param request
+     * @return
+     */
+    CursorPage<PictureVO> getPictureVOCursorPage(CursorPage<Picture> pictureCursorPage, HttpServletRequest request);
+
 
     /**
      * 图片审核
@@ -82,14 +173,23 @@ public interface PictureService extends IService<Picture> {
     void fillReviewParams(Picture picture, User loginUser);
 
     /**
-     * 批量抓取和创建图片
+     * 批量抓取和创建图片（后台任务）
      *
      * @param pictureUploadByBatchRequest
      * @param loginUser
-     * @return 成功创建的图片数
+     * @return 任务 id，用于查询进度
+     */
+    String uploadPictureByBatch(PictureUploadByBatchRequest pictureUploadByBatchRequest,
+                                User loginUser);
+
+    /**
+     * 查询批量抓取任务进度
+     *
+     * @param jobId     任务 id
+     * @param loginUser 登录用户
+     * @return 任务进度
      */
-    Integer uploadPictureByBatch(PictureUploadByBatchRequest pictureUploadByBatchRequest,
-                                 User loginUser);
+    PictureUploadBatchJobVO getPictureUploadBatchJob(String jobId, User loginUser);
 
     /**
      * 清理图片文件
@@ -127,10 +227,11 @@ public interface PictureService extends IService<Picture> {
      *
      * @param spaceId
      * @param picColor
+     * @param distanceMode 距离计算方式：rgb（默认）/ ciede2000
      * @param loginUser
      * @return
      */
-    List<PictureVO> searchPictureByColor(Long spaceId, String picColor, User loginUser);
+    List<PictureVO> searchPictureByColor(Long spaceId, String picColor, String distanceMode, User loginUser);
 
     /**
      * 批量编辑图片
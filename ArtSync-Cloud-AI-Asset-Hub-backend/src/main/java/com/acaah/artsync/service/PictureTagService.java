@@ -0,0 +1,47 @@
+package com.acaah.artsync.service;
+
+import com.acaah.artsync.model.entity.Picture;
+import com.acaah.artsync.model.entity.PictureTag;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+* @description 针对表【picture_tag(图片标签关联)】的数据库操作Service
+*/
+public interface PictureTagService extends IService<PictureTag> {
+
+    /**
+     * 将图片的标签关联替换为指定标签
+     * 需在修改图片标签的事务中调用
+     *
+     * @param pictureIds 图片 id（需属于同一空间）
+     * @param spaceId    图片所属空间 id
+     * @param tags       标签，为空表示清空标签
+     */
+    void replacePictureTags(Collection<Long> pictureIds, Long spaceId, List<String> tags);
+
+    /**
+     * 删除图片的全部标签关联
+     *
+     * @param pictureId 图片 id
+     */
+    void removeByPictureId(Long pictureId);
+
+    /**
+     * 获取按标签筛选图片时使用的标签 id
+     *
+     * @param tags 标签
+     * @return 标签 id（不重复），有标签从未出现过时为空列表，即不可能有图片同时拥有全部标签
+     */
+    List<Long> listFilterTagIds(List<String> tags);
+
+    /**
+     * 根据图片的 JSON 标签字段补建关联，已有关联的图片会被跳过
+     *
+     * @param pictureList 图片（需包含 id、spaceId、tags）
+     * @return 补建了关联的图片数量
+     */
+    int backfillPictureTags(List<Picture> pictureList);
+}
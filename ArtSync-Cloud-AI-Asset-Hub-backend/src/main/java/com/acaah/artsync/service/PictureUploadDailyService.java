@@ -0,0 +1,61 @@
+package com.acaah.artsync.service;
+
+import com.acaah.artsync.model.entity.PictureUploadDaily;
+import com.acaah.artsync.model.vo.space.analyze.SpaceUserAnalyzeResponse;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+* @description 针对表【picture_upload_daily(每日上传数量)】的数据库操作Service
+*/
+public interface PictureUploadDailyService extends IService<PictureUploadDaily> {
+
+    /**
+     * 公共图库的统计范围
+     */
+    long SCOPE_PUBLIC = 0L;
+
+    /**
+     * 全部图片的统计范围
+     */
+    long SCOPE_ALL = -1L;
+
+    /**
+     * 获取空间对应的统计范围
+     *
+     * @param spaceId 空间 id，为空表示公共图库
+     * @return 统计范围
+     */
+    static long getScopeId(Long spaceId) {
+        return spaceId == null ? SCOPE_PUBLIC : spaceId;
+    }
+
+    /**
+     * 批量累加每日上传数量
+     *
+     * @param uploadDailyList 统计范围、用户 id、日期和增量
+     */
+    void incrementUploadCount(Collection<PictureUploadDaily> uploadDailyList);
+
+    /**
+     * 根据每日上传数量汇总上传趋势，按周、按月的结果由每日记录聚合得到
+     *
+     * @param scopeId       统计范围
+     * @param userId        用户 id，为空表示全部用户
+     * @param timeDimension 时间维度：day / week / month
+     * @return 时间段和上传数量，按时间段升序
+     */
+    List<SpaceUserAnalyzeResponse> listUploadTrend(long scopeId, Long userId, String timeDimension);
+
+    /**
+     * 根据 picture 重新统计时间段内的每日上传数量，只写入与当前记录不一致的部分
+     *
+     * @param startDate 开始日期（包含）
+     * @param endDate   结束日期（不包含）
+     * @return 修正的记录数
+     */
+    int reconcileUploadCount(Date startDate, Date endDate);
+}
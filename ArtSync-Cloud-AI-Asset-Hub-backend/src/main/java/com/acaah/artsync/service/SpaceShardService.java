@@ -0,0 +1,41 @@
+package com.acaah.artsync.service;
+
+import com.acaah.artsync.model.entity.SpaceShard;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.List;
+
+/**
+* @description 针对表【space_shard(空间分表状态)】的数据库操作Service
+*/
+public interface SpaceShardService extends IService<SpaceShard> {
+
+    /**
+     * 根据空间 id 获取分表状态
+     *
+     * @param spaceId 空间 id
+     * @return 分表状态，没有分表时为 null
+     */
+    SpaceShard getBySpaceId(long spaceId);
+
+    /**
+     * 按空间 id 分页获取已切换到分表的空间
+     *
+     * @param lastSpaceId 上一页最后一个空间 id
+     * @param limit       每页数量
+     * @return 空间 id，升序
+     */
+    List<Long> listRoutedSpaceIds(long lastSpaceId, int limit);
+
+    /**
+     * 获取已切换到分表、但逻辑表中的旧数据还没有清理完的空间
+     */
+    List<Long> listCleaningSpaceIds();
+
+    /**
+     * 登记新空间直接创建的分表（无需迁移），已登记时忽略
+     *
+     * @param spaceId 空间 id
+     */
+    void markTableCreated(long spaceId);
+}
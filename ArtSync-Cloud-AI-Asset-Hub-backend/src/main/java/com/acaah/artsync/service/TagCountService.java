@@ -0,0 +1,58 @@
+package com.acaah.artsync.service;
+
+import com.acaah.artsync.model.entity.TagCount;
+import com.acaah.artsync.model.vo.space.analyze.SpaceTagAnalyzeResponse;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+* @description 针对表【tag_count(标签使用次数)】的数据库操作Service
+*/
+public interface TagCountService extends IService<TagCount> {
+
+    /**
+     * 公共图库的统计范围
+     */
+    long SCOPE_PUBLIC = 0L;
+
+    /**
+     * 全部图片的统计范围
+     */
+    long SCOPE_ALL = -1L;
+
+    /**
+     * 获取空间对应的统计范围
+     *
+     * @param spaceId 空间 id，为空表示公共图库
+     * @return 统计范围
+     */
+    static long getScopeId(Long spaceId) {
+        return spaceId == null ? SCOPE_PUBLIC : spaceId;
+    }
+
+    /**
+     * 累加空间内标签的使用次数，同时累加到全部图片的统计中
+     * 需在修改标签关联的事务中调用
+     *
+     * @param spaceId     空间 id，为空表示公共图库
+     * @param tagDeltaMap 标签 id => 增量
+     */
+    void incrementTagCount(Long spaceId, Map<Long, Long> tagDeltaMap);
+
+    /**
+     * 查询统计范围内使用次数最多的标签
+     *
+     * @param scopeId 统计范围
+     * @param topN    返回数量，为空或不大于 0 时返回全部
+     * @return 标签和使用次数，按使用次数降序
+     */
+    List<SpaceTagAnalyzeResponse> listTopTags(long scopeId, Integer topN);
+
+    /**
+     * 根据 picture_tag 重新统计并覆盖计数，picture_tag 中已没有关联的计数置为 0
+     * 统计和写入在同一事务的同一语句中完成，统计期间对 picture_tag 的修改会等待校准结束，不会被覆盖
+     */
+    void reconcileTagCount();
+}
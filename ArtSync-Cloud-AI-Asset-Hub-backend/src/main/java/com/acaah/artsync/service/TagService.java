@@ -0,0 +1,38 @@
+package com.acaah.artsync.service;
+
+import com.acaah.artsync.model.entity.Tag;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+* @description 针对表【tag(标签)】的数据库操作Service
+*/
+public interface TagService extends IService<Tag> {
+
+    /**
+     * 规范化标签：去除首尾空白、空标签和重复标签（不区分大小写）
+     *
+     * @param tagNames 标签名称
+     * @return 规范化后的标签名称
+     */
+    List<String> normalizeTagNames(Collection<String> tagNames);
+
+    /**
+     * 获取标签 id，不存在的标签会被创建
+     *
+     * @param tagNames 标签名称
+     * @return 标签名称（小写） => 标签 id
+     */
+    Map<String, Long> getOrCreateTagIds(Collection<String> tagNames);
+
+    /**
+     * 获取已存在的标签 id，不会创建新标签
+     *
+     * @param tagNames 标签名称
+     * @return 标签名称（小写） => 标签 id，不存在的标签不包含在结果中
+     */
+    Map<String, Long> getTagIds(Collection<String> tagNames);
+}
@@ -99,4 +99,11 @@ public interface UserService extends IService<User> {
      * @return
      */
     boolean isAdmin(User user);
+
+    /**
+     * 用户信息修改或删除后调用，使会话中缓存的登录用户和脱敏用户缓存失效
+     *
+     * @param userId 用户 id
+     */
+    void onUserChanged(Long userId);
 }
@@ -0,0 +1,146 @@
+package com.acaah.artsync.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.acaah.artsync.exception.ErrorCode;
+import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.mapper.PictureObjectMapper;
+import com.acaah.artsync.model.dto.file.UploadPictureResult;
+import com.acaah.artsync.model.entity.PictureObject;
+import com.acaah.artsync.service.PictureObjectService;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+* @description 针对表【picture_object(图片存储对象)】的数据库操作Service实现
+*/
+@Service
+public class PictureObjectServiceImpl extends ServiceImpl<PictureObjectMapper, PictureObject>
+    implements PictureObjectService {
+
+    /**
+     * 引用归零后保留的时间，超过后删除登记和文件
+     */
+    private static final long PURGE_GRACE_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * 引用归零的对象在此时间内仍可被复用，距离被清理至少还有一半的宽限期，复用后增加引用前不会被删除
+     */
+    private static final long REUSE_UNREFERENCED_MILLIS = PURGE_GRACE_MILLIS / 2;
+
+    @Override
+    public UploadPictureResult getUploadPictureResult(String picHash) {
+        if (StrUtil.isBlank(picHash)) {
+            return null;
+        }
+        Date reuseAfter = new Date(System.currentTimeMillis() - REUSE_UNREFERENCED_MILLIS);
+        PictureObject pictureObject = this.lambdaQuery()
+                .eq(PictureObject::getPicHash, picHash)
+                .and(wrapper -> wrapper.gt(PictureObject::getRefCount, 0)
+                        .or()
+                        .ge(PictureObject::getUpdateTime, reuseAfter))
+                .one();
+        if (pictureObject == null) {
+            return null;
+        }
+        UploadPictureResult uploadPictureResult = new UploadPictureResult();
+        uploadPictureResult.setUrl(pictureObject.getUrl());
+        uploadPictureResult.setThumbnailUrl(pictureObject.getThumbnailUrl());
+        uploadPictureResult.setPicSize(pictureObject.getPicSize());
+        uploadPictureResult.setPicWidth(pictureObject.getPicWidth());
+        uploadPictureResult.setPicHeight(pictureObject.getPicHeight());
+        uploadPictureResult.setPicScale(pictureObject.getPicScale());
+        uploadPictureResult.setPicFormat(pictureObject.getPicFormat());
+        uploadPictureResult.setPicColor(pictureObject.getPicColor());
+        uploadPictureResult.setPicHash(picHash);
+        return uploadPictureResult;
+    }
+
+    @Override
+    public PictureObject acquire(UploadPictureResult uploadPictureResult) {
+        String picHash = uploadPictureResult.getPicHash();
+        ThrowUtils.throwIf(StrUtil.isBlank(picHash), ErrorCode.PARAMS_ERROR, "图片摘要为空");
+        // 已登记则直接增加引用
+        PictureObject existPictureObject = this.increaseRefCount(picHash);
+        if (existPictureObject != null) {
+            return existPictureObject;
+        }
+        PictureObject pictureObject = new PictureObject();
+        pictureObject.setPicHash(picHash);
+        pictureObject.setUrl(uploadPictureResult.getUrl());
+        pictureObject.setThumbnailUrl(uploadPictureResult.getThumbnailUrl());
+        pictureObject.setPicSize(uploadPictureResult.getPicSize());
+        pictureObject.setPicWidth(uploadPictureResult.getPicWidth());
+        pictureObject.setPicHeight(uploadPictureResult.getPicHeight());
+        pictureObject.setPicScale(uploadPictureResult.getPicScale());
+        pictureObject.setPicFormat(uploadPictureResult.getPicFormat());
+        pictureObject.setPicColor(uploadPictureResult.getPicColor());
+        pictureObject.setRefCount(1);
+        try {
+            this.save(pictureObject);
+            return pictureObject;
+        } catch (DuplicateKeyException e) {
+            // 并发上传了相同内容，对方已先登记，改为引用对方的对象
+            existPictureObject = this.increaseRefCount(picHash);
+            ThrowUtils.throwIf(existPictureObject == null, ErrorCode.OPERATION_ERROR, "图片登记失败");
+            return existPictureObject;
+        }
+    }
+
+    @Override
+    public void release(String picHash) {
+        if (StrUtil.isBlank(picHash)) {
+            return;
+        }
+        this.lambdaUpdate()
+                .eq(PictureObject::getPicHash, picHash)
+                .gt(PictureObject::getRefCount, 0)
+                .setSql("refCount = refCount - 1")
+                .update();
+    }
+
+    @Override
+    public List<PictureObject> purgeUnreferenced(int limit) {
+        Date purgeBefore = new Date(System.currentTimeMillis() - PURGE_GRACE_MILLIS);
+        List<PictureObject> candidateList = this.lambdaQuery()
+                .eq(PictureObject::getRefCount, 0)
+                .lt(PictureObject::getUpdateTime, purgeBefore)
+                .last("limit " + limit)
+                .list();
+        List<PictureObject> purgedList = new ArrayList<>(candidateList.size());
+        for (PictureObject pictureObject : candidateList) {
+            // 条件删除，期间被重新引用（refCount 增加、updateTime 更新）时不删除
+            boolean removed = this.remove(new LambdaQueryWrapper<PictureObject>()
+                    .eq(PictureObject::getId, pictureObject.getId())
+                    .eq(PictureObject::getRefCount, 0)
+                    .lt(PictureObject::getUpdateTime, purgeBefore));
+            if (removed) {
+                purgedList.add(pictureObject);
+            }
+        }
+        return purgedList;
+    }
+
+    /**
+     * 为已登记的对象增加引用，单条 UPDATE 原子完成，引用归零但尚未清理的对象会被重新引用
+     *
+     * @return 对象未登记（或已被清理）时返回 null
+     */
+    private PictureObject increaseRefCount(String picHash) {
+        boolean increased = this.lambdaUpdate()
+                .eq(PictureObject::getPicHash, picHash)
+                .setSql("refCount = refCount + 1")
+                .update();
+        if (!increased) {
+            return null;
+        }
+        return this.lambdaQuery()
+                .eq(PictureObject::getPicHash, picHash)
+                .one();
+    }
+}
@@ -1,14 +1,23 @@
 package com.acaah.artsync.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.codec.Base64;
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.acaah.artsync.annontation.ReadReplica;
+import com.acaah.artsync.common.CursorPage;
 import com.acaah.artsync.model.dto.picture.*;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.acaah.artsync.api.alinyunai.AliYunAiApi;
 import com.acaah.artsync.api.alinyunai.model.CreateOutPaintingTaskRequest;
 import com.acaah.artsync.api.alinyunai.model.CreateOutPaintingTaskResponse;
@@ -17,22 +26,43 @@ import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
 import com.acaah.artsync.manager.CosManager;
 import com.acaah.artsync.manager.FileManager;
+import com.acaah.artsync.manager.cache.ListQueryCacheManager;
+import com.acaah.artsync.manager.analyze.PictureUploadStatManager;
+import com.acaah.artsync.manager.analyze.SpaceAnalyzeSnapshotManager;
+import com.acaah.artsync.manager.color.PictureColorIndexManager;
 
+import com.acaah.artsync.manager.quota.SpaceQuotaManager;
+import com.acaah.artsync.manager.quota.SpaceQuotaReservation;
+import com.acaah.artsync.manager.search.PictureSearchIndexManager;
+import com.acaah.artsync.manager.sharding.PictureShardMigrationManager;
+import com.acaah.artsync.manager.sharding.PictureShardQueryExecutor;
+import com.acaah.artsync.manager.tag.PictureTagBackfillManager;
+import com.acaah.artsync.manager.upload.ChunkPictureUpload;
+import com.acaah.artsync.manager.user.UserVOLoader;
+import com.acaah.artsync.manager.upload.ChunkUploadSession;
 import com.acaah.artsync.manager.upload.FilePictureUpload;
+import com.acaah.artsync.manager.upload.HostRateLimiter;
+import com.acaah.artsync.manager.upload.PictureImportJobManager;
 import com.acaah.artsync.manager.upload.PictureUploadTemplate;
 import com.acaah.artsync.manager.upload.UrlPictureUpload;
 import com.acaah.artsync.mapper.PictureMapper;
 import com.acaah.artsync.model.dto.file.UploadPictureResult;
 import com.acaah.artsync.model.entity.Picture;
+import com.acaah.artsync.model.entity.PictureObject;
 import com.acaah.artsync.model.entity.Space;
 import com.acaah.artsync.model.entity.User;
+import com.acaah.artsync.model.enums.ColorDistanceModeEnum;
 import com.acaah.artsync.model.enums.PictureReviewStatusEnum;
+import com.acaah.artsync.model.enums.SpaceLevelEnum;
+import com.acaah.artsync.model.vo.PictureChunkUploadVO;
+import com.acaah.artsync.model.vo.PictureUploadBatchJobVO;
 import com.acaah.artsync.model.vo.PictureVO;
 import com.acaah.artsync.model.vo.UserVO;
+import com.acaah.artsync.service.PictureObjectService;
 import com.acaah.artsync.service.PictureService;
+import com.acaah.artsync.service.PictureTagService;
 import com.acaah.artsync.service.SpaceService;
 import com.acaah.artsync.service.UserService;
-import com.acaah.artsync.utils.ColorSimilarUtils;
 import com.acaah.artsync.utils.ColorTransformUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
@@ -44,14 +74,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
 
 import javax.servlet.http.HttpServletRequest;
-import java.awt.*;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.stream.Collectors;
 /**
  * @author Administrator
@@ -63,6 +100,54 @@ import java.util.stream.Collectors;
 public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         implements PictureService {
 
+    /**
+     * 批量抓取的最大数量
+     */
+    private static final int BATCH_IMPORT_MAX_COUNT = 200;
+
+    /**
+     * 批量抓取每页的图片数量
+     */
+    private static final int BATCH_IMPORT_PAGE_SIZE = 35;
+
+    /**
+     * 批量抓取最多翻页数，失败较多时用于补足数量
+     */
+    private static final int BATCH_IMPORT_MAX_PAGES = 12;
+
+    /**
+     * 单个抓取任务同时下载上传的图片数
+     */
+    private static final int BATCH_IMPORT_TRANSFER_WINDOW = 8;
+
+    /**
+     * 批量入库的批大小
+     */
+    private static final int BATCH_IMPORT_SAVE_SIZE = 20;
+
+    /**
+     * 图片列表缓存的业务名称
+     */
+    private static final String PICTURE_LIST_CACHE_NAMESPACE = "picture";
+
+    /**
+     * 全文检索最多召回的图片数量
+     */
+    private static final int TEXT_SEARCH_MAX_HITS = 1000;
+
+    /**
+     * 支持游标分页的排序字段（均为非空列）
+     */
+    private static final List<String> CURSOR_SORT_FIELDS = Arrays.asList("createTime", "editTime", "updateTime", "name", "id");
+
+    /**
+     * 游标分页近似总数缓存
+     */
+    private static final Cache<String, Long> CURSOR_TOTAL_CACHE = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
     @Resource
     private FileManager fileManager;
 
@@ -78,6 +163,57 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     @Resource
     private UrlPictureUpload urlPictureUpload;
 
+    @Resource
+    private ChunkPictureUpload chunkPictureUpload;
+
+    @Resource
+    private PictureObjectService pictureObjectService;
+
+    @Resource
+    private PictureTagService pictureTagService;
+
+    @Resource
+    private PictureTagBackfillManager pictureTagBackfillManager;
+
+    @Resource
+    private PictureSearchIndexManager pictureSearchIndexManager;
+
+    @Resource
+    private ListQueryCacheManager listQueryCacheManager;
+
+    @Resource
+    private UserVOLoader userVOLoader;
+
+    @Resource
+    private PictureImportJobManager pictureImportJobManager;
+
+    @Resource
+    private HostRateLimiter hostRateLimiter;
+
+    @Resource
+    private PictureColorIndexManager pictureColorIndexManager;
+
+    @Resource
+    private PictureUploadStatManager pictureUploadStatManager;
+
+    @Resource
+    private SpaceAnalyzeSnapshotManager spaceAnalyzeSnapshotManager;
+
+    @Resource
+    private SpaceQuotaManager spaceQuotaManager;
+
+    @Resource
+    private PictureShardQueryExecutor pictureShardQueryExecutor;
+
+    @Resource
+    private PictureShardMigrationManager pictureShardMigrationManager;
+
+    @Resource(name = "pictureBatchImportExecutor")
+    private ThreadPoolExecutor pictureBatchImportExecutor;
+
+    @Resource(name = "pictureImportTransferExecutor")
+    private ThreadPoolExecutor pictureImportTransferExecutor;
+
     @Autowired
     private CosManager cosManager;
 
@@ -109,6 +245,142 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     public PictureVO uploadPicture(Object inputSource, PictureUploadRequest pictureUploadRequest, User loginUser) {
         // 校验参数
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
+        // 校验空间与图片，得到最终的空间 id
+        Long spaceId = this.resolveUploadSpaceId(pictureUploadRequest, loginUser);
+        // 判断是新增还是删除
+        Long pictureId = null;
+        String picName = null;
+        if (pictureUploadRequest != null) {
+            pictureId = pictureUploadRequest.getId();
+            picName = pictureUploadRequest.getPicName();
+        }
+        // 上传图片，得到图片信息
+        String uploadPathPrefix = this.getUploadPathPrefix(spaceId, loginUser);
+        // 根据 inputSource 的类型区分上传方式
+        PictureUploadTemplate pictureUploadTemplate = filePictureUpload;
+        if (inputSource instanceof String) {
+            pictureUploadTemplate = urlPictureUpload;
+        }
+        // 上传前预留额度，URL 上传时大小未知，按允许的最大文件大小预留，入库后按实际大小提交
+        long estimatedSize = inputSource instanceof MultipartFile ? ((MultipartFile) inputSource).getSize()
+                : UrlPictureUpload.MAX_FILE_SIZE;
+        SpaceQuotaReservation reservation = this.reserveSpaceQuota(spaceId, pictureId, estimatedSize);
+        try {
+            UploadPictureResult uploadPictureResult = pictureUploadTemplate.uploadPicture(inputSource, uploadPathPrefix);
+            return this.savePicture(uploadPictureResult, spaceId, pictureId, picName, loginUser, reservation);
+        } finally {
+            spaceQuotaManager.release(reservation);
+        }
+    }
+
+    @Override
+    public PictureChunkUploadVO initPictureChunkUpload(PictureChunkUploadInitRequest initRequest, User loginUser) {
+        ThrowUtils.throwIf(initRequest == null, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
+        chunkPictureUpload.validPicture(initRequest.getFileName(), initRequest.getFileSize());
+        // 相同文件的未完成会话直接续传
+        ChunkUploadSession session = chunkPictureUpload.findResumableSession(loginUser.getId(), initRequest.getFileHash());
+        if (session != null
+                && session.getFileSize().equals(initRequest.getFileSize())
+                && ObjUtil.equals(session.getSpaceId(), initRequest.getSpaceId())
+                && ObjUtil.equals(session.getPictureId(), initRequest.getId())) {
+            return this.getPictureChunkUploadVO(session);
+        }
+        PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
+        pictureUploadRequest.setId(initRequest.getId());
+        pictureUploadRequest.setSpaceId(initRequest.getSpaceId());
+        pictureUploadRequest.setPicName(initRequest.getPicName());
+        Long spaceId = this.resolveUploadSpaceId(pictureUploadRequest, loginUser);
+        this.checkChunkUploadSpace(spaceId, initRequest.getFileSize());
+        session = new ChunkUploadSession();
+        session.setOriginalFilename(initRequest.getFileName());
+        session.setFileSize(initRequest.getFileSize());
+        session.setFileHash(initRequest.getFileHash());
+        session.setUserId(loginUser.getId());
+        session.setSpaceId(spaceId);
+        session.setPictureId(initRequest.getId());
+        session.setPicName(initRequest.getPicName());
+        session = chunkPictureUpload.createSession(session, this.getUploadPathPrefix(spaceId, loginUser));
+        return this.getPictureChunkUploadVO(session);
+    }
+
+    @Override
+    public PictureChunkUploadVO uploadPictureChunk(MultipartFile multipartFile, PictureChunkUploadRequest chunkUploadRequest,
+                                                   User loginUser) {
+        ChunkUploadSession session = this.getChunkUploadSession(chunkUploadRequest, loginUser);
+        chunkPictureUpload.uploadPart(session, chunkUploadRequest.getPartNumber(), multipartFile);
+        return this.getPictureChunkUploadVO(session);
+    }
+
+    @Override
+    public PictureVO completePictureChunkUpload(PictureChunkUploadRequest chunkUploadRequest, User loginUser) {
+        ChunkUploadSession session = this.getChunkUploadSession(chunkUploadRequest, loginUser);
+        // 上传期间空间和图片可能发生变化，合并前重新校验
+        PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
+        pictureUploadRequest.setId(session.getPictureId());
+        pictureUploadRequest.setSpaceId(session.getSpaceId());
+        Long spaceId = this.resolveUploadSpaceId(pictureUploadRequest, loginUser);
+        this.checkChunkUploadSpace(spaceId, session.getFileSize());
+        SpaceQuotaReservation reservation = this.reserveSpaceQuota(spaceId, session.getPictureId(), session.getFileSize());
+        try {
+            UploadPictureResult uploadPictureResult = chunkPictureUpload.complete(session);
+            PictureVO pictureVO = this.savePicture(uploadPictureResult, spaceId, session.getPictureId(),
+                    session.getPicName(), loginUser, reservation);
+            // 保存成功后才删除会话，保存失败时客户端可重试完成上传
+            chunkPictureUpload.removeSession(session);
+            return pictureVO;
+        } finally {
+            spaceQuotaManager.release(reservation);
+        }
+    }
+
+    @Override
+    public void abortPictureChunkUpload(PictureChunkUploadRequest chunkUploadRequest, User loginUser) {
+        ChunkUploadSession session = this.getChunkUploadSession(chunkUploadRequest, loginUser);
+        chunkPictureUpload.abort(session);
+    }
+
+    /**
+     * 获取分片上传会话，仅创建者本人可以操作
+     */
+    private ChunkUploadSession getChunkUploadSession(PictureChunkUploadRequest chunkUploadRequest, User loginUser) {
+        ThrowUtils.throwIf(chunkUploadRequest == null, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
+        ChunkUploadSession session = chunkPictureUpload.getSession(chunkUploadRequest.getUploadId());
+        ThrowUtils.throwIf(session == null, ErrorCode.NOT_FOUND_ERROR, "上传会话不存在或已过期");
+        ThrowUtils.throwIf(!loginUser.getId().equals(session.getUserId()), ErrorCode.NO_AUTH_ERROR);
+        return session;
+    }
+
+    /**
+     * 校验分片上传的空间：仅旗舰版空间可用，且剩余额度足够容纳该文件
+     */
+    private void checkChunkUploadSpace(Long spaceId, long fileSize) {
+        ThrowUtils.throwIf(spaceId == null, ErrorCode.NO_AUTH_ERROR, "仅旗舰版空间支持大文件上传");
+        Space space = spaceService.getById(spaceId);
+        ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+        ThrowUtils.throwIf(!ObjUtil.equals(space.getSpaceLevel(), SpaceLevelEnum.FLAGSHIP.getValue()),
+                ErrorCode.NO_AUTH_ERROR, "仅旗舰版空间支持大文件上传");
+        ThrowUtils.throwIf(space.getTotalSize() + fileSize > space.getMaxSize(), ErrorCode.OPERATION_ERROR, "空间大小不足");
+    }
+
+    private PictureChunkUploadVO getPictureChunkUploadVO(ChunkUploadSession session) {
+        PictureChunkUploadVO pictureChunkUploadVO = new PictureChunkUploadVO();
+        pictureChunkUploadVO.setUploadId(session.getUploadId());
+        pictureChunkUploadVO.setPartSize(session.getPartSize());
+        pictureChunkUploadVO.setTotalParts(session.getTotalParts());
+        pictureChunkUploadVO.setUploadedPartNumbers(chunkPictureUpload.listUploadedPartNumbers(session.getUploadId()));
+        return pictureChunkUploadVO;
+    }
+
+    /**
+     * 校验上传目标空间与待更新的图片
+     *
+     * @param pictureUploadRequest 上传请求
+     * @param loginUser            登录用户
+     * @return 图片最终所属的空间 id，公共图库为 null
+     */
+    private Long resolveUploadSpaceId(PictureUploadRequest pictureUploadRequest, User loginUser) {
         // 校验空间是否存在
         Long spaceId = pictureUploadRequest.getSpaceId();
         if (spaceId != null) {
@@ -118,7 +390,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             if (!loginUser.getId().equals(space.getUserId())) {
                 throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
             }
-            // 校验额度
+            // 提前拒绝明显超额的请求，准确的校验在预留额度时进行
             if (space.getTotalCount() >= space.getMaxCount()) {
                 throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间条数不足");
             }
@@ -152,31 +424,118 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
                 }
             }
         }
-        // 上传图片，得到图片信息
-        // 按照用户 id 划分目录 => 按照空间划分目录
-        String uploadPathPrefix;
+        return spaceId;
+    }
+
+    /**
+     * 校验并预留空间额度，公共图库不需要
+     *
+     * @param spaceId       空间 id，公共图库为 null
+     * @param pictureId     待更新的图片 id，新增时为 null
+     * @param estimatedSize 预计占用的大小（字节），未知时为 0
+     * @return 预留凭证，公共图库为 null
+     */
+    private SpaceQuotaReservation reserveSpaceQuota(Long spaceId, Long pictureId, long estimatedSize) {
+        if (spaceId == null) {
+            return null;
+        }
+        Space space = spaceService.getById(spaceId);
+        ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+        // 更新图片不增加数量
+        return spaceQuotaManager.reserve(space, estimatedSize, pictureId == null ? 1 : 0);
+    }
+
+    /**
+     * 获取上传路径前缀
+     * 按照用户 id 划分目录 => 按照空间划分目录
+     */
+    private String getUploadPathPrefix(Long spaceId, User loginUser) {
         if (spaceId == null) {
             // 公共图库
-            uploadPathPrefix = String.format("public/%s", loginUser.getId());
-        } else {
-            // 空间
-            uploadPathPrefix = String.format("space/%s", spaceId);
+            return String.format("public/%s", loginUser.getId());
         }
-        // 根据 inputSource 的类型区分上传方式
-        PictureUploadTemplate pictureUploadTemplate = filePictureUpload;
-        if (inputSource instanceof String) {
-            pictureUploadTemplate = urlPictureUpload;
+        // 空间
+        return String.format("space/%s", spaceId);
+    }
+
+    /**
+     * 将上传结果入库，并更新空间额度
+     *
+     * @param uploadPictureResult 上传结果
+     * @param spaceId             空间 id
+     * @param pictureId           图片 id，不为空表示更新
+     * @param picName             外层传递的图片名称
+     * @param loginUser           登录用户
+     * @param reservation         上传前预留的空间额度，公共图库为 null
+     * @return 图片封装类
+     */
+    private PictureVO savePicture(UploadPictureResult uploadPictureResult, Long spaceId, Long pictureId, String picName,
+                                  User loginUser, SpaceQuotaReservation reservation) {
+        // 构造要入库的图片信息
+        Picture picture = this.buildPicture(uploadPictureResult, spaceId, picName, loginUser);
+        // 操作数据库
+        // 如果 pictureId 不为空，表示更新，否则是新增
+        Picture oldPicture = null;
+        if (pictureId != null) {
+            // 如果是更新，需要补充 id 和编辑时间
+            picture.setId(pictureId);
+            picture.setEditTime(new Date());
+            oldPicture = this.getById(pictureId);
         }
-        UploadPictureResult uploadPictureResult = pictureUploadTemplate.uploadPicture(inputSource, uploadPathPrefix);
+        // 空间迁移到分表的切换期间不能写入，分表配置落后时先校准
+        pictureShardMigrationManager.checkWritable(spaceId);
+        // 开启事务
+        Long finalSpaceId = spaceId;
+        transactionTemplate.execute(status -> {
+            // 登记内容摘要并增加引用
+            this.acquirePictureObject(picture, uploadPictureResult);
+            // 插入数据
+            boolean result = this.saveOrUpdate(picture);
+            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败，数据库操作失败");
+            return picture;
+        });
+        // 入库后提交额度，更新图片时只计入大小的变化
+        if (reservation != null) {
+            long oldPicSize = oldPicture == null ? 0L : ObjUtil.defaultIfNull(oldPicture.getPicSize(), 0L);
+            spaceQuotaManager.commit(reservation, picture.getPicSize() - oldPicSize, oldPicture == null ? 1 : 0);
+        }
+        // 上传后才发现内容重复（URL 上传或并发上传），清理本次多上传的文件
+        if (!StrUtil.equals(picture.getUrl(), uploadPictureResult.getUrl())) {
+            this.deletePictureObjectFile(uploadPictureResult.getUrl(), uploadPictureResult.getThumbnailUrl());
+        }
+        // 同步主色调索引和全文索引
+        pictureColorIndexManager.onPictureSaved(picture);
+        pictureSearchIndexManager.onPicturesUpdated(finalSpaceId, Collections.singletonList(picture.getId()));
+        spaceAnalyzeSnapshotManager.onPicturesUpdated(finalSpaceId, Collections.singletonList(picture.getId()));
+        this.onPictureListChanged(finalSpaceId);
+        if (oldPicture == null) {
+            pictureUploadStatManager.onPicturesCreated(Collections.singletonList(picture));
+        }
+        // 如果是更新，释放原图片的引用
+        if (oldPicture != null) {
+            this.clearPictureFile(oldPicture);
+        }
+        return PictureVO.objToVo(picture);
+    }
+
+    /**
+     * 根据上传结果构造要入库的图片信息
+     *
+     * @param uploadPictureResult 上传结果
+     * @param spaceId             空间 id
+     * @param picName             外层传递的图片名称
+     * @param loginUser           登录用户
+     * @return 图片
+     */
+    private Picture buildPicture(UploadPictureResult uploadPictureResult, Long spaceId, String picName, User loginUser) {
         // 构造要入库的图片信息
         Picture picture = new Picture();
         picture.setSpaceId(spaceId); // 指定空间 id
         picture.setUrl(uploadPictureResult.getUrl());
         picture.setThumbnailUrl(uploadPictureResult.getThumbnailUrl());
         // 支持外层传递图片名称
-        String picName = uploadPictureResult.getPicName();
-        if (pictureUploadRequest != null && StrUtil.isNotBlank(pictureUploadRequest.getPicName())) {
-            picName = pictureUploadRequest.getPicName();
+        if (StrUtil.isBlank(picName)) {
+            picName = uploadPictureResult.getPicName();
         }
         picture.setName(picName);
         picture.setPicSize(uploadPictureResult.getPicSize());
@@ -187,36 +546,24 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
 //        picture.setPicColor(uploadPictureResult.getPicColor());
         // 转换为标准颜色
         picture.setPicColor(ColorTransformUtils.getStandardColor(uploadPictureResult.getPicColor()));
+        picture.setPicHash(uploadPictureResult.getPicHash());
         picture.setUserId(loginUser.getId());
         // 补充审核参数
         this.fillReviewParams(picture, loginUser);
-        // 操作数据库
-        // 如果 pictureId 不为空，表示更新，否则是新增
-        if (pictureId != null) {
-            // 如果是更新，需要补充 id 和编辑时间
-            picture.setId(pictureId);
-            picture.setEditTime(new Date());
+        return picture;
+    }
+
+    /**
+     * 登记内容摘要并增加引用，相同内容已存在时改用已有的文件
+     * 需在保存图片的事务中调用
+     */
+    private void acquirePictureObject(Picture picture, UploadPictureResult uploadPictureResult) {
+        if (StrUtil.isBlank(picture.getPicHash())) {
+            return;
         }
-        // 开启事务
-        Long finalSpaceId = spaceId;
-        transactionTemplate.execute(status -> {
-            // 插入数据
-            boolean result = this.saveOrUpdate(picture);
-            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败，数据库操作失败");
-            if (finalSpaceId != null) {
-                // 更新空间的使用额度
-                boolean update = spaceService.lambdaUpdate()
-                        .eq(Space::getId, finalSpaceId)
-                        .setSql("totalSize = totalSize + " + picture.getPicSize())
-                        .setSql("totalCount = totalCount + 1")
-                        .update();
-                ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "额度更新失败");
-            }
-            return picture;
-        });
-        // 可自行实现，如果是更新，可以清理图片资源
-        // this.clearPictureFile(oldPicture);
-        return PictureVO.objToVo(picture);
+        PictureObject pictureObject = pictureObjectService.acquire(uploadPictureResult);
+        picture.setUrl(pictureObject.getUrl());
+        picture.setThumbnailUrl(pictureObject.getThumbnailUrl());
     }
 
     @Override
@@ -224,12 +571,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 对象转封装类
         PictureVO pictureVO = PictureVO.objToVo(picture);
         // 关联查询用户信息
-        Long userId = picture.getUserId();
-        if (userId != null && userId > 0) {
-            User user = userService.getById(userId);
-            UserVO userVO = userService.getUserVO(user);
-            pictureVO.setUser(userVO);
-        }
+        pictureVO.setUser(userVOLoader.load(picture.getUserId()));
         return pictureVO;
     }
 
@@ -238,36 +580,78 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
      */
     @Override
     public Page<PictureVO> getPictureVOPage(Page<Picture> picturePage, HttpServletRequest request) {
-        List<Picture> pictureList = picturePage.getRecords();
         Page<PictureVO> pictureVOPage = new Page<>(picturePage.getCurrent(), picturePage.getSize(), picturePage.getTotal());
+        pictureVOPage.setRecords(this.getPictureVOList(picturePage.getRecords()));
+        return pictureVOPage;
+    }
+
+    @Override
+    @ReadReplica
+    public CursorPage<PictureVO> getPictureVOCursorPage(CursorPage<Picture> pictureCursorPage, HttpServletRequest request) {
+        CursorPage<PictureVO> pictureVOCursorPage = new CursorPage<>();
+        pictureVOCursorPage.setNextCursor(pictureCursorPage.getNextCursor());
+        pictureVOCursorPage.setHasMore(pictureCursorPage.isHasMore());
+        pictureVOCursorPage.setTotal(pictureCursorPage.getTotal());
+        pictureVOCursorPage.setTotalApproximate(pictureCursorPage.isTotalApproximate());
+        pictureVOCursorPage.setRecords(this.getPictureVOList(pictureCursorPage.getRecords()));
+        return pictureVOCursorPage;
+    }
+
+    /**
+     * 图片列表 => 封装类列表（关联查询用户信息）
+     */
+    private List<PictureVO> getPictureVOList(List<Picture> pictureList) {
         if (CollUtil.isEmpty(pictureList)) {
-            return pictureVOPage;
+            return new ArrayList<>();
         }
         // 对象列表 => 封装对象列表
         List<PictureVO> pictureVOList = pictureList.stream()
                 .map(PictureVO::objToVo)
                 .collect(Collectors.toList());
-        // 1. 关联查询用户信息
+        // 1. 关联查询用户信息（优先从本地缓存获取）
         // 1,2,3,4
         Set<Long> userIdSet = pictureList.stream().map(Picture::getUserId).collect(Collectors.toSet());
         // 1 => user1, 2 => user2
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
+        Map<Long, UserVO> userIdUserVOMap = userVOLoader.loadMany(userIdSet);
         // 2. 填充信息
-        pictureVOList.forEach(pictureVO -> {
-            Long userId = pictureVO.getUserId();
-            User user = null;
-            if (userIdUserListMap.containsKey(userId)) {
-                user = userIdUserListMap.get(userId).get(0);
-            }
-            pictureVO.setUser(userService.getUserVO(user));
-        });
-        pictureVOPage.setRecords(pictureVOList);
-        return pictureVOPage;
+        pictureVOList.forEach(pictureVO -> pictureVO.setUser(userIdUserVOMap.get(pictureVO.getUserId())));
+        return pictureVOList;
     }
 
     @Override
     public QueryWrapper<Picture> getQueryWrapper(PictureQueryRequest pictureQueryRequest) {
+        QueryWrapper<Picture> queryWrapper = this.getFilterQueryWrapper(pictureQueryRequest);
+        if (pictureQueryRequest == null) {
+            return queryWrapper;
+        }
+        String sortField = pictureQueryRequest.getSortField();
+        String sortOrder = pictureQueryRequest.getSortOrder();
+        // 排序
+        queryWrapper.orderBy(StrUtil.isNotEmpty(sortField), sortOrder.equals("ascend"), sortField);
+        return queryWrapper;
+    }
+
+    @Override
+    @ReadReplica
+    public Page<Picture> listPictureByPage(PictureQueryRequest pictureQueryRequest) {
+        ThrowUtils.throwIf(pictureQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        long current = pictureQueryRequest.getCurrent();
+        long size = pictureQueryRequest.getPageSize();
+        if (pictureQueryRequest.getSpaceId() != null) {
+            // 指定空间时只涉及一张表，由 ShardingSphere 路由
+            return this.page(new Page<>(current, size), this.getQueryWrapper(pictureQueryRequest));
+        }
+        // 未指定空间时涉及逻辑表和全部分表（公共图库只在逻辑表中），在各表并行排序分页后归并
+        Collection<String> tables = pictureShardQueryExecutor.resolveTables(pictureQueryRequest.isNullSpaceId());
+        return pictureShardQueryExecutor.page(this.getFilterQueryWrapper(pictureQueryRequest),
+                pictureQueryRequest.getSortField(), "ascend".equals(pictureQueryRequest.getSortOrder()),
+                current, size, tables);
+    }
+
+    /**
+     * 获取只包含过滤条件（不含排序）的查询对象
+     */
+    private QueryWrapper<Picture> getFilterQueryWrapper(PictureQueryRequest pictureQueryRequest) {
         QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
         if (pictureQueryRequest == null) {
             return queryWrapper;
@@ -292,8 +676,6 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         Date startEditTime = pictureQueryRequest.getStartEditTime();
         Date endEditTime = pictureQueryRequest.getEndEditTime();
         boolean nullSpaceId = pictureQueryRequest.isNullSpaceId();
-        String sortField = pictureQueryRequest.getSortField();
-        String sortOrder = pictureQueryRequest.getSortOrder();
         // 从多字段中搜索
         if (StrUtil.isNotBlank(searchText)) {
             // 需要拼接查询条件
@@ -325,16 +707,253 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         queryWrapper.lt(ObjUtil.isNotEmpty(endEditTime), "editTime", endEditTime);
         // JSON 数组查询
         if (CollUtil.isNotEmpty(tags)) {
-            /* and (tag like "%\"Java\"%" and like "%\"Python\"%") */
-            for (String tag : tags) {
-                queryWrapper.like("tags", "\"" + tag + "\"");
+            if (pictureTagBackfillManager.isBackfillDone()) {
+                // 通过标签关联表筛选同时拥有全部标签的图片：每个标签一个子查询，由数据库完成半连接，
+                // 不把命中的图片 id 取回应用再拼成 IN 列表；子查询走 idx_tagId_spaceId 覆盖索引
+                List<Long> tagIdList = pictureTagService.listFilterTagIds(tags);
+                if (tagIdList.isEmpty()) {
+                    queryWrapper.apply("1 = 0");
+                }
+                for (Long tagId : tagIdList) {
+                    if (spaceId != null) {
+                        queryWrapper.apply("id IN (SELECT pictureId FROM picture_tag WHERE tagId = {0} AND spaceId = {1})",
+                                tagId, spaceId);
+                    } else if (nullSpaceId) {
+                        queryWrapper.apply("id IN (SELECT pictureId FROM picture_tag WHERE tagId = {0} AND spaceId IS NULL)",
+                                tagId);
+                    } else {
+                        queryWrapper.apply("id IN (SELECT pictureId FROM picture_tag WHERE tagId = {0})", tagId);
+                    }
+                }
+            } else {
+                // 迁移完成前仍按 JSON 字段匹配
+                /* and (tag like "%\"Java\"%" and like "%\"Python\"%") */
+                for (String tag : tags) {
+                    queryWrapper.like("tags", "\"" + tag + "\"");
+                }
             }
         }
-        // 排序
-        queryWrapper.orderBy(StrUtil.isNotEmpty(sortField), sortOrder.equals("ascend"), sortField);
         return queryWrapper;
     }
 
+    @Override
+    @ReadReplica
+    public CursorPage<Picture> listPictureByCursor(PictureQueryRequest pictureQueryRequest) {
+        ThrowUtils.throwIf(pictureQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        int pageSize = pictureQueryRequest.getPageSize();
+        ThrowUtils.throwIf(pageSize <= 0, ErrorCode.PARAMS_ERROR);
+        // 游标分页要求排序字段非空，并以 id 作为第二排序键保证顺序唯一
+        String sortField = StrUtil.blankToDefault(pictureQueryRequest.getSortField(), "createTime");
+        ThrowUtils.throwIf(!CURSOR_SORT_FIELDS.contains(sortField), ErrorCode.PARAMS_ERROR, "游标分页不支持该排序字段");
+        boolean ascend = "ascend".equals(pictureQueryRequest.getSortOrder());
+        QueryWrapper<Picture> queryWrapper = this.getFilterQueryWrapper(pictureQueryRequest);
+        // 从游标位置继续查询：(sortField, id) 严格位于游标之后
+        String cursor = pictureQueryRequest.getCursor();
+        if (StrUtil.isNotBlank(cursor)) {
+            JSONObject cursorObj;
+            try {
+                cursorObj = JSONUtil.parseObj(Base64.decodeStr(cursor));
+            } catch (Exception e) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "游标格式错误");
+            }
+            ThrowUtils.throwIf(!sortField.equals(cursorObj.getStr("f")) || ascend != cursorObj.getBool("a", false),
+                    ErrorCode.PARAMS_ERROR, "游标与排序条件不匹配");
+            Long lastId = cursorObj.getLong("i");
+            ThrowUtils.throwIf(lastId == null, ErrorCode.PARAMS_ERROR, "游标格式错误");
+            Object lastValue = this.getCursorSortValue(sortField, cursorObj);
+            if (ascend) {
+                queryWrapper.and(qw -> qw.gt(sortField, lastValue)
+                        .or(sub -> sub.eq(sortField, lastValue).gt("id", lastId)));
+            } else {
+                queryWrapper.and(qw -> qw.lt(sortField, lastValue)
+                        .or(sub -> sub.eq(sortField, lastValue).lt("id", lastId)));
+            }
+        }
+        // 多查一条用于判断是否还有下一页，不执行 count
+        List<Picture> pictureList;
+        if (pictureQueryRequest.getSpaceId() != null) {
+            // 指定空间时只涉及一张表，由 ShardingSphere 路由
+            queryWrapper.orderBy(true, ascend, sortField);
+            queryWrapper.orderBy(!"id".equals(sortField), ascend, "id");
+            pictureList = this.page(new Page<>(1, pageSize + 1, false), queryWrapper).getRecords();
+        } else {
+            // 未指定空间时在各表并行查询后归并，并排除逻辑表中清理未完成、已迁到分表的数据
+            pictureList = pictureShardQueryExecutor.list(queryWrapper, sortField, ascend, pageSize + 1,
+                    pictureShardQueryExecutor.resolveTables(pictureQueryRequest.isNullSpaceId()));
+        }
+        CursorPage<Picture> cursorPage = new CursorPage<>();
+        boolean hasMore = pictureList.size() > pageSize;
+        if (hasMore) {
+            pictureList = new ArrayList<>(pictureList.subList(0, pageSize));
+            cursorPage.setNextCursor(this.buildCursor(sortField, ascend, pictureList.get(pictureList.size() - 1)));
+        }
+        cursorPage.setHasMore(hasMore);
+        cursorPage.setRecords(pictureList);
+        // 按需统计总数
+        String totalMode = StrUtil.blankToDefault(pictureQueryRequest.getTotalMode(), "none");
+        switch (totalMode) {
+            case "none":
+                break;
+            case "exact":
+                cursorPage.setTotal(this.countPicture(pictureQueryRequest, this.getFilterQueryWrapper(pictureQueryRequest)));
+                break;
+            case "approx":
+                // 相同过滤条件的总数缓存一段时间，翻页时不必每次都 count
+                QueryWrapper<Picture> countQueryWrapper = this.getFilterQueryWrapper(pictureQueryRequest);
+                String countKey = DigestUtil.md5Hex(countQueryWrapper.getCustomSqlSegment()
+                        + JSONUtil.toJsonStr(countQueryWrapper.getParamNameValuePairs()));
+                cursorPage.setTotal(CURSOR_TOTAL_CACHE.get(countKey,
+                        key -> this.countPicture(pictureQueryRequest, countQueryWrapper)));
+                cursorPage.setTotalApproximate(true);
+                break;
+            default:
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "总数统计方式错误");
+        }
+        return cursorPage;
+    }
+
+    /**
+     * 统计符合过滤条件的图片数量，未指定空间时跨分表统计
+     */
+    private long countPicture(PictureQueryRequest pictureQueryRequest, QueryWrapper<Picture> filterQueryWrapper) {
+        if (pictureQueryRequest.getSpaceId() != null) {
+            return this.count(filterQueryWrapper);
+        }
+        return pictureShardQueryExecutor.count(filterQueryWrapper,
+                pictureShardQueryExecutor.resolveTables(pictureQueryRequest.isNullSpaceId()));
+    }
+
+    @Override
+    @ReadReplica
+    public Page<PictureVO> listPictureVOByPageWithCache(PictureQueryRequest pictureQueryRequest, HttpServletRequest request) {
+        String cacheScope = this.getPictureListCacheScope(pictureQueryRequest.getSpaceId());
+        return listQueryCacheManager.get(PICTURE_LIST_CACHE_NAMESPACE, cacheScope, pictureQueryRequest, () -> {
+            Page<Picture> picturePage;
+            if (StrUtil.isNotBlank(pictureQueryRequest.getSearchText()) && pictureSearchIndexManager.isReady()) {
+                // 关键词搜索走全文索引
+                picturePage = this.searchPictureByText(pictureQueryRequest);
+            } else {
+                picturePage = this.page(new Page<>(pictureQueryRequest.getCurrent(), pictureQueryRequest.getPageSize()),
+                        this.getQueryWrapper(pictureQueryRequest));
+            }
+            return this.getPictureVOPage(picturePage, request);
+        });
+    }
+
+    @Override
+    public void onPictureListChanged(Long spaceId) {
+        try {
+            listQueryCacheManager.bumpVersion(this.getPictureListCacheScope(spaceId));
+        } catch (Exception e) {
+            // 版本号递增失败时旧缓存最多保留到过期
+            log.warn("图片列表缓存失效失败, spaceId = {}", spaceId, e);
+        }
+    }
+
+    /**
+     * 图片列表缓存的数据范围：每个空间一个，公共图库一个
+     */
+    private String getPictureListCacheScope(Long spaceId) {
+        return spaceId == null ? "picture:public" : "picture:space:" + spaceId;
+    }
+
+    @Override
+    public Page<Picture> searchPictureByText(PictureQueryRequest pictureQueryRequest) {
+        long current = pictureQueryRequest.getCurrent();
+        long size = pictureQueryRequest.getPageSize();
+        Page<Picture> picturePage = new Page<>(current, size, 0);
+        // 1. 全文索引检索，在索引内按空间和审核状态过滤
+        long[] hitIds = pictureSearchIndexManager.search(pictureQueryRequest.getSearchText(),
+                pictureQueryRequest.getSpaceId(), pictureQueryRequest.isNullSpaceId(),
+                pictureQueryRequest.getReviewStatus(), TEXT_SEARCH_MAX_HITS);
+        if (hitIds.length == 0) {
+            return picturePage;
+        }
+        List<Long> hitIdList = Arrays.stream(hitIds).boxed().collect(Collectors.toList());
+        // 2. 其余条件仍交给数据库，只查询命中的 id；未指定排序字段时按相关度排序
+        PictureQueryRequest filterRequest = BeanUtil.copyProperties(pictureQueryRequest, PictureQueryRequest.class);
+        filterRequest.setSearchText(null);
+        boolean sortByRelevance = StrUtil.isEmpty(pictureQueryRequest.getSortField());
+        QueryWrapper<Picture> queryWrapper = sortByRelevance
+                ? this.getFilterQueryWrapper(filterRequest)
+                : this.getQueryWrapper(filterRequest);
+        queryWrapper.select("id").in("id", hitIdList);
+        Set<Long> matchedIdSet = this.listObjs(queryWrapper).stream()
+                .map(idObj -> ((Number) idObj).longValue())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        List<Long> matchedIdList = sortByRelevance
+                ? hitIdList.stream().filter(matchedIdSet::contains).collect(Collectors.toList())
+                : new ArrayList<>(matchedIdSet);
+        picturePage.setTotal(matchedIdList.size());
+        // 3. 只加载当前页的图片，并保持顺序
+        int fromIndex = (int) Math.min((current - 1) * size, matchedIdList.size());
+        int toIndex = (int) Math.min(fromIndex + size, matchedIdList.size());
+        List<Long> pageIdList = matchedIdList.subList(fromIndex, toIndex);
+        if (pageIdList.isEmpty()) {
+            return picturePage;
+        }
+        Map<Long, Picture> pictureMap = this.lambdaQuery()
+                .eq(pictureQueryRequest.getSpaceId() != null, Picture::getSpaceId, pictureQueryRequest.getSpaceId())
+                .in(Picture::getId, pageIdList)
+                .list()
+                .stream()
+                .collect(Collectors.toMap(Picture::getId, picture -> picture));
+        picturePage.setRecords(pageIdList.stream()
+                .map(pictureMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+        return picturePage;
+    }
+
+    /**
+     * 根据最后一条记录生成游标
+     */
+    private String buildCursor(String sortField, boolean ascend, Picture lastPicture) {
+        JSONObject cursorObj = new JSONObject();
+        cursorObj.set("f", sortField);
+        cursorObj.set("a", ascend);
+        cursorObj.set("i", lastPicture.getId());
+        switch (sortField) {
+            case "createTime":
+                cursorObj.set("v", lastPicture.getCreateTime().getTime());
+                break;
+            case "editTime":
+                cursorObj.set("v", lastPicture.getEditTime().getTime());
+                break;
+            case "updateTime":
+                cursorObj.set("v", lastPicture.getUpdateTime().getTime());
+                break;
+            case "name":
+                cursorObj.set("v", lastPicture.getName());
+                break;
+            default:
+                cursorObj.set("v", lastPicture.getId());
+        }
+        return Base64.encodeUrlSafe(cursorObj.toString());
+    }
+
+    /**
+     * 从游标中取出排序字段的值
+     */
+    private Object getCursorSortValue(String sortField, JSONObject cursorObj) {
+        Object value;
+        switch (sortField) {
+            case "createTime":
+            case "editTime":
+            case "updateTime":
+                Long millis = cursorObj.getLong("v");
+                value = millis == null ? null : new Date(millis);
+                break;
+            case "name":
+                value = cursorObj.getStr("v");
+                break;
+            default:
+                value = cursorObj.getLong("v");
+        }
+        ThrowUtils.throwIf(value == null, ErrorCode.PARAMS_ERROR, "游标格式错误");
+        return value;
+    }
+
     @Override
     public void doPictureReview(PictureReviewRequest pictureReviewRequest, User loginUser) {
         // 1. 校验参数
@@ -353,6 +972,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         if (oldPicture.getReviewStatus().equals(reviewStatus)) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "请勿重复审核");
         }
+        pictureShardMigrationManager.checkWritable(oldPicture.getSpaceId());
         // 4. 数据库操作
         Picture updatePicture = new Picture();
         BeanUtil.copyProperties(pictureReviewRequest, updatePicture);
@@ -360,6 +980,9 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         updatePicture.setReviewTime(new Date());
         boolean result = this.updateById(updatePicture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 同步全文索引中的审核状态和列表缓存
+        pictureSearchIndexManager.onPicturesUpdated(oldPicture.getSpaceId(), Collections.singletonList(id));
+        this.onPictureListChanged(oldPicture.getSpaceId());
     }
 
     /**
@@ -383,18 +1006,145 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     }
 
     @Override
-    public Integer uploadPictureByBatch(PictureUploadByBatchRequest pictureUploadByBatchRequest, User loginUser) {
+    public String uploadPictureByBatch(PictureUploadByBatchRequest pictureUploadByBatchRequest, User loginUser) {
         // 校验参数
         String searchText = pictureUploadByBatchRequest.getSearchText();
         Integer count = pictureUploadByBatchRequest.getCount();
-        ThrowUtils.throwIf(count > 30, ErrorCode.PARAMS_ERROR, "最多 30 条");
+        ThrowUtils.throwIf(StrUtil.isBlank(searchText), ErrorCode.PARAMS_ERROR, "搜索词不能为空");
+        ThrowUtils.throwIf(count == null || count <= 0, ErrorCode.PARAMS_ERROR, "抓取数量错误");
+        ThrowUtils.throwIf(count > BATCH_IMPORT_MAX_COUNT, ErrorCode.PARAMS_ERROR, "最多 " + BATCH_IMPORT_MAX_COUNT + " 条");
         // 名称前缀默认等于搜索关键词
         String namePrefix = pictureUploadByBatchRequest.getNamePrefix();
         if (StrUtil.isBlank(namePrefix)) {
             namePrefix = searchText;
         }
+        // 创建任务，在后台执行
+        String jobId = IdUtil.fastSimpleUUID();
+        pictureImportJobManager.createJob(jobId, loginUser.getId(), count);
+        String finalNamePrefix = namePrefix;
+        try {
+            pictureBatchImportExecutor.execute(() -> {
+                try {
+                    this.runPictureBatchImport(jobId, searchText, count, finalNamePrefix, loginUser);
+                    pictureImportJobManager.finishJob(jobId);
+                } catch (Exception e) {
+                    log.error("批量抓取任务失败, jobId = {}", jobId, e);
+                    String errorMessage = e instanceof BusinessException ? e.getMessage() : "系统错误";
+                    pictureImportJobManager.failJob(jobId, errorMessage);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pictureImportJobManager.failJob(jobId, "任务过多");
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "当前抓取任务过多，请稍后重试");
+        }
+        return jobId;
+    }
+
+    @Override
+    public PictureUploadBatchJobVO getPictureUploadBatchJob(String jobId, User loginUser) {
+        ThrowUtils.throwIf(StrUtil.isBlank(jobId), ErrorCode.PARAMS_ERROR);
+        Long jobUserId = pictureImportJobManager.getJobUserId(jobId);
+        ThrowUtils.throwIf(jobUserId == null, ErrorCode.NOT_FOUND_ERROR, "任务不存在或已过期");
+        ThrowUtils.throwIf(!jobUserId.equals(loginUser.getId()), ErrorCode.NO_AUTH_ERROR);
+        return pictureImportJobManager.getJob(jobId);
+    }
+
+    /**
+     * 执行批量抓取流水线
+     * 抓取页面 => 校验地址 => 下载并上传（有界并发、按域名限速、单张失败不影响其他） => 批量入库
+     *
+     * @param jobId      任务 id
+     * @param searchText 搜索词
+     * @param count      目标数量
+     * @param namePrefix 名称前缀
+     * @param loginUser  登录用户
+     */
+    private void runPictureBatchImport(String jobId, String searchText, int count, String namePrefix, User loginUser)
+            throws InterruptedException {
+        String uploadPathPrefix = this.getUploadPathPrefix(null, loginUser);
+        // 候选地址，按需翻页补充；已见过的地址不重复处理
+        Deque<String> candidateUrls = new ArrayDeque<>();
+        Set<String> seenUrls = new HashSet<>();
+        int pageOffset = 0;
+        int pageCount = 0;
+        CompletionService<UploadPictureResult> completionService =
+                new ExecutorCompletionService<>(pictureImportTransferExecutor);
+        int inFlight = 0;
+        int uploadedCount = 0;
+        List<UploadPictureResult> pendingResults = new ArrayList<>();
+        while (true) {
+            // 补充传输任务，成功数 + 在途数不超过目标数量
+            while (uploadedCount + pendingResults.size() + inFlight < count && inFlight < BATCH_IMPORT_TRANSFER_WINDOW) {
+                if (candidateUrls.isEmpty()) {
+                    if (pageCount >= BATCH_IMPORT_MAX_PAGES) {
+                        break;
+                    }
+                    List<String> pageUrls;
+                    try {
+                        pageUrls = this.fetchBatchImportUrls(searchText, pageOffset);
+                    } catch (BusinessException e) {
+                        // 首页抓取失败则任务失败，后续页失败时保留已导入的图片
+                        if (pageCount == 0) {
+                            throw e;
+                        }
+                        pageUrls = Collections.emptyList();
+                    }
+                    pageCount++;
+                    pageOffset += BATCH_IMPORT_PAGE_SIZE;
+                    if (pageUrls.isEmpty()) {
+                        // 没有更多结果
+                        pageCount = BATCH_IMPORT_MAX_PAGES;
+                        break;
+                    }
+                    for (String pageUrl : pageUrls) {
+                        if (seenUrls.add(pageUrl)) {
+                            candidateUrls.add(pageUrl);
+                        }
+                    }
+                    continue;
+                }
+                String fileUrl = candidateUrls.poll();
+                String host = URLUtil.url(fileUrl).getHost();
+                completionService.submit(() -> {
+                    hostRateLimiter.acquire(host);
+                    return urlPictureUpload.uploadPicture(fileUrl, uploadPathPrefix);
+                });
+                inFlight++;
+            }
+            if (inFlight == 0) {
+                break;
+            }
+            // 等待任意一个传输完成
+            Future<UploadPictureResult> future = completionService.take();
+            inFlight--;
+            try {
+                pendingResults.add(future.get());
+            } catch (ExecutionException e) {
+                log.info("图片上传失败，已跳过：{}", e.getCause().getMessage());
+                pictureImportJobManager.increaseFailed(jobId, 1);
+            }
+            // 攒够一批再入库
+            if (pendingResults.size() >= BATCH_IMPORT_SAVE_SIZE) {
+                uploadedCount += this.savePictureBatch(jobId, pendingResults, namePrefix, uploadedCount, loginUser);
+                pendingResults.clear();
+            }
+        }
+        if (!pendingResults.isEmpty()) {
+            this.savePictureBatch(jobId, pendingResults, namePrefix, uploadedCount, loginUser);
+        }
+    }
+
+    /**
+     * 抓取一页图片地址，并过滤掉无效地址
+     *
+     * @param searchText 搜索词
+     * @param first      起始偏移量
+     * @return 图片地址列表
+     */
+    private List<String> fetchBatchImportUrls(String searchText, int first) {
         // 抓取内容
-        String fetchUrl = String.format("https://cn.bing.com/images/async?q=%s&mmasync=1", searchText);
+        String fetchUrl = String.format("https://cn.bing.com/images/async?q=%s&first=%d&count=%d&mmasync=1",
+                URLUtil.encodeQuery(searchText), first, BATCH_IMPORT_PAGE_SIZE);
         Document document;
         try {
             document = Jsoup.connect(fetchUrl).get();
@@ -405,11 +1155,10 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 解析内容
         Element div = document.getElementsByClass("dgControl").first();
         if (ObjUtil.isEmpty(div)) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取元素失败");
+            return Collections.emptyList();
         }
         Elements imgElementList = div.select("img.mimg");
-        // 遍历元素，依次处理上传图片
-        int uploadCount = 0;
+        List<String> fileUrlList = new ArrayList<>();
         for (Element imgElement : imgElementList) {
             String fileUrl = imgElement.attr("src");
             if (StrUtil.isBlank(fileUrl)) {
@@ -422,43 +1171,144 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             if (questionMarkIndex > -1) {
                 fileUrl = fileUrl.substring(0, questionMarkIndex);
             }
-            // 上传图片
-            PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
-            pictureUploadRequest.setFileUrl(fileUrl);
-            pictureUploadRequest.setPicName(namePrefix + (uploadCount + 1));
+            // 仅保留合法的 HTTP / HTTPS 地址
+            if (!StrUtil.startWithAny(fileUrl, "http://", "https://")) {
+                log.info("当前链接协议不支持，已跳过：{}", fileUrl);
+                continue;
+            }
             try {
-                PictureVO pictureVO = this.uploadPicture(fileUrl, pictureUploadRequest, loginUser);
-                log.info("图片上传成功，id = {}", pictureVO.getId());
-                uploadCount++;
+                URLUtil.url(fileUrl);
             } catch (Exception e) {
-                log.error("图片上传失败", e);
+                log.info("当前链接格式错误，已跳过：{}", fileUrl);
                 continue;
             }
-            if (uploadCount >= count) {
-                break;
+            fileUrlList.add(fileUrl);
+        }
+        return fileUrlList;
+    }
+
+    /**
+     * 批量入库（公共图库），一批图片在同一个事务中保存
+     * 整批失败时改为逐条入库，单条失败计入失败数，并清理该图片已上传的文件
+     *
+     * @param jobId                任务 id
+     * @param uploadPictureResults 上传结果
+     * @param namePrefix           名称前缀
+     * @param startIndex           本批之前已入库的数量，用于生成序号
+     * @param loginUser            登录用户
+     * @return 入库数量
+     */
+    private int savePictureBatch(String jobId, List<UploadPictureResult> uploadPictureResults, String namePrefix,
+                                 int startIndex, User loginUser) {
+        List<Picture> pictureList = new ArrayList<>(uploadPictureResults.size());
+        for (int i = 0; i < uploadPictureResults.size(); i++) {
+            pictureList.add(this.buildPicture(uploadPictureResults.get(i), null,
+                    namePrefix + (startIndex + i + 1), loginUser));
+        }
+        List<Picture> savedPictureList = pictureList;
+        List<UploadPictureResult> savedResultList = uploadPictureResults;
+        try {
+            this.savePictureList(pictureList, uploadPictureResults);
+        } catch (Exception e) {
+            log.warn("图片批量入库失败，改为逐条入库：{}", e.getMessage());
+            savedPictureList = new ArrayList<>(uploadPictureResults.size());
+            savedResultList = new ArrayList<>(uploadPictureResults.size());
+            for (UploadPictureResult uploadPictureResult : uploadPictureResults) {
+                // 整批回滚后重新构造，避免沿用回滚前填充的字段
+                Picture picture = this.buildPicture(uploadPictureResult, null,
+                        namePrefix + (startIndex + savedPictureList.size() + 1), loginUser);
+                try {
+                    this.savePictureList(Collections.singletonList(picture), Collections.singletonList(uploadPictureResult));
+                    savedPictureList.add(picture);
+                    savedResultList.add(uploadPictureResult);
+                } catch (Exception ex) {
+                    log.info("图片入库失败，已跳过：{}", ex.getMessage());
+                    pictureImportJobManager.increaseFailed(jobId, 1);
+                    this.discardUploadedFile(uploadPictureResult);
+                }
             }
         }
-        return uploadCount;
+        if (!savedPictureList.isEmpty()) {
+            // 同步全文索引和列表缓存
+            savedPictureList.forEach(pictureSearchIndexManager::onPictureSaved);
+            this.onPictureListChanged(null);
+            pictureUploadStatManager.onPicturesCreated(savedPictureList);
+            for (int i = 0; i < savedPictureList.size(); i++) {
+                UploadPictureResult uploadPictureResult = savedResultList.get(i);
+                if (!StrUtil.equals(savedPictureList.get(i).getUrl(), uploadPictureResult.getUrl())) {
+                    this.deletePictureObjectFile(uploadPictureResult.getUrl(), uploadPictureResult.getThumbnailUrl());
+                }
+            }
+        }
+        pictureImportJobManager.increaseUploaded(jobId, savedPictureList.size());
+        return savedPictureList.size();
+    }
+
+    /**
+     * 在一个事务中登记内容摘要并保存图片
+     */
+    private void savePictureList(List<Picture> pictureList, List<UploadPictureResult> uploadPictureResults) {
+        transactionTemplate.execute(status -> {
+            for (int i = 0; i < pictureList.size(); i++) {
+                this.acquirePictureObject(pictureList.get(i), uploadPictureResults.get(i));
+            }
+            boolean result = this.saveBatch(pictureList);
+            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败，数据库操作失败");
+            return true;
+        });
+    }
+
+    /**
+     * 清理入库失败的图片已上传的文件，复用已登记对象（命中内容摘要）时文件属于该对象，不清理
+     */
+    private void discardUploadedFile(UploadPictureResult uploadPictureResult) {
+        try {
+            if (StrUtil.isNotBlank(uploadPictureResult.getPicHash())) {
+                PictureObject pictureObject = pictureObjectService.lambdaQuery()
+                        .eq(PictureObject::getPicHash, uploadPictureResult.getPicHash())
+                        .one();
+                if (pictureObject != null && StrUtil.equals(pictureObject.getUrl(), uploadPictureResult.getUrl())) {
+                    return;
+                }
+            }
+            this.deletePictureObjectFile(uploadPictureResult.getUrl(), uploadPictureResult.getThumbnailUrl());
+        } catch (Exception e) {
+            log.error("清理入库失败的图片文件失败, url = {}", uploadPictureResult.getUrl(), e);
+        }
     }
 
     @Async
     @Override
     public void clearPictureFile(Picture oldPicture) {
-        // 判断改图片是否被多条记录使用
-        String pictureUrl = oldPicture.getUrl();
+        String picHash = oldPicture.getPicHash();
+        if (StrUtil.isNotBlank(picHash)) {
+            // 释放引用，引用归零的文件超过宽限期后由 PictureObjectPurgeManager 清理
+            pictureObjectService.release(picHash);
+            return;
+        }
+        // 历史数据没有内容摘要，判断改图片是否被多条记录使用
         long count = this.lambdaQuery()
-                .eq(Picture::getUrl, pictureUrl)
+                .eq(Picture::getUrl, oldPicture.getUrl())
                 .count();
         // 有不止一条记录用到了该图片，不清理
         if (count > 1) {
             return;
         }
+        this.deletePictureObjectFile(oldPicture.getUrl(), oldPicture.getThumbnailUrl());
+    }
+
+    /**
+     * 删除对象存储中的图片及缩略图
+     *
+     * @param url          图片 url
+     * @param thumbnailUrl 缩略图 url
+     */
+    private void deletePictureObjectFile(String url, String thumbnailUrl) {
         // 删除图片
-        cosManager.deleteObject(pictureUrl);
+        cosManager.deleteObjectByUrl(url);
         // 删除缩略图
-        String thumbnailUrl = oldPicture.getThumbnailUrl();
-        if (StrUtil.isNotBlank(thumbnailUrl)) {
-            cosManager.deleteObject(thumbnailUrl);
+        if (StrUtil.isNotBlank(thumbnailUrl) && !StrUtil.equals(thumbnailUrl, url)) {
+            cosManager.deleteObjectByUrl(thumbnailUrl);
         }
     }
 
@@ -479,20 +1329,33 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         ThrowUtils.throwIf(oldPicture == null, ErrorCode.NOT_FOUND_ERROR);
         // 校验权限 已经改为注解鉴权
         //checkPictureAuth(loginUser, oldPicture);
-        // 开启事务
-        transactionTemplate.execute(status -> {
-            // 操作数据库
-            boolean result = this.removeById(pictureId);
-            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
-            // 更新空间的使用额度，释放额度
-            boolean update = spaceService.lambdaUpdate()
-                    .eq(Space::getId, oldPicture.getSpaceId())
-                    .setSql("totalSize = totalSize - " + oldPicture.getPicSize())
-                    .setSql("totalCount = totalCount - 1")
-                    .update();
-            ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "额度更新失败");
-            return true;
-        });
+        pictureShardMigrationManager.checkWritable(oldPicture.getSpaceId());
+        // 删除前登记释放额度，删除完成、提交之前额度校准会跳过该空间
+        SpaceQuotaReservation reservation = oldPicture.getSpaceId() == null ? null
+                : spaceQuotaManager.reserveRelease(oldPicture.getSpaceId());
+        try {
+            // 开启事务
+            transactionTemplate.execute(status -> {
+                // 操作数据库
+                boolean result = this.removeById(pictureId);
+                ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+                // 删除标签关联
+                pictureTagService.removeByPictureId(pictureId);
+                return true;
+            });
+            // 释放空间额度
+            if (reservation != null) {
+                spaceQuotaManager.commit(reservation, -ObjUtil.defaultIfNull(oldPicture.getPicSize(), 0L), -1);
+            }
+        } finally {
+            spaceQuotaManager.release(reservation);
+        }
+        // 同步主色调索引和全文索引
+        pictureColorIndexManager.onPictureDeleted(oldPicture);
+        pictureSearchIndexManager.onPictureDeleted(pictureId);
+        spaceAnalyzeSnapshotManager.onPictureDeleted(oldPicture);
+        this.onPictureListChanged(oldPicture.getSpaceId());
+        pictureUploadStatManager.onPictureDeleted(oldPicture);
         // 异步清理文件
         this.clearPictureFile(oldPicture);
     }
@@ -523,9 +1386,22 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         //checkPictureAuth(loginUser, oldPicture);
         // 补充审核参数
         this.fillReviewParams(picture, loginUser);
+        pictureShardMigrationManager.checkWritable(oldPicture.getSpaceId());
         // 操作数据库
-        boolean result = this.updateById(picture);
-        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        transactionTemplate.execute(status -> {
+            boolean result = this.updateById(picture);
+            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+            // 同步标签关联
+            if (pictureEditRequest.getTags() != null) {
+                pictureTagService.replacePictureTags(Collections.singletonList(id), oldPicture.getSpaceId(),
+                        pictureEditRequest.getTags());
+            }
+            return true;
+        });
+        // 同步全文索引、分析快照和列表缓存
+        pictureSearchIndexManager.onPicturesUpdated(oldPicture.getSpaceId(), Collections.singletonList(id));
+        spaceAnalyzeSnapshotManager.onPicturesUpdated(oldPicture.getSpaceId(), Collections.singletonList(id));
+        this.onPictureListChanged(oldPicture.getSpaceId());
     }
 
 /**
@@ -563,46 +1439,40 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
      * @return 匹配的图片列表，按颜色相似度排序
      */
     @Override
-    public List<PictureVO> searchPictureByColor(Long spaceId, String picColor, User loginUser) {
+    public List<PictureVO> searchPictureByColor(Long spaceId, String picColor, String distanceMode, User loginUser) {
         // 1. 校验参数
         ThrowUtils.throwIf(spaceId == null || StrUtil.isBlank(picColor), ErrorCode.PARAMS_ERROR); // 检查空间ID和颜色参数是否为空
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR); // 检查用户是否登录
+        ColorDistanceModeEnum distanceModeEnum = ColorDistanceModeEnum.RGB;
+        if (StrUtil.isNotBlank(distanceMode)) {
+            distanceModeEnum = ColorDistanceModeEnum.getEnumByValue(distanceMode);
+            ThrowUtils.throwIf(distanceModeEnum == null, ErrorCode.PARAMS_ERROR, "距离计算方式错误");
+        }
         // 2. 校验空间权限
         Space space = spaceService.getById(spaceId); // 获取空间信息
         ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在"); // 检查空间是否存在
         if (!space.getUserId().equals(loginUser.getId())) { // 检查用户是否有权限访问该空间
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间访问权限");
         }
-        // 3. 查询该空间下的所有图片（必须要有主色调）
-        List<Picture> pictureList = this.lambdaQuery()
-                .eq(Picture::getSpaceId, spaceId) // 按空间ID筛选
-                .isNotNull(Picture::getPicColor) // 只选择有主色调的图片
-                .list();
+        // 3. 在空间的主色调索引中取最相近的 12 张
+        long[] pictureIds = pictureColorIndexManager.searchSimilar(spaceId, picColor, 12, distanceModeEnum);
         // 如果没有图片，直接返回空列表
-        if (CollUtil.isEmpty(pictureList)) {
+        if (pictureIds.length == 0) {
             return new ArrayList<>();
         }
-        // 将颜色字符串转换为主色调
-        Color targetColor = Color.decode(picColor); // 将十六进制颜色字符串转换为Color对象
-        // 4. 计算相似度并排序
-        List<Picture> sortedPictureList = pictureList.stream()
-                .sorted(Comparator.comparingDouble(picture -> {
-                    String hexColor = picture.getPicColor();
-                    // 没有主色调的图片会默认排序到最后
-                    if (StrUtil.isBlank(hexColor)) {
-                        return Double.MAX_VALUE;
-                    }
-                    Color pictureColor = Color.decode(hexColor); // 将图片的颜色字符串转换为Color对象
-                    // 计算相似度
-                    // 越大越相似
-                    return -ColorSimilarUtils.calculateSimilarity(targetColor, pictureColor); // 使用负号使相似度大的排在前面
-                }))
-                .limit(12) // 取前 12 个
-                .collect(Collectors.toList()); // 收集结果为列表
-        // 5. 返回结果
-        return sortedPictureList.stream()
-                .map(PictureVO::objToVo) // 将Picture对象转换为PictureVO对象
-                .collect(Collectors.toList()); // 收集结果为列表
+        // 4. 查询图片信息，并按相似度顺序返回
+        List<Long> pictureIdList = Arrays.stream(pictureIds).boxed().collect(Collectors.toList());
+        Map<Long, Picture> pictureMap = this.lambdaQuery()
+                .eq(Picture::getSpaceId, spaceId)
+                .in(Picture::getId, pictureIdList)
+                .list()
+                .stream()
+                .collect(Collectors.toMap(Picture::getId, picture -> picture));
+        return pictureIdList.stream()
+                .map(pictureMap::get)
+                .filter(Objects::nonNull)
+                .map(PictureVO::objToVo)
+                .collect(Collectors.toList());
     }
 
 
@@ -665,8 +1535,23 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         String nameRule = pictureEditByBatchRequest.getNameRule();
         fillPictureWithNameRule(pictureList, nameRule);
         // 5. 操作数据库进行批量更新
-        boolean result = this.updateBatchById(pictureList);
-        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "批量编辑失败");
+        List<Long> editPictureIdList = pictureList.stream().map(Picture::getId).collect(Collectors.toList());
+        pictureShardMigrationManager.checkWritable(spaceId);
+        transactionTemplate.execute(status -> {
+            boolean result = this.updateBatchById(pictureList);
+            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "批量编辑失败");
+            // 同步标签关联
+            if (CollUtil.isNotEmpty(tags)) {
+                pictureTagService.replacePictureTags(editPictureIdList, spaceId, tags);
+            }
+            return true;
+        });
+        // 批量重命名后同步全文索引
+        if (StrUtil.isNotBlank(nameRule)) {
+            pictureSearchIndexManager.onPicturesUpdated(spaceId, editPictureIdList);
+        }
+        spaceAnalyzeSnapshotManager.onPicturesUpdated(spaceId, editPictureIdList);
+        this.onPictureListChanged(spaceId);
     }
 
 /**
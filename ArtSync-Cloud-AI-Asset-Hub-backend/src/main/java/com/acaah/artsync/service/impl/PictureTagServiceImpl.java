@@ -0,0 +1,167 @@
+package com.acaah.artsync.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.acaah.artsync.mapper.PictureTagMapper;
+import com.acaah.artsync.model.entity.Picture;
+import com.acaah.artsync.model.entity.PictureTag;
+import com.acaah.artsync.service.PictureTagService;
+import com.acaah.artsync.service.TagCountService;
+import com.acaah.artsync.service.TagService;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+* @description 针对表【picture_tag(图片标签关联)】的数据库操作Service实现
+*/
+@Slf4j
+@Service
+public class PictureTagServiceImpl extends ServiceImpl<PictureTagMapper, PictureTag>
+    implements PictureTagService {
+
+    @Resource
+    private TagService tagService;
+
+    @Resource
+    private TagCountService tagCountService;
+
+    @Override
+    public void replacePictureTags(Collection<Long> pictureIds, Long spaceId, List<String> tags) {
+        if (CollUtil.isEmpty(pictureIds)) {
+            return;
+        }
+        Set<Long> tagIds = new HashSet<>(tagService.getOrCreateTagIds(tags).values());
+        // 标签 id => 使用次数增量
+        Map<Long, Long> tagDeltaMap = new HashMap<>();
+        // 找出不再需要的关联和已存在的关联
+        List<Long> removeIdList = new ArrayList<>();
+        Set<String> existKeySet = new HashSet<>();
+        List<PictureTag> existList = this.lambdaQuery()
+                .select(PictureTag::getId, PictureTag::getPictureId, PictureTag::getTagId)
+                .in(PictureTag::getPictureId, pictureIds)
+                .list();
+        for (PictureTag pictureTag : existList) {
+            if (tagIds.contains(pictureTag.getTagId())) {
+                existKeySet.add(pictureTag.getPictureId() + ":" + pictureTag.getTagId());
+            } else {
+                removeIdList.add(pictureTag.getId());
+                tagDeltaMap.merge(pictureTag.getTagId(), -1L, Long::sum);
+            }
+        }
+        if (!removeIdList.isEmpty()) {
+            this.removeByIds(removeIdList);
+        }
+        // 只补充缺失的关联，未变化的标签不重复写入
+        List<PictureTag> pictureTagList = new ArrayList<>();
+        for (Long pictureId : pictureIds) {
+            for (Long tagId : tagIds) {
+                if (!existKeySet.contains(pictureId + ":" + tagId)) {
+                    pictureTagList.add(this.buildPictureTag(pictureId, tagId, spaceId));
+                    tagDeltaMap.merge(tagId, 1L, Long::sum);
+                }
+            }
+        }
+        if (!pictureTagList.isEmpty()) {
+            this.saveBatch(pictureTagList);
+        }
+        // 按实际增删的关联更新标签使用次数
+        tagCountService.incrementTagCount(spaceId, tagDeltaMap);
+    }
+
+    @Override
+    public void removeByPictureId(Long pictureId) {
+        if (pictureId == null) {
+            return;
+        }
+        List<PictureTag> pictureTagList = this.lambdaQuery()
+                .select(PictureTag::getId, PictureTag::getTagId, PictureTag::getSpaceId)
+                .eq(PictureTag::getPictureId, pictureId)
+                .list();
+        if (pictureTagList.isEmpty()) {
+            return;
+        }
+        this.removeByIds(pictureTagList.stream().map(PictureTag::getId).collect(Collectors.toList()));
+        // 同一图片的关联属于同一空间
+        Map<Long, Long> tagDeltaMap = new HashMap<>();
+        pictureTagList.forEach(pictureTag -> tagDeltaMap.merge(pictureTag.getTagId(), -1L, Long::sum));
+        tagCountService.incrementTagCount(pictureTagList.get(0).getSpaceId(), tagDeltaMap);
+    }
+
+    @Override
+    public List<Long> listFilterTagIds(List<String> tags) {
+        List<String> tagNames = tagService.normalizeTagNames(tags);
+        if (tagNames.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Long> tagIdMap = tagService.getTagIds(tagNames);
+        // 有标签从未出现过，不可能有图片同时拥有全部标签
+        if (tagIdMap.size() < tagNames.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(new LinkedHashSet<>(tagIdMap.values()));
+    }
+
+    @Override
+    public int backfillPictureTags(List<Picture> pictureList) {
+        if (CollUtil.isEmpty(pictureList)) {
+            return 0;
+        }
+        // 已有关联的图片说明已经迁移过，或在迁移期间被编辑过，以关联表为准
+        Set<Long> taggedPictureIdSet = new HashSet<>(this.baseMapper.listTaggedPictureId(
+                pictureList.stream().map(Picture::getId).collect(Collectors.toList())));
+        Map<Picture, List<String>> pictureTagNameMap = new LinkedHashMap<>();
+        for (Picture picture : pictureList) {
+            if (taggedPictureIdSet.contains(picture.getId()) || StrUtil.isBlank(picture.getTags())) {
+                continue;
+            }
+            try {
+                List<String> tagNames = tagService.normalizeTagNames(JSONUtil.toList(picture.getTags(), String.class));
+                if (!tagNames.isEmpty()) {
+                    pictureTagNameMap.put(picture, tagNames);
+                }
+            } catch (Exception e) {
+                log.warn("图片标签格式错误，跳过迁移, pictureId = {}", picture.getId());
+            }
+        }
+        if (pictureTagNameMap.isEmpty()) {
+            return 0;
+        }
+        // 整批标签一次性换成 id
+        Set<String> allTagNames = pictureTagNameMap.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, Long> tagIdMap = tagService.getOrCreateTagIds(allTagNames);
+        List<PictureTag> pictureTagList = new ArrayList<>();
+        pictureTagNameMap.forEach((picture, tagNames) -> tagNames.forEach(tagName ->
+                pictureTagList.add(this.buildPictureTag(picture.getId(), tagIdMap.get(tagName.toLowerCase()),
+                        picture.getSpaceId()))));
+        try {
+            this.saveBatch(pictureTagList);
+        } catch (DuplicateKeyException e) {
+            // 迁移期间有图片被编辑，逐条写入并跳过已存在的关联
+            for (PictureTag pictureTag : pictureTagList) {
+                try {
+                    this.save(pictureTag);
+                } catch (DuplicateKeyException ignored) {
+                    // 已由编辑操作写入
+                }
+            }
+        }
+        return pictureTagNameMap.size();
+    }
+
+    private PictureTag buildPictureTag(Long pictureId, Long tagId, Long spaceId) {
+        PictureTag pictureTag = new PictureTag();
+        pictureTag.setPictureId(pictureId);
+        pictureTag.setTagId(tagId);
+        pictureTag.setSpaceId(spaceId);
+        return pictureTag;
+    }
+}
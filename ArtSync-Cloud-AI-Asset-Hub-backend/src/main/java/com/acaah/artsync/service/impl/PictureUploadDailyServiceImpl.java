@@ -0,0 +1,126 @@
+package com.acaah.artsync.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.DateUtil;
+import com.acaah.artsync.exception.BusinessException;
+import com.acaah.artsync.exception.ErrorCode;
+import com.acaah.artsync.mapper.PictureUploadDailyMapper;
+import com.acaah.artsync.model.entity.PictureUploadDaily;
+import com.acaah.artsync.model.vo.space.analyze.SpaceUserAnalyzeResponse;
+import com.acaah.artsync.service.PictureUploadDailyService;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+* @description 针对表【picture_upload_daily(每日上传数量)】的数据库操作Service实现
+*/
+@Slf4j
+@Service
+public class PictureUploadDailyServiceImpl extends ServiceImpl<PictureUploadDailyMapper, PictureUploadDaily>
+    implements PictureUploadDailyService {
+
+    /**
+     * 每批写入的记录数
+     */
+    private static final int WRITE_BATCH_SIZE = 500;
+
+    @Override
+    public void incrementUploadCount(Collection<PictureUploadDaily> uploadDailyList) {
+        if (CollUtil.isEmpty(uploadDailyList)) {
+            return;
+        }
+        for (List<PictureUploadDaily> batch : CollUtil.split(uploadDailyList, WRITE_BATCH_SIZE)) {
+            this.baseMapper.incrementUploadCount(batch);
+        }
+    }
+
+    @Override
+    public List<SpaceUserAnalyzeResponse> listUploadTrend(long scopeId, Long userId, String timeDimension) {
+        // 每个用户每天最多一条记录，扫描量与图片数量无关
+        QueryWrapper<PictureUploadDaily> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("scopeId", scopeId);
+        queryWrapper.eq(userId != null, "userId", userId);
+        switch (timeDimension) {
+            case "day":
+                queryWrapper.select("DATE_FORMAT(statDate, '%Y-%m-%d') AS period", "SUM(uploadCount) AS count");
+                break;
+            case "week":
+                queryWrapper.select("YEARWEEK(statDate) AS period", "SUM(uploadCount) AS count");
+                break;
+            case "month":
+                queryWrapper.select("DATE_FORMAT(statDate, '%Y-%m') AS period", "SUM(uploadCount) AS count");
+                break;
+            default:
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的时间维度");
+        }
+        // 图片删光后记录会保留为 0，与按图片统计的结果保持一致
+        queryWrapper.groupBy("period").having("count > 0").orderByAsc("period");
+        return this.baseMapper.selectMaps(queryWrapper).stream()
+                .map(result -> new SpaceUserAnalyzeResponse(result.get("period").toString(),
+                        ((Number) result.get("count")).longValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public int reconcileUploadCount(Date startDate, Date endDate) {
+        // 按图片重新统计，全部图片的统计由各空间累加得到
+        Map<String, PictureUploadDaily> expectedMap = new HashMap<>();
+        for (PictureUploadDaily uploadDaily : this.baseMapper.countPictureUploadGroupByDay(startDate, endDate)) {
+            expectedMap.put(this.buildKey(uploadDaily.getScopeId(), uploadDaily.getUserId(), uploadDaily.getStatDate()),
+                    uploadDaily);
+            PictureUploadDaily allUploadDaily = expectedMap.computeIfAbsent(
+                    this.buildKey(SCOPE_ALL, uploadDaily.getUserId(), uploadDaily.getStatDate()),
+                    key -> this.buildUploadDaily(SCOPE_ALL, uploadDaily.getUserId(), uploadDaily.getStatDate(), 0L));
+            allUploadDaily.setUploadCount(allUploadDaily.getUploadCount() + uploadDaily.getUploadCount());
+        }
+        Map<String, PictureUploadDaily> actualMap = this.lambdaQuery()
+                .select(PictureUploadDaily::getScopeId, PictureUploadDaily::getUserId,
+                        PictureUploadDaily::getStatDate, PictureUploadDaily::getUploadCount)
+                .ge(PictureUploadDaily::getStatDate, startDate)
+                .lt(PictureUploadDaily::getStatDate, endDate)
+                .list()
+                .stream()
+                .collect(Collectors.toMap(uploadDaily -> this.buildKey(uploadDaily.getScopeId(),
+                        uploadDaily.getUserId(), uploadDaily.getStatDate()), uploadDaily -> uploadDaily));
+        // 只修正不一致的记录，已没有图片的日期置为 0
+        List<PictureUploadDaily> changedList = new ArrayList<>();
+        expectedMap.forEach((key, uploadDaily) -> {
+            PictureUploadDaily actual = actualMap.get(key);
+            if (actual == null || !uploadDaily.getUploadCount().equals(actual.getUploadCount())) {
+                changedList.add(uploadDaily);
+            }
+        });
+        actualMap.forEach((key, uploadDaily) -> {
+            if (!expectedMap.containsKey(key) && uploadDaily.getUploadCount() != 0) {
+                changedList.add(this.buildUploadDaily(uploadDaily.getScopeId(), uploadDaily.getUserId(),
+                        uploadDaily.getStatDate(), 0L));
+            }
+        });
+        for (List<PictureUploadDaily> batch : CollUtil.split(changedList, WRITE_BATCH_SIZE)) {
+            this.baseMapper.upsertUploadCount(batch);
+        }
+        if (!changedList.isEmpty()) {
+            log.info("每日上传数量校准完成, 日期 = [{}, {}), 修正记录数 = {}", DateUtil.formatDate(startDate),
+                    DateUtil.formatDate(endDate), changedList.size());
+        }
+        return changedList.size();
+    }
+
+    private String buildKey(long scopeId, long userId, Date statDate) {
+        return scopeId + ":" + userId + ":" + DateUtil.formatDate(statDate);
+    }
+
+    private PictureUploadDaily buildUploadDaily(long scopeId, Long userId, Date statDate, Long count) {
+        PictureUploadDaily uploadDaily = new PictureUploadDaily();
+        uploadDaily.setScopeId(scopeId);
+        uploadDaily.setUserId(userId);
+        uploadDaily.setStatDate(statDate);
+        uploadDaily.setUploadCount(count);
+        return uploadDaily;
+    }
+}
@@ -1,8 +1,10 @@
 package com.acaah.artsync.service.impl;
 
+import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.json.JSONUtil;
+import com.acaah.artsync.annontation.ReadReplica;
 import com.acaah.artsync.model.dto.space.analyze.*;
 import com.acaah.artsync.model.vo.space.analyze.*;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
@@ -10,17 +12,32 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.manager.analyze.PictureAnalyzeExecutor;
+import com.acaah.artsync.manager.analyze.PictureSizeStat;
+import com.acaah.artsync.manager.analyze.PictureUploadStatManager;
+import com.acaah.artsync.manager.analyze.SpaceAnalyzeSnapshot;
+import com.acaah.artsync.manager.analyze.SpaceAnalyzeSnapshotManager;
+import com.acaah.artsync.manager.analyze.SizeBucketAccumulator;
+import com.acaah.artsync.manager.sharding.PictureShardQueryExecutor;
+import com.acaah.artsync.manager.tag.PictureTagBackfillManager;
+import com.acaah.artsync.manager.tag.TagCountReconcileManager;
 import com.acaah.artsync.mapper.SpaceMapper;
 import com.acaah.artsync.model.entity.Picture;
 import com.acaah.artsync.model.entity.Space;
 import com.acaah.artsync.model.entity.User;
+import com.acaah.artsync.service.PictureUploadDailyService;
 import com.acaah.artsync.service.SpaceAnalyzeService;
 import com.acaah.artsync.service.SpaceService;
+import com.acaah.artsync.service.TagCountService;
 import com.acaah.artsync.service.UserService;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -40,6 +57,45 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
 
     @Resource
     private PictureServiceImpl pictureService;
+
+    @Resource
+    private TagCountService tagCountService;
+
+    @Resource
+    private PictureAnalyzeExecutor pictureAnalyzeExecutor;
+
+    /**
+     * 默认的图片大小分界点：100KB、500KB、1MB
+     */
+    private static final long[] DEFAULT_SIZE_BOUNDARIES = {100 * 1024L, 500 * 1024L, 1024 * 1024L};
+
+    /**
+     * 图片大小分界点的数量上限
+     */
+    private static final int MAX_SIZE_BOUNDARIES = 100;
+
+    @Resource
+    private PictureTagBackfillManager pictureTagBackfillManager;
+
+    @Resource
+    private TagCountReconcileManager tagCountReconcileManager;
+
+    @Resource
+    private PictureUploadStatManager pictureUploadStatManager;
+
+    @Resource
+    private PictureUploadDailyService pictureUploadDailyService;
+
+    @Resource
+    private SpaceAnalyzeSnapshotManager spaceAnalyzeSnapshotManager;
+
+    @Resource
+    private PictureShardQueryExecutor pictureShardQueryExecutor;
+
+    /**
+     * 支持的上传趋势时间维度
+     */
+    private static final List<String> TIME_DIMENSIONS = Arrays.asList("day", "week", "month");
 /**
  * 检查空间分析权限的方法
  * 根据请求类型的不同，进行不同的权限校验
@@ -93,6 +149,34 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
         throw new BusinessException(ErrorCode.PARAMS_ERROR, "未指定查询范围");
     }
 
+    /**
+     * 获取指定空间的分析快照
+     * 同一空间的各项分析共用一份内存快照；公共图库和全部图片数据量大，仍查询数据库
+     *
+     * @param spaceAnalyzeRequest 空间分析请求对象，需已通过权限校验
+     * @return 分析快照，公共图库和全部图片返回 null
+     */
+    private SpaceAnalyzeSnapshot getSpaceSnapshot(SpaceAnalyzeRequest spaceAnalyzeRequest) {
+        if (spaceAnalyzeRequest.isQueryAll() || spaceAnalyzeRequest.isQueryPublic()) {
+            return null;
+        }
+        return spaceAnalyzeSnapshotManager.getSnapshot(spaceAnalyzeRequest.getSpaceId());
+    }
+
+    /**
+     * 获取分析涉及的实际表
+     * 全部图片需要查询逻辑表和全部分表，公共图库只在逻辑表中，交给跨分表执行器并行查询
+     *
+     * @param spaceAnalyzeRequest 空间分析请求对象
+     * @return 实际表名，指定空间时返回 null，由 ShardingSphere 路由到单张表
+     */
+    private Collection<String> getAnalyzeTables(SpaceAnalyzeRequest spaceAnalyzeRequest) {
+        if (spaceAnalyzeRequest.isQueryAll() || spaceAnalyzeRequest.isQueryPublic()) {
+            return pictureShardQueryExecutor.resolveTables(spaceAnalyzeRequest.isQueryPublic());
+        }
+        return null;
+    }
+
     /**
      * 获取空间使用分析数据
      *
@@ -101,6 +185,7 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
      * @return SpaceUsageAnalyzeResponse 分析结果
      */
     @Override
+    @ReadReplica
     public SpaceUsageAnalyzeResponse getSpaceUsageAnalyze(SpaceUsageAnalyzeRequest spaceUsageAnalyzeRequest, User loginUser) {
         // 参数校验：如果请求参数为空，则抛出参数错误异常
         ThrowUtils.throwIf(spaceUsageAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
@@ -112,13 +197,14 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
             ThrowUtils.throwIf(!isAdmin, ErrorCode.NO_AUTH_ERROR, "无权访问空间");  // 如果不是管理员，抛出无权限异常
             // 统计公共图库的资源使用
             QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();  // 创建查询条件构造器
-            queryWrapper.select("picSize");  // 只查询图片大小字段
             if (!spaceUsageAnalyzeRequest.isQueryAll()) {
                 queryWrapper.isNull("spaceId");  // 如果不是查询全部，则只查询无空间ID的图片（公共图片）
             }
-            List<Object> pictureObjList = pictureService.getBaseMapper().selectObjs(queryWrapper);  // 执行查询获取图片大小列表
-            long usedSize = pictureObjList.stream().mapToLong(result -> result instanceof Long ? (Long) result : 0).sum();  // 计算总大小
-            long usedCount = pictureObjList.size();  // 计算图片数量
+            // 数量和总大小直接在数据库中聚合，全部图片时在各分表并行聚合后相加
+            PictureSizeStat pictureSizeStat = pictureAnalyzeExecutor.sumPictureSize(queryWrapper,
+                    pictureShardQueryExecutor.resolveTables(!spaceUsageAnalyzeRequest.isQueryAll()));
+            long usedSize = pictureSizeStat.getTotalSize();  // 计算总大小
+            long usedCount = pictureSizeStat.getCount();  // 计算图片数量
             // 封装返回结果
             SpaceUsageAnalyzeResponse spaceUsageAnalyzeResponse = new SpaceUsageAnalyzeResponse();
             spaceUsageAnalyzeResponse.setUsedSize(usedSize);  // 设置已使用空间大小
@@ -162,26 +248,31 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
      * @return List<SpaceCategoryAnalyzeResponse> 空间分类分析结果列表，每个元素包含分类名称、图片数量和总大小
      */
     @Override
+    @ReadReplica
     public List<SpaceCategoryAnalyzeResponse> getSpaceCategoryAnalyze(SpaceCategoryAnalyzeRequest spaceCategoryAnalyzeRequest, User loginUser) {
         // 检查请求参数是否为空，为空则抛出参数错误异常
         ThrowUtils.throwIf(spaceCategoryAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
 
         // 检查权限
         checkSpaceAnalyzeAuth(spaceCategoryAnalyzeRequest, loginUser);
+        SpaceAnalyzeSnapshot snapshot = getSpaceSnapshot(spaceCategoryAnalyzeRequest);
+        if (snapshot != null) {
+            return snapshot.groupByCategory();
+        }
 
         // 构造查询条件
         QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
         // 根据分析范围补充查询条件
         fillAnalyzeQueryWrapper(spaceCategoryAnalyzeRequest, queryWrapper);
 
-        // 使用 MyBatis-Plus 分组查询
+        // 在各表分别分组统计，再按分类合并数量和总大小
         queryWrapper.select("category AS category",
-                        "COUNT(*) AS count",
-                        "SUM(picSize) AS totalSize")
-                .groupBy("category");
+                "COUNT(*) AS count",
+                "IFNULL(SUM(picSize), 0) AS totalSize");
 
         // 查询并转换结果
-        return pictureService.getBaseMapper().selectMaps(queryWrapper)
+        return pictureShardQueryExecutor.aggregate(queryWrapper, Collections.singletonList("category"),
+                        getAnalyzeTables(spaceCategoryAnalyzeRequest))
                 .stream()
                 .map(result -> {
                     String category = result.get("category") != null ? result.get("category").toString() : "未分类";
@@ -202,12 +293,31 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
  * @return 标签分析响应列表，包含标签名和使用次数
  */
     @Override
+    @ReadReplica
     public List<SpaceTagAnalyzeResponse> getSpaceTagAnalyze(SpaceTagAnalyzeRequest spaceTagAnalyzeRequest, User loginUser) {
     // 参数校验：如果请求参数为空，则抛出参数错误异常
         ThrowUtils.throwIf(spaceTagAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
 
         // 检查权限
         checkSpaceAnalyzeAuth(spaceTagAnalyzeRequest, loginUser);
+        Integer topN = spaceTagAnalyzeRequest.getTopN();
+        SpaceAnalyzeSnapshot snapshot = getSpaceSnapshot(spaceTagAnalyzeRequest);
+        if (snapshot != null) {
+            return snapshot.topTags(topN);
+        }
+
+        // 标签迁移和计数校准完成后，直接读取增量维护的使用次数
+        if (pictureTagBackfillManager.isBackfillDone() && tagCountReconcileManager.isReady()) {
+            long scopeId;
+            if (spaceTagAnalyzeRequest.isQueryAll()) {
+                scopeId = TagCountService.SCOPE_ALL;
+            } else if (spaceTagAnalyzeRequest.isQueryPublic()) {
+                scopeId = TagCountService.SCOPE_PUBLIC;
+            } else {
+                scopeId = spaceTagAnalyzeRequest.getSpaceId();
+            }
+            return tagCountService.listTopTags(scopeId, topN);
+        }
 
         // 构造查询条件
         QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
@@ -229,6 +339,7 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
         // 转换为响应对象，按使用次数降序排序
         return tagCountMap.entrySet().stream()
                 .sorted((e1, e2) -> Long.compare(e2.getValue(), e1.getValue())) // 降序排列
+                .limit(topN != null && topN > 0 ? topN : Long.MAX_VALUE)
                 .map(entry -> new SpaceTagAnalyzeResponse(entry.getKey(), entry.getValue()))
                 .collect(Collectors.toList());
     }
@@ -242,6 +353,7 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
  * @return 返回空间大小分析结果列表
  */
     @Override
+    @ReadReplica
     public List<SpaceSizeAnalyzeResponse> getSpaceSizeAnalyze(SpaceSizeAnalyzeRequest spaceSizeAnalyzeRequest, User loginUser) {
     // 参数校验：如果请求参数为空，则抛出参数错误异常
         ThrowUtils.throwIf(spaceSizeAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
@@ -249,28 +361,50 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
         // 检查权限
         checkSpaceAnalyzeAuth(spaceSizeAnalyzeRequest, loginUser);
 
-        // 构造查询条件
-        QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
-        fillAnalyzeQueryWrapper(spaceSizeAnalyzeRequest, queryWrapper);
-
-        // 查询所有符合条件的图片大小
-        queryWrapper.select("picSize");
-        List<Long> picSizes = pictureService.getBaseMapper().selectObjs(queryWrapper)
-                .stream()
-                .map(size -> ((Number) size).longValue())
-                .collect(Collectors.toList());
+        // 校验分段，未指定时使用默认分段
+        long[] boundaries = getSizeBoundaries(spaceSizeAnalyzeRequest.getBoundaries());
 
-        // 定义分段范围，注意使用有序 Map
-        Map<String, Long> sizeRanges = new LinkedHashMap<>();
-        sizeRanges.put("<100KB", picSizes.stream().filter(size -> size < 100 * 1024).count());
-        sizeRanges.put("100KB-500KB", picSizes.stream().filter(size -> size >= 100 * 1024 && size < 500 * 1024).count());
-        sizeRanges.put("500KB-1MB", picSizes.stream().filter(size -> size >= 500 * 1024 && size < 1 * 1024 * 1024).count());
-        sizeRanges.put(">1MB", picSizes.stream().filter(size -> size >= 1 * 1024 * 1024).count());
+        SizeBucketAccumulator accumulator;
+        SpaceAnalyzeSnapshot snapshot = getSpaceSnapshot(spaceSizeAnalyzeRequest);
+        if (snapshot != null) {
+            accumulator = snapshot.countBySizeBucket(boundaries);
+        } else {
+            // 构造查询条件
+            QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
+            fillAnalyzeQueryWrapper(spaceSizeAnalyzeRequest, queryWrapper);
+            // 按分段统计数量，不把图片大小加载到内存
+            accumulator = pictureAnalyzeExecutor.countBySizeBucket(queryWrapper, boundaries,
+                    getAnalyzeTables(spaceSizeAnalyzeRequest));
+        }
 
         // 转换为响应对象
-        return sizeRanges.entrySet().stream()
-                .map(entry -> new SpaceSizeAnalyzeResponse(entry.getKey(), entry.getValue()))
-                .collect(Collectors.toList());
+        List<String> labels = accumulator.getLabels();
+        long[] counts = accumulator.getCounts();
+        List<SpaceSizeAnalyzeResponse> responseList = new ArrayList<>(labels.size());
+        for (int i = 0; i < labels.size(); i++) {
+            responseList.add(new SpaceSizeAnalyzeResponse(labels.get(i), counts[i]));
+        }
+        return responseList;
+    }
+
+    /**
+     * 校验并转换图片大小分段的分界点
+     * @param boundaryList 请求中的分界点，为空时使用默认分段
+     * @return 严格递增的分界点
+     */
+    private long[] getSizeBoundaries(List<Long> boundaryList) {
+        if (CollUtil.isEmpty(boundaryList)) {
+            return DEFAULT_SIZE_BOUNDARIES;
+        }
+        ThrowUtils.throwIf(boundaryList.size() > MAX_SIZE_BOUNDARIES, ErrorCode.PARAMS_ERROR, "分段过多");
+        long[] boundaries = new long[boundaryList.size()];
+        for (int i = 0; i < boundaries.length; i++) {
+            Long boundary = boundaryList.get(i);
+            ThrowUtils.throwIf(boundary == null || boundary <= 0, ErrorCode.PARAMS_ERROR, "分界点必须大于 0");
+            ThrowUtils.throwIf(i > 0 && boundary <= boundaries[i - 1], ErrorCode.PARAMS_ERROR, "分界点必须严格递增");
+            boundaries[i] = boundary;
+        }
+        return boundaries;
     }
 
 
@@ -281,20 +415,39 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
  * @return 分析结果列表，包含不同时间维度的统计数据
  */
     @Override
+    @ReadReplica
     public List<SpaceUserAnalyzeResponse> getSpaceUserAnalyze(SpaceUserAnalyzeRequest spaceUserAnalyzeRequest, User loginUser) {
     // 参数校验：如果请求参数为空，则抛出参数错误异常
         ThrowUtils.throwIf(spaceUserAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
         // 检查权限
         checkSpaceAnalyzeAuth(spaceUserAnalyzeRequest, loginUser);
+        Long userId = spaceUserAnalyzeRequest.getUserId();
+        String timeDimension = spaceUserAnalyzeRequest.getTimeDimension();
+        ThrowUtils.throwIf(!TIME_DIMENSIONS.contains(timeDimension), ErrorCode.PARAMS_ERROR, "不支持的时间维度");
+        SpaceAnalyzeSnapshot snapshot = getSpaceSnapshot(spaceUserAnalyzeRequest);
+        if (snapshot != null) {
+            return snapshot.countByPeriod(userId, timeDimension);
+        }
+
+        // 历史数据迁移完成后，按每日上传数量汇总，不再扫描图片表
+        if (pictureUploadStatManager.isBackfillDone()) {
+            long scopeId;
+            if (spaceUserAnalyzeRequest.isQueryAll()) {
+                scopeId = PictureUploadDailyService.SCOPE_ALL;
+            } else if (spaceUserAnalyzeRequest.isQueryPublic()) {
+                scopeId = PictureUploadDailyService.SCOPE_PUBLIC;
+            } else {
+                scopeId = spaceUserAnalyzeRequest.getSpaceId();
+            }
+            return pictureUploadDailyService.listUploadTrend(scopeId, userId, timeDimension);
+        }
 
         // 构造查询条件
         QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
-        Long userId = spaceUserAnalyzeRequest.getUserId();
         queryWrapper.eq(ObjUtil.isNotNull(userId), "userId", userId);
         fillAnalyzeQueryWrapper(spaceUserAnalyzeRequest, queryWrapper);
 
         // 分析维度：每日、每周、每月
-        String timeDimension = spaceUserAnalyzeRequest.getTimeDimension();
         switch (timeDimension) {
             case "day":
                 queryWrapper.select("DATE_FORMAT(createTime, '%Y-%m-%d') AS period", "COUNT(*) AS count");
@@ -309,11 +462,10 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
                 throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的时间维度");
         }
 
-        // 分组和排序
-        queryWrapper.groupBy("period").orderByAsc("period");
-
-        // 查询结果并转换
-        List<Map<String, Object>> queryResult = pictureService.getBaseMapper().selectMaps(queryWrapper);
+        // 在各表分别按时间段分组统计，合并后按时间段排序
+        List<Map<String, Object>> queryResult = pictureShardQueryExecutor.aggregate(queryWrapper,
+                Collections.singletonList("period"), getAnalyzeTables(spaceUserAnalyzeRequest));
+        queryResult.sort(Comparator.comparing(result -> result.get("period").toString()));
         return queryResult.stream()
                 .map(result -> {
                     String period = result.get("period").toString();
@@ -332,6 +484,7 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
      * @return 空间排行分析结果列表，包含空间ID、空间名称、用户ID和总大小等信息
      */
     @Override
+    @ReadReplica
     public List<Space> getSpaceRankAnalyze(SpaceRankAnalyzeRequest spaceRankAnalyzeRequest, User loginUser) {
         // 检查请求参数是否为空，若为空则抛出参数错误异常
         ThrowUtils.throwIf(spaceRankAnalyzeRequest == null, ErrorCode.PARAMS_ERROR);
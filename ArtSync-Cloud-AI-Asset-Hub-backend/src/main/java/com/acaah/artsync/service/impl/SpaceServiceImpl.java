@@ -10,6 +10,7 @@ import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
 import com.acaah.artsync.manager.sharding.DynamicShardingManager;
+import com.acaah.artsync.manager.user.UserVOLoader;
 import com.acaah.artsync.mapper.SpaceMapper;
 
 import com.acaah.artsync.model.dto.space.SpaceAddRequest;
@@ -51,6 +52,9 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
     @Resource
     private UserService userService;
 
+    @Resource
+    private UserVOLoader userVOLoader;
+
     @Resource
     private TransactionTemplate transactionTemplate;
 
@@ -196,15 +200,7 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
         // 对象转封装类：将Space对象转换为SpaceVO对象
         SpaceVO spaceVO = SpaceVO.objToVo(space);
         // 关联查询用户信息：根据空间中的用户ID获取用户信息并封装到VO中
-        Long userId = space.getUserId();
-        if (userId != null && userId > 0) {
-        // 根据用户ID获取用户实体对象
-            User user = userService.getById(userId);
-        // 将用户实体对象转换为用户VO对象
-            UserVO userVO = userService.getUserVO(user);
-        // 将用户VO对象设置到空间VO对象中
-            spaceVO.setUser(userVO);
-        }
+        spaceVO.setUser(userVOLoader.load(space.getUserId()));
         return spaceVO;
     }
 
@@ -234,19 +230,11 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
         // 从空间列表中提取所有用户ID集合
         // 1,2,3,4
         Set<Long> userIdSet = spaceList.stream().map(Space::getUserId).collect(Collectors.toSet());
-        // 根据用户ID查询用户信息，并按用户ID分组
+        // 批量获取用户信息，命中本地缓存的无需查询
         // 1 => user1, 2 => user2
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
+        Map<Long, UserVO> userIdUserVOMap = userVOLoader.loadMany(userIdSet);
         // 2. 填充信息
-        spaceVOList.forEach(spaceVO -> {
-            Long userId = spaceVO.getUserId();
-            User user = null;
-            if (userIdUserListMap.containsKey(userId)) {
-                user = userIdUserListMap.get(userId).get(0);
-            }
-            spaceVO.setUser(userService.getUserVO(user));
-        });
+        spaceVOList.forEach(spaceVO -> spaceVO.setUser(userIdUserVOMap.get(spaceVO.getUserId())));
         spaceVOPage.setRecords(spaceVOList);
         return spaceVOPage;
     }
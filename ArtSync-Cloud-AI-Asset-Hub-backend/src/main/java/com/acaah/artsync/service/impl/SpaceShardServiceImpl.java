@@ -0,0 +1,66 @@
+package com.acaah.artsync.service.impl;
+
+import com.acaah.artsync.mapper.SpaceShardMapper;
+import com.acaah.artsync.model.entity.SpaceShard;
+import com.acaah.artsync.model.enums.SpaceShardStatusEnum;
+import com.acaah.artsync.service.SpaceShardService;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+* @description 针对表【space_shard(空间分表状态)】的数据库操作Service实现
+*/
+@Service
+public class SpaceShardServiceImpl extends ServiceImpl<SpaceShardMapper, SpaceShard>
+    implements SpaceShardService {
+
+    @Override
+    public SpaceShard getBySpaceId(long spaceId) {
+        return this.lambdaQuery()
+                .eq(SpaceShard::getSpaceId, spaceId)
+                .one();
+    }
+
+    @Override
+    public List<Long> listRoutedSpaceIds(long lastSpaceId, int limit) {
+        return this.lambdaQuery()
+                .select(SpaceShard::getSpaceId)
+                .in(SpaceShard::getStatus, Arrays.asList(SpaceShardStatusEnum.CLEANING.getValue(),
+                        SpaceShardStatusEnum.DONE.getValue()))
+                .gt(SpaceShard::getSpaceId, lastSpaceId)
+                .orderByAsc(SpaceShard::getSpaceId)
+                .last("LIMIT " + limit)
+                .list()
+                .stream()
+                .map(SpaceShard::getSpaceId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> listCleaningSpaceIds() {
+        return this.lambdaQuery()
+                .select(SpaceShard::getSpaceId)
+                .eq(SpaceShard::getStatus, SpaceShardStatusEnum.CLEANING.getValue())
+                .list()
+                .stream()
+                .map(SpaceShard::getSpaceId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void markTableCreated(long spaceId) {
+        SpaceShard spaceShard = new SpaceShard();
+        spaceShard.setSpaceId(spaceId);
+        spaceShard.setStatus(SpaceShardStatusEnum.DONE.getValue());
+        try {
+            this.save(spaceShard);
+        } catch (DuplicateKeyException e) {
+            // 已登记（重复创建或迁移任务已登记），保持原状态
+        }
+    }
+}
@@ -8,6 +8,8 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.manager.auth.SpaceAuthCacheManager;
+import com.acaah.artsync.manager.user.UserVOLoader;
 import com.acaah.artsync.model.dto.spaceuser.SpaceUserAddRequest;
 import com.acaah.artsync.model.dto.spaceuser.SpaceUserQueryRequest;
 import com.acaah.artsync.model.entity.Space;
@@ -52,6 +54,12 @@ public class SpaceUserServiceImpl extends ServiceImpl<SpaceUserMapper, SpaceUser
     @Resource
     private UserService userService;
 
+    @Resource
+    private UserVOLoader userVOLoader;
+
+    @Resource
+    private SpaceAuthCacheManager spaceAuthCacheManager;
+
 /**
  * 添加空间用户的方法
  * @param spaceUserAddRequest 添加空间用户的请求参数
@@ -71,6 +79,8 @@ public class SpaceUserServiceImpl extends ServiceImpl<SpaceUserMapper, SpaceUser
         boolean result = this.save(spaceUser);
     // 检查保存操作是否成功
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 失效该用户在空间中的角色缓存
+        spaceAuthCacheManager.invalidateSpaceRole(spaceUser.getSpaceId(), spaceUser.getUserId());
     // 返回新添加用户的ID
         return spaceUser.getId();
     }
@@ -151,12 +161,7 @@ public class SpaceUserServiceImpl extends ServiceImpl<SpaceUserMapper, SpaceUser
         // 对象转封装类：将SpaceUser实体对象转换为SpaceUserVO视图对象
         SpaceUserVO spaceUserVO = SpaceUserVO.objToVo(spaceUser);
         // 关联查询用户信息：根据用户ID查询并设置用户信息
-        Long userId = spaceUser.getUserId();
-        if (userId != null && userId > 0) {
-            User user = userService.getById(userId);
-            UserVO userVO = userService.getUserVO(user);
-            spaceUserVO.setUser(userVO);
-        }
+        spaceUserVO.setUser(userVOLoader.load(spaceUser.getUserId()));
         // 关联查询空间信息：根据空间ID查询并设置空间信息
         Long spaceId = spaceUser.getSpaceId();
         if (spaceId != null && spaceId > 0) {
@@ -184,8 +189,7 @@ public class SpaceUserServiceImpl extends ServiceImpl<SpaceUserMapper, SpaceUser
         Set<Long> userIdSet = spaceUserList.stream().map(SpaceUser::getUserId).collect(Collectors.toSet());
         Set<Long> spaceIdSet = spaceUserList.stream().map(SpaceUser::getSpaceId).collect(Collectors.toSet());
         // 2. 批量查询用户和空间信息，并将结果转换为ID到对象的映射
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
+        Map<Long, UserVO> userIdUserVOMap = userVOLoader.loadMany(userIdSet);
         Map<Long, List<Space>> spaceIdSpaceListMap = spaceService.listByIds(spaceIdSet).stream()
                 .collect(Collectors.groupingBy(Space::getId));
         // 3. 填充 SpaceUserVO 的用户和空间信息
@@ -193,11 +197,7 @@ public class SpaceUserServiceImpl extends ServiceImpl<SpaceUserMapper, SpaceUser
             Long userId = spaceUserVO.getUserId();
             Long spaceId = spaceUserVO.getSpaceId();
             // 填充用户信息
-            User user = null;
-            if (userIdUserListMap.containsKey(userId)) {
-                user = userIdUserListMap.get(userId).get(0);
-            }
-            spaceUserVO.setUser(userService.getUserVO(user));
+            spaceUserVO.setUser(userIdUserVOMap.get(userId));
             // 填充空间信息
             Space space = null;
             if (spaceIdSpaceListMap.containsKey(spaceId)) {
@@ -0,0 +1,96 @@
+package com.acaah.artsync.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import com.acaah.artsync.mapper.TagCountMapper;
+import com.acaah.artsync.model.entity.Tag;
+import com.acaah.artsync.model.entity.TagCount;
+import com.acaah.artsync.model.vo.space.analyze.SpaceTagAnalyzeResponse;
+import com.acaah.artsync.service.TagCountService;
+import com.acaah.artsync.service.TagService;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+* @description 针对表【tag_count(标签使用次数)】的数据库操作Service实现
+*/
+@Slf4j
+@Service
+public class TagCountServiceImpl extends ServiceImpl<TagCountMapper, TagCount>
+    implements TagCountService {
+
+    @Resource
+    private TagService tagService;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public void incrementTagCount(Long spaceId, Map<Long, Long> tagDeltaMap) {
+        if (CollUtil.isEmpty(tagDeltaMap)) {
+            return;
+        }
+        long scopeId = TagCountService.getScopeId(spaceId);
+        List<TagCount> tagCountList = new ArrayList<>();
+        tagDeltaMap.forEach((tagId, delta) -> {
+            if (delta != null && delta != 0) {
+                tagCountList.add(this.buildTagCount(scopeId, tagId, delta));
+                tagCountList.add(this.buildTagCount(SCOPE_ALL, tagId, delta));
+            }
+        });
+        if (!tagCountList.isEmpty()) {
+            this.baseMapper.incrementTagCount(tagCountList);
+        }
+    }
+
+    @Override
+    public List<SpaceTagAnalyzeResponse> listTopTags(long scopeId, Integer topN) {
+        // 只读取该范围内的标签计数，与图片数量无关
+        List<TagCount> tagCountList = this.lambdaQuery()
+                .select(TagCount::getTagId, TagCount::getTagCount)
+                .eq(TagCount::getScopeId, scopeId)
+                .gt(TagCount::getTagCount, 0)
+                .orderByDesc(TagCount::getTagCount)
+                .last(topN != null && topN > 0, "limit " + topN)
+                .list();
+        if (tagCountList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, String> tagNameMap = tagService.listByIds(tagCountList.stream()
+                        .map(TagCount::getTagId)
+                        .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Tag::getId, Tag::getTagName));
+        return tagCountList.stream()
+                .filter(tagCount -> tagNameMap.containsKey(tagCount.getTagId()))
+                .map(tagCount -> new SpaceTagAnalyzeResponse(tagNameMap.get(tagCount.getTagId()), tagCount.getTagCount()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void reconcileTagCount() {
+        transactionTemplate.executeWithoutResult(status -> {
+            // INSERT ... SELECT 对读取的 picture_tag 加共享锁，进行中的关联修改（与计数增量在同一事务）提交后才统计，
+            // 统计之后的修改要等本事务提交，其增量累加在校准结果之上
+            this.baseMapper.upsertScopeTagCountFromPictureTag();
+            this.baseMapper.upsertAllTagCountFromPictureTag();
+            int resetCount = this.baseMapper.resetOrphanTagCount();
+            if (resetCount > 0) {
+                log.info("标签使用次数校准完成, 归零记录数 = {}", resetCount);
+            }
+        });
+    }
+
+    private TagCount buildTagCount(long scopeId, Long tagId, Long count) {
+        TagCount tagCount = new TagCount();
+        tagCount.setScopeId(scopeId);
+        tagCount.setTagId(tagId);
+        tagCount.setTagCount(count);
+        return tagCount;
+    }
+}
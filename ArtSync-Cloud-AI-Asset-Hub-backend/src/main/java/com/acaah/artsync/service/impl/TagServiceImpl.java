@@ -0,0 +1,106 @@
+package com.acaah.artsync.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.acaah.artsync.exception.ErrorCode;
+import com.acaah.artsync.exception.ThrowUtils;
+import com.acaah.artsync.mapper.TagMapper;
+import com.acaah.artsync.model.entity.Tag;
+import com.acaah.artsync.service.TagService;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+* @description 针对表【tag(标签)】的数据库操作Service实现
+*/
+@Service
+public class TagServiceImpl extends ServiceImpl<TagMapper, Tag>
+    implements TagService {
+
+    /**
+     * 标签名称（小写） => 标签 id
+     * 标签创建后不会修改，可以放心缓存
+     */
+    private final Cache<String, Long> tagIdCache = Caffeine.newBuilder()
+            .maximumSize(100_000L)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    @Override
+    public List<String> normalizeTagNames(Collection<String> tagNames) {
+        if (CollUtil.isEmpty(tagNames)) {
+            return new ArrayList<>();
+        }
+        // 表使用不区分大小写的排序规则，按小写去重
+        Map<String, String> tagNameMap = new LinkedHashMap<>();
+        for (String tagName : tagNames) {
+            String trimmed = StrUtil.trim(tagName);
+            if (StrUtil.isNotEmpty(trimmed)) {
+                tagNameMap.putIfAbsent(trimmed.toLowerCase(), trimmed);
+            }
+        }
+        return new ArrayList<>(tagNameMap.values());
+    }
+
+    @Override
+    public Map<String, Long> getOrCreateTagIds(Collection<String> tagNames) {
+        List<String> normalizedTagNames = this.normalizeTagNames(tagNames);
+        Map<String, Long> tagIdMap = this.getTagIds(normalizedTagNames);
+        for (String tagName : normalizedTagNames) {
+            String key = tagName.toLowerCase();
+            if (tagIdMap.containsKey(key)) {
+                continue;
+            }
+            ThrowUtils.throwIf(tagName.length() > 128, ErrorCode.PARAMS_ERROR, "标签过长");
+            Tag tag = new Tag();
+            tag.setTagName(tagName);
+            Long tagId;
+            try {
+                this.save(tag);
+                tagId = tag.getId();
+            } catch (DuplicateKeyException e) {
+                // 并发创建了同名标签，改用对方创建的
+                Tag existTag = this.lambdaQuery().eq(Tag::getTagName, tagName).one();
+                ThrowUtils.throwIf(existTag == null, ErrorCode.OPERATION_ERROR, "标签创建失败");
+                tagId = existTag.getId();
+            }
+            tagIdCache.put(key, tagId);
+            tagIdMap.put(key, tagId);
+        }
+        return tagIdMap;
+    }
+
+    @Override
+    public Map<String, Long> getTagIds(Collection<String> tagNames) {
+        Map<String, Long> tagIdMap = new HashMap<>();
+        List<String> missTagNames = new ArrayList<>();
+        for (String tagName : this.normalizeTagNames(tagNames)) {
+            String key = tagName.toLowerCase();
+            Long tagId = tagIdCache.getIfPresent(key);
+            if (tagId != null) {
+                tagIdMap.put(key, tagId);
+            } else {
+                missTagNames.add(tagName);
+            }
+        }
+        if (missTagNames.isEmpty()) {
+            return tagIdMap;
+        }
+        List<Tag> tagList = this.lambdaQuery()
+                .select(Tag::getId, Tag::getTagName)
+                .in(Tag::getTagName, missTagNames)
+                .list();
+        for (Tag tag : tagList) {
+            String key = tag.getTagName().toLowerCase();
+            tagIdCache.put(key, tag.getId());
+            tagIdMap.put(key, tag.getId());
+        }
+        return tagIdMap;
+    }
+}
@@ -10,6 +10,8 @@ import com.acaah.artsync.constant.UserConstant;
 import com.acaah.artsync.exception.BusinessException;
 import com.acaah.artsync.exception.ErrorCode;
 import com.acaah.artsync.manager.auth.StpKit;
+import com.acaah.artsync.manager.user.LoginUserVersionManager;
+import com.acaah.artsync.manager.user.UserVOLoader;
 import com.acaah.artsync.model.dto.user.UserQueryRequest;
 import com.acaah.artsync.model.entity.User;
 import com.acaah.artsync.model.enums.UserRoleEnum;
@@ -21,7 +23,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.DigestUtils;
 
+import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +43,12 @@ import static com.acaah.artsync.constant.UserConstant.USER_LOGIN_STATE;
 public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         implements UserService {
 
+    @Resource
+    private LoginUserVersionManager loginUserVersionManager;
+
+    @Resource
+    private UserVOLoader userVOLoader;
+
     /**
      * 用户注册
      *
@@ -108,8 +118,10 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
             log.info("user login failed, userAccount cannot match userPassword");
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户不存在或者密码错误");
         }
-        // 4. 保存用户的登录态
-        request.getSession().setAttribute(UserConstant.USER_LOGIN_STATE, user);
+        // 4. 保存用户的登录态（不保存版本号，首次获取登录用户时再记录，避免版本号比用户信息新）
+        HttpSession session = request.getSession();
+        session.setAttribute(UserConstant.USER_LOGIN_STATE, user);
+        session.removeAttribute(UserConstant.USER_LOGIN_VERSION);
 
         // 5. 记录用户登录态到 Sa-token，便于空间鉴权时使用，注意保证该用户信息与 SpringSession 中的信息过期时间一致
         StpKit.SPACE.login(user.getId());
@@ -133,17 +145,33 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     @Override
     public User getLoginUser(HttpServletRequest request) {
         // 判断是否已经登录
-        Object userObj = request.getSession().getAttribute(UserConstant.USER_LOGIN_STATE);
+        HttpSession session = request.getSession();
+        Object userObj = session.getAttribute(UserConstant.USER_LOGIN_STATE);
         User currentUser = (User) userObj;
         if (currentUser == null || currentUser.getId() == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
-        // 从数据库中查询（追求性能的话可以注释，直接返回上述结果）
+        // 用户信息未修改过（版本号与会话中记录的一致）时直接使用会话中的用户
         Long userId = currentUser.getId();
+        Long version = loginUserVersionManager.getVersion(userId);
+        if (version != null && version.equals(session.getAttribute(UserConstant.USER_LOGIN_VERSION))) {
+            loginUserVersionManager.recordSessionHit();
+            return currentUser;
+        }
+        // 从数据库中查询最新的用户信息，先取版本号再查库，会话中记录的版本号不会比用户信息新
         currentUser = this.getById(userId);
+        loginUserVersionManager.recordLoad();
         if (currentUser == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
+        if (version != null) {
+            session.setAttribute(UserConstant.USER_LOGIN_STATE, currentUser);
+            session.setAttribute(UserConstant.USER_LOGIN_VERSION, version);
+            // 同步 Sa-Token 会话中的用户信息，空间鉴权判断管理员时使用
+            if (StpKit.SPACE.isLogin()) {
+                StpKit.SPACE.getSession().set(USER_LOGIN_STATE, currentUser);
+            }
+        }
         return currentUser;
     }
 
@@ -204,6 +232,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         }
         // 移除登录态
         request.getSession().removeAttribute(UserConstant.USER_LOGIN_STATE);
+        request.getSession().removeAttribute(UserConstant.USER_LOGIN_VERSION);
         return true;
     }
 
@@ -233,6 +262,15 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     public boolean isAdmin(User user) {
         return user != null && UserRoleEnum.ADMIN.getValue().equals(user.getUserRole());
     }
+
+    @Override
+    public void onUserChanged(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        loginUserVersionManager.bumpVersion(userId);
+        userVOLoader.invalidate(userId);
+    }
 }
 
 
@@ -47,6 +47,110 @@ public class ColorSimilarUtils {
         return calculateSimilarity(color1, color2);
     }
 
+    /**
+     * 将 RGB 转换为 CIE Lab（D65 白点）
+     *
+     * @param rgb 0xRRGGBB
+     * @param lab 输出数组，依次写入 L、a、b
+     * @param offset 写入位置
+     */
+    public static void rgbToLab(int rgb, float[] lab, int offset) {
+        // sRGB => 线性 RGB
+        double r = srgbToLinear((rgb >> 16) & 0xFF);
+        double g = srgbToLinear((rgb >> 8) & 0xFF);
+        double b = srgbToLinear(rgb & 0xFF);
+        // 线性 RGB => XYZ，并按 D65 白点归一化
+        double x = (r * 0.4124564 + g * 0.3575761 + b * 0.1804375) / 0.95047;
+        double y = r * 0.2126729 + g * 0.7151522 + b * 0.0721750;
+        double z = (r * 0.0193339 + g * 0.1191920 + b * 0.9503041) / 1.08883;
+        // XYZ => Lab
+        double fx = labF(x);
+        double fy = labF(y);
+        double fz = labF(z);
+        lab[offset] = (float) (116 * fy - 16);
+        lab[offset + 1] = (float) (500 * (fx - fy));
+        lab[offset + 2] = (float) (200 * (fy - fz));
+    }
+
+    /**
+     * 计算两个 Lab 颜色的 CIEDE2000 色差（越小越相似，符合人眼感知）
+     */
+    public static double ciede2000(double l1, double a1, double b1, double l2, double a2, double b2) {
+        double c1 = Math.sqrt(a1 * a1 + b1 * b1);
+        double c2 = Math.sqrt(a2 * a2 + b2 * b2);
+        double cMean = (c1 + c2) / 2;
+        double cMean7 = cMean * cMean * cMean * cMean * cMean * cMean * cMean;
+        double g = 0.5 * (1 - Math.sqrt(cMean7 / (cMean7 + 6103515625.0))); // 25^7
+        double a1p = (1 + g) * a1;
+        double a2p = (1 + g) * a2;
+        double c1p = Math.sqrt(a1p * a1p + b1 * b1);
+        double c2p = Math.sqrt(a2p * a2p + b2 * b2);
+        double h1p = hueAngle(b1, a1p);
+        double h2p = hueAngle(b2, a2p);
+
+        double deltaLp = l2 - l1;
+        double deltaCp = c2p - c1p;
+        double deltahp;
+        if (c1p * c2p == 0) {
+            deltahp = 0;
+        } else if (Math.abs(h2p - h1p) <= 180) {
+            deltahp = h2p - h1p;
+        } else if (h2p - h1p > 180) {
+            deltahp = h2p - h1p - 360;
+        } else {
+            deltahp = h2p - h1p + 360;
+        }
+        double deltaHp = 2 * Math.sqrt(c1p * c2p) * Math.sin(Math.toRadians(deltahp / 2));
+
+        double lpMean = (l1 + l2) / 2;
+        double cpMean = (c1p + c2p) / 2;
+        double hpMean;
+        if (c1p * c2p == 0) {
+            hpMean = h1p + h2p;
+        } else if (Math.abs(h1p - h2p) <= 180) {
+            hpMean = (h1p + h2p) / 2;
+        } else if (h1p + h2p < 360) {
+            hpMean = (h1p + h2p + 360) / 2;
+        } else {
+            hpMean = (h1p + h2p - 360) / 2;
+        }
+        double t = 1
+                - 0.17 * Math.cos(Math.toRadians(hpMean - 30))
+                + 0.24 * Math.cos(Math.toRadians(2 * hpMean))
+                + 0.32 * Math.cos(Math.toRadians(3 * hpMean + 6))
+                - 0.20 * Math.cos(Math.toRadians(4 * hpMean - 63));
+        double deltaTheta = 30 * Math.exp(-((hpMean - 275) / 25) * ((hpMean - 275) / 25));
+        double cpMean7 = cpMean * cpMean * cpMean * cpMean * cpMean * cpMean * cpMean;
+        double rc = 2 * Math.sqrt(cpMean7 / (cpMean7 + 6103515625.0));
+        double lpMean50 = (lpMean - 50) * (lpMean - 50);
+        double sl = 1 + 0.015 * lpMean50 / Math.sqrt(20 + lpMean50);
+        double sc = 1 + 0.045 * cpMean;
+        double sh = 1 + 0.015 * cpMean * t;
+        double rt = -Math.sin(Math.toRadians(2 * deltaTheta)) * rc;
+
+        double dl = deltaLp / sl;
+        double dc = deltaCp / sc;
+        double dh = deltaHp / sh;
+        return Math.sqrt(dl * dl + dc * dc + dh * dh + rt * dc * dh);
+    }
+
+    private static double srgbToLinear(int channel) {
+        double c = channel / 255.0;
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static double labF(double t) {
+        return t > 216.0 / 24389 ? Math.cbrt(t) : (24389.0 / 27 * t + 16) / 116;
+    }
+
+    private static double hueAngle(double b, double ap) {
+        if (b == 0 && ap == 0) {
+            return 0;
+        }
+        double h = Math.toDegrees(Math.atan2(b, ap));
+        return h < 0 ? h + 360 : h;
+    }
+
     // 示例代码
     public static void main(String[] args) {
         // 测试颜色
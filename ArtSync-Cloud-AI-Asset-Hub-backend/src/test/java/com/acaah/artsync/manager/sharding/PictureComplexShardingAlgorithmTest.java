@@ -0,0 +1,81 @@
+package com.acaah.artsync.manager.sharding;
+
+import com.google.common.collect.Range;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * complex 分表算法测试，已分表的空间为 10 和 20
+ */
+class PictureComplexShardingAlgorithmTest {
+
+    private final PictureComplexShardingAlgorithm algorithm = new PictureComplexShardingAlgorithm();
+
+    @BeforeEach
+    void setUp() {
+        PictureShardingRouter.updateShardedSpaceIds(Arrays.asList(10L, 20L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        PictureShardingRouter.updateShardedSpaceIds(Collections.emptyList());
+    }
+
+    @Test
+    void inConditionRoutesToInvolvedTablesOnly() {
+        Collection<String> tables = this.doSharding(
+                Collections.singletonMap("spaceId", Arrays.asList(10L, 30L, 10L)), Collections.emptyMap());
+        assertEquals(Arrays.asList("picture_10", "picture"), new ArrayList<>(tables));
+    }
+
+    @Test
+    void columnNameIsCaseInsensitive() {
+        Collection<String> tables = this.doSharding(
+                Collections.singletonMap("SPACEID", Collections.singletonList(20L)), Collections.emptyMap());
+        assertEquals(Collections.singletonList("picture_20"), new ArrayList<>(tables));
+    }
+
+    @Test
+    void rangeConditionRoutesToShardsInRangeAndLogicTable() {
+        Collection<String> tables = this.doSharding(Collections.emptyMap(),
+                Collections.singletonMap("spaceId", Range.openClosed(10L, 20L)));
+        assertEquals(Arrays.asList("picture", "picture_20"), sorted(tables));
+    }
+
+    @Test
+    void noSpaceIdConditionScattersToAllTables() {
+        Collection<String> tables = this.doSharding(Collections.emptyMap(), Collections.emptyMap());
+        assertEquals(Arrays.asList("picture", "picture_10", "picture_20"), sorted(tables));
+    }
+
+    @Test
+    void emptyInConditionFallsBackToRange() {
+        Collection<String> tables = this.doSharding(
+                Collections.singletonMap("spaceId", Collections.emptyList()),
+                Collections.singletonMap("spaceId", Range.atLeast(20L)));
+        assertEquals(Arrays.asList("picture", "picture_20"), sorted(tables));
+    }
+
+    private Collection<String> doSharding(Map<String, Collection<Long>> valuesMap, Map<String, Range<Long>> rangeMap) {
+        List<String> availableTargetNames = Arrays.asList("picture", "picture_10", "picture_20");
+        return algorithm.doSharding(availableTargetNames,
+                new ComplexKeysShardingValue<>("picture", valuesMap, rangeMap));
+    }
+
+    private static List<String> sorted(Collection<String> tables) {
+        List<String> tableList = new ArrayList<>(tables);
+        Collections.sort(tableList);
+        return tableList;
+    }
+}
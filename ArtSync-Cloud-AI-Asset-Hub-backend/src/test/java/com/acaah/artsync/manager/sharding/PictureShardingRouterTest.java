@@ -0,0 +1,105 @@
+package com.acaah.artsync.manager.sharding;
+
+import com.google.common.collect.Range;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 图片分表路由测试，已分表的空间为 10 和 20
+ */
+class PictureShardingRouterTest {
+
+    @BeforeEach
+    void setUp() {
+        PictureShardingRouter.updateShardedSpaceIds(Arrays.asList(10L, 20L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        PictureShardingRouter.updateShardedSpaceIds(Collections.emptyList());
+    }
+
+    @Test
+    void routeShardedSpaceToOwnTable() {
+        assertEquals("picture_10", PictureShardingRouter.route(10L));
+        // ShardingSphere 传入的值可能是 Integer
+        assertEquals("picture_20", PictureShardingRouter.route(20));
+    }
+
+    @Test
+    void routePublicAndUnshardedSpaceToLogicTable() {
+        assertEquals("picture", PictureShardingRouter.route(null));
+        assertEquals("picture", PictureShardingRouter.route(30L));
+        assertEquals("picture", PictureShardingRouter.route("10"));
+    }
+
+    @Test
+    void routeAllDeduplicatesTables() {
+        assertEquals(Arrays.asList("picture_10", "picture"),
+                new ArrayList<>(PictureShardingRouter.routeAll(Arrays.asList(10L, 30L, 10L, null, 40L))));
+    }
+
+    @Test
+    void routeRangeIncludesClosedBounds() {
+        assertEquals(Arrays.asList("picture", "picture_10", "picture_20"),
+                sorted(PictureShardingRouter.routeRange(Range.closed(10L, 20L))));
+    }
+
+    @Test
+    void routeRangeExcludesOpenBounds() {
+        assertEquals(Collections.singletonList("picture"),
+                sorted(PictureShardingRouter.routeRange(Range.open(10L, 20L))));
+        assertEquals(Arrays.asList("picture", "picture_10"),
+                sorted(PictureShardingRouter.routeRange(Range.closedOpen(10L, 20L))));
+        assertEquals(Arrays.asList("picture", "picture_20"),
+                sorted(PictureShardingRouter.routeRange(Range.openClosed(10L, 20L))));
+    }
+
+    @Test
+    void routeRangeWithSingleBound() {
+        assertEquals(Arrays.asList("picture", "picture_20"),
+                sorted(PictureShardingRouter.routeRange(Range.greaterThan(10L))));
+        assertEquals(Arrays.asList("picture", "picture_10"),
+                sorted(PictureShardingRouter.routeRange(Range.atMost(10L))));
+        assertEquals(Collections.singletonList("picture"),
+                sorted(PictureShardingRouter.routeRange(Range.lessThan(10L))));
+    }
+
+    @Test
+    void routeRangeWithIntegerEndpoints() {
+        assertEquals(Arrays.asList("picture", "picture_10"),
+                sorted(PictureShardingRouter.routeRange(Range.closed(10, 10))));
+    }
+
+    @Test
+    void routeAllTablesIncludesLogicTableAndEveryShard() {
+        assertEquals(Arrays.asList("picture", "picture_10", "picture_20"),
+                sorted(PictureShardingRouter.routeAllTables()));
+    }
+
+    @Test
+    void isShardedFollowsReplacedSpaceIds() {
+        assertTrue(PictureShardingRouter.isSharded(10L));
+        assertFalse(PictureShardingRouter.isSharded(null));
+        PictureShardingRouter.updateShardedSpaceIds(Collections.singletonList(30L));
+        assertFalse(PictureShardingRouter.isSharded(10L));
+        assertEquals("picture_30", PictureShardingRouter.route(30L));
+    }
+
+    private static List<String> sorted(Collection<String> tables) {
+        List<String> tableList = new ArrayList<>(tables);
+        Collections.sort(tableList);
+        return tableList;
+    }
+}
@@ -92,6 +92,36 @@ export async function listPictureByPageUsingPost(
   })
 }
 
+/** listPictureByCursor POST /api/picture/list/cursor */
+export async function listPictureByCursorUsingPost(
+  body: API.PictureQueryRequest,
+  options?: { [key: string]: any }
+) {
+  return request<API.BaseResponseCursorPagePicture_>('/api/picture/list/cursor', {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+    },
+    data: body,
+    ...(options || {}),
+  })
+}
+
+/** listPictureVOByCursor POST /api/picture/list/cursor/vo */
+export async function listPictureVoByCursorUsingPost(
+  body: API.PictureQueryRequest,
+  options?: { [key: string]: any }
+) {
+  return request<API.BaseResponseCursorPagePictureVO_>('/api/picture/list/cursor/vo', {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+    },
+    data: body,
+    ...(options || {}),
+  })
+}
+
 /** listPictureVOByPage POST /api/picture/list/page/vo */
 export async function listPictureVoByPageUsingPost(
   body: API.PictureQueryRequest,
@@ -203,6 +233,14 @@ export async function searchPictureByPictureUsingPost(
   })
 }
 
+/** backfillPictureTags POST /api/picture/tag/backfill */
+export async function backfillPictureTagsUsingPost(options?: { [key: string]: any }) {
+  return request<API.BaseResponseBoolean_>('/api/picture/tag/backfill', {
+    method: 'POST',
+    ...(options || {}),
+  })
+}
+
 /** listPictureTagCategory GET /api/picture/tag_category */
 export async function listPictureTagCategoryUsingGet(options?: { [key: string]: any }) {
   return request<API.BaseResponsePictureTagCategory_>('/api/picture/tag_category', {
@@ -272,7 +310,7 @@ export async function uploadPictureByBatchUsingPost(
   body: API.PictureUploadByBatchRequest,
   options?: { [key: string]: any }
 ) {
-  return request<API.BaseResponseInt_>('/api/picture/upload/batch', {
+  return request<API.BaseResponseString_>('/api/picture/upload/batch', {
     method: 'POST',
     headers: {
       'Content-Type': 'application/json',
@@ -282,6 +320,21 @@ export async function uploadPictureByBatchUsingPost(
   })
 }
 
+/** getPictureUploadBatchJob GET /api/picture/upload/batch/job */
+export async function getPictureUploadBatchJobUsingGet(
+  // 叠加生成的Param类型 (非body参数swagger默认没有生成对象)
+  params: API.getPictureUploadBatchJobUsingGETParams,
+  options?: { [key: string]: any }
+) {
+  return request<API.BaseResponsePictureUploadBatchJobVO_>('/api/picture/upload/batch/job', {
+    method: 'GET',
+    params: {
+      ...params,
+    },
+    ...(options || {}),
+  })
+}
+
 /** uploadPictureByUrl POST /api/picture/upload/url */
 export async function uploadPictureByUrlUsingPost(
   body: API.PictureUploadRequest,
@@ -2,6 +2,14 @@
 /* eslint-disable */
 import request from '@/request'
 
+/** backfillPictureUploadStat POST /api/space/analyze/user/backfill */
+export async function backfillPictureUploadStatUsingPost(options?: { [key: string]: any }) {
+  return request<API.BaseResponseBoolean_>('/api/space/analyze/user/backfill', {
+    method: 'POST',
+    ...(options || {}),
+  })
+}
+
 /** getSpaceCategoryAnalyze POST /api/space/analyze/category */
 export async function getSpaceCategoryAnalyzeUsingPost(
   body: API.SpaceCategoryAnalyzeRequest,
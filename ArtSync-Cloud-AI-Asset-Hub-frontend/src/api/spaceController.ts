@@ -62,6 +62,21 @@ export async function getSpaceByIdUsingGet(
   })
 }
 
+/** getSpaceShardMigration GET /api/space/shard/migrate/get */
+export async function getSpaceShardMigrationUsingGet(
+  // 叠加生成的Param类型 (非body参数swagger默认没有生成对象)
+  params: API.getSpaceShardMigrationUsingGETParams,
+  options?: { [key: string]: any }
+) {
+  return request<API.BaseResponseSpaceShard_>('/api/space/shard/migrate/get', {
+    method: 'GET',
+    params: {
+      ...params,
+    },
+    ...(options || {}),
+  })
+}
+
 /** getSpaceVOById GET /api/space/get/vo */
 export async function getSpaceVoByIdUsingGet(
   // 叠加生成的Param类型 (非body参数swagger默认没有生成对象)
@@ -115,6 +130,36 @@ export async function listSpaceVoByPageUsingPost(
   })
 }
 
+/** pauseSpaceShardMigration POST /api/space/shard/migrate/pause */
+export async function pauseSpaceShardMigrationUsingPost(
+  body: API.SpaceShardMigrateRequest,
+  options?: { [key: string]: any }
+) {
+  return request<API.BaseResponseBoolean_>('/api/space/shard/migrate/pause', {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+    },
+    data: body,
+    ...(options || {}),
+  })
+}
+
+/** startSpaceShardMigration POST /api/space/shard/migrate */
+export async function startSpaceShardMigrationUsingPost(
+  body: API.SpaceShardMigrateRequest,
+  options?: { [key: string]: any }
+) {
+  return request<API.BaseResponseSpaceShard_>('/api/space/shard/migrate', {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+    },
+    data: body,
+    ...(options || {}),
+  })
+}
+
 /** updateSpace POST /api/space/update */
 export async function updateSpaceUsingPost(
   body: API.SpaceUpdateRequest,
@@ -11,6 +11,18 @@ declare namespace API {
     message?: string
   }
 
+  type BaseResponseCursorPagePicture_ = {
+    code?: number
+    data?: CursorPagePicture_
+    message?: string
+  }
+
+  type BaseResponseCursorPagePictureVO_ = {
+    code?: number
+    data?: CursorPagePictureVO_
+    message?: string
+  }
+
   type BaseResponseGetOutPaintingTaskResponse_ = {
     code?: number
     data?: GetOutPaintingTaskResponse
@@ -137,12 +149,24 @@ declare namespace API {
     message?: string
   }
 
+  type BaseResponsePictureUploadBatchJobVO_ = {
+    code?: number
+    data?: PictureUploadBatchJobVO
+    message?: string
+  }
+
   type BaseResponseSpace_ = {
     code?: number
     data?: Space
     message?: string
   }
 
+  type BaseResponseSpaceShard_ = {
+    code?: number
+    data?: SpaceShard
+    message?: string
+  }
+
   type BaseResponseSpaceUsageAnalyzeResponse_ = {
     code?: number
     data?: SpaceUsageAnalyzeResponse
@@ -191,6 +215,22 @@ declare namespace API {
     pictureId?: number
   }
 
+  type CursorPagePicture_ = {
+    hasMore?: boolean
+    nextCursor?: string
+    records?: Picture[]
+    total?: number
+    totalApproximate?: boolean
+  }
+
+  type CursorPagePictureVO_ = {
+    hasMore?: boolean
+    nextCursor?: string
+    records?: PictureVO[]
+    total?: number
+    totalApproximate?: boolean
+  }
+
   type DeleteRequest = {
     id?: number
   }
@@ -215,11 +255,21 @@ declare namespace API {
     id?: number
   }
 
+  type getPictureUploadBatchJobUsingGETParams = {
+    /** jobId */
+    jobId?: string
+  }
+
   type getSpaceByIdUsingGETParams = {
     /** id */
     id?: number
   }
 
+  type getSpaceShardMigrationUsingGETParams = {
+    /** spaceId */
+    spaceId?: number
+  }
+
   type getSpaceVOByIdUsingGETParams = {
     /** id */
     id?: number
@@ -368,6 +418,7 @@ declare namespace API {
   type PictureQueryRequest = {
     category?: string
     current?: number
+    cursor?: string
     endEditTime?: string
     id?: number
     introduction?: string
@@ -389,6 +440,7 @@ declare namespace API {
     spaceId?: number
     startEditTime?: string
     tags?: string[]
+    totalMode?: string
     userId?: number
   }
 
@@ -424,6 +476,15 @@ declare namespace API {
     spaceId?: number
   }
 
+  type PictureUploadBatchJobVO = {
+    errorMessage?: string
+    failedCount?: number
+    jobId?: string
+    status?: string
+    total?: number
+    uploadedCount?: number
+  }
+
   type PictureVO = {
     category?: string
     createTime?: string
@@ -518,7 +579,30 @@ declare namespace API {
     topN?: number
   }
 
+  type SpaceShard = {
+    batchInterval?: number
+    batchSize?: number
+    copiedCount?: number
+    createTime?: string
+    errorMessage?: string
+    id?: number
+    lastPictureId?: number
+    paused?: number
+    spaceId?: number
+    status?: number
+    syncTime?: string
+    totalCount?: number
+    updateTime?: string
+  }
+
+  type SpaceShardMigrateRequest = {
+    batchInterval?: number
+    batchSize?: number
+    spaceId?: number
+  }
+
   type SpaceSizeAnalyzeRequest = {
+    boundaries?: number[]
     queryAll?: boolean
     queryPublic?: boolean
     spaceId?: number
@@ -533,6 +617,7 @@ declare namespace API {
     queryAll?: boolean
     queryPublic?: boolean
     spaceId?: number
+    topN?: number
   }
 
   type SpaceTagAnalyzeResponse = {